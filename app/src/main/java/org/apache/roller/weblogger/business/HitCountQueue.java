@@ -18,9 +18,10 @@
 
 package org.apache.roller.weblogger.business;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.roller.util.RollerConstants;
@@ -35,8 +36,15 @@ import org.apache.roller.weblogger.pojos.Weblog;
  * Queue's up incoming hit counts so that they can be recorded to the db in
  * an asynchronous manner at give intervals.
  *
+ * Hits are tallied as they come in, with one counter per weblog, so the
+ * queue only grows with the number of weblogs read since the last drain.
+ * Counting a hit takes no locks and touches nothing shared between
+ * weblogs.  Draining swaps in a fresh tally and reads the old one after a
+ * short grace period, so hits counted into it just before the swap are
+ * included, and at worst a hit or two arriving slower than that is lost.
+ *
  * We also start up a single thread which runs continously to take the queued
- * hit counts, tally them, and record them into the db.
+ * hit counts and record them into the db.
  *
  * TODO: we may want to make this an interface that is pluggable if there is
  *   some indication that users want to override this implementation.
@@ -48,7 +56,17 @@ public final class HitCountQueue {
     private static HitCountQueue instance = null;
     
     private WorkerThread worker = null;
-    private List<String> queue = null;
+    
+    // how long a drained tally is left for hits in flight, in milliseconds
+    private final long drainGrace;
+    
+    // hits counted since the last drain
+    private volatile Tally tally = new Tally();
+    
+    // metrics about the last drain
+    private volatile int lastDrainWeblogs = 0;
+    private volatile long lastDrainHits = 0;
+    private volatile long lastDrainTime = 0;
     
     
     static {
@@ -58,6 +76,8 @@ public final class HitCountQueue {
     
     // non-instantiable because we are a singleton
     private HitCountQueue() {
+        this.drainGrace = 100;
+        
         int sleepTime = 3 * RollerConstants.MIN_IN_MS;
         String sleep = WebloggerConfig.getProperty("hitcount.queue.sleepTime", "180");
         
@@ -68,9 +88,6 @@ public final class HitCountQueue {
             log.warn("Invalid sleep time ["+sleep+"], using default");
         }
         
-        // create the hits queue
-        this.queue = Collections.synchronizedList(new ArrayList<String>());
-        
         // start up a worker to process the hits at intervals
         HitCountProcessingJob job = new HitCountProcessingJob();
         worker = new ContinuousWorkerThread("HitCountQueueProcessor", job, sleepTime);
@@ -78,6 +95,12 @@ public final class HitCountQueue {
     }
     
     
+    /** Testing purpose only, a queue without a worker */
+    HitCountQueue(long drainGrace) {
+        this.drainGrace = drainGrace;
+    }
+    
+    
     public static HitCountQueue getInstance() {
         return instance;
     }
@@ -85,24 +108,82 @@ public final class HitCountQueue {
     
     public void processHit(Weblog weblog) {
         
-        // if the weblog isn't null then just drop its handle in the queue
-        // each entry in the queue is a weblog handle and indicates a single hit
         if(weblog != null) {
-            this.queue.add(weblog.getHandle());
+            this.tally.count(weblog.getHandle());
+        }
+    }
+    
+    
+    /**
+     * Take the queued hits, tallied by weblog handle, and reset the queue.
+     */
+    public synchronized Map<String, Long> drainHits() {
+        
+        Tally drained = this.tally;
+        this.tally = new Tally();
+        
+        // let hits which read the old tally before the swap land in it
+        if(drainGrace > 0) {
+            try {
+                Thread.sleep(drainGrace);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        
+        long startTime = System.nanoTime();
+        
+        Map<String, Long> hits = new HashMap<>();
+        long total = 0;
+        for (Map.Entry<String, LongAdder> entry : drained.hits.entrySet()) {
+            long count = entry.getValue().sum();
+            hits.put(entry.getKey(), count);
+            total += count;
+        }
+        
+        this.lastDrainWeblogs = hits.size();
+        this.lastDrainHits = total;
+        this.lastDrainTime = System.nanoTime() - startTime;
+        
+        return hits;
+    }
+    
+    
+    /**
+     * Number of weblogs with hits waiting to be recorded.
+     */
+    public int getQueueDepth() {
+        return this.tally.hits.size();
+    }
+    
+    
+    /**
+     * Number of hits waiting to be recorded.
+     */
+    public long getQueuedHits() {
+        long total = 0;
+        for (LongAdder counter : this.tally.hits.values()) {
+            total += counter.sum();
         }
+        return total;
     }
     
     
-    public List<String> getHits() {
-        return new ArrayList<>(this.queue);
+    public int getLastDrainWeblogs() {
+        return lastDrainWeblogs;
+    }
+    
+    
+    public long getLastDrainHits() {
+        return lastDrainHits;
     }
     
     
     /**
-     * Reset the queued hits.
+     * Time the last drain took to read the tally, in nanoseconds.
      */
-    public synchronized void resetHits() {
-        this.queue = Collections.synchronizedList(new ArrayList<String>());
+    public long getLastDrainTime() {
+        return lastDrainTime;
     }
     
     
@@ -123,4 +204,21 @@ public final class HitCountQueue {
         
     }
     
+    
+    /**
+     * Hits by weblog handle.
+     */
+    private static final class Tally {
+        
+        private final Map<String, LongAdder> hits = new ConcurrentHashMap<>();
+        
+        void count(String handle) {
+            LongAdder counter = this.hits.get(handle);
+            if(counter == null) {
+                counter = this.hits.computeIfAbsent(handle, key -> new LongAdder());
+            }
+            counter.increment();
+        }
+    }
+    
 }
@@ -18,9 +18,11 @@
 
 package org.apache.roller.weblogger.business;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.apache.roller.weblogger.WebloggerException;
 import org.apache.roller.weblogger.pojos.CommentSearchCriteria;
 import org.apache.roller.weblogger.pojos.StatCount;
@@ -71,6 +73,56 @@ public interface WeblogEntryManager {
     List<WeblogEntry> getWeblogEntries(WeblogEntrySearchCriteria wesc)
             throws WebloggerException;
 
+    /**
+     * Get a number of entries by id with as few queries as possible, rather
+     * than one query per entry.
+     * @param ids Ids of the entries to get
+     * @return List of WeblogEntry objects in the order of the given ids,
+     *         leaving out ids of entries which don't exist
+     * @throws WebloggerException
+     */
+    List<WeblogEntry> getWeblogEntriesById(List<String> ids) throws WebloggerException;
+
+    /**
+     * Associations of an entry which can be loaded for many entries at once
+     * by prefetch().
+     */
+    enum Association {
+        /** Tags, see WeblogEntry.getTags() */
+        TAGS,
+        /** Entry attributes, see WeblogEntry.getEntryAttributes() */
+        ATTRIBUTES,
+        /** The user who wrote the entry, see WeblogEntry.getCreator() */
+        CREATOR,
+        /** Number of approved comments, see WeblogEntry.getCommentCount() */
+        COMMENT_COUNT
+    }
+
+    /**
+     * Load associations of a number of entries with a few queries for all of
+     * them, rather than a query per entry the first time each entry's are
+     * used, as when rendering a page of entries.  Associations already loaded
+     * are left alone.
+     * @param entries entries to load associations of
+     * @param associations which associations to load
+     * @throws WebloggerException
+     */
+    void prefetch(List<WeblogEntry> entries, Set<Association> associations) throws WebloggerException;
+
+    /**
+     * Get published entries in id order, a page at a time, for walking
+     * through every entry of a weblog or of the whole site.  Each page is
+     * found by seeking past the last id of the previous one, so pages deep
+     * into a large result cost no more than the first.
+     * @param weblog Weblog to get entries of, or null for all visible weblogs
+     * @param afterId Id of the last entry of the previous page, or null for the first page
+     * @param max Maximum number of entries to return
+     * @return List of WeblogEntry objects in id order
+     * @throws WebloggerException
+     */
+    List<WeblogEntry> getPublishedWeblogEntriesAfter(Weblog weblog, String afterId, int max)
+            throws WebloggerException;
+
     /**
      * Get Weblog Entries grouped by day.
      * @param wesc WeblogEntrySearchCriteria object listing desired search parameters
@@ -83,13 +135,26 @@ public interface WeblogEntryManager {
     /**
      * Get Weblog Entry date strings grouped by day. This method returns a Map
      * that contains one YYYYMMDD date string object for each calendar day having
-     * one or more blog entries.
+     * one or more blog entries, found as by getWeblogEntryDayCounts().
      * @param wesc WeblogEntrySearchCriteria object listing desired search parameters
      * @return Map of date strings keyed by Date
      * @throws WebloggerException
      */
     Map<Date, String> getWeblogEntryStringMap(WeblogEntrySearchCriteria wesc)
             throws WebloggerException;
+
+    /**
+     * Get the number of entries on each calendar day having one or more blog
+     * entries.  Published entries of a weblog, limited by date range, category
+     * and locale, are counted without loading them, other criteria fall back
+     * to loading the entries.  Offset and maxResults count days rather than
+     * entries, taken in the given sort order.
+     * @param wesc WeblogEntrySearchCriteria object listing desired search parameters
+     * @return Map of entry counts keyed by noon of each day, latest day first
+     * @throws WebloggerException
+     */
+    Map<Date, Integer> getWeblogEntryDayCounts(WeblogEntrySearchCriteria wesc)
+            throws WebloggerException;
     
     /**
      * Get weblog entries ordered by descending number of comments.
@@ -199,6 +264,16 @@ public interface WeblogEntryManager {
      */
     List<WeblogEntryComment> getComments(CommentSearchCriteria csc) throws WebloggerException;
 
+    /**
+     * Get the approved comments of a number of entries with as few queries
+     * as possible, rather than one query per entry.
+     * @param entries entries to get comments for
+     * @return comments in post time order keyed by entry id, entries without
+     *         approved comments are left out
+     */
+    Map<String, List<WeblogEntryComment>> getApprovedComments(Collection<WeblogEntry> entries)
+            throws WebloggerException;
+
     /**
      * Deletes comments that match parameters.
      * @param searchParams CommentSearchParams containing search criteria
@@ -345,6 +420,20 @@ public interface WeblogEntryManager {
         throws WebloggerException;
     
     
+    /**
+     * Increment the hit counts for many weblogs at once.
+     *
+     * Counts are updated with a handful of set based statements rather than
+     * a lookup and save per weblog, and missing hit count records are
+     * created.  Handles of unknown or hidden weblogs are ignored.
+     *
+     * @param hitsByHandle How much to increment by, keyed by weblog handle.
+     * @throws WebloggerException If there was a problem with the backend.
+     */
+    void incrementHitCounts(Map<String, Long> hitsByHandle)
+        throws WebloggerException;
+    
+    
     /**
      * Reset the hit counts for all weblogs.  This sets the counts back to 0.
      *
@@ -18,8 +18,10 @@
 
 package org.apache.roller.weblogger.business.jpa;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Enumeration;
+import java.util.List;
 import java.util.Properties;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -52,6 +54,11 @@ public class JPAPersistenceStrategy {
      */
     private final ThreadLocal<EntityManager> threadLocalEntityManager = new ThreadLocal<>();
     
+    /**
+     * Actions waiting for the thread's transaction to be committed.
+     */
+    private final ThreadLocal<List<Runnable>> threadLocalAfterCommit = new ThreadLocal<>();
+    
     /**
      * The EntityManagerFactory for this Roller instance.
      */
@@ -130,12 +137,37 @@ public class JPAPersistenceStrategy {
      * @throws org.apache.roller.weblogger.WebloggerException on any error
      */
     public void flush() throws WebloggerException {
+        List<Runnable> actions = threadLocalAfterCommit.get();
+        threadLocalAfterCommit.remove();
         try {
             EntityManager em = getEntityManager(true);
             em.getTransaction().commit();
         } catch (PersistenceException pe) {
             throw new WebloggerException(pe);
         }
+        if (actions != null) {
+            for (Runnable action : actions) {
+                try {
+                    action.run();
+                } catch (RuntimeException e) {
+                    logger.error("error running action after commit", e);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Run an action once the current transaction is committed by flush(),
+     * for keeping things outside the database in step with it.  The action
+     * is dropped if the transaction is rolled back instead.
+     */
+    public void afterCommit(Runnable action) {
+        List<Runnable> actions = threadLocalAfterCommit.get();
+        if (actions == null) {
+            actions = new ArrayList<>();
+            threadLocalAfterCommit.set(actions);
+        }
+        actions.add(action);
     }
     
     /**
@@ -159,6 +191,7 @@ public class JPAPersistenceStrategy {
                 }
             }
             threadLocalEntityManager.remove();
+            threadLocalAfterCommit.remove();
         }
     }
     
@@ -222,7 +255,17 @@ public class JPAPersistenceStrategy {
         EntityManager em = getEntityManager(false);
         return em.find(clazz, id);
     }
-    
+
+    /**
+     * Return true if an attribute of an object has been loaded, false if it
+     * is still waiting to be loaded lazily.
+     * @param obj the object
+     * @param attribute name of the attribute
+     */
+    public boolean isLoaded(Object obj, String attribute) {
+        return emf.getPersistenceUnitUtil().isLoaded(obj, attribute);
+    }
+
     /**
      * Return true if a transaction is active on the current EntityManager.
      * @param em the persistence manager
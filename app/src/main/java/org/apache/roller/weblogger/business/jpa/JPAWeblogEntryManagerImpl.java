@@ -32,6 +32,8 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.roller.util.RollerConstants;
 import org.apache.roller.weblogger.WebloggerException;
 import org.apache.roller.weblogger.business.Weblogger;
+import org.apache.roller.weblogger.business.jpa.WeblogArchiveIndex.ArchivedEntry;
+import org.apache.roller.weblogger.config.WebloggerConfig;
 import org.apache.roller.weblogger.pojos.CommentSearchCriteria;
 import org.apache.roller.weblogger.pojos.WeblogEntryComment;
 import org.apache.roller.weblogger.pojos.WeblogEntryComment.ApprovalStatus;
@@ -41,6 +43,7 @@ import org.apache.roller.weblogger.pojos.StatCount;
 import org.apache.roller.weblogger.pojos.TagStat;
 import org.apache.roller.weblogger.pojos.TagStatComparator;
 import org.apache.roller.weblogger.pojos.TagStatCountComparator;
+import org.apache.roller.weblogger.pojos.User;
 import org.apache.roller.weblogger.pojos.WeblogCategory;
 import org.apache.roller.weblogger.pojos.WeblogEntry;
 import org.apache.roller.weblogger.pojos.WeblogEntry.PubStatus;
@@ -74,6 +77,10 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
     // cached mapping of entryAnchors -> entryIds
     private final Map<String, String> entryAnchorToIdMap = Collections.synchronizedMap(new HashMap<String, String>());
     
+    // days having entries, for calendars and archive menus
+    private final WeblogArchiveIndex archiveIndex =
+            new WeblogArchiveIndex(WebloggerConfig.getIntProperty("cache.archiveIndex.maxWeblogs", 200));
+    
     private static final Comparator<TagStat> TAG_STAT_NAME_COMPARATOR = new TagStatComparator();
     
     private static final Comparator<TagStat> TAG_STAT_COUNT_REVERSE_COMPARATOR =
@@ -82,6 +89,9 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
     private static final Comparator<StatCount> STAT_COUNT_COUNT_REVERSE_COMPARATOR =
             Collections.reverseOrder(StatCountCountComparator.getInstance());
     
+    // largest number of values we put in an IN clause, some databases have limits
+    private static final int MAX_IN_CLAUSE = 500;
+    
     
     @com.google.inject.Inject
     protected JPAWeblogEntryManagerImpl(Weblogger roller, JPAPersistenceStrategy strategy) {
@@ -143,9 +153,11 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
         // Loop through entries in src cat, assign them to dest cat
         Weblog website = destCat.getWeblog();
         for (WeblogEntry entry : results) {
+            this.strategy.afterCommit(archiveIndex.entryRemoved(entry));
             entry.setCategory(destCat);
             entry.setWebsite(website);
             this.strategy.store(entry);
+            this.strategy.afterCommit(archiveIndex.entrySaved(entry));
         }
         
         // Update Blogger API category if applicable
@@ -253,6 +265,8 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
             // Queue applicable pings for this update.
             roller.getAutopingManager().queueApplicableAutoPings(entry);
         }
+        
+        this.strategy.afterCommit(archiveIndex.entrySaved(entry));
     }
     
     /**
@@ -297,6 +311,7 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
         
         // remove entry from cache mapping
         this.entryAnchorToIdMap.remove(entry.getWebsite().getHandle()+":"+entry.getAnchor());
+        this.strategy.afterCommit(archiveIndex.entryRemoved(entry));
     }
     
     private List<WeblogEntry> getNextPrevEntries(NextPrevEntryParams params)
@@ -392,10 +407,11 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
         int size = 0;
         StringBuilder queryString = new StringBuilder();
         
+        // entries are usually listed with their category, fetch it along
         if (wesc.getTags() == null || wesc.getTags().isEmpty()) {
-            queryString.append("SELECT e FROM WeblogEntry e WHERE ");
+            queryString.append("SELECT e FROM WeblogEntry e JOIN FETCH e.category WHERE ");
         } else {
-            queryString.append("SELECT e FROM WeblogEntry e JOIN e.tags t WHERE ");
+            queryString.append("SELECT e FROM WeblogEntry e JOIN FETCH e.category JOIN e.tags t WHERE ");
             queryString.append("(");
             for (int i = 0; i < wesc.getTags().size(); i++) {
                 if (i != 0) {
@@ -455,16 +471,29 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
             queryString.append(") ");
         }
 
-        if (wesc.getSortBy() != null && wesc.getSortBy().equals(WeblogEntrySearchCriteria.SortBy.UPDATE_TIME)) {
-            queryString.append(" ORDER BY e.updateTime ");
-        } else {
-            queryString.append(" ORDER BY e.pubTime ");
-        }
-        
+        boolean byUpdateTime = wesc.getSortBy() != null && wesc.getSortBy().equals(WeblogEntrySearchCriteria.SortBy.UPDATE_TIME);
+        String direction = "DESC";
+        String seek = "<";
         if (wesc.getSortOrder() != null && wesc.getSortOrder().equals(WeblogEntrySearchCriteria.SortOrder.ASCENDING)) {
-            queryString.append("ASC ");
+            direction = "ASC";
+            seek = ">";
+        }
+
+        if (!byUpdateTime && wesc.getAfterPubTime() != null && wesc.getAfterId() != null) {
+            // seek past the entry, entries published at the same time are ordered by id
+            params.add(size++, new Timestamp(wesc.getAfterPubTime().getTime()));
+            int pubTimeParam = size;
+            params.add(size++, wesc.getAfterId());
+            queryString.append(" AND ( e.pubTime ").append(seek).append(" ?").append(pubTimeParam);
+            queryString.append("    OR ( e.pubTime = ?").append(pubTimeParam);
+            queryString.append("    AND e.id ").append(seek).append(" ?").append(size).append(") ) ");
+        }
+
+        if (byUpdateTime) {
+            queryString.append(" ORDER BY e.updateTime ").append(direction);
         } else {
-            queryString.append("DESC ");
+            queryString.append(" ORDER BY e.pubTime ").append(direction);
+            queryString.append(", e.id ").append(direction);
         }
         
         
@@ -477,6 +506,155 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
         return query.getResultList();
     }
     
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public List<WeblogEntry> getWeblogEntriesById(List<String> ids) throws WebloggerException {
+        Map<String, WeblogEntry> entriesById = new HashMap<>();
+        for (List<String> chunk : chunks(ids)) {
+            TypedQuery<WeblogEntry> query = strategy.getNamedQuery("WeblogEntry.getByIds", WeblogEntry.class);
+            query.setParameter(1, chunk);
+            for (WeblogEntry entry : query.getResultList()) {
+                entriesById.put(entry.getId(), entry);
+            }
+        }
+
+        List<WeblogEntry> entries = new ArrayList<>(entriesById.size());
+        for (String id : ids) {
+            WeblogEntry entry = entriesById.get(id);
+            if (entry != null) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void prefetch(List<WeblogEntry> entries, Set<Association> associations)
+            throws WebloggerException {
+
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        if (associations.contains(Association.TAGS)) {
+            Map<String, WeblogEntry> unloaded = unloadedEntries(entries, "tags");
+            Map<String, Set<WeblogEntryTag>> tags = new HashMap<>();
+            for (List<String> ids : chunks(unloaded.keySet())) {
+                TypedQuery<WeblogEntryTag> query = strategy.getNamedQuery(
+                        "WeblogEntryTag.getByWeblogEntryIdsOrderByName", WeblogEntryTag.class);
+                query.setParameter(1, ids);
+                for (WeblogEntryTag tag : query.getResultList()) {
+                    tags.computeIfAbsent(tag.getWeblogEntry().getId(), id -> new LinkedHashSet<>()).add(tag);
+                }
+            }
+            for (WeblogEntry entry : unloaded.values()) {
+                entry.setTags(tags.getOrDefault(entry.getId(), new LinkedHashSet<>()));
+            }
+        }
+
+        if (associations.contains(Association.ATTRIBUTES)) {
+            Map<String, WeblogEntry> unloaded = unloadedEntries(entries, "entryAttributes");
+            Map<String, Set<WeblogEntryAttribute>> atts = new HashMap<>();
+            for (List<String> ids : chunks(unloaded.keySet())) {
+                TypedQuery<WeblogEntryAttribute> query = strategy.getNamedQuery(
+                        "WeblogEntryAttribute.getByEntryIds", WeblogEntryAttribute.class);
+                query.setParameter(1, ids);
+                for (WeblogEntryAttribute att : query.getResultList()) {
+                    atts.computeIfAbsent(att.getEntry().getId(), id -> new TreeSet<>()).add(att);
+                }
+            }
+            for (WeblogEntry entry : unloaded.values()) {
+                entry.setEntryAttributes(atts.getOrDefault(entry.getId(), new TreeSet<>()));
+            }
+        }
+
+        if (associations.contains(Association.CREATOR)) {
+            Set<String> userNames = new HashSet<>();
+            for (WeblogEntry entry : entries) {
+                if (entry.getCreatorUserName() != null) {
+                    userNames.add(entry.getCreatorUserName());
+                }
+            }
+            // getCreator() only finds enabled users, leave the others to it
+            Map<String, User> users = new HashMap<>();
+            for (List<String> names : chunks(userNames)) {
+                TypedQuery<User> query = strategy.getNamedQuery("User.getByUserNames&Enabled", User.class);
+                query.setParameter(1, names);
+                query.setParameter(2, Boolean.TRUE);
+                for (User user : query.getResultList()) {
+                    users.put(user.getUserName(), user);
+                }
+            }
+            for (WeblogEntry entry : entries) {
+                User user = users.get(entry.getCreatorUserName());
+                if (user != null) {
+                    entry.setCreator(user);
+                }
+            }
+        }
+
+        if (associations.contains(Association.COMMENT_COUNT)) {
+            Map<String, WeblogEntry> entriesById = new HashMap<>();
+            for (WeblogEntry entry : entries) {
+                entriesById.put(entry.getId(), entry);
+            }
+            Map<String, Long> counts = new HashMap<>();
+            for (List<String> ids : chunks(entriesById.keySet())) {
+                Query query = strategy.getNamedQuery(
+                        "WeblogEntryComment.getCountByWeblogEntryIds&StatusGroupByWeblogEntry");
+                query.setParameter(1, ids);
+                query.setParameter(2, ApprovalStatus.APPROVED);
+                for (Object obj : query.getResultList()) {
+                    Object[] row = (Object[]) obj;
+                    counts.put((String) row[0], ((Number) row[1]).longValue());
+                }
+            }
+            for (WeblogEntry entry : entriesById.values()) {
+                entry.setCommentCount(counts.getOrDefault(entry.getId(), 0L).intValue());
+            }
+        }
+    }
+
+    /**
+     * Entries keyed by id whose collection attribute is yet to be loaded.
+     */
+    private Map<String, WeblogEntry> unloadedEntries(List<WeblogEntry> entries, String attribute) {
+        Map<String, WeblogEntry> unloaded = new LinkedHashMap<>();
+        for (WeblogEntry entry : entries) {
+            if (!strategy.isLoaded(entry, attribute)) {
+                unloaded.put(entry.getId(), entry);
+            }
+        }
+        return unloaded;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public List<WeblogEntry> getPublishedWeblogEntriesAfter(Weblog weblog, String afterId, int max)
+            throws WebloggerException {
+        TypedQuery<WeblogEntry> query;
+        if (weblog != null) {
+            query = strategy.getNamedQuery(
+                    "WeblogEntry.getByWebsite&Status&IdGreaterThanOrderById", WeblogEntry.class);
+            query.setParameter(3, weblog);
+        } else {
+            query = strategy.getNamedQuery(
+                    "WeblogEntry.getByWebsiteVisibleTrue&Status&IdGreaterThanOrderById", WeblogEntry.class);
+        }
+        query.setParameter(1, PubStatus.PUBLISHED);
+        // every id sorts after the empty string
+        query.setParameter(2, afterId != null ? afterId : "");
+        query.setMaxResults(max);
+        return query.getResultList();
+    }
+
     /**
      * @inheritDoc
      */
@@ -687,6 +865,32 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
     }
     
     
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public Map<String, List<WeblogEntryComment>> getApprovedComments(Collection<WeblogEntry> entries)
+            throws WebloggerException {
+
+        List<String> entryIds = new ArrayList<>(entries.size());
+        for (WeblogEntry entry : entries) {
+            entryIds.add(entry.getId());
+        }
+
+        Map<String, List<WeblogEntryComment>> comments = new HashMap<>();
+        for (List<String> ids : chunks(entryIds)) {
+            TypedQuery<WeblogEntryComment> query = strategy.getNamedQuery(
+                    "WeblogEntryComment.getByWeblogEntryIds&StatusOrderByPostTime", WeblogEntryComment.class);
+            query.setParameter(1, ids);
+            query.setParameter(2, ApprovalStatus.APPROVED);
+            for (WeblogEntryComment comment : query.getResultList()) {
+                comments.computeIfAbsent(comment.getWeblogEntry().getId(), id -> new ArrayList<>()).add(comment);
+            }
+        }
+        return comments;
+    }
+    
+    
     /**
      * @inheritDoc
      */
@@ -799,25 +1003,109 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
     public Map<Date, String> getWeblogEntryStringMap(WeblogEntrySearchCriteria wesc) throws WebloggerException {
         TreeMap<Date, String> map = new TreeMap<>(Collections.reverseOrder());
 
-        List<WeblogEntry> entries = getWeblogEntries(wesc);
-
-        Calendar cal = Calendar.getInstance();
         SimpleDateFormat formatter = DateFormatUtil.get8charDateFormat();
         if (wesc.getWeblog() != null) {
-            TimeZone tz = wesc.getWeblog().getTimeZoneInstance();
-            cal.setTimeZone(tz);
-            formatter.setTimeZone(tz);
+            formatter.setTimeZone(wesc.getWeblog().getTimeZoneInstance());
         }
 
-        for (WeblogEntry entry : entries) {
-            Date sDate = DateBoundaryUtil.getNoonOfDay(entry.getPubTime(), cal);
-            if (map.get(sDate) == null) {
-                map.put(sDate, formatter.format(sDate));
-            }
+        for (Date day : getWeblogEntryDayCounts(wesc).keySet()) {
+            map.put(day, formatter.format(day));
         }
         return map;
     }
 
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public Map<Date, Integer> getWeblogEntryDayCounts(WeblogEntrySearchCriteria wesc) throws WebloggerException {
+        Weblog weblog = wesc.getWeblog();
+
+        Calendar cal = Calendar.getInstance();
+        if (weblog != null) {
+            cal.setTimeZone(weblog.getTimeZoneInstance());
+        }
+
+        long start = wesc.getStartDate() != null ? wesc.getStartDate().getTime() : Long.MIN_VALUE;
+        long end = wesc.getEndDate() != null ? wesc.getEndDate().getTime() : Long.MAX_VALUE;
+        boolean ascending = WeblogEntrySearchCriteria.SortOrder.ASCENDING.equals(wesc.getSortOrder());
+
+        WeblogArchiveIndex.Archive archive;
+        String categoryId = null;
+        String locale = null;
+        if (weblog != null && PubStatus.PUBLISHED.equals(wesc.getStatus()) && wesc.getUser() == null
+                && (wesc.getTags() == null || wesc.getTags().isEmpty()) && StringUtils.isEmpty(wesc.getText())) {
+
+            archive = archiveIndex.get(weblog.getHandle(), weblog.getLastModified());
+            if (archive == null) {
+                archive = loadArchive(weblog);
+            }
+            if (StringUtils.isNotEmpty(wesc.getCatName())) {
+                WeblogCategory cat = getWeblogCategoryByName(weblog, wesc.getCatName());
+                if (cat != null) {
+                    categoryId = cat.getId();
+                }
+            }
+            locale = wesc.getLocale();
+
+        } else {
+            // not just published entries of a weblog, so load the entries
+            List<ArchivedEntry> entries = new ArrayList<>();
+            for (WeblogEntry entry : getWeblogEntries(withoutPaging(wesc))) {
+                if (entry.getPubTime() != null) {
+                    entries.add(new ArchivedEntry(entry.getId(), entry.getPubTime().getTime(), null, null));
+                }
+            }
+            archive = new WeblogArchiveIndex.Archive(entries, System.currentTimeMillis());
+        }
+
+        return archive.countByDay(start, end, categoryId, locale, ascending,
+                wesc.getOffset(), wesc.getMaxResults(), cal);
+    }
+
+    /**
+     * Read when the published entries of a weblog were published, and what
+     * the archive index needs to filter them, and store it in the index.
+     */
+    private WeblogArchiveIndex.Archive loadArchive(Weblog weblog) throws WebloggerException {
+        long loadTime = System.currentTimeMillis();
+
+        Query query = strategy.getNamedQuery("WeblogEntry.getArchiveByWebsite&Status");
+        query.setParameter(1, weblog);
+        query.setParameter(2, PubStatus.PUBLISHED);
+        List<?> rows = query.getResultList();
+
+        List<ArchivedEntry> entries = new ArrayList<>(rows.size());
+        for (Object obj : rows) {
+            Object[] row = (Object[]) obj;
+            if (row[1] != null) {
+                entries.add(new ArchivedEntry((String) row[0], ((Date) row[1]).getTime(),
+                        (String) row[2], (String) row[3]));
+            }
+        }
+        return archiveIndex.load(weblog.getHandle(), entries, loadTime);
+    }
+
+    /**
+     * Copy of the criteria which returns all entries, for when paging applies
+     * to something other than entries.
+     */
+    private static WeblogEntrySearchCriteria withoutPaging(WeblogEntrySearchCriteria wesc) {
+        WeblogEntrySearchCriteria all = new WeblogEntrySearchCriteria();
+        all.setWeblog(wesc.getWeblog());
+        all.setUser(wesc.getUser());
+        all.setStartDate(wesc.getStartDate());
+        all.setEndDate(wesc.getEndDate());
+        all.setCatName(wesc.getCatName());
+        all.setTags(wesc.getTags());
+        all.setStatus(wesc.getStatus());
+        all.setText(wesc.getText());
+        all.setSortBy(wesc.getSortBy());
+        all.setSortOrder(wesc.getSortOrder());
+        all.setLocale(wesc.getLocale());
+        return all;
+    }
+
     /**
      * @inheritDoc
      */
@@ -1310,6 +1598,81 @@ public class JPAWeblogEntryManagerImpl implements WeblogEntryManager {
         }
     }
     
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void incrementHitCounts(Map<String, Long> hitsByHandle)
+    throws WebloggerException {
+        
+        // resolve handles to ids, grouping the ids by increment amount
+        Map<String, Integer> amountsById = new HashMap<>();
+        for (List<String> handles : chunks(hitsByHandle.keySet())) {
+            Query q = strategy.getNamedQuery("Weblog.getIdAndHandleByHandles&VisibleTrue");
+            q.setParameter(1, handles);
+            for (Object obj : q.getResultList()) {
+                Object[] row = (Object[]) obj;
+                long hits = hitsByHandle.get((String) row[1]);
+                if (hits > 0) {
+                    amountsById.put((String) row[0], (int) Math.min(hits, Integer.MAX_VALUE));
+                }
+            }
+        }
+        
+        // find which weblogs already have a hit count record
+        Set<String> existing = new HashSet<>();
+        for (List<String> ids : chunks(amountsById.keySet())) {
+            TypedQuery<String> q = strategy.getNamedQuery("WeblogHitCount.getWeblogIdByWeblogIds", String.class);
+            q.setParameter(1, ids);
+            existing.addAll(q.getResultList());
+        }
+        
+        // one update per distinct amount, most weblogs share small amounts
+        Map<Integer, List<String>> idsByAmount = new HashMap<>();
+        for (Map.Entry<String, Integer> entry : amountsById.entrySet()) {
+            if (existing.contains(entry.getKey())) {
+                idsByAmount.computeIfAbsent(entry.getValue(), amount -> new ArrayList<>()).add(entry.getKey());
+            }
+        }
+        for (Map.Entry<Integer, List<String>> entry : idsByAmount.entrySet()) {
+            for (List<String> ids : chunks(entry.getValue())) {
+                Query q = strategy.getNamedUpdate("WeblogHitCount.incrementDailyHitsByWeblogIds");
+                q.setParameter(1, entry.getKey());
+                q.setParameter(2, ids);
+                q.executeUpdate();
+            }
+        }
+        
+        // and create the missing records
+        for (Map.Entry<String, Integer> entry : amountsById.entrySet()) {
+            if (!existing.contains(entry.getKey())) {
+                WeblogHitCount hitCount = new WeblogHitCount();
+                hitCount.setWeblog(strategy.getEntityManager(true).getReference(Weblog.class, entry.getKey()));
+                hitCount.setDailyHits(entry.getValue());
+                strategy.store(hitCount);
+            }
+        }
+    }
+    
+    /**
+     * Split values into lists small enough for an IN clause.
+     */
+    private static List<List<String>> chunks(Collection<String> values) {
+        List<List<String>> chunks = new ArrayList<>();
+        List<String> chunk = new ArrayList<>();
+        for (String value : values) {
+            if (chunk.size() == MAX_IN_CLAUSE) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>();
+            }
+            chunk.add(value);
+        }
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+    
     /**
      * @inheritDoc
      */
@@ -0,0 +1,296 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.business.jpa;
+
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import org.apache.roller.util.DateBoundaryUtil;
+import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.pojos.WeblogEntry;
+
+
+/**
+ * An in-memory index of when the published entries of each weblog were
+ * published, holding just enough about each entry to filter by category and
+ * locale.  Calendars and archive menus use it to find the days having
+ * entries without loading any entries.
+ *
+ * The archive of a weblog is loaded from the database the first time it is
+ * needed and then kept up to date as entries are saved and removed here,
+ * once their changes are committed.  It is only trusted while the weblog
+ * was last modified before the archive was last known to be up to date.  A
+ * change made here only moves that time on to the weblog's new modification
+ * time if the archive was up to date with the modification before it, so
+ * changes made elsewhere, say by another node of a cluster, always make the
+ * archive reload.  A bounded number of weblogs is kept, least recently used
+ * go first.
+ */
+class WeblogArchiveIndex {
+
+    private static final Comparator<ArchivedEntry> BY_PUB_TIME =
+            Comparator.comparingLong((ArchivedEntry e) -> e.pubTime).thenComparing(e -> e.id);
+
+    // weblog handle -> archive
+    private final Map<String, Archive> archives;
+
+
+    WeblogArchiveIndex(final int maxWeblogs) {
+        archives = Collections.synchronizedMap(new LinkedHashMap<String, Archive>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Archive> eldest) {
+                return size() > maxWeblogs;
+            }
+        });
+    }
+
+
+    /**
+     * Get the archive of a weblog, or null if it has not been loaded or may
+     * be out of date.
+     *
+     * @param lastModified when the weblog was last modified, may be null
+     */
+    Archive get(String handle, Date lastModified) {
+        Archive archive = archives.get(handle);
+        if (archive == null || !archive.isCurrent(lastModified)) {
+            return null;
+        }
+        return archive;
+    }
+
+
+    /**
+     * Store the archive of a weblog as read from the database.
+     *
+     * @param loadTime when reading the entries started
+     */
+    Archive load(String handle, Collection<ArchivedEntry> entries, long loadTime) {
+        Archive archive = new Archive(entries, loadTime);
+        archives.put(handle, archive);
+        return archive;
+    }
+
+
+    /**
+     * Note a saved entry, adding it to its weblog's archive if published or
+     * removing it otherwise.  The archive is left alone until the returned
+     * update is run, which must be once the entry has been committed.
+     */
+    Runnable entrySaved(WeblogEntry entry) {
+        Weblog weblog = entry.getWebsite();
+        String handle = weblog.getHandle();
+        Date previousModified = weblog.getPreviousLastModified();
+        Date lastModified = weblog.getLastModified();
+
+        if (entry.isPublished() && entry.getPubTime() != null) {
+            ArchivedEntry archived = new ArchivedEntry(entry.getId(), entry.getPubTime().getTime(),
+                    entry.getCategory().getId(), entry.getLocale());
+            return () -> {
+                Archive archive = archives.get(handle);
+                if (archive != null) {
+                    archive.put(archived, previousModified, lastModified);
+                }
+            };
+        }
+        return entryRemoved(entry);
+    }
+
+
+    /**
+     * Note a removed entry, the same way as a saved one.
+     */
+    Runnable entryRemoved(WeblogEntry entry) {
+        Weblog weblog = entry.getWebsite();
+        String handle = weblog.getHandle();
+        String id = entry.getId();
+        Date previousModified = weblog.getPreviousLastModified();
+        Date lastModified = weblog.getLastModified();
+
+        return () -> {
+            Archive archive = archives.get(handle);
+            if (archive != null) {
+                archive.remove(id, previousModified, lastModified);
+            }
+        };
+    }
+
+
+    void clear() {
+        archives.clear();
+    }
+
+
+    int size() {
+        return archives.size();
+    }
+
+
+    /**
+     * What the index knows about a published entry.
+     */
+    static final class ArchivedEntry {
+
+        private final String id;
+        private final long pubTime;
+        private final String categoryId;
+        private final String locale;
+
+        ArchivedEntry(String id, long pubTime, String categoryId, String locale) {
+            this.id = id;
+            this.pubTime = pubTime;
+            this.categoryId = categoryId;
+            this.locale = locale;
+        }
+
+        boolean matches(String category, String localePrefix) {
+            return (category == null || category.equals(categoryId))
+                    && (localePrefix == null || (locale != null && locale.startsWith(localePrefix)));
+        }
+    }
+
+
+    /**
+     * The published entries of one weblog in publishing order.
+     */
+    static final class Archive {
+
+        private final NavigableSet<ArchivedEntry> entries = new TreeSet<>(BY_PUB_TIME);
+
+        private final Map<String, ArchivedEntry> entriesById = new HashMap<>();
+
+        // time the archive was last known to match the database
+        private long validAt;
+
+        Archive(Collection<ArchivedEntry> loaded, long loadTime) {
+            for (ArchivedEntry entry : loaded) {
+                entries.add(entry);
+                entriesById.put(entry.id, entry);
+            }
+            validAt = loadTime;
+        }
+
+        private synchronized boolean isCurrent(Date lastModified) {
+            return lastModified == null || lastModified.getTime() <= validAt;
+        }
+
+        private synchronized void put(ArchivedEntry entry, Date previousModified, Date lastModified) {
+            ArchivedEntry old = entriesById.put(entry.id, entry);
+            if (old != null) {
+                entries.remove(old);
+            }
+            entries.add(entry);
+            modified(previousModified, lastModified);
+        }
+
+        private synchronized void remove(String id, Date previousModified, Date lastModified) {
+            ArchivedEntry old = entriesById.remove(id);
+            if (old != null) {
+                entries.remove(old);
+            }
+            modified(previousModified, lastModified);
+        }
+
+        /**
+         * The archive has had a change made along with a modification of its
+         * weblog, and so is up to date with that modification if it was up
+         * to date with the one before.
+         */
+        private void modified(Date previousModified, Date lastModified) {
+            if (previousModified != null && lastModified != null
+                    && previousModified.getTime() <= validAt) {
+                validAt = Math.max(validAt, lastModified.getTime());
+            }
+        }
+
+        /**
+         * Count the entries published on each day within a time range.
+         *
+         * @param start first publishing time to count, inclusive
+         * @param end last publishing time to count, inclusive
+         * @param categoryId only count entries in this category, or null for all
+         * @param localePrefix only count entries whose locale starts with this, or null for all
+         * @param ascending walk days oldest first rather than newest first
+         * @param offset number of days with entries to skip
+         * @param max number of days to return, or -1 for all
+         * @param cal calendar in the weblog's time zone, used to find days
+         * @return entry counts keyed by noon of each day, newest first
+         */
+        synchronized Map<Date, Integer> countByDay(long start, long end, String categoryId,
+                String localePrefix, boolean ascending, int offset, int max, Calendar cal) {
+
+            Map<Date, Integer> days = new TreeMap<>(Collections.reverseOrder());
+            if (start > end) {
+                return days;
+            }
+
+            NavigableSet<ArchivedEntry> range = entries.subSet(
+                    new ArchivedEntry("", start, null, null), true,
+                    new ArchivedEntry("\uffff", end, null, null), true);
+            Iterator<ArchivedEntry> it = ascending ? range.iterator() : range.descendingIterator();
+
+            Date noon = null;
+            long dayStart = 0;
+            long dayEnd = -1;
+            int count = 0;
+            int skip = offset;
+            while (it.hasNext()) {
+                ArchivedEntry entry = it.next();
+                if (!entry.matches(categoryId, localePrefix)) {
+                    continue;
+                }
+                if (entry.pubTime < dayStart || entry.pubTime > dayEnd) {
+                    // a new day, done with the previous one
+                    if (noon != null && skip-- <= 0) {
+                        days.put(noon, count);
+                    }
+                    if (max >= 0 && days.size() >= max) {
+                        return days;
+                    }
+                    Date pubTime = new Date(entry.pubTime);
+                    noon = DateBoundaryUtil.getNoonOfDay(pubTime, cal);
+                    dayStart = DateBoundaryUtil.getStartOfDay(pubTime, cal).getTime();
+                    dayEnd = DateBoundaryUtil.getEndOfDay(pubTime, cal).getTime();
+                    count = 0;
+                }
+                count++;
+            }
+            if (noon != null && skip <= 0 && (max < 0 || days.size() < max)) {
+                days.put(noon, count);
+            }
+            return days;
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+    }
+
+}
@@ -19,6 +19,8 @@
 package org.apache.roller.weblogger.business.plugins;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
 import org.apache.roller.weblogger.business.plugins.entry.WeblogEntryPlugin;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -50,11 +52,24 @@ public class PluginManagerImpl implements PluginManager {
     // Comment plugins
     private final List<WeblogEntryCommentPlugin> commentPlugins = new ArrayList<>();
     
+    // weblog id -> plugins initialized for that weblog
+    private final Map<String, WeblogPlugins> weblogPlugins;
+    
     
     /**
      * Creates a new instance of PluginManagerImpl
      */
     public PluginManagerImpl() {
+        final int maxWeblogs = WebloggerConfig.getIntProperty("plugins.page.maxWeblogs", 500);
+        weblogPlugins = Collections.synchronizedMap(new LinkedHashMap<String, WeblogPlugins>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, WeblogPlugins> eldest) {
+                return size() > maxWeblogs;
+            }
+        });
+        
         // load weblog entry plugins
         loadPagePluginClasses();
         
@@ -71,11 +86,35 @@ public class PluginManagerImpl implements PluginManager {
     
     
     /**
-     * Create and init plugins for processing entries in a specified website.
+     * Get plugins for processing entries in a specified website.  Plugins
+     * are created and initialized once per weblog and shared until the
+     * weblog is next modified.
      */
     @Override
     public Map<String, WeblogEntryPlugin> getWeblogEntryPlugins(Weblog website) {
         
+        // weblogs not saved yet get plugins of their own
+        if (website == null || website.getId() == null) {
+            return initWeblogEntryPlugins(website);
+        }
+        
+        Date lastModified = website.getLastModified();
+        WeblogPlugins plugins = weblogPlugins.get(website.getId());
+        if (plugins == null || !plugins.isCurrent(lastModified)) {
+            log.debug("Initializing page plugins for weblog " + website.getHandle());
+            plugins = new WeblogPlugins(lastModified,
+                    Collections.unmodifiableMap(initWeblogEntryPlugins(website)));
+            weblogPlugins.put(website.getId(), plugins);
+        }
+        return plugins.plugins;
+    }
+    
+    
+    /**
+     * Create and init plugins for processing entries in a specified website.
+     */
+    private Map<String, WeblogEntryPlugin> initWeblogEntryPlugins(Weblog website) {
+        
         Map<String, WeblogEntryPlugin> ret = new LinkedHashMap<>();
         
         for (Class<? extends WeblogEntryPlugin> pluginClass : mPagePlugins.values()) {
@@ -202,4 +241,24 @@ public class PluginManagerImpl implements PluginManager {
         // no op
     }
     
+    
+    /**
+     * Plugins initialized for a weblog as it was when last modified.
+     */
+    private static final class WeblogPlugins {
+        
+        private final Date lastModified;
+        private final Map<String, WeblogEntryPlugin> plugins;
+        
+        WeblogPlugins(Date lastModified, Map<String, WeblogEntryPlugin> plugins) {
+            this.lastModified = lastModified;
+            this.plugins = plugins;
+        }
+        
+        boolean isCurrent(Date modified) {
+            return lastModified == null ? modified == null
+                    : modified != null && lastModified.getTime() == modified.getTime();
+        }
+    }
+    
 }
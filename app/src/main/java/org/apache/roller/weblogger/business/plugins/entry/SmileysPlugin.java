@@ -18,7 +18,12 @@
 
 package org.apache.roller.weblogger.business.plugins.entry;
 
-import java.util.Enumeration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -37,9 +42,9 @@ public class SmileysPlugin implements WeblogEntryPlugin {
     
     private static final Log log = LogFactory.getLog(SmileysPlugin.class);
 
-    // public for tests
-    public static Pattern[] smileyPatterns = new Pattern[0];
-    static String[] imageTags = new String[0];
+    // all smileys in one pattern, longest first, and the image tag for each
+    private static volatile Pattern smileyPattern = null;
+    private static volatile Map<String, String> imageTags = Collections.emptyMap();
     private static final Properties smileyDefs = new Properties();
     
     private final String name = "Emoticons";
@@ -74,36 +79,42 @@ public class SmileysPlugin implements WeblogEntryPlugin {
     
     
     /*
-     * Convert the SmileyDefs into RegEx patterns and img tags for
+     * Convert the SmileyDefs into a RegEx pattern and img tags for
      * later use.  Need an HttpServletRequest though so that we can
      * get the ServletContext Path.  But only do it once.
      */
     @Override
     public synchronized void init(Weblog website) throws WebloggerException {
         // don't do this work if Smileys already loaded
-        if (SmileysPlugin.smileyPatterns.length < 1) {
+        if (SmileysPlugin.smileyPattern == null && !smileyDefs.isEmpty()) {
             String baseURL = WebloggerRuntimeConfig.getAbsoluteContextURL();
             
-            Pattern[] tempP = new Pattern[SmileysPlugin.smileyDefs.size()];
-            String[] tempS = new String[SmileysPlugin.smileyDefs.size()];
-            log.debug("# smileys: " + smileyDefs.size());
-            int count = 0;
-            Enumeration<?> enum1 = SmileysPlugin.smileyDefs.propertyNames();
-            while(enum1.hasMoreElements()) {
-                String smiley = (String)enum1.nextElement();
+            List<String> smileys = new ArrayList<>(smileyDefs.stringPropertyNames());
+            log.debug("# smileys: " + smileys.size());
+            
+            // longer smileys first so that :(( isn't taken for :( and so on
+            smileys.sort(Comparator.<String>comparingInt(String::length).reversed()
+                    .thenComparing(Comparator.naturalOrder()));
+            
+            Map<String, String> tags = new HashMap<>();
+            StringBuilder regex = new StringBuilder();
+            for (String smiley : smileys) {
                 String smileyAlt = htmlEscape(smiley);
-                tempP[count] = Pattern.compile(regexEscape(smiley));
-                tempS[count] = "<img src=\"" +
+                String tag = "<img src=\"" +
                         baseURL + "/images/smileys/" +
                         smileyDefs.getProperty(smiley, "smile.gif") +
                         "\" class=\"smiley\"" +
                         " alt=\"" + smileyAlt + "\"" +
                         " title=\"" + smileyAlt +"\" />";
-                log.debug(smiley + "=" + tempS[count]);
-                count++;
+                log.debug(smiley + "=" + tag);
+                tags.put(smiley, tag);
+                if (regex.length() > 0) {
+                    regex.append('|');
+                }
+                regex.append(Pattern.quote(smiley));
             }
-            SmileysPlugin.smileyPatterns = tempP;
-            SmileysPlugin.imageTags = tempS;
+            SmileysPlugin.imageTags = tags;
+            SmileysPlugin.smileyPattern = Pattern.compile(regex.toString());
         }
     }
     
@@ -113,12 +124,25 @@ public class SmileysPlugin implements WeblogEntryPlugin {
      */
     @Override
     public String render(WeblogEntry entry, String text) {
-        Matcher matcher;
-        for (int i=0; i<smileyPatterns.length; i++) {
-            matcher = smileyPatterns[i].matcher(text);
-            text = matcher.replaceAll(imageTags[i]);
+        Pattern pattern = smileyPattern;
+        if (pattern == null || text == null) {
+            return text;
         }
-        return text;
+        
+        // one pass over the text for all smileys
+        Matcher matcher = pattern.matcher(text);
+        if (!matcher.find()) {
+            return text;
+        }
+        Map<String, String> tags = imageTags;
+        StringBuilder buf = new StringBuilder(text.length() + 128);
+        int last = 0;
+        do {
+            buf.append(text, last, matcher.start()).append(tags.get(matcher.group()));
+            last = matcher.end();
+        } while (matcher.find());
+        buf.append(text, last, text.length());
+        return buf.toString();
     }
     
     
@@ -143,30 +167,4 @@ public class SmileysPlugin implements WeblogEntryPlugin {
         return buf.toString();
     }
     
-    /**
-     * Some characters have to escaped with a backslash before
-     * being compiled into a Regular Expression.
-     *
-     * @param smiley
-     * @return
-     */
-    private static final char[] escape_regex = new char[]
-    {'-', '(', ')', '\\', '|', ':', '^', '$', '*', '+', '?',
-     '{', '}', '!', '=', '<', '>', '&', '[', ']' };
-    
-    private String regexEscape(String smiley) {
-        char[] chars = smiley.toCharArray();
-        StringBuilder buf = new StringBuilder();
-        for (int i=0; i<chars.length; i++) {
-            for (int x=0; x<escape_regex.length; x++) {
-                if (escape_regex[x] == chars[i]) {
-                    buf.append("\\");
-                    break;
-                }
-            }
-            buf.append(chars[i]);
-        }
-        return buf.toString();
-    }
-    
 }
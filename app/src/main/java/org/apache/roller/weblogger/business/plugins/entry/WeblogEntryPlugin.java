@@ -28,6 +28,9 @@ import org.apache.roller.weblogger.pojos.Weblog;
  *
  * Weblog entry plugins are used to make transformations to the entry text.
  * These plugins affect both the entry summary and entry body.
+ *
+ * A plugin is initialized once for a weblog and then used to render entries
+ * from many requests at once, so render() must be thread safe.
  */
 public interface WeblogEntryPlugin {
     
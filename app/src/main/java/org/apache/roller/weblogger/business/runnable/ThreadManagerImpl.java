@@ -21,6 +21,7 @@ package org.apache.roller.weblogger.business.runnable;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -29,7 +30,6 @@ import java.util.concurrent.TimeUnit;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.apache.roller.util.RollerConstants;
 import org.apache.roller.weblogger.WebloggerException;
 import org.apache.roller.weblogger.business.InitializationException;
 import org.apache.roller.weblogger.config.WebloggerConfig;
@@ -135,10 +135,11 @@ public abstract class ThreadManagerImpl implements ThreadManager {
         Future<?> task = serviceScheduler.submit(runnable);
         
         // since this task is really meant to be executed within this calling 
-        // thread, here we can add a little code here to loop until it realizes 
-        // the task is done
-        while(!task.isDone()) {
-            Thread.sleep(RollerConstants.HALF_SEC_IN_MS);
+        // thread, wait for it to finish
+        try {
+            task.get();
+        } catch (ExecutionException e) {
+            LOG.error("Error executing task in foreground", e.getCause());
         }
     }
     
@@ -17,6 +17,9 @@
 */
 package org.apache.roller.weblogger.business.search;
 
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import org.apache.roller.weblogger.WebloggerException;
 import org.apache.roller.weblogger.business.InitializationException;
 import org.apache.roller.weblogger.business.URLStrategy;
@@ -71,6 +74,64 @@ public interface IndexManager {
         int entryCount,
         URLStrategy urlStrategy
     ) throws WebloggerException;
+
+    /**
+     * Search for entries, narrowed down to those published within a range of
+     * dates, written by a given user and tagged with all of the given tags.
+     * Any of these filters may be null.
+     *
+     * @param startDate earliest publication time, inclusive
+     * @param endDate latest publication time, inclusive
+     * @param userName user name of the author
+     * @param tags tags of the entries
+     */
+    SearchResultList search(
+        String term,
+        String weblogHandle,
+        String category,
+        String locale,
+        Date startDate,
+        Date endDate,
+        String userName,
+        List<String> tags,
+        int pageNum,
+        int entryCount,
+        URLStrategy urlStrategy
+    ) throws WebloggerException;
+
+    /**
+     * Search for entries on another thread, as search() does, so the caller
+     * can get on with other work in the meantime.
+     *
+     * The entries found are loaded on the search thread and detached from
+     * the caller's session. When no search thread is free the search runs
+     * on the calling thread before this returns.
+     *
+     * @return the results, or the WebloggerException the search failed with.
+     */
+    CompletableFuture<SearchResultList> searchAsync(
+        String term,
+        String weblogHandle,
+        String category,
+        String locale,
+        Date startDate,
+        Date endDate,
+        String userName,
+        List<String> tags,
+        int pageNum,
+        int entryCount,
+        URLStrategy urlStrategy
+    );
+
+    /**
+     * Suggest entry titles and tags for a partly typed search term, from
+     * the index alone.
+     *
+     * @param prefix what has been typed so far
+     * @param weblogHandle weblog to suggest from, or null for all weblogs
+     * @param max maximum number of titles and of tags to suggest
+     */
+    SuggestionList suggest(String prefix, String weblogHandle, int max) throws WebloggerException;
 }
 
 
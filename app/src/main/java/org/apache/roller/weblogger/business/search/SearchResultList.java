@@ -27,14 +27,20 @@ import org.apache.roller.weblogger.pojos.wrapper.WeblogEntryWrapper;
 public class SearchResultList {
     int limit;
     int offset;
+    int totalHits;
     Set<String> categories;
     List<WeblogEntryWrapper> results;
     public SearchResultList(
         List<WeblogEntryWrapper> results, Set<String> categories, int limit, int offset) {
+        this(results, categories, limit, offset, results.size());
+    }
+    public SearchResultList(
+        List<WeblogEntryWrapper> results, Set<String> categories, int limit, int offset, int totalHits) {
         this.results = results;
         this.categories = categories;
         this.limit = limit;
         this.offset = offset;
+        this.totalHits = totalHits;
     }
     public int getLimit() {
         return limit;
@@ -42,6 +48,10 @@ public class SearchResultList {
     public int getOffset() {
         return offset;
     }
+    /** Number of hits over all pages */
+    public int getTotalHits() {
+        return totalHits;
+    }
     public List<WeblogEntryWrapper> getResults() {
         return results;
     }
@@ -0,0 +1,41 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.business.search;
+
+import java.util.List;
+
+/**
+ * Search terms suggested for a partly typed search, see IndexManager.suggest().
+ */
+public class SuggestionList {
+    List<String> titles;
+    List<String> tags;
+    public SuggestionList(List<String> titles, List<String> tags) {
+        this.titles = titles;
+        this.tags = tags;
+    }
+    /** Titles of entries, newest entries first */
+    public List<String> getTitles() {
+        return titles;
+    }
+    /** Tags of entries, in alphabetical order */
+    public List<String> getTags() {
+        return tags;
+    }
+}
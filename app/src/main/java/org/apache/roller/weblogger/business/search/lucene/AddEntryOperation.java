@@ -23,6 +23,7 @@ import java.io.IOException;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
 import org.apache.roller.weblogger.WebloggerException;
 import org.apache.roller.weblogger.business.Weblogger;
 import org.apache.roller.weblogger.business.WeblogEntryManager;
@@ -57,6 +58,18 @@ public class AddEntryOperation extends WriteToIndexOperation {
     
     //~ Methods ================================================================
     
+    @Override
+    protected String getQueueKey() {
+        return "entry:" + data.getId();
+    }
+
+    @Override
+    void updateSuggestions(TitleSuggester titles) throws IOException {
+        if (data != null) {
+            titles.update(data);
+        }
+    }
+
     @Override
     public void doRun() {
         IndexWriter writer = beginWriting();
@@ -73,8 +86,10 @@ public class AddEntryOperation extends WriteToIndexOperation {
         }
         
         try {
-            if (writer != null) {
-                writer.addDocument(getDocument(data));
+            // may have been deleted since, when replayed after a rebuild
+            if (writer != null && data != null) {
+                // replace rather than add, so adding an entry twice is harmless
+                writer.updateDocument(new Term(FieldConstants.ID, data.getId()), getDocument(data));
             }
         } catch (IOException e) {
             logger.error("Problems adding doc to index", e);
@@ -31,6 +31,7 @@ public final class FieldConstants {
     public static final String ID = "id";
     public static final String USERNAME = "username";
     public static final String CATEGORY = "cat";
+    public static final String TAG = "tag";
     public static final String TITLE = "title";
     public static final String PUBLISHED = "published";
     public static final String CONTENT = "content";
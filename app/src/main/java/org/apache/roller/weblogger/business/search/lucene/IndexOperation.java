@@ -20,24 +20,22 @@
 
 package org.apache.roller.weblogger.business.search.lucene;
 
-import java.io.IOException;
 import java.util.List;
 
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
-import org.apache.lucene.analysis.miscellaneous.LimitTokenCountAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
 import org.apache.lucene.document.SortedDocValuesField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
 import org.apache.lucene.index.IndexWriter;
-import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.util.BytesRef;
 import org.apache.roller.weblogger.config.WebloggerConfig;
 import org.apache.roller.weblogger.pojos.WeblogCategory;
 import org.apache.roller.weblogger.pojos.WeblogEntry;
 import org.apache.roller.weblogger.pojos.WeblogEntryComment;
+import org.apache.roller.weblogger.pojos.WeblogEntryTag;
 
 /**
  * This is the base class for all index operation. These operations include:<br>
@@ -50,9 +48,6 @@ import org.apache.roller.weblogger.pojos.WeblogEntryComment;
  */
 public abstract class IndexOperation implements Runnable {
 
-    private static Log logger = LogFactory.getFactory().getInstance(
-            IndexOperation.class);
-
     // ~ Instance fields
     // ========================================================
     protected IndexOperationContext manager;
@@ -67,18 +62,32 @@ public abstract class IndexOperation implements Runnable {
     // ~ Methods
     // ================================================================
     protected Document getDocument(WeblogEntry data) {
+        return getDocument(data, isIndexComments() ? data.getComments() : null);
+    }
 
+    /**
+     * Whether comments are to be indexed along with their entries.
+     */
+    protected static boolean isIndexComments() {
         // Actual comment content is indexed only if search.index.comments
         // is true or absent from the (static) configuration properties.
         // If false in the configuration, comments are treated as if empty.
-        boolean indexComments = WebloggerConfig.getBooleanProperty(
-                "search.index.comments", true);
+        return WebloggerConfig.getBooleanProperty("search.index.comments", true);
+    }
+
+    /**
+     * Build the document for an entry whose comments have already been
+     * fetched, as when indexing many entries at once.
+     *
+     * @param comments the entry's approved comments, ignored unless comments
+     *        are indexed
+     */
+    protected Document getDocument(WeblogEntry data, List<WeblogEntryComment> comments) {
 
         String commentContent = "";
         String commentEmail = "";
         String commentName = "";
-        if (indexComments) {
-            List<WeblogEntryComment> comments = data.getComments();
+        if (isIndexComments()) {
             if (comments != null) {
                 StringBuilder commentEmailBld = new StringBuilder();
                 StringBuilder commentContentBld = new StringBuilder();
@@ -113,9 +122,9 @@ public abstract class IndexOperation implements Runnable {
         doc.add(new StringField(FieldConstants.WEBSITE_HANDLE, data
                 .getWebsite().getHandle(), Field.Store.YES));
 
-        // text, don't index deleted/disabled users of a group blog
+        // keyword, don't index deleted/disabled users of a group blog
         if (data.getCreator() != null) {
-            doc.add(new TextField(FieldConstants.USERNAME, data.getCreator()
+            doc.add(new StringField(FieldConstants.USERNAME, data.getCreator()
                     .getUserName().toLowerCase(), Field.Store.YES));
         }
 
@@ -131,21 +140,36 @@ public abstract class IndexOperation implements Runnable {
         doc.add(new TextField(FieldConstants.CONTENT, data.getText(),
                 Field.Store.NO));
 
-        // keyword
-        doc.add(new StringField(FieldConstants.UPDATED, data.getUpdateTime()
-                .toString(), Field.Store.YES));
-
-        // keyword
+        // dates, as points for range queries and doc values for sorting
+        if (data.getUpdateTime() != null) {
+            long updated = data.getUpdateTime().getTime();
+            doc.add(new LongPoint(FieldConstants.UPDATED, updated));
+            doc.add(new NumericDocValuesField(FieldConstants.UPDATED, updated));
+        }
         if (data.getPubTime() != null) {
             // SearchOperation sorts results by date
-            doc.add(new SortedDocValuesField(FieldConstants.PUBLISHED, new BytesRef(data.getPubTime().toString())));
+            long published = data.getPubTime().getTime();
+            doc.add(new LongPoint(FieldConstants.PUBLISHED, published));
+            doc.add(new NumericDocValuesField(FieldConstants.PUBLISHED, published));
         }
 
         // index Category, needs to be in lower case as it is used in a term
         WeblogCategory categorydata = data.getCategory();
         if (categorydata != null) {
-            doc.add(new StringField(FieldConstants.CATEGORY, categorydata
-                    .getName().toLowerCase(), Field.Store.YES));
+            String category = categorydata.getName().toLowerCase();
+            doc.add(new StringField(FieldConstants.CATEGORY, category,
+                    Field.Store.YES));
+            // SearchOperation counts the categories of all hits
+            doc.add(new SortedDocValuesField(FieldConstants.CATEGORY,
+                    new BytesRef(category)));
+        }
+
+        // index Tags, needs to be in lower case as it is used in a term
+        if (data.getTags() != null) {
+            for (WeblogEntryTag tag : data.getTags()) {
+                doc.add(new StringField(FieldConstants.TAG, tag.getName()
+                        .toLowerCase(), Field.Store.NO));
+            }
         }
 
         // index Comments, unstored
@@ -166,37 +190,20 @@ public abstract class IndexOperation implements Runnable {
     /**
      * Begin writing.
      * 
-     * @return the index writer
+     * @return the index writer shared by all operations, or null if the
+     *         index is not open
      */
     protected IndexWriter beginWriting() {
-        try {
-
-            LimitTokenCountAnalyzer analyzer = new LimitTokenCountAnalyzer(
-                    manager.getAnalyzer(),
-                    WebloggerConfig.getIntProperty("lucene.analyzer.maxTokenCount"));
-
-            IndexWriterConfig config = new IndexWriterConfig(analyzer);
-
-            writer = new IndexWriter(manager.getIndexDirectory(), config);
-
-        } catch (IOException e) {
-            logger.error("ERROR creating writer", e);
-        }
-
+        writer = manager.getIndexWriter();
         return writer;
     }
 
     /**
-     * End writing.
+     * End writing. The shared writer is left open, changes are picked up
+     * by searchers on the next refresh and committed periodically.
      */
     protected void endWriting() {
-        if (writer != null) {
-            try {
-                writer.close();
-            } catch (IOException e) {
-                logger.error("ERROR closing writer", e);
-            }
-        }
+        writer = null;
     }
 
     /**
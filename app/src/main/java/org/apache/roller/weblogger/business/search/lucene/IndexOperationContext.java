@@ -20,8 +20,12 @@ package org.apache.roller.weblogger.business.search.lucene;
 
 import java.util.concurrent.locks.ReadWriteLock;
 
+import java.io.IOException;
+import java.util.Collection;
 import org.apache.lucene.analysis.Analyzer;
-import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.store.Directory;
 
 /**
@@ -31,7 +35,7 @@ import org.apache.lucene.store.Directory;
  *
  * <p>This interface follows the GRASP Indirection principle and the
  * Dependency Inversion Principle (DIP) to break the cyclic dependency
- * between the manager and its operations. It exposes only the five
+ * between the manager and its operations. It exposes only the
  * methods that operations actually call (Interface Segregation Principle).</p>
  *
  * @see LuceneIndexManager
@@ -46,6 +50,16 @@ public interface IndexOperationContext {
      */
     Analyzer getAnalyzer();
 
+    /**
+     * Determines if documents of the given weblog belong in this index,
+     * which may hold only some of the weblogs when the search index is
+     * split into shards.
+     *
+     * @param weblogHandle handle of the weblog.
+     * @return true if the weblog's entries are indexed here.
+     */
+    boolean holdsWeblog(String weblogHandle);
+
     /**
      * Returns the Lucene directory where the index is stored.
      *
@@ -62,16 +76,79 @@ public interface IndexOperationContext {
     ReadWriteLock getReadWriteLock();
 
     /**
-     * Resets the shared index reader so it will be reopened on
-     * the next read, picking up any recent writes.
+     * Returns the index writer shared by all write operations. The writer
+     * stays open for the lifetime of the manager, so operations must not
+     * close it; their changes become visible to searchers on the next
+     * periodic refresh.
+     *
+     * @return IndexWriter for the index, or null if the index could not be opened.
+     */
+    IndexWriter getIndexWriter();
+
+    /**
+     * Acquires a searcher over the most recently refreshed view of the
+     * index. This does not block on writers, but every searcher acquired
+     * must be handed back to {@link #releaseSearcher(IndexSearcher)}.
+     *
+     * @return IndexSearcher for searching the index.
+     * @throws IOException if the index is not open.
+     */
+    IndexSearcher acquireSearcher() throws IOException;
+
+    /**
+     * Releases a searcher obtained from {@link #acquireSearcher()}.
+     *
+     * @param searcher the searcher, ignored if null.
+     */
+    void releaseSearcher(IndexSearcher searcher);
+
+    /**
+     * Returns a new writer configuration with the settings of the shared
+     * writer, for building an index elsewhere.
+     *
+     * @return IndexWriterConfig for a new writer.
+     */
+    IndexWriterConfig createIndexWriterConfig();
+
+    /**
+     * Creates an empty directory next to the index in which a rebuilt index
+     * can be built without disturbing searches.
+     *
+     * @return Directory for building the index in.
+     * @throws IOException if the directory could not be created.
+     */
+    Directory createRebuildDirectory() throws IOException;
+
+    /**
+     * Closes and deletes a directory obtained from
+     * {@link #createRebuildDirectory()}.
+     *
+     * @param directory the directory, ignored if null.
+     */
+    void deleteRebuildDirectory(Directory directory);
+
+    /**
+     * Starts recording the write operations applied to the index, so that a
+     * rebuild which reads the database while they happen can apply them
+     * again once it has swapped in its index.
+     *
+     * @return the collection operations are recorded into.
+     */
+    Collection<WriteToIndexOperation> beginRebuild();
+
+    /**
+     * Stops recording operations into a collection obtained from
+     * {@link #beginRebuild()}.
+     *
+     * @param operations the collection.
      */
-    void resetSharedReader();
+    void endRebuild(Collection<WriteToIndexOperation> operations);
 
     /**
-     * Returns a shared index reader for search operations.
-     * The reader is lazily opened and cached.
+     * Called by write operations once applied, while still holding the
+     * write lock, to be recorded for any rebuilds in progress.
      *
-     * @return IndexReader for reading the index.
+     * @param operation the operation.
      */
-    IndexReader getSharedIndexReader();
+    void operationApplied(WriteToIndexOperation operation);
 }
@@ -0,0 +1,219 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+/* Created on Jul 18, 2003 */
+package org.apache.roller.weblogger.business.search.lucene;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Queue of write operations waiting to be applied to the index.
+ *
+ * Operations on the same entry replace each other while they wait, the last
+ * one submitted taking the place of the others at the end of the queue, so
+ * saving an entry many times in a row indexes it only once. The queue is
+ * flushed by a single thread which applies all waiting operations under one
+ * hold of the write lock of each index shard they write to, and threads
+ * submitting operations wait for it once the queue is full. An operation
+ * which can't be queued within the longest wait is dropped, so a stalled
+ * flush doesn't hold up every thread saving entries, and the index misses
+ * the change until the entry is saved again or the index rebuilt.
+ */
+class IndexOperationQueue {
+
+    private static final Log logger = LogFactory.getFactory().getInstance(IndexOperationQueue.class);
+
+    private final int capacity;
+
+    // longest a submitting thread waits for room, in milliseconds
+    private final long maxWait;
+
+    // queue key -> operation, in the order operations are to be applied
+    private final Map<Object, WriteToIndexOperation> pending = new LinkedHashMap<>();
+
+    // metrics since startup, guarded by this
+    private long submitted = 0;
+    private long coalesced = 0;
+    private long waits = 0;
+    private long dropped = 0;
+
+    // metrics about the last flush
+    private volatile int lastFlushOperations = 0;
+    private volatile long lastFlushTime = 0;
+
+
+    IndexOperationQueue(int capacity, long maxWait) {
+        this.capacity = Math.max(1, capacity);
+        this.maxWait = Math.max(0, maxWait);
+    }
+
+
+    /**
+     * Queue an operation, replacing any waiting operation with the same
+     * key, and waiting for the queue to be flushed if it is full.
+     *
+     * @return false if the queue stayed full and the operation was dropped.
+     */
+    synchronized boolean submit(WriteToIndexOperation operation) throws InterruptedException {
+
+        Object key = operation.getQueueKey();
+        if (key == null) {
+            key = operation;
+        }
+
+        if (pending.remove(key) != null) {
+            coalesced++;
+        } else if (pending.size() >= capacity) {
+            waits++;
+            logger.debug("Index operation queue is full, waiting for it to be flushed");
+            long deadline = System.nanoTime() + maxWait * 1000000;
+            while (pending.size() >= capacity) {
+                long remaining = (deadline - System.nanoTime()) / 1000000;
+                if (remaining <= 0) {
+                    dropped++;
+                    logger.warn("Index operation queue still full after " + maxWait
+                            + " ms, dropped " + operation.getClass().getName()
+                            + ", the index will miss this change until it is rebuilt");
+                    return false;
+                }
+                wait(remaining);
+            }
+        }
+
+        pending.put(key, operation);
+        submitted++;
+        return true;
+    }
+
+
+    /**
+     * Apply all queued operations, as one batch per shard which searchers
+     * see all at once or not at all. Operations on different shards don't
+     * affect each other, so they are applied shard by shard rather than in
+     * the order they were queued.
+     *
+     * @return the number of operations applied.
+     */
+    int flush() {
+
+        List<WriteToIndexOperation> batch;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return 0;
+            }
+            batch = new ArrayList<>(pending.values());
+            pending.clear();
+            notifyAll();
+        }
+
+        long startTime = System.nanoTime();
+
+        Map<IndexOperationContext, List<WriteToIndexOperation>> byShard = new LinkedHashMap<>();
+        for (WriteToIndexOperation operation : batch) {
+            byShard.computeIfAbsent(operation.manager, shard -> new ArrayList<>()).add(operation);
+        }
+
+        for (Map.Entry<IndexOperationContext, List<WriteToIndexOperation>> shardBatch : byShard.entrySet()) {
+            IndexOperationContext shard = shardBatch.getKey();
+            Lock lock = shard.getReadWriteLock().writeLock();
+            lock.lock();
+            try {
+                for (WriteToIndexOperation operation : shardBatch.getValue()) {
+                    try {
+                        operation.doRun();
+                        shard.operationApplied(operation);
+                    } catch (Exception e) {
+                        logger.error("Error applying index operation " + operation.getClass().getName(), e);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        lastFlushOperations = batch.size();
+        lastFlushTime = System.nanoTime() - startTime;
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("Applied " + lastFlushOperations + " index operations in "
+                    + lastFlushTime / 1000 + " us");
+        }
+
+        return batch.size();
+    }
+
+
+    /**
+     * Number of operations waiting to be applied.
+     */
+    synchronized int getQueueDepth() {
+        return pending.size();
+    }
+
+
+    /**
+     * Number of operations submitted since startup.
+     */
+    synchronized long getSubmitted() {
+        return submitted;
+    }
+
+
+    /**
+     * Number of operations which replaced a waiting operation since startup.
+     */
+    synchronized long getCoalesced() {
+        return coalesced;
+    }
+
+
+    /**
+     * Number of times a thread had to wait for a full queue since startup.
+     */
+    synchronized long getWaits() {
+        return waits;
+    }
+
+
+    /**
+     * Number of operations dropped because the queue stayed full, since
+     * startup.
+     */
+    synchronized long getDropped() {
+        return dropped;
+    }
+
+
+    int getLastFlushOperations() {
+        return lastFlushOperations;
+    }
+
+
+    /**
+     * Time the last flush took, in nanoseconds.
+     */
+    long getLastFlushTime() {
+        return lastFlushTime;
+    }
+
+}
@@ -0,0 +1,324 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.business.search.lucene;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ReferenceManager;
+import org.apache.lucene.search.SearcherFactory;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.store.AlreadyClosedException;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.IOUtils;
+
+/**
+ * One of the indexes the search index is split into, holding the documents
+ * of the weblogs LuceneIndexManager assigns to it.
+ *
+ * Each shard has its own directory, writer, searchers and lock, so writing
+ * to one shard, or rebuilding it, never holds up another. Write operations
+ * on a weblog's entries are given the weblog's shard as their context.
+ */
+class IndexShard implements IndexOperationContext {
+
+    private static final Log logger = LogFactory.getFactory().getInstance(IndexShard.class);
+
+    private final LuceneIndexManager manager;
+
+    private final Path path;
+
+    private final ReadWriteLock rwl = new ReentrantReadWriteLock();
+
+    private Directory directory;
+
+    private IndexWriter writer;
+
+    private volatile SearcherManager searcherManager;
+
+    private long lastCommit;
+
+    // operations applied while rebuilds are in progress, one queue per rebuild
+    private final Set<Collection<WriteToIndexOperation>> rebuilds = new CopyOnWriteArraySet<>();
+
+
+    IndexShard(LuceneIndexManager manager, Path path) {
+        this.manager = manager;
+        this.path = path;
+    }
+
+
+    /**
+     * Directory the shard is stored in.
+     */
+    Path getPath() {
+        return path;
+    }
+
+
+    /**
+     * Determine if the shard holds an index built with the given commit
+     * data, meaning the same document version and number of shards.
+     */
+    boolean isCurrent(Map<String, String> commitData) {
+        try {
+            if (!DirectoryReader.indexExists(getIndexDirectory())) {
+                logger.debug("No index in " + path);
+                return false;
+            }
+            try (DirectoryReader reader = DirectoryReader.open(getIndexDirectory())) {
+                logger.debug("Index in " + path + " contains " + reader.numDocs() + " documents");
+                Map<String, String> userData = reader.getIndexCommit().getUserData();
+                for (Map.Entry<String, String> data : commitData.entrySet()) {
+                    if (!data.getValue().equals(userData.get(data.getKey()))) {
+                        logger.info("Index in " + path + " was built by an older version or layout");
+                        return false;
+                    }
+                }
+                return true;
+            }
+        } catch (IOException | IllegalArgumentException ex) {  // IAE for incompatible codecs
+            logger.warn("Failed to open search index in " + path, ex);
+            return false;
+        }
+    }
+
+
+    /**
+     * Delete the files of the index, leaving directories alone.
+     */
+    void delete() {
+        if (!Files.isDirectory(path)) {
+            return;
+        }
+        try (FSDirectory dir = FSDirectory.open(path)) {
+            for (String file : dir.listAll()) {
+                Path filePath = path.resolve(file);
+                if (!Files.isDirectory(filePath)) {
+                    Files.delete(filePath);
+                }
+            }
+        } catch (IOException ex) {
+            logger.error("Problem accessing index directory", ex);
+        }
+    }
+
+
+    /**
+     * Open the writer and searchers, creating the index if there is none
+     * yet.
+     *
+     * @param commitData stored with every commit, see isCurrent()
+     * @param listener told whenever searchers are refreshed
+     * @param searcherFactory creates searchers, or null for the default
+     */
+    void open(Map<String, String> commitData, ReferenceManager.RefreshListener listener,
+            SearcherFactory searcherFactory) throws IOException {
+
+        Files.createDirectories(path);
+        IndexWriter indexWriter = new IndexWriter(getIndexDirectory(), createIndexWriterConfig());
+        indexWriter.setLiveCommitData(commitData.entrySet());
+        // make sure a newly created index exists on disk
+        indexWriter.commit();
+
+        synchronized (this) {
+            lastCommit = System.currentTimeMillis();
+            writer = indexWriter;
+            searcherManager = new SearcherManager(indexWriter, searcherFactory);
+            searcherManager.addListener(listener);
+        }
+    }
+
+
+    /**
+     * Refresh searchers and commit when due. Refreshing is skipped while a
+     * write operation holds the write lock so that searchers only ever see
+     * whole operations, the next run after it finishes catches up.
+     *
+     * @param commitInterval milliseconds between commits
+     */
+    void maintain(long commitInterval) {
+
+        Lock lock = rwl.readLock();
+        if (!lock.tryLock()) {
+            return;
+        }
+        try {
+            SearcherManager searchers = searcherManager;
+            IndexWriter indexWriter = getIndexWriter();
+            if (searchers == null || indexWriter == null) {
+                return;
+            }
+
+            searchers.maybeRefresh();
+
+            long now = System.currentTimeMillis();
+            if (now - lastCommit >= commitInterval) {
+                if (indexWriter.hasUncommittedChanges()) {
+                    indexWriter.commit();
+                }
+                lastCommit = now;
+            }
+        } catch (IOException | AlreadyClosedException e) {
+            logger.error("Error refreshing search index in " + path, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     * Close searchers, the writer, which commits any pending changes, and
+     * the directory.
+     */
+    synchronized void close() throws IOException {
+        try {
+            IOUtils.close(searcherManager, writer, directory);
+        } finally {
+            searcherManager = null;
+            writer = null;
+            directory = null;
+        }
+    }
+
+
+    /**
+     * Documents of the weblog belong in this shard if the manager assigns
+     * the weblog to it.
+     */
+    @Override
+    public boolean holdsWeblog(String weblogHandle) {
+        return manager.getShard(weblogHandle) == this;
+    }
+
+    @Override
+    public Analyzer getAnalyzer() {
+        return manager.getAnalyzer();
+    }
+
+    /**
+     * The directory is opened once and kept until the shard is closed, see
+     * LuceneIndexManager.openDirectory() for the kind of directory.
+     */
+    @Override
+    public synchronized Directory getIndexDirectory() {
+        if (directory == null) {
+            try {
+                directory = manager.openDirectory(path);
+            } catch (IOException e) {
+                logger.error("Problem accessing index directory", e);
+            }
+        }
+        return directory;
+    }
+
+    @Override
+    public ReadWriteLock getReadWriteLock() {
+        return rwl;
+    }
+
+    @Override
+    public synchronized IndexWriter getIndexWriter() {
+        return writer;
+    }
+
+    @Override
+    public IndexSearcher acquireSearcher() throws IOException {
+        SearcherManager searchers = searcherManager;
+        if (searchers == null) {
+            throw new IOException("Search index is not open");
+        }
+        return searchers.acquire();
+    }
+
+    @Override
+    public void releaseSearcher(IndexSearcher searcher) {
+        SearcherManager searchers = searcherManager;
+        if (searcher != null && searchers != null) {
+            try {
+                searchers.release(searcher);
+            } catch (IOException ex) {
+                logger.warn("Unable to release searcher.", ex);
+            }
+        }
+    }
+
+    @Override
+    public IndexWriterConfig createIndexWriterConfig() {
+        return manager.createIndexWriterConfig();
+    }
+
+    @Override
+    public Directory createRebuildDirectory() throws IOException {
+        Path index = path.toAbsolutePath();
+        return FSDirectory.open(Files.createTempDirectory(
+                index.getParent(), index.getFileName() + LuceneIndexManager.REBUILD_SUFFIX));
+    }
+
+    @Override
+    public void deleteRebuildDirectory(Directory dir) {
+        if (dir != null) {
+            try {
+                Path rebuildPath = ((FSDirectory) dir).getDirectory();
+                dir.close();
+                IOUtils.rm(rebuildPath);
+            } catch (IOException ex) {
+                logger.warn("Unable to delete rebuild directory.", ex);
+            }
+        }
+    }
+
+    @Override
+    public Collection<WriteToIndexOperation> beginRebuild() {
+        Collection<WriteToIndexOperation> operations = new ConcurrentLinkedQueue<>();
+        rebuilds.add(operations);
+        return operations;
+    }
+
+    @Override
+    public void endRebuild(Collection<WriteToIndexOperation> operations) {
+        rebuilds.remove(operations);
+        manager.buildSuggestionsLater();
+    }
+
+    @Override
+    public void operationApplied(WriteToIndexOperation operation) {
+        for (Collection<WriteToIndexOperation> operations : rebuilds) {
+            operations.add(operation);
+        }
+        manager.updateSuggestions(operation);
+    }
+
+}
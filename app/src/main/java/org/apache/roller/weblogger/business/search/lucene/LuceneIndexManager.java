@@ -21,31 +21,54 @@ package org.apache.roller.weblogger.business.search.lucene;
 import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 import org.apache.commons.beanutils.ConstructorUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.miscellaneous.LimitTokenCountAnalyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
-import org.apache.lucene.document.Document;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherFactory;
 import org.apache.lucene.search.TopFieldDocs;
+import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.store.NIOFSDirectory;
+import org.apache.lucene.store.NRTCachingDirectory;
+import org.apache.lucene.util.IOUtils;
+import org.apache.roller.util.RollerConstants;
 import org.apache.roller.weblogger.WebloggerException;
 import org.apache.roller.weblogger.business.InitializationException;
 import org.apache.roller.weblogger.business.URLStrategy;
@@ -54,6 +77,7 @@ import org.apache.roller.weblogger.business.Weblogger;
 import org.apache.roller.weblogger.business.WebloggerFactory;
 import org.apache.roller.weblogger.business.search.IndexManager;
 import org.apache.roller.weblogger.business.search.SearchResultList;
+import org.apache.roller.weblogger.business.search.SuggestionList;
 import org.apache.roller.weblogger.config.WebloggerConfig;
 import org.apache.roller.weblogger.config.WebloggerRuntimeConfig;
 import org.apache.roller.weblogger.pojos.Weblog;
@@ -63,6 +87,33 @@ import org.apache.roller.weblogger.pojos.wrapper.WeblogEntryWrapper;
 /**
  * Lucene implementation of IndexManager. This is the central entry point into
  * the Lucene searching API.
+ *
+ * The manager keeps an IndexWriter open for its whole lifetime, shared by
+ * all write operations, and a SearcherManager over near-real-time readers
+ * from that writer. A background task refreshes the searchers every
+ * search.index.refreshInterval milliseconds, unless a write operation is in
+ * progress, and commits pending changes every search.index.commitInterval
+ * seconds.
+ *
+ * The index may be split into search.index.shards shards, each an
+ * IndexShard with a writer, searchers and lock of its own, and weblogs are
+ * assigned to shards by a hash of their handle. Writes and searches within
+ * a weblog only touch the weblog's shard, site wide searches go through a
+ * ShardedIndexSearcher which searches all shards in parallel.
+ *
+ * Changes to entries and weblogs are queued in an IndexOperationQueue and
+ * applied by the same task in one batch right before searchers are
+ * refreshed.
+ *
+ * Search results are cached by SearchResultCache until searchers are next
+ * refreshed.
+ *
+ * Titles for search-as-you-type are suggested by a TitleSuggester, which
+ * write operations update as they are applied and the same task refreshes,
+ * building it from the index only at startup and after rebuilds.
+ *
+ * Each shard's directory is opened once, as set by search.index.directory,
+ * and searchers may spread a query over search.index.queryThreads threads.
  * 
  * @author Mindaugas Idzelis (min@idzelis.com)
  * @author mraible (formatting and making indexDir configurable)
@@ -70,9 +121,24 @@ import org.apache.roller.weblogger.pojos.wrapper.WeblogEntryWrapper;
 @com.google.inject.Singleton
 public class LuceneIndexManager implements IndexManager, IndexOperationContext {
 
-    private IndexReader reader;
     private final Weblogger roller;
 
+    // version of the documents built by IndexOperation, an index built with
+    // any other version is rebuilt at startup
+    static final String INDEX_VERSION = "3";
+
+    private static final String INDEX_VERSION_KEY = "roller.index.version";
+
+    private static final String INDEX_SHARDS_KEY = "roller.index.shards";
+
+    // shards are kept in subdirectories of the index directory
+    private static final String SHARD_PREFIX = "shard-";
+
+    // rebuilt indexes are built next to the index they replace
+    static final String REBUILD_SUFFIX = ".rebuild-";
+
+    private static final Set<String> ID_FIELD = Set.of(FieldConstants.ID);
+
     private final static Log logger = LogFactory.getFactory().getInstance(LuceneIndexManager.class);
 
     private boolean searchEnabled = true;
@@ -83,7 +149,28 @@ public class LuceneIndexManager implements IndexManager, IndexOperationContext {
 
     private boolean inconsistentAtStartup = false;
 
-    private final ReadWriteLock rwl = new ReentrantReadWriteLock();
+    private final long refreshInterval;
+
+    private final long commitInterval;
+
+    private final List<IndexShard> shards;
+
+    private volatile ScheduledExecutorService maintenance;
+
+    // runs searches for searchAsync()
+    private volatile ExecutorService searchExecutor;
+
+    // searches the segments, or shards, of an index in parallel
+    private volatile ExecutorService queryExecutor;
+
+    // slices of searches each query thread may have waiting
+    private static final int QUEUED_SLICES_PER_THREAD = 4;
+
+    private final SearchResultCache resultCache = new SearchResultCache();
+
+    private final IndexOperationQueue operationQueue;
+
+    private volatile TitleSuggester titleSuggester;
 
 
     /**
@@ -115,6 +202,28 @@ public class LuceneIndexManager implements IndexManager, IndexOperationContext {
 
         String test = indexDir + File.separator + ".index-inconsistent";
         indexConsistencyMarker = new File(test);
+
+        // how stale searches may be, and how much may be lost on a crash
+        this.refreshInterval = WebloggerConfig.getIntProperty("search.index.refreshInterval", 500);
+        this.commitInterval = WebloggerConfig.getIntProperty("search.index.commitInterval", 60)
+                * (long) RollerConstants.SEC_IN_MS;
+
+        this.operationQueue = new IndexOperationQueue(
+                WebloggerConfig.getIntProperty("search.index.queueCapacity", 1000),
+                WebloggerConfig.getIntProperty("search.index.queueWait", 10) * (long) RollerConstants.SEC_IN_MS);
+
+        // a single shard is kept right in the index directory
+        int shardCount = Math.max(1, WebloggerConfig.getIntProperty("search.index.shards", 1));
+        List<IndexShard> indexShards = new ArrayList<>(shardCount);
+        if (shardCount == 1) {
+            indexShards.add(new IndexShard(this, Path.of(indexDir)));
+        } else {
+            for (int i = 0; i < shardCount; i++) {
+                indexShards.add(new IndexShard(this, Path.of(indexDir, SHARD_PREFIX + i)));
+            }
+        }
+        this.shards = Collections.unmodifiableList(indexShards);
+        logger.info("index shards: " + shardCount);
     }
 
     /**
@@ -126,50 +235,44 @@ public class LuceneIndexManager implements IndexManager, IndexOperationContext {
         // only initialize the index if search is enabled
         if (this.searchEnabled) {
 
-            // delete index if inconsistency marker exists
-            if (indexConsistencyMarker.exists()) {
+            boolean wasInconsistent = indexConsistencyMarker.exists();
+            if (wasInconsistent) {
                 logger.debug("Index inconsistent: marker exists");
-                inconsistentAtStartup = true;
-                deleteIndex();
-            } else {
-                try {
-                    File makeIndexDir = new File(indexDir);
-                    if (!makeIndexDir.exists()) {
-                        makeIndexDir.mkdirs();
-                        inconsistentAtStartup = true;
-                        logger.debug("Index inconsistent: new");
-                    }
-                    indexConsistencyMarker.createNewFile();
-                } catch (IOException e) {
-                    logger.error(e);
-                }
             }
 
-            if (indexExists()) {
+            // left behind by rebuilds which never finished, or by another
+            // number of shards
+            deleteLeftovers();
 
-                // test if the index is readable, if the version is outdated or it fails we rebuild.
-                try {
-                    synchronized(this) {
-                        reader = DirectoryReader.open(getIndexDirectory());
-                    }
-                } catch (IOException | IllegalArgumentException ex) {  // IAE for incompatible codecs
-                    logger.warn("Failed to open search index, scheduling rebuild.", ex);
-                    inconsistentAtStartup = true;
-                    deleteIndex();
+            try {
+                File makeIndexDir = new File(indexDir);
+                if (!makeIndexDir.exists()) {
+                    makeIndexDir.mkdirs();
+                    logger.debug("Index inconsistent: new");
                 }
-            } else {
-                logger.debug("Creating index");
-                inconsistentAtStartup = true;
-                deleteIndex();
-                createIndex(getIndexDirectory());
+                indexConsistencyMarker.createNewFile();
+            } catch (IOException e) {
+                logger.error(e);
             }
 
+            // test if each shard is readable, if the version is outdated or
+            // it fails we rebuild the shard.
+            Map<String, String> commitData = getCommitData();
+            List<IndexShard> stale = new ArrayList<>();
+            for (IndexShard shard : shards) {
+                if (wasInconsistent || !shard.isCurrent(commitData)) {
+                    shard.delete();
+                    stale.add(shard);
+                }
+            }
+            inconsistentAtStartup = !stale.isEmpty();
+
+            openIndex(commitData);
+
             if (inconsistentAtStartup) {
                 logger.info("Index was inconsistent. Rebuilding index in the background...");
-                try {
-                    rebuildWeblogIndex();
-                } catch (WebloggerException ex) {
-                    logger.error("ERROR: scheduling re-index operation", ex);
+                for (IndexShard shard : stale) {
+                    scheduleIndexOperation(new RebuildWebsiteIndexOperation(roller, shard, null));
                 }
             } else {
                 logger.info("Index initialized and ready for use.");
@@ -180,32 +283,64 @@ public class LuceneIndexManager implements IndexManager, IndexOperationContext {
 
     @Override
     public void rebuildWeblogIndex() throws WebloggerException {
-        scheduleIndexOperation(new RebuildWebsiteIndexOperation(roller, this, null));
+        // shards are rebuilt side by side
+        for (IndexShard shard : shards) {
+            scheduleIndexOperation(new RebuildWebsiteIndexOperation(roller, shard, null));
+        }
     }
 
     @Override
     public void rebuildWeblogIndex(Weblog website) throws WebloggerException {
-        scheduleIndexOperation(new RebuildWebsiteIndexOperation(roller, this, website));
+        if (website == null) {
+            rebuildWeblogIndex();
+            return;
+        }
+        scheduleIndexOperation(new RebuildWebsiteIndexOperation(roller,
+                getShard(website.getHandle()), website));
     }
 
     @Override
     public void removeWeblogIndex(Weblog website) throws WebloggerException {
-        scheduleIndexOperation(new RemoveWebsiteIndexOperation(roller, this, website));
+        queueIndexOperation(new RemoveWebsiteIndexOperation(roller,
+                getShard(website.getHandle()), website));
     }
 
     @Override
     public void addEntryIndexOperation(WeblogEntry entry) throws WebloggerException {
-        scheduleIndexOperation(new AddEntryOperation(roller, this, entry));
+        queueIndexOperation(new AddEntryOperation(roller, getShard(entry), entry));
     }
 
     @Override
     public void addEntryReIndexOperation(WeblogEntry entry) throws WebloggerException {
-        scheduleIndexOperation(new ReIndexEntryOperation(roller, this, entry));
+        queueIndexOperation(new ReIndexEntryOperation(roller, getShard(entry), entry));
     }
 
     @Override
     public void removeEntryIndexOperation(WeblogEntry entry) throws WebloggerException {
-        executeIndexOperationNow(new RemoveEntryOperation(roller, this, entry));
+        queueIndexOperation(new RemoveEntryOperation(roller, getShard(entry), entry));
+    }
+
+    /**
+     * Shard holding the documents of the given weblog.
+     */
+    IndexShard getShard(String weblogHandle) {
+        if (shards.size() == 1 || weblogHandle == null) {
+            return shards.get(0);
+        }
+        // String.hashCode() is the same everywhere, so weblogs stay put
+        int hash = weblogHandle.toLowerCase(Locale.ROOT).hashCode();
+        return shards.get(Math.floorMod(hash, shards.size()));
+    }
+
+    private IndexShard getShard(WeblogEntry entry) {
+        return getShard(entry.getWebsite().getHandle());
+    }
+
+    /**
+     * Number of shards the index is split into.
+     */
+    public int getShardCount() {
+        return shards.size();
     }
 
     @Override
@@ -218,9 +353,30 @@ public class LuceneIndexManager implements IndexManager, IndexOperationContext {
         int entryCount,
         URLStrategy urlStrategy) throws WebloggerException {
 
-        SearchOperation search = new SearchOperation(this);
-        search.setTerm(term);
+        return search(term, weblogHandle, category, locale, null, null, null, null,
+            pageNum, entryCount, urlStrategy);
+    }
+
+    @Override
+    public SearchResultList search(
+        String term,
+        String weblogHandle,
+        String category,
+        String locale,
+        Date startDate,
+        Date endDate,
+        String userName,
+        List<String> tags,
+        int pageNum,
+        int entryCount,
+        URLStrategy urlStrategy) throws WebloggerException {
+
         boolean weblogSpecific = !WebloggerRuntimeConfig.isSiteWideWeblog(weblogHandle);
+        // a weblog's own search only looks at the weblog's shard
+        IndexOperationContext index = weblogSpecific ? getShard(weblogHandle) : this;
+
+        SearchOperation search = new SearchOperation(index);
+        search.setTerm(term);
         if (weblogSpecific) {
             search.setWeblogHandle(weblogHandle);
         }
@@ -230,26 +386,159 @@ public class LuceneIndexManager implements IndexManager, IndexOperationContext {
         if (locale != null) {
             search.setLocale(locale);
         }
+        search.setStartDate(startDate);
+        search.setEndDate(endDate);
+        search.setUserName(userName);
+        search.setTags(tags);
+        search.setOffset(pageNum * entryCount);
+        search.setLimit(entryCount);
+        // a weblog's own search doesn't offer categories of other weblogs
+        search.setCountCategories(!weblogSpecific);
+
+        String key = SearchResultCache.key(term, weblogSpecific ? weblogHandle : null,
+            category, locale, startDate, endDate, userName, tags, pageNum, entryCount);
+        SearchResultCache.Results results = resultCache.get(key, getIndexVersion(index));
+        if (results != null) {
+            return convertIdsToEntryList(results, urlStrategy);
+        }
 
-        executeIndexOperationNow(search);
-        if (search.getResultsCount() >= 0) {
-            TopFieldDocs docs = search.getResults();
-            ScoreDoc[] hitsArr = docs.scoreDocs;
-            return convertHitsToEntryList(
-                hitsArr,
-                search,
-                pageNum,
-                entryCount,
-                weblogHandle,
-                weblogSpecific,
-                urlStrategy);
+        try {
+            executeIndexOperationNow(search);
+            if (search.getResultsCount() >= 0) {
+                TopFieldDocs docs = search.getResults();
+                ScoreDoc[] hitsArr = docs.scoreDocs;
+                results = convertHitsToIdList(
+                    hitsArr,
+                    search,
+                    pageNum,
+                    entryCount);
+                resultCache.put(key, results);
+                return convertIdsToEntryList(results, urlStrategy);
+            }
+        } finally {
+            search.release();
         }
         throw new WebloggerException("Error executing search");
     }
 
     @Override
-    public ReadWriteLock getReadWriteLock() {
-        return rwl;
+    public CompletableFuture<SearchResultList> searchAsync(
+        String term,
+        String weblogHandle,
+        String category,
+        String locale,
+        Date startDate,
+        Date endDate,
+        String userName,
+        List<String> tags,
+        int pageNum,
+        int entryCount,
+        URLStrategy urlStrategy) {
+
+        CompletableFuture<SearchResultList> future = new CompletableFuture<>();
+        ExecutorService executor = searchExecutor;
+        if (executor == null) {
+            future.completeExceptionally(new WebloggerException("Search is not available"));
+            return future;
+        }
+
+        Thread caller = Thread.currentThread();
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(search(term, weblogHandle, category, locale,
+                        startDate, endDate, userName, tags, pageNum, entryCount, urlStrategy));
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    // entries found stay usable, detached from the search
+                    // thread's session, the caller's is left alone
+                    if (Thread.currentThread() != caller) {
+                        roller.release();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(new WebloggerException("Search is not available", e));
+        }
+        return future;
+    }
+
+    @Override
+    public SuggestionList suggest(String prefix, String weblogHandle, int max)
+            throws WebloggerException {
+
+        TitleSuggester titles = titleSuggester;
+        if (titles == null) {
+            return new SuggestionList(Collections.<String>emptyList(), Collections.<String>emptyList());
+        }
+
+        SuggestOperation suggest = new SuggestOperation(
+            weblogHandle != null ? getShard(weblogHandle) : this, titles);
+        suggest.setPrefix(prefix);
+        suggest.setWeblogHandle(weblogHandle);
+        suggest.setLimit(max);
+
+        // reads take no lock, and suggestions are wanted at every keystroke
+        // so they don't go through the thread manager
+        suggest.run();
+
+        return new SuggestionList(suggest.getTitles(), suggest.getTags());
+    }
+
+    /**
+     * Update title suggestions for a write operation just applied to a
+     * shard.
+     */
+    void updateSuggestions(WriteToIndexOperation operation) {
+        TitleSuggester titles = titleSuggester;
+        if (titles != null) {
+            try {
+                operation.updateSuggestions(titles);
+            } catch (IOException | RuntimeException e) {
+                logger.error("Error updating title suggestions", e);
+            }
+        }
+    }
+
+    /**
+     * Build title suggestions from the index again once searches see a
+     * shard just rebuilt.
+     */
+    void buildSuggestionsLater() {
+        TitleSuggester titles = titleSuggester;
+        if (titles != null) {
+            titles.buildLater();
+        }
+    }
+
+    /**
+     * Version of the index, or shard, searches currently see, or -1 if the
+     * index isn't open.
+     */
+    static long getIndexVersion(IndexOperationContext index) {
+        try {
+            IndexSearcher searcher = index.acquireSearcher();
+            try {
+                return getVersion(searcher);
+            } finally {
+                index.releaseSearcher(searcher);
+            }
+        } catch (IOException | AlreadyClosedException ex) {
+            logger.debug("Unable to determine index version", ex);
+        }
+        return -1;
+    }
+
+    /**
+     * Version of the index seen by a searcher, which grows with every
+     * change to the index.
+     */
+    static long getVersion(IndexSearcher searcher) {
+        if (searcher instanceof ShardedIndexSearcher) {
+            return ((ShardedIndexSearcher) searcher).getVersion();
+        }
+        return ((DirectoryReader) searcher.getIndexReader()).getVersion();
     }
 
     @Override
@@ -299,103 +588,381 @@ public class LuceneIndexManager implements IndexManager, IndexOperationContext {
     }
 
     /**
-     * @param op
+     * Queue a write operation to be applied with the next batch, waiting
+     * a while if the queue is full.
      */
-    private void executeIndexOperationNow(final IndexOperation op) {
-        try {
-            // only if search is enabled
-            if (this.searchEnabled) {
-                logger.debug("Executing index operation now: " + op.getClass().getName());
-                roller.getThreadManager().executeInForeground(op);
+    private void queueIndexOperation(final WriteToIndexOperation op) {
+        // only if search is enabled and the index is open, nothing would
+        // flush the queue otherwise
+        if (this.searchEnabled && maintenance != null) {
+            try {
+                logger.debug("Queueing index operation: " + op.getClass().getName());
+                operationQueue.submit(op);
+            } catch (InterruptedException e) {
+                logger.error("Interrupted queueing index operation", e);
+                Thread.currentThread().interrupt();
             }
-        } catch (InterruptedException e) {
-            logger.error("Error executing operation", e);
         }
     }
 
-    @Override
-    public synchronized void resetSharedReader() {
-        reader = null;
+    /**
+     * Number of index operations waiting to be applied.
+     */
+    public int getQueuedOperations() {
+        return operationQueue.getQueueDepth();
     }
 
-    @Override
-    public synchronized IndexReader getSharedIndexReader() {
-        if (reader == null) {
-            try {
-                reader = DirectoryReader.open(getIndexDirectory());
-            } catch (IOException ex) {
-                logger.error("Error opening DirectoryReader", ex);
-                throw new RuntimeException(ex);
-            }
+    /**
+     * Run a read operation on the calling thread, reads take no lock so
+     * there is nothing to gain from handing them to another thread.
+     */
+    private void executeIndexOperationNow(final ReadFromIndexOperation op) {
+        // only if search is enabled
+        if (this.searchEnabled) {
+            logger.debug("Executing index operation now: " + op.getClass().getName());
+            op.run();
         }
-        return reader;
     }
 
     /**
-     * Get the directory that is used by the lucene index. This method will
-     * return null if there is no index at the directory location.
-     * 
-     * @return Directory The directory containing the index, or null if error.
+     * Data stored with every commit, an index built with different data is
+     * rebuilt at startup.
      */
-    @Override
-    public Directory getIndexDirectory() {
+    private Map<String, String> getCommitData() {
+        if (shards.size() == 1) {
+            return Map.of(INDEX_VERSION_KEY, INDEX_VERSION);
+        }
+        // weblogs move between shards when their number changes
+        return Map.of(INDEX_VERSION_KEY, INDEX_VERSION,
+                INDEX_SHARDS_KEY, String.valueOf(shards.size()));
+    }
+
+    /**
+     * Open the shared writers and searchers, creating the index if there is
+     * none yet, and start refreshing and committing in the background.
+     */
+    private void openIndex(Map<String, String> commitData) {
+
+        // shards are searched in parallel unless told otherwise
+        int queryThreads = WebloggerConfig.getIntProperty("search.index.queryThreads", -1);
+        if (queryThreads < 0) {
+            queryThreads = shards.size() > 1
+                    ? Math.min(shards.size(), Runtime.getRuntime().availableProcessors()) : 0;
+        }
+        queryExecutor = queryThreads > 0 ? newQueryExecutor(queryThreads) : null;
 
         try {
-            return FSDirectory.open(Path.of(indexDir));
+            SearcherFactory searcherFactory = createSearcherFactory(queryExecutor);
+            for (IndexShard shard : shards) {
+                shard.open(commitData, resultCache, searcherFactory);
+            }
         } catch (IOException e) {
-            logger.error("Problem accessing index directory", e);
+            logger.error("Error opening search index, search will not be available", e);
+            closeShards();
+            return;
         }
-        return null;
-    }
 
-    private boolean indexExists() {
         try {
-            return DirectoryReader.indexExists(getIndexDirectory());
+            titleSuggester = new TitleSuggester(this);
         } catch (IOException e) {
-            logger.error("Problem accessing index directory", e);
+            logger.error("Error creating title suggester, titles will not be suggested", e);
         }
-        return false;
+
+        maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "roller-search-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+        maintenance.scheduleWithFixedDelay(this::maintainIndex,
+                refreshInterval, refreshInterval, TimeUnit.MILLISECONDS);
+
+        searchExecutor = newSearchExecutor(WebloggerConfig.getIntProperty("search.asyncThreads", 4));
     }
 
-    
-    private void deleteIndex() {
-        
-        try(FSDirectory directory = FSDirectory.open(Path.of(indexDir))) {
-            
-            String[] files = directory.listAll();
-            for (String file : files) {
-                Files.delete(Path.of(indexDir, file));
+    /**
+     * Create the executor searchAsync() runs searches on. Searches never
+     * wait in a queue, when all threads are busy the caller runs the search
+     * itself since it would only wait for the results otherwise.
+     */
+    static ExecutorService newSearchExecutor(int threads) {
+        AtomicInteger searchThreads = new AtomicInteger();
+        return new ThreadPoolExecutor(Math.max(1, threads), Math.max(1, threads), 0L, TimeUnit.MILLISECONDS,
+                new SynchronousQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "roller-search-" + searchThreads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, (runnable, executor) -> {
+            // unlike CallerRunsPolicy, don't drop the search once shut down
+            // or its future would never complete
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("Search is shut down");
             }
-        } catch (IOException ex) {
-             logger.error("Problem accessing index directory", ex);
+            runnable.run();
+        });
+    }
+
+    /**
+     * Create the executor searches hand slices of the index to. It is
+     * bounded, a search which finds its queue full searches the slice
+     * itself.
+     */
+    static ExecutorService newQueryExecutor(int threads) {
+        AtomicInteger queryThreads = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * QUEUED_SLICES_PER_THREAD), runnable -> {
+            Thread thread = new Thread(runnable, "roller-search-query-" + queryThreads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Create the factory for the searchers of each shard, whose searches
+     * are spread over the query executor if there is one.
+     *
+     * @return the factory, or null for searchers which search on the
+     *         calling thread only.
+     */
+    static SearcherFactory createSearcherFactory(ExecutorService executor) {
+        if (executor == null) {
+            return null;
         }
+        return new SearcherFactory() {
+            @Override
+            public IndexSearcher newSearcher(IndexReader reader, IndexReader previousReader) {
+                return new IndexSearcher(reader, executor);
+            }
+        };
+    }
 
+    /**
+     * Open the directory an index shard is kept in, which stays open as
+     * long as the shard. The kind of directory is set by
+     * search.index.directory, and the most recently written segments are
+     * kept in memory if search.index.nrtCache.maxCachedMB is set.
+     */
+    Directory openDirectory(Path path) throws IOException {
+        return openDirectory(path,
+                WebloggerConfig.getProperty("search.index.directory", "mmap"),
+                WebloggerConfig.getIntProperty("search.index.nrtCache.maxMergeMB", 5),
+                WebloggerConfig.getIntProperty("search.index.nrtCache.maxCachedMB", 0));
     }
 
-    private void createIndex(Directory dir) {
-        IndexWriter writer = null;
+    static Directory openDirectory(Path path, String type, int nrtMaxMergeMB, int nrtMaxCachedMB)
+            throws IOException {
+
+        Directory dir;
+        if ("nio".equalsIgnoreCase(type)) {
+            dir = new NIOFSDirectory(path);
+        } else if ("auto".equalsIgnoreCase(type)) {
+            // whatever Lucene thinks best for the platform
+            dir = FSDirectory.open(path);
+        } else {
+            if (!"mmap".equalsIgnoreCase(type)) {
+                logger.warn("Unknown search.index.directory '" + type + "', using mmap");
+            }
+            dir = new MMapDirectory(path);
+        }
 
-        try {
+        if (nrtMaxCachedMB > 0) {
+            dir = new NRTCachingDirectory(dir, nrtMaxMergeMB, nrtMaxCachedMB);
+        }
+        return dir;
+    }
 
-            IndexWriterConfig config = new IndexWriterConfig(
-                    new LimitTokenCountAnalyzer(
-                            getAnalyzer(), 128));
+    /**
+     * Apply queued operations, then refresh searchers and commit when due,
+     * shard by shard.
+     */
+    private void maintainIndex() {
+        // anything thrown from here cancels the task, and with it all later
+        // refreshes and commits
+        try {
+            try {
+                operationQueue.flush();
+            } catch (RuntimeException e) {
+                logger.error("Error applying index operations", e);
+            }
 
-            writer = new IndexWriter(dir, config);
+            for (IndexShard shard : shards) {
+                try {
+                    shard.maintain(commitInterval);
+                } catch (RuntimeException e) {
+                    logger.error("Error maintaining search index in " + shard.getPath(), e);
+                }
+            }
 
-        } catch (IOException e) {
-            logger.error("Error creating index", e);
-        } finally {
-            if (writer != null) {
+            TitleSuggester titles = titleSuggester;
+            if (titles != null) {
                 try {
-                    writer.close();
-                } catch (IOException ex) {
-                    logger.warn("Unable to close IndexWriter.", ex);
+                    titles.maintain();
+                } catch (IOException | RuntimeException e) {
+                    logger.error("Error maintaining title suggestions", e);
                 }
             }
+        } catch (Throwable t) {
+            logger.error("Error maintaining search index", t);
         }
     }
 
+    @Override
+    public IndexWriterConfig createIndexWriterConfig() {
+        IndexWriterConfig config = new IndexWriterConfig(
+                new LimitTokenCountAnalyzer(getAnalyzer(),
+                        WebloggerConfig.getIntProperty("lucene.analyzer.maxTokenCount")));
+        config.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+        return config;
+    }
+
+    /**
+     * The shard when there is only one, operations which write to the index
+     * must otherwise be given the shard of the weblog they write to.
+     */
+    private IndexShard getSingleShard() {
+        if (shards.size() > 1) {
+            throw new IllegalStateException(
+                    "Search index is split into shards, write to the weblog's shard");
+        }
+        return shards.get(0);
+    }
+
+    @Override
+    public boolean holdsWeblog(String weblogHandle) {
+        return true;
+    }
+
+    @Override
+    public Directory createRebuildDirectory() throws IOException {
+        return getSingleShard().createRebuildDirectory();
+    }
+
+    @Override
+    public void deleteRebuildDirectory(Directory dir) {
+        getSingleShard().deleteRebuildDirectory(dir);
+    }
+
+    /**
+     * Delete rebuilt indexes left behind by rebuilds which never finished,
+     * and the index of any other number of shards used before.
+     */
+    private void deleteLeftovers() {
+        Path index = Path.of(indexDir).toAbsolutePath();
+        deleteMatching(index.getParent(), index.getFileName() + REBUILD_SUFFIX + "*");
+
+        if (Files.isDirectory(index)) {
+            // shards which are no longer used, and their rebuilt indexes
+            Set<Path> current = new HashSet<>();
+            for (IndexShard shard : shards) {
+                current.add(shard.getPath().toAbsolutePath());
+            }
+            try (DirectoryStream<Path> dirs = Files.newDirectoryStream(index, SHARD_PREFIX + "*")) {
+                for (Path dir : dirs) {
+                    if (!current.contains(dir.toAbsolutePath())) {
+                        IOUtils.rm(dir);
+                    }
+                }
+            } catch (IOException ex) {
+                logger.warn("Unable to delete unused shards.", ex);
+            }
+
+            // the unsharded index
+            if (shards.size() > 1) {
+                new IndexShard(this, index).delete();
+            }
+        }
+    }
+
+    private static void deleteMatching(Path dir, String glob) {
+        if (dir == null || !Files.isDirectory(dir)) {
+            return;
+        }
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(dir, glob)) {
+            for (Path path : dirs) {
+                IOUtils.rm(path);
+            }
+        } catch (IOException ex) {
+            logger.warn("Unable to delete rebuild directories.", ex);
+        }
+    }
+
+    @Override
+    public Collection<WriteToIndexOperation> beginRebuild() {
+        return getSingleShard().beginRebuild();
+    }
+
+    @Override
+    public void endRebuild(Collection<WriteToIndexOperation> operations) {
+        getSingleShard().endRebuild(operations);
+    }
+
+    @Override
+    public void operationApplied(WriteToIndexOperation operation) {
+        getSingleShard().operationApplied(operation);
+    }
+
+    @Override
+    public ReadWriteLock getReadWriteLock() {
+        return getSingleShard().getReadWriteLock();
+    }
+
+    @Override
+    public IndexWriter getIndexWriter() {
+        return getSingleShard().getIndexWriter();
+    }
+
+    /**
+     * Get the directory that is used by the lucene index. This method will
+     * return null if there is no index at the directory location.
+     * 
+     * @return Directory The directory containing the index, or null if error.
+     */
+    @Override
+    public Directory getIndexDirectory() {
+        return getSingleShard().getIndexDirectory();
+    }
+
+    /**
+     * Acquires a searcher over all shards.
+     */
+    @Override
+    public IndexSearcher acquireSearcher() throws IOException {
+        if (shards.size() == 1) {
+            return shards.get(0).acquireSearcher();
+        }
+        return ShardedIndexSearcher.acquire(shards, queryExecutor);
+    }
+
+    @Override
+    public void releaseSearcher(IndexSearcher searcher) {
+        if (searcher instanceof ShardedIndexSearcher) {
+            try {
+                ((ShardedIndexSearcher) searcher).release();
+            } catch (IOException ex) {
+                logger.warn("Unable to release searcher.", ex);
+            }
+        } else {
+            shards.get(0).releaseSearcher(searcher);
+        }
+    }
+
+    /**
+     * Close all shards.
+     *
+     * @return false if any shard could not be closed.
+     */
+    private boolean closeShards() {
+        boolean closed = true;
+        for (IndexShard shard : shards) {
+            try {
+                shard.close();
+            } catch (IOException | RuntimeException ex) {
+                logger.error("Unable to close search index in " + shard.getPath(), ex);
+                closed = false;
+            }
+        }
+        return closed;
+    }
+
     @Override
     public void release() {
         // no-op
@@ -403,40 +970,59 @@ public class LuceneIndexManager implements IndexManager, IndexOperationContext {
 
     @Override
     public void shutdown() {
-        
-        indexConsistencyMarker.delete();
 
-        if (reader != null) {
+        if (searchExecutor != null) {
+            searchExecutor.shutdownNow();
+            searchExecutor = null;
+        }
+
+        if (maintenance != null) {
+            // let a running batch finish, then apply whatever is left
+            maintenance.shutdown();
             try {
-                reader.close();
-            } catch (IOException ex) {
-                logger.error("Unable to close reader.", ex);
+                maintenance.awaitTermination(RollerConstants.GRACEFUL_SHUTDOWN_WAIT_IN_MILLISECONDS,
+                        TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
+            operationQueue.flush();
+            maintenance = null;
+        }
+
+        if (queryExecutor != null) {
+            queryExecutor.shutdownNow();
+            queryExecutor = null;
+        }
+
+        if (titleSuggester != null) {
+            IOUtils.closeWhileHandlingException(titleSuggester);
+            titleSuggester = null;
+        }
+
+        // closing the writers commits any pending changes, if that fails
+        // leave the marker in place so the index is rebuilt
+        if (closeShards()) {
+            indexConsistencyMarker.delete();
         }
     }
 
     /**
-     * Convert hits to entries.
+     * Convert hits to the ids of the entries on the page.
      *
      * @param hits
-     *            the hits
+     *            the hits, up to the end of the page
      * @param search
-     *            the search
+     *            the search, whose searcher is still acquired
      * @throws WebloggerException
      *             the weblogger exception
      */
-    static SearchResultList convertHitsToEntryList(
+    static SearchResultCache.Results convertHitsToIdList(
         ScoreDoc[] hits,
         SearchOperation search,
         int pageNum,
-        int entryCount,
-        String weblogHandle,
-        boolean websiteSpecificSearch,
-        URLStrategy urlStrategy)
+        int entryCount)
         throws WebloggerException {
 
-        List<WeblogEntryWrapper> results = new ArrayList<>();
-
         // determine offset
         int offset = pageNum * entryCount;
         if (offset >= hits.length) {
@@ -450,41 +1036,48 @@ public class LuceneIndexManager implements IndexManager, IndexOperationContext {
         }
 
         try {
-            Set<String> categories = new TreeSet<>();
-            TreeSet<String> categorySet = new TreeSet<>();
-            Weblogger roller = WebloggerFactory.getWeblogger();
-            WeblogEntryManager weblogMgr = roller.getWeblogEntryManager();
-
-            WeblogEntry entry;
-            Document doc;
-            String handle;
-            Timestamp now = new Timestamp(new Date().getTime());
+            StoredFields storedFields = search.getSearcher().storedFields();
+            List<String> ids = new ArrayList<>(limit);
             for (int i = offset; i < offset + limit; i++) {
-                doc = search.getSearcher().doc(hits[i].doc);
-                handle = doc.getField(FieldConstants.WEBSITE_HANDLE).stringValue();
-                entry = weblogMgr.getWeblogEntry(doc.getField(FieldConstants.ID).stringValue());
-
-                if (!(websiteSpecificSearch && handle.equals(weblogHandle))
-                    && doc.getField(FieldConstants.CATEGORY) != null) {
-                    categorySet.add(doc.getField(FieldConstants.CATEGORY).stringValue());
-                }
-
-                // maybe null if search result returned inactive user
-                // or entry's user is not the requested user.
-                // but don't return future posts
-                if (entry != null && entry.getPubTime().before(now)) {
-                    results.add(WeblogEntryWrapper.wrap(entry, urlStrategy));
-                }
+                ids.add(storedFields.document(hits[i].doc, ID_FIELD).get(FieldConstants.ID));
             }
 
-            if (!categorySet.isEmpty()) {
-                categories = categorySet;
+            Set<String> categories = search.getCategories();
+            if (categories == null) {
+                categories = new TreeSet<>();
             }
 
-            return new SearchResultList(results, categories, limit, offset);
+            long version = getVersion(search.getSearcher());
+            return new SearchResultCache.Results(version, ids, categories,
+                limit, offset, search.getResultsCount());
 
         } catch (IOException e) {
             throw new WebloggerException(e);
         }
     }
+
+    /**
+     * Convert a page of entry ids to entries, loading them with a single
+     * query.
+     */
+    static SearchResultList convertIdsToEntryList(
+        SearchResultCache.Results results,
+        URLStrategy urlStrategy)
+        throws WebloggerException {
+
+        List<WeblogEntryWrapper> entries = new ArrayList<>();
+
+        WeblogEntryManager weblogMgr = WebloggerFactory.getWeblogger().getWeblogEntryManager();
+        Timestamp now = new Timestamp(new Date().getTime());
+        for (WeblogEntry entry : weblogMgr.getWeblogEntriesById(results.getIds())) {
+            // entries of inactive users are missing, but don't return
+            // future posts
+            if (entry.getPubTime().before(now)) {
+                entries.add(WeblogEntryWrapper.wrap(entry, urlStrategy));
+            }
+        }
+
+        return new SearchResultList(entries, new TreeSet<>(results.getCategories()),
+            results.getLimit(), results.getOffset(), results.getTotalHits());
+    }
 }
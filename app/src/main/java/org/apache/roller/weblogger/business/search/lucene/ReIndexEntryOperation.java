@@ -46,6 +46,7 @@ public class ReIndexEntryOperation extends WriteToIndexOperation {
     // ========================================================
 
     private WeblogEntry data;
+    private final String id;
     private Weblogger roller;
 
     // ~ Constructors
@@ -59,11 +60,26 @@ public class ReIndexEntryOperation extends WriteToIndexOperation {
         super(mgr);
         this.roller = roller;
         this.data = data;
+        this.id = data.getId();
     }
 
     // ~ Methods
     // ================================================================
 
+    @Override
+    protected String getQueueKey() {
+        return "entry:" + id;
+    }
+
+    @Override
+    void updateSuggestions(TitleSuggester titles) throws IOException {
+        if (data != null) {
+            titles.update(data);
+        } else {
+            titles.remove(id);
+        }
+    }
+
     @Override
     public void doRun() {
 
@@ -72,7 +88,7 @@ public class ReIndexEntryOperation extends WriteToIndexOperation {
         // lazy initialization problems, so requery for the object now
         try {
             WeblogEntryManager wMgr = roller.getWeblogEntryManager();
-            this.data = wMgr.getWeblogEntry(this.data.getId());
+            this.data = wMgr.getWeblogEntry(id);
         } catch (WebloggerException ex) {
             logger.error("Error getting weblogentry object", ex);
             return;
@@ -83,11 +99,13 @@ public class ReIndexEntryOperation extends WriteToIndexOperation {
             if (writer != null) {
 
                 // Delete Doc
-                Term term = new Term(FieldConstants.ID, data.getId());
+                Term term = new Term(FieldConstants.ID, id);
                 writer.deleteDocuments(term);
 
-                // Add Doc
-                writer.addDocument(getDocument(data));
+                // Add Doc, unless the entry is gone by now
+                if (data != null) {
+                    writer.addDocument(getDocument(data));
+                }
             }
         } catch (IOException e) {
             logger.error("Problems adding/deleting doc to index", e);
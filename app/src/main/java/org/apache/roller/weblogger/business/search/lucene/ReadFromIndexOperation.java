@@ -21,6 +21,9 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 /**
+ * An operation that reads from the index. Reads go through a searcher
+ * acquired from the manager and take no lock, so they never wait for writes.
+ *
  * @author aim4min
  */
 public abstract class ReadFromIndexOperation extends IndexOperation {
@@ -34,13 +37,9 @@ public abstract class ReadFromIndexOperation extends IndexOperation {
     @Override
     public final void run() {
         try {
-            manager.getReadWriteLock().readLock().lock();
             doRun();
-
         } catch (Exception e) {
-            logger.error("Error acquiring read lock on index", e);
-        } finally {
-            manager.getReadWriteLock().readLock().unlock();
+            logger.error("Error reading index", e);
         }
     }
     
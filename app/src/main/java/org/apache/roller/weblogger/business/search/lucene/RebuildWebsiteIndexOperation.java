@@ -18,25 +18,56 @@
 /* Created on Jul 16, 2003 */
 package org.apache.roller.weblogger.business.search.lucene;
 
-import java.text.MessageFormat;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.lucene.document.Document;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.store.Directory;
 import org.apache.roller.util.RollerConstants;
 import org.apache.roller.weblogger.WebloggerException;
+import org.apache.roller.weblogger.business.UserManager;
 import org.apache.roller.weblogger.business.WeblogEntryManager;
 import org.apache.roller.weblogger.business.Weblogger;
+import org.apache.roller.weblogger.config.WebloggerConfig;
+import org.apache.roller.weblogger.pojos.User;
 import org.apache.roller.weblogger.pojos.Weblog;
 import org.apache.roller.weblogger.pojos.WeblogEntry;
-import org.apache.roller.weblogger.pojos.WeblogEntry.PubStatus;
-import org.apache.roller.weblogger.pojos.WeblogEntrySearchCriteria;
+import org.apache.roller.weblogger.pojos.WeblogEntryComment;
 
 /**
  * An index operation that rebuilds a given users index (or all indexes).
+ *
+ * The index is built in a directory of its own while searches carry on
+ * against the current index, then swapped in. Entries are read from the
+ * database a chunk at a time, releasing the persistence context after each
+ * chunk, and handed over through a bounded queue to a pool of
+ * search.index.rebuildThreads threads which build the documents and add
+ * them to the index, so memory use does not grow with the number of
+ * entries and the CPU bound work is spread over all processors. When the
+ * search index is split into shards, rebuilding the whole index rebuilds
+ * each shard separately and skips entries of weblogs held by other shards.
+ * Write operations applied to the index while the rebuild is in
+ * progress are applied again after the swap, since the database may have
+ * been read before they happened.
  * 
  * @author Mindaugas Idzelis (min@idzelis.com)
  */
@@ -48,6 +79,13 @@ public class RebuildWebsiteIndexOperation extends WriteToIndexOperation {
     private static Log logger = LogFactory.getFactory().getInstance(
             RebuildWebsiteIndexOperation.class);
 
+    // chunks of entries waiting per thread
+    private static final int QUEUED_CHUNKS_PER_THREAD = 2;
+
+    // marks the end of the entries
+    private static final Chunk END = new Chunk(Collections.<WeblogEntry>emptyList(),
+            Collections.<String, List<WeblogEntryComment>>emptyMap());
+
     // ~ Instance fields
     // ========================================================
 
@@ -73,6 +111,14 @@ public class RebuildWebsiteIndexOperation extends WriteToIndexOperation {
     // ~ Methods
     // ================================================================
 
+    /**
+     * Runs without the write lock, which is only taken for the swap.
+     */
+    @Override
+    public void run() {
+        doRun();
+    }
+
     @Override
     public void doRun() {
 
@@ -94,49 +140,26 @@ public class RebuildWebsiteIndexOperation extends WriteToIndexOperation {
             logger.debug("Reindexining entire site");
         }
 
-        IndexWriter writer = beginWriting();
-
+        Collection<WriteToIndexOperation> applied = manager.beginRebuild();
+        Directory rebuilt = null;
+        int count;
         try {
-            if (writer != null) {
-
-                // Delete Doc
-                Term tWebsite = null;
-                if (website != null) {
-                    tWebsite = IndexUtil.getTerm(FieldConstants.WEBSITE_HANDLE,
-                            website.getHandle(), manager.getAnalyzer());
-                }
-                if (tWebsite != null) {
-                    writer.deleteDocuments(tWebsite);
-                } else {
-                    Term all = IndexUtil.getTerm(FieldConstants.CONSTANT,
-                            FieldConstants.CONSTANT_V, manager.getAnalyzer());
-                    writer.deleteDocuments(all);
-                }
-
-                // Add Doc
-                WeblogEntryManager weblogManager = roller
-                        .getWeblogEntryManager();
-                WeblogEntrySearchCriteria wesc = new WeblogEntrySearchCriteria();
-                wesc.setWeblog(website);
-                wesc.setStatus(PubStatus.PUBLISHED);
-                List<WeblogEntry> entries = weblogManager.getWeblogEntries(wesc);
-
-                logger.debug("Entries to index: " + entries.size());
-
-                for (WeblogEntry entry : entries) {
-                    writer.addDocument(getDocument(entry));
-                    logger.debug(MessageFormat.format(
-                            "Indexed entry {0}: {1}",
-                            entry.getPubTime(), entry.getAnchor()));
-                }
-
-                // release the database connection
-                roller.release();
+            rebuilt = manager.createRebuildDirectory();
+            try (IndexWriter writer = new IndexWriter(rebuilt, manager.createIndexWriterConfig())) {
+                count = buildIndex(writer);
             }
+            swapIndex(rebuilt, applied);
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error("Interrupted while rebuilding index");
+            return;
         } catch (Exception e) {
             logger.error("ERROR adding/deleting doc to index", e);
+            return;
         } finally {
-            endWriting();
+            manager.endRebuild(applied);
+            manager.deleteRebuildDirectory(rebuilt);
             if (roller != null) {
                 roller.release();
             }
@@ -147,10 +170,207 @@ public class RebuildWebsiteIndexOperation extends WriteToIndexOperation {
 
         if (website == null) {
             logger.info("Completed rebuilding index for all users in '"
-                    + length + "' secs");
+                    + length + "' secs, " + count + " entries");
         } else {
             logger.info("Completed rebuilding index for website handle: '"
-                    + website.getHandle() + "' in '" + length + "' seconds");
+                    + website.getHandle() + "' in '" + length + "' seconds, " + count + " entries");
+        }
+    }
+
+    /**
+     * Read all published entries from the database and add them to the
+     * given writer.
+     *
+     * @return the number of entries added.
+     */
+    private int buildIndex(IndexWriter writer)
+            throws WebloggerException, IOException, InterruptedException {
+
+        int chunkSize = WebloggerConfig.getIntProperty("search.index.rebuildChunkSize", 500);
+        int threads = WebloggerConfig.getIntProperty("search.index.rebuildThreads", 0);
+        if (threads <= 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        boolean indexComments = isIndexComments();
+
+        BlockingQueue<Chunk> queue = new ArrayBlockingQueue<>(threads * QUEUED_CHUNKS_PER_THREAD);
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "roller-search-rebuild-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            // IndexWriter is thread safe, all threads add to the same one
+            List<Future<?>> adding = new ArrayList<>(threads);
+            for (int i = 0; i < threads; i++) {
+                adding.add(workers.submit(() -> {
+                    try {
+                        for (Chunk chunk = queue.take(); chunk != END; chunk = queue.take()) {
+                            writer.addDocuments(getDocuments(chunk));
+                        }
+                    } finally {
+                        // in case building a document had to go to the database
+                        roller.release();
+                    }
+                    return null;
+                }));
+            }
+
+            WeblogEntryManager entryManager = roller.getWeblogEntryManager();
+            UserManager userManager = roller.getUserManager();
+
+            int count = 0;
+            String lastId = null;
+            List<WeblogEntry> read;
+            do {
+                // seek past the previous chunk, deep chunks cost no more than the first
+                read = entryManager.getPublishedWeblogEntriesAfter(website, lastId, chunkSize);
+                if (read.isEmpty()) {
+                    break;
+                }
+                lastId = read.get(read.size() - 1).getId();
+
+                List<WeblogEntry> entries = heldEntries(read);
+                if (entries.isEmpty()) {
+                    roller.release();
+                    continue;
+                }
+
+                Map<String, List<WeblogEntryComment>> comments = indexComments
+                        ? entryManager.getApprovedComments(entries)
+                        : Collections.<String, List<WeblogEntryComment>>emptyMap();
+
+                // look up each creator once per chunk, not once per entry
+                Map<String, User> creators = new HashMap<>();
+                for (WeblogEntry entry : entries) {
+                    String userName = entry.getCreatorUserName();
+                    if (!creators.containsKey(userName)) {
+                        creators.put(userName, userManager.getUserByUserName(userName));
+                    }
+                    entry.setCreator(creators.get(userName));
+                }
+
+                count += entries.size();
+
+                // nothing loaded so far is needed anymore
+                roller.release();
+
+                put(queue, new Chunk(entries, comments), adding);
+                logger.debug("Entries read: " + count);
+
+            } while (read.size() == chunkSize);
+
+            for (int i = 0; i < threads; i++) {
+                put(queue, END, adding);
+            }
+            for (Future<?> worker : adding) {
+                worker.get();
+            }
+
+            return count;
+
+        } catch (ExecutionException e) {
+            throw new IOException("Error adding documents to index", e.getCause());
+        } finally {
+            // stops the workers if we are giving up
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * The entries whose documents belong in the index being rebuilt.
+     */
+    private List<WeblogEntry> heldEntries(List<WeblogEntry> entries) {
+        if (website != null) {
+            return entries;
+        }
+        List<WeblogEntry> held = new ArrayList<>(entries.size());
+        for (WeblogEntry entry : entries) {
+            if (manager.holdsWeblog(entry.getWebsite().getHandle())) {
+                held.add(entry);
+            }
+        }
+        return held;
+    }
+
+    private List<Document> getDocuments(Chunk chunk) {
+        List<Document> documents = new ArrayList<>(chunk.entries.size());
+        for (WeblogEntry entry : chunk.entries) {
+            documents.add(getDocument(entry, chunk.comments.get(entry.getId())));
+        }
+        return documents;
+    }
+
+    /**
+     * Queue a chunk of entries, unless a worker has failed.
+     */
+    private static void put(BlockingQueue<Chunk> queue, Chunk chunk, List<Future<?>> adding)
+            throws InterruptedException, ExecutionException {
+        while (!queue.offer(chunk, 1, TimeUnit.SECONDS)) {
+            for (Future<?> worker : adding) {
+                if (worker.isDone()) {
+                    // throws what made it stop
+                    worker.get();
+                }
+            }
+        }
+    }
+
+    /**
+     * Entries read from the database along with their comments.
+     */
+    private static final class Chunk {
+
+        private final List<WeblogEntry> entries;
+        private final Map<String, List<WeblogEntryComment>> comments;
+
+        Chunk(List<WeblogEntry> entries, Map<String, List<WeblogEntryComment>> comments) {
+            this.entries = entries;
+            this.comments = comments;
+        }
+    }
+
+    /**
+     * Replace the documents of the weblog, or all documents, with those of
+     * the rebuilt index, then apply again the operations applied to the
+     * index since the rebuild started. Holding the write lock throughout
+     * means searchers are not refreshed halfway.
+     */
+    private void swapIndex(Directory rebuilt, Collection<WriteToIndexOperation> applied)
+            throws IOException {
+
+        Lock lock = manager.getReadWriteLock().writeLock();
+        lock.lock();
+        try {
+            // nothing else is applied while we hold the lock
+            manager.endRebuild(applied);
+
+            IndexWriter writer = beginWriting();
+            if (writer == null) {
+                return;
+            }
+
+            if (website != null) {
+                Term tWebsite = IndexUtil.getTerm(FieldConstants.WEBSITE_HANDLE,
+                        website.getHandle(), manager.getAnalyzer());
+                writer.deleteDocuments(tWebsite);
+            } else {
+                writer.deleteAll();
+            }
+            writer.addIndexes(rebuilt);
+
+            logger.debug("Operations to apply again: " + applied.size());
+            for (WriteToIndexOperation op : applied) {
+                op.doRun();
+            }
+
+            writer.commit();
+
+        } finally {
+            endWriting();
+            lock.unlock();
         }
     }
 }
@@ -24,8 +24,6 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.Term;
-import org.apache.roller.weblogger.WebloggerException;
-import org.apache.roller.weblogger.business.WeblogEntryManager;
 import org.apache.roller.weblogger.business.Weblogger;
 import org.apache.roller.weblogger.pojos.WeblogEntry;
 
@@ -62,19 +60,20 @@ public class RemoveEntryOperation extends WriteToIndexOperation {
     // ================================================================
 
     @Override
-    public void doRun() {
+    protected String getQueueKey() {
+        return "entry:" + data.getId();
+    }
 
-        // since this operation can be run on a separate thread we must treat
-        // the weblog object passed in as a detached object which is proned to
-        // lazy initialization problems, so requery for the object now
-        try {
-            WeblogEntryManager wMgr = roller.getWeblogEntryManager();
-            this.data = wMgr.getWeblogEntry(this.data.getId());
-        } catch (WebloggerException ex) {
-            logger.error("Error getting weblogentry object", ex);
-            return;
-        }
+    @Override
+    void updateSuggestions(TitleSuggester titles) throws IOException {
+        titles.remove(data.getId());
+    }
+
+    @Override
+    public void doRun() {
 
+        // only the id is needed, which is safe to get from a detached object
+        // and still there when the entry itself is gone from the database
         IndexWriter writer = beginWriting();
         try {
             if (writer != null) {
@@ -26,7 +26,6 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.Term;
 import org.apache.roller.util.RollerConstants;
-import org.apache.roller.weblogger.WebloggerException;
 import org.apache.roller.weblogger.business.Weblogger;
 import org.apache.roller.weblogger.pojos.Weblog;
 
@@ -68,28 +67,22 @@ public class RemoveWebsiteIndexOperation extends WriteToIndexOperation {
     // ~ Methods
     // ================================================================
 
+    @Override
+    protected String getQueueKey() {
+        return "weblog:" + website.getHandle();
+    }
+
     @Override
     public void doRun() {
         Date start = new Date();
 
-        // since this operation can be run on a separate thread we must treat
-        // the weblog object passed in as a detached object which is proned to
-        // lazy initialization problems, so requery for the object now
-        try {
-            this.website = roller.getWeblogManager().getWeblog(
-                    this.website.getId());
-        } catch (WebloggerException ex) {
-            logger.error("Error getting website object", ex);
-            return;
-        }
+        // only the handle is needed, which is safe to get from a detached
+        // object and still there when the weblog is gone from the database
+        String handle = website.getHandle();
 
         IndexWriter writer = beginWriting();
         try {
             if (writer != null) {
-                String handle = null;
-                if (website != null) {
-                    handle = website.getHandle();
-                }
                 Term tHandle = IndexUtil.getTerm(FieldConstants.WEBSITE_HANDLE,
                         handle, manager.getAnalyzer());
 
@@ -106,9 +99,7 @@ public class RemoveWebsiteIndexOperation extends WriteToIndexOperation {
         Date end = new Date();
         double length = (end.getTime() - start.getTime()) / (double) RollerConstants.SEC_IN_MS;
 
-        if (website != null) {
-            logger.info("Completed deleting indices for website '"
-                    + website.getName() + "' in '" + length + "' seconds");
-        }
+        logger.info("Completed deleting indices for website '"
+                + handle + "' in '" + length + "' seconds");
     }
 }
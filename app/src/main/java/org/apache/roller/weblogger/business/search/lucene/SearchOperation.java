@@ -19,24 +19,44 @@
 package org.apache.roller.weblogger.business.search.lucene;
 
 import java.io.IOException;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.facet.FacetResult;
+import org.apache.lucene.facet.FacetsCollector;
+import org.apache.lucene.facet.FacetsCollectorManager;
+import org.apache.lucene.facet.LabelAndValue;
+import org.apache.lucene.facet.StringDocValuesReaderState;
+import org.apache.lucene.facet.StringValueFacetCounts;
+import org.apache.lucene.index.DocValuesType;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.FieldInfos;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
 import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.FieldDoc;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.SortField;
 import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopFieldCollectorManager;
 import org.apache.lucene.search.TopFieldDocs;
 
 /**
  * An operation that searches the index.
+ *
+ * Only as many hits are collected as are needed to reach the end of the
+ * requested page, or just the page itself when searching after the last hit
+ * of the previous page. The total number of hits is always exact, and the
+ * categories of all hits are counted when asked for.
  * 
  * @author Mindaugas Idzelis (min@idzelis.com)
  */
@@ -55,18 +75,27 @@ public class SearchOperation extends ReadFromIndexOperation {
     };
 
     private static final Sort SORTER = new Sort(new SortField(
-            FieldConstants.PUBLISHED, SortField.Type.STRING, true));
+            FieldConstants.PUBLISHED, SortField.Type.LONG, true));
 
     // ~ Instance fields
     // ========================================================
 
     private IndexSearcher searcher;
     private TopFieldDocs searchresults;
+    private Set<String> categories;
 
     private String term;
     private String weblogHandle;
     private String category;
     private String locale;
+    private Date startDate;
+    private Date endDate;
+    private String userName;
+    private List<String> tags;
+    private int offset = 0;
+    private int limit = 10;
+    private FieldDoc after;
+    private boolean countCategories = false;
     private String parseError;
 
     // ~ Constructors
@@ -93,13 +122,12 @@ public class SearchOperation extends ReadFromIndexOperation {
      */
     @Override
     public void doRun() {
-        final int docLimit = 500;
         searchresults = null;
+        categories = null;
         searcher = null;
 
         try {
-            IndexReader reader = manager.getSharedIndexReader();
-            searcher = new IndexSearcher(reader);
+            searcher = manager.acquireSearcher();
 
             MultiFieldQueryParser multiParser = new MultiFieldQueryParser(
                     SEARCH_FIELDS, manager.getAnalyzer());
@@ -134,7 +162,50 @@ public class SearchOperation extends ReadFromIndexOperation {
                     .build();
             }
 
-            searchresults = searcher.search(query, docLimit, SORTER);
+            // filters don't take part in scoring
+            BooleanQuery.Builder filtered = new BooleanQuery.Builder()
+                .add(query, BooleanClause.Occur.MUST);
+            boolean isFiltered = false;
+
+            if (startDate != null || endDate != null) {
+                long start = (startDate != null) ? startDate.getTime() : Long.MIN_VALUE;
+                long end = (endDate != null) ? endDate.getTime() : Long.MAX_VALUE;
+                filtered.add(LongPoint.newRangeQuery(FieldConstants.PUBLISHED, start, end),
+                    BooleanClause.Occur.FILTER);
+                isFiltered = true;
+            }
+
+            if (userName != null) {
+                filtered.add(new TermQuery(new Term(FieldConstants.USERNAME, userName.toLowerCase())),
+                    BooleanClause.Occur.FILTER);
+                isFiltered = true;
+            }
+
+            if (tags != null) {
+                for (String tag : tags) {
+                    filtered.add(new TermQuery(new Term(FieldConstants.TAG, tag.toLowerCase())),
+                        BooleanClause.Occur.FILTER);
+                    isFiltered = true;
+                }
+            }
+
+            if (isFiltered) {
+                query = filtered.build();
+            }
+
+            // collect hits up to the end of the page and no further
+            int numHits = Math.max(1, (after != null) ? limit : offset + limit);
+
+            if (countCategories && hasCategoryValues()) {
+                FacetsCollectorManager.FacetsResult result = (after != null)
+                    ? FacetsCollectorManager.searchAfter(searcher, after, query, numHits, SORTER, new FacetsCollectorManager())
+                    : FacetsCollectorManager.search(searcher, query, numHits, SORTER, new FacetsCollectorManager());
+                searchresults = (TopFieldDocs) result.topDocs();
+                categories = countCategories(result.facetsCollector());
+            } else {
+                searchresults = searcher.search(query,
+                    new TopFieldCollectorManager(SORTER, numHits, after, Integer.MAX_VALUE));
+            }
 
         } catch (IOException e) {
             logger.error("Error searching index", e);
@@ -144,7 +215,41 @@ public class SearchOperation extends ReadFromIndexOperation {
             // who cares?
             parseError = e.getMessage();
         }
-        // don't need to close the reader, since we didn't do any writing!
+        // the searcher stays acquired until release() so hits can be loaded
+    }
+
+    /**
+     * Determine if the index has category doc values to count, which an
+     * index built by an older version lacks until it is rebuilt.
+     */
+    private boolean hasCategoryValues() {
+        FieldInfo info = FieldInfos.getMergedFieldInfos(searcher.getIndexReader())
+            .fieldInfo(FieldConstants.CATEGORY);
+        return info != null && info.getDocValuesType() != DocValuesType.NONE;
+    }
+
+    private Set<String> countCategories(FacetsCollector hits) throws IOException {
+        Set<String> names = new TreeSet<>();
+        StringValueFacetCounts counts = new StringValueFacetCounts(
+            new StringDocValuesReaderState(searcher.getIndexReader(), FieldConstants.CATEGORY), hits);
+        FacetResult result = counts.getAllChildren(FieldConstants.CATEGORY);
+        if (result != null) {
+            for (LabelAndValue category : result.labelValues) {
+                names.add(category.label);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Release the searcher acquired by this operation, must be called once
+     * the results are no longer needed.
+     */
+    public void release() {
+        if (searcher != null) {
+            manager.releaseSearcher(searcher);
+            searcher = null;
+        }
     }
 
     /**
@@ -175,6 +280,15 @@ public class SearchOperation extends ReadFromIndexOperation {
         return searchresults;
     }
 
+    /**
+     * Gets the categories of all hits, if counted.
+     *
+     * @return the categories, or null if not counted
+     */
+    public Set<String> getCategories() {
+        return categories;
+    }
+
     /**
      * Gets the results count.
      * 
@@ -216,6 +330,88 @@ public class SearchOperation extends ReadFromIndexOperation {
         this.category = category;
     }
 
+    /**
+     * Sets the earliest publication time of hits.
+     *
+     * @param startDate
+     *            the start date, inclusive, or null for no limit
+     */
+    public void setStartDate(Date startDate) {
+        this.startDate = startDate;
+    }
+
+    /**
+     * Sets the latest publication time of hits.
+     *
+     * @param endDate
+     *            the end date, inclusive, or null for no limit
+     */
+    public void setEndDate(Date endDate) {
+        this.endDate = endDate;
+    }
+
+    /**
+     * Sets the user who wrote the hits.
+     *
+     * @param userName
+     *            the user name, or null for any user
+     */
+    public void setUserName(String userName) {
+        this.userName = userName;
+    }
+
+    /**
+     * Sets the tags hits must all have.
+     *
+     * @param tags
+     *            the tags, or null for any tags
+     */
+    public void setTags(List<String> tags) {
+        this.tags = tags;
+    }
+
+    /**
+     * Sets the offset of the first hit wanted, ignored when searching after
+     * a previous hit.
+     *
+     * @param offset
+     *            the new offset
+     */
+    public void setOffset(int offset) {
+        this.offset = offset;
+    }
+
+    /**
+     * Sets the number of hits wanted.
+     *
+     * @param limit
+     *            the new limit
+     */
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * Sets the hit to search after, the last hit of the previous page as
+     * found by a search against the same searcher generation.
+     *
+     * @param after
+     *            the hit, or null to start from the offset
+     */
+    public void setAfter(FieldDoc after) {
+        this.after = after;
+    }
+
+    /**
+     * Sets whether to count the categories of all hits.
+     *
+     * @param countCategories
+     *            true to count categories
+     */
+    public void setCountCategories(boolean countCategories) {
+        this.countCategories = countCategories;
+    }
+
     /**
      * Sets the locale.
      * 
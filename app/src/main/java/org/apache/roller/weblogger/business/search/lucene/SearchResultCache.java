@@ -0,0 +1,228 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+/* Created on Jul 18, 2003 */
+package org.apache.roller.weblogger.business.search.lucene;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.lucene.search.ReferenceManager;
+import org.apache.roller.weblogger.config.WebloggerConfig;
+import org.apache.roller.weblogger.util.cache.Cache;
+import org.apache.roller.weblogger.util.cache.CacheManager;
+
+
+/**
+ * Cache of search results, keyed by the normalized search and the version of
+ * the index reader the search ran against.
+ *
+ * Only the ids of the entries on the page are kept, along with the hit count
+ * and categories, since entries are bound to the session that loaded them.
+ * A result can never be served for a newer version of the index than it was
+ * found in, and the whole cache is dropped whenever searchers are refreshed
+ * to see changes so that outdated results don't linger until they expire.
+ */
+class SearchResultCache implements ReferenceManager.RefreshListener {
+
+    private static final Log log = LogFactory.getLog(SearchResultCache.class);
+
+    // a unique identifier for this cache, this is used as the prefix for
+    // roller config properties that apply to this cache
+    public static final String CACHE_ID = "cache.search";
+
+    private boolean cacheEnabled = true;
+    private Cache resultCache = null;
+
+
+    SearchResultCache() {
+
+        cacheEnabled = WebloggerConfig.getBooleanProperty(CACHE_ID + ".enabled", true);
+
+        Map<String, String> cacheProps = new HashMap<>();
+        cacheProps.put("id", CACHE_ID);
+        Enumeration<Object> allProps = WebloggerConfig.keys();
+        String prop;
+        while(allProps.hasMoreElements()) {
+            prop = (String) allProps.nextElement();
+
+            // we are only interested in props for this cache
+            if (prop.startsWith(CACHE_ID + ".")) {
+                cacheProps.put(prop.substring(CACHE_ID.length()+1),
+                        WebloggerConfig.getProperty(prop));
+            }
+        }
+
+        log.info("Search result cache = "+cacheProps);
+
+        if (cacheEnabled) {
+            resultCache = CacheManager.constructCache(null, cacheProps);
+        } else {
+            log.warn("Caching has been DISABLED");
+        }
+    }
+
+
+    /**
+     * Build the key for a search, ignoring differences in the search term
+     * which don't change the query it parses to.
+     *
+     * @param weblogHandle handle of the weblog searched, null for all weblogs
+     */
+    static String key(String term, String weblogHandle, String category,
+            String locale, Date startDate, Date endDate, String userName,
+            List<String> tags, int pageNum, int entryCount) {
+
+        StringBuilder key = new StringBuilder();
+        key.append(weblogHandle != null ? weblogHandle : "*");
+        key.append('/').append(locale != null ? locale : "");
+        key.append('/').append(pageNum).append('x').append(entryCount);
+        key.append('/').append(startDate != null ? startDate.getTime() : "");
+        key.append('-').append(endDate != null ? endDate.getTime() : "");
+        key.append('/').append(userName != null ? encode(userName.toLowerCase()) : "");
+        key.append('/');
+        if (tags != null) {
+            for (String tag : new TreeSet<>(tags)) {
+                key.append(encode(tag.toLowerCase())).append('+');
+            }
+        }
+        key.append('/').append(category != null ? encode(category.toLowerCase()) : "");
+        key.append('/').append(term != null ? encode(term.trim().replaceAll("\\s+", " ")) : "");
+        return key.toString();
+    }
+
+    private static String encode(String text) {
+        return URLEncoder.encode(text, StandardCharsets.UTF_8);
+    }
+
+
+    /**
+     * Get the results of a search against the given index version.
+     *
+     * @return the results, or null if not cached.
+     */
+    Results get(String key, long version) {
+
+        if (!cacheEnabled) {
+            return null;
+        }
+
+        Results results = (Results) resultCache.get(key);
+        if (results != null && results.version != version) {
+            // found in another version of the index
+            results = null;
+        }
+
+        if (results == null) {
+            log.debug("MISS "+key);
+        } else {
+            log.debug("HIT "+key);
+        }
+
+        return results;
+    }
+
+
+    void put(String key, Results results) {
+
+        if (!cacheEnabled) {
+            return;
+        }
+
+        resultCache.put(key, results);
+        log.debug("PUT "+key);
+    }
+
+
+    void clear() {
+
+        if (!cacheEnabled) {
+            return;
+        }
+
+        resultCache.clear();
+        log.debug("CLEAR");
+    }
+
+
+    @Override
+    public void beforeRefresh() {
+        // no-op
+    }
+
+    @Override
+    public void afterRefresh(boolean didRefresh) {
+        if (didRefresh) {
+            clear();
+        }
+    }
+
+
+    /**
+     * The results of a search, a page of entry ids along with what is known
+     * about all hits.
+     */
+    static final class Results {
+
+        private final long version;
+        private final List<String> ids;
+        private final Set<String> categories;
+        private final int limit;
+        private final int offset;
+        private final int totalHits;
+
+        Results(long version, List<String> ids, Set<String> categories,
+                int limit, int offset, int totalHits) {
+            this.version = version;
+            this.ids = List.copyOf(ids);
+            this.categories = Collections.unmodifiableSet(new TreeSet<>(categories));
+            this.limit = limit;
+            this.offset = offset;
+            this.totalHits = totalHits;
+        }
+
+        List<String> getIds() {
+            return ids;
+        }
+
+        Set<String> getCategories() {
+            return categories;
+        }
+
+        int getLimit() {
+            return limit;
+        }
+
+        int getOffset() {
+            return offset;
+        }
+
+        int getTotalHits() {
+            return totalHits;
+        }
+    }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.business.search.lucene;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexReaderContext;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.MultiReader;
+import org.apache.lucene.search.IndexSearcher;
+
+/**
+ * A searcher over all shards of the search index at once.
+ *
+ * It holds on to a searcher acquired from each shard, and searches each
+ * shard as a slice of its own, in parallel when given an executor.
+ */
+class ShardedIndexSearcher extends IndexSearcher {
+
+    private final List<IndexShard> shards;
+
+    private final IndexSearcher[] searchers;
+
+    private final long version;
+
+
+    private ShardedIndexSearcher(List<IndexShard> shards, IndexSearcher[] searchers,
+            Executor executor) throws IOException {
+        super(new MultiReader(readersOf(searchers), false), executor);
+        this.shards = shards;
+        this.searchers = searchers;
+
+        long sum = 0;
+        for (IndexSearcher searcher : searchers) {
+            sum += ((DirectoryReader) searcher.getIndexReader()).getVersion();
+        }
+        this.version = sum;
+    }
+
+
+    /**
+     * Acquire a searcher from each shard and combine them, the result must
+     * be handed back to release().
+     */
+    static ShardedIndexSearcher acquire(List<IndexShard> shards, Executor executor)
+            throws IOException {
+
+        IndexSearcher[] searchers = new IndexSearcher[shards.size()];
+        try {
+            for (int i = 0; i < searchers.length; i++) {
+                searchers[i] = shards.get(i).acquireSearcher();
+            }
+            return new ShardedIndexSearcher(shards, searchers, executor);
+        } catch (IOException | RuntimeException e) {
+            releaseAll(shards, searchers);
+            throw e;
+        }
+    }
+
+
+    /**
+     * Version of the index seen, which grows whenever any shard changes.
+     */
+    long getVersion() {
+        return version;
+    }
+
+
+    /**
+     * Release the searchers acquired from the shards.
+     */
+    void release() throws IOException {
+        try {
+            // lets go of the shard readers
+            getIndexReader().close();
+        } finally {
+            releaseAll(shards, searchers);
+        }
+    }
+
+
+    /**
+     * One slice per shard, rather than grouping segments by size, so that
+     * shards are searched in parallel however small they are.
+     */
+    @Override
+    protected LeafSlice[] slices(List<LeafReaderContext> leaves) {
+        // the segments of a shard share the shard's reader as their parent
+        Map<IndexReaderContext, List<LeafReaderContext>> byShard = new LinkedHashMap<>();
+        for (LeafReaderContext leaf : leaves) {
+            byShard.computeIfAbsent(leaf.parent, shard -> new ArrayList<>()).add(leaf);
+        }
+        List<LeafSlice> slices = new ArrayList<>(byShard.size());
+        for (List<LeafReaderContext> shardLeaves : byShard.values()) {
+            slices.add(new LeafSlice(shardLeaves));
+        }
+        return slices.toArray(new LeafSlice[0]);
+    }
+
+
+    private static IndexReader[] readersOf(IndexSearcher[] searchers) {
+        IndexReader[] readers = new IndexReader[searchers.length];
+        for (int i = 0; i < searchers.length; i++) {
+            readers[i] = searchers[i].getIndexReader();
+        }
+        return readers;
+    }
+
+    private static void releaseAll(List<IndexShard> shards, IndexSearcher[] searchers) {
+        for (int i = 0; i < searchers.length; i++) {
+            shards.get(i).releaseSearcher(searchers[i]);
+        }
+    }
+
+}
@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+/* Created on Jul 18, 2003 */
+package org.apache.roller.weblogger.business.search.lucene;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.lucene.index.MultiTerms;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.StringHelper;
+
+/**
+ * An operation that suggests completions of partly typed search terms, from
+ * the titles and tags of indexed entries.
+ *
+ * Titles suggested contain all words typed so far, the last of which may be
+ * incomplete, newest entries first, and come from a TitleSuggester. Tags
+ * are suggested while a single word is typed, in alphabetical order, and
+ * come from the index itself.
+ */
+public class SuggestOperation extends ReadFromIndexOperation {
+
+    private static Log logger = LogFactory.getFactory().getInstance(
+            SuggestOperation.class);
+
+    // tags looked at per tag suggested, before giving up
+    private static final int TAGS_SCANNED = 20;
+
+    private String prefix;
+    private String weblogHandle;
+    private int limit = 10;
+
+    private final TitleSuggester titleSuggester;
+
+    private List<String> titles = new ArrayList<>();
+    private final List<String> tags = new ArrayList<>();
+
+    /**
+     * Create a new operation that suggests search terms.
+     */
+    SuggestOperation(IndexOperationContext mgr, TitleSuggester titleSuggester) {
+        super(mgr);
+        this.titleSuggester = titleSuggester;
+    }
+
+    @Override
+    public void doRun() {
+        titles = new ArrayList<>();
+        tags.clear();
+
+        if (prefix == null || prefix.isBlank()) {
+            return;
+        }
+
+        IndexSearcher searcher = null;
+        try {
+            searcher = manager.acquireSearcher();
+
+            Term handleTerm = IndexUtil.getTerm(FieldConstants.WEBSITE_HANDLE, weblogHandle, manager.getAnalyzer());
+            String lower = prefix.toLowerCase(Locale.ROOT);
+
+            titles = titleSuggester.lookup(lower, weblogHandle, limit);
+
+            if (!lower.isBlank() && lower.trim().indexOf(' ') < 0) {
+                suggestTags(searcher, lower.trim(), handleTerm);
+            }
+
+        } catch (IOException e) {
+            logger.error("Error suggesting search terms", e);
+        } finally {
+            if (searcher != null) {
+                manager.releaseSearcher(searcher);
+            }
+        }
+    }
+
+    private void suggestTags(IndexSearcher searcher, String word, Term handleTerm) throws IOException {
+
+        Terms terms = MultiTerms.getTerms(searcher.getIndexReader(), FieldConstants.TAG);
+        if (terms == null) {
+            return;
+        }
+
+        BytesRef start = new BytesRef(word);
+        TermsEnum termsEnum = terms.iterator();
+        if (termsEnum.seekCeil(start) == TermsEnum.SeekStatus.END) {
+            return;
+        }
+
+        int scanned = 0;
+        for (BytesRef tag = termsEnum.term(); tag != null; tag = termsEnum.next()) {
+            if (!StringHelper.startsWith(tag, start) || tags.size() >= limit
+                    || scanned++ >= limit * TAGS_SCANNED) {
+                break;
+            }
+            // terms of deleted entries linger until segments are merged
+            Term tagTerm = new Term(FieldConstants.TAG, BytesRef.deepCopyOf(tag));
+            if (searcher.count(tagged(tagTerm, handleTerm)) > 0) {
+                tags.add(tagTerm.text());
+            }
+        }
+    }
+
+    private static Query tagged(Term tagTerm, Term handleTerm) {
+        if (handleTerm == null) {
+            return new TermQuery(tagTerm);
+        }
+        return new BooleanQuery.Builder()
+            .add(new TermQuery(tagTerm), BooleanClause.Occur.FILTER)
+            .add(new TermQuery(handleTerm), BooleanClause.Occur.FILTER)
+            .build();
+    }
+
+    /**
+     * Sets what has been typed so far.
+     *
+     * @param prefix
+     *            the start of the search term
+     */
+    public void setPrefix(String prefix) {
+        this.prefix = prefix;
+    }
+
+    /**
+     * Sets the weblog handle.
+     *
+     * @param weblogHandle
+     *            the handle, or null for all weblogs
+     */
+    public void setWeblogHandle(String weblogHandle) {
+        this.weblogHandle = weblogHandle;
+    }
+
+    /**
+     * Sets the number of titles and of tags wanted.
+     *
+     * @param limit
+     *            the new limit
+     */
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * Gets the titles suggested, newest entries first.
+     */
+    public List<String> getTitles() {
+        return titles;
+    }
+
+    /**
+     * Gets the tags suggested, in alphabetical order.
+     */
+    public List<String> getTags() {
+        return tags;
+    }
+
+}
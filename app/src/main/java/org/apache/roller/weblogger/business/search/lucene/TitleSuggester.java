@@ -0,0 +1,305 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.business.search.lucene;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.suggest.InputIterator;
+import org.apache.lucene.search.suggest.Lookup;
+import org.apache.lucene.search.suggest.analyzing.AnalyzingInfixSuggester;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.Bits;
+import org.apache.roller.weblogger.pojos.WeblogEntry;
+
+/**
+ * Suggests the titles of indexed entries for partly typed search terms,
+ * using an AnalyzingInfixSuggester kept in memory.
+ *
+ * Titles match when they contain every word typed, the last of which may be
+ * incomplete, anywhere in the title. They are weighted by publishing time so
+ * the newest entries come first, and carry their weblog's handle so
+ * suggestions can be limited to a weblog.
+ *
+ * Write operations update the suggester as they are applied to the index,
+ * see WriteToIndexOperation.updateSuggestions(), and the changes are seen by
+ * lookups once the index is next maintained. The suggester is only built
+ * from the titles stored in the index at startup and after the index, or
+ * part of it, has been rebuilt.
+ */
+class TitleSuggester implements Closeable {
+
+    private static final Log logger = LogFactory.getLog(TitleSuggester.class);
+
+    private static final Set<String> FIELDS = Set.of(
+            FieldConstants.ID, FieldConstants.TITLE, FieldConstants.WEBSITE_HANDLE);
+
+    // contexts are weblog handles, plus this prefix and the entry id so a
+    // title can be found again to replace or remove it
+    private static final String ID_CONTEXT = "id:";
+
+    private static final long NOT_PENDING = Long.MIN_VALUE;
+
+    private final IndexOperationContext index;
+
+    private final Suggester suggester;
+
+    // whether lookups have anything to look in yet
+    private volatile boolean built = false;
+
+    // version searches saw when a build was asked for, the build waits until
+    // they see another one, guarded by this. Searches never see a negative
+    // version, so the suggester is built as soon as the index is maintained.
+    private long buildPendingSince = -1;
+
+    // updated since the last refresh, guarded by this
+    private boolean changed = false;
+
+    /**
+     * @param index the whole index, which titles are suggested from
+     */
+    TitleSuggester(IndexOperationContext index) throws IOException {
+        this.index = index;
+        this.suggester = new Suggester(index.getAnalyzer());
+    }
+
+    /**
+     * Suggest the entry's title, in place of any title it had before.
+     */
+    synchronized void update(WeblogEntry entry) throws IOException {
+        BytesRef id = idContext(entry.getId());
+        suggester.delete(id);
+        String title = entry.getTitle();
+        if (title != null && !title.isBlank()) {
+            long weight = entry.getPubTime() != null ? entry.getPubTime().getTime() : 0;
+            suggester.add(new BytesRef(title),
+                    Set.of(handleContext(entry.getWebsite().getHandle()), id), weight, null);
+        }
+        changed = true;
+    }
+
+    /**
+     * Stop suggesting the title of an entry.
+     */
+    synchronized void remove(String entryId) throws IOException {
+        suggester.delete(idContext(entryId));
+        changed = true;
+    }
+
+    /**
+     * Build the suggester again from the index once searches see the
+     * changes just made to it, for changes too many to apply one by one.
+     */
+    synchronized void buildLater() {
+        if (buildPendingSince == NOT_PENDING) {
+            buildPendingSince = LuceneIndexManager.getIndexVersion(index);
+        }
+    }
+
+    /**
+     * Build the suggester if a build is due, or else let lookups see
+     * updates made since the last call. Only called by the thread
+     * maintaining the index.
+     */
+    synchronized void maintain() throws IOException {
+
+        if (buildPendingSince != NOT_PENDING) {
+            IndexSearcher searcher = index.acquireSearcher();
+            try {
+                if (LuceneIndexManager.getVersion(searcher) != buildPendingSince) {
+                    long start = System.nanoTime();
+                    suggester.build(new Titles(searcher));
+                    buildPendingSince = NOT_PENDING;
+                    changed = false;
+                    built = true;
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("Built " + suggester.getCount() + " title suggestions in "
+                                + (System.nanoTime() - start) / 1000000 + " ms");
+                    }
+                    return;
+                }
+            } finally {
+                index.releaseSearcher(searcher);
+            }
+        }
+
+        if (changed && built) {
+            suggester.refresh();
+            changed = false;
+        }
+    }
+
+    /**
+     * Titles matching what has been typed, newest entries first.
+     *
+     * @param typed what has been typed so far
+     * @param weblogHandle weblog to suggest from, or null for all weblogs
+     * @param limit the most titles to return
+     */
+    List<String> lookup(String typed, String weblogHandle, int limit) throws IOException {
+
+        // nothing to suggest from until first built
+        if (!built) {
+            return new ArrayList<>();
+        }
+
+        Set<BytesRef> contexts = null;
+        if (weblogHandle != null) {
+            contexts = Set.of(handleContext(weblogHandle));
+        }
+
+        // entries may share a title, so look a little further than needed
+        Set<String> titles = new LinkedHashSet<>();
+        for (Lookup.LookupResult result : suggester.lookup(typed, contexts, limit * 2, true, false)) {
+            titles.add(result.key.toString());
+            if (titles.size() >= limit) {
+                break;
+            }
+        }
+        return new ArrayList<>(titles);
+    }
+
+    @Override
+    public void close() throws IOException {
+        suggester.close();
+    }
+
+    private static BytesRef handleContext(String handle) {
+        return new BytesRef(handle.toLowerCase(Locale.ROOT));
+    }
+
+    private static BytesRef idContext(String id) {
+        return new BytesRef(ID_CONTEXT + id);
+    }
+
+    /**
+     * The suggester, able to delete suggestions by context, which keeps its
+     * writer open after building so it can go on being updated.
+     */
+    private static final class Suggester extends AnalyzingInfixSuggester {
+
+        Suggester(Analyzer analyzer) throws IOException {
+            super(new ByteBuffersDirectory(), analyzer, analyzer, DEFAULT_MIN_PREFIX_CHARS,
+                    false, true, false, false);
+        }
+
+        void delete(BytesRef context) throws IOException {
+            synchronized (writerLock) {
+                // nothing to delete until something has been added
+                if (writer != null) {
+                    writer.deleteDocuments(new Term(CONTEXTS_FIELD_NAME, context));
+                }
+            }
+        }
+    }
+
+    /**
+     * The titles of all entries seen by a searcher.
+     */
+    private static final class Titles implements InputIterator {
+
+        private final Iterator<LeafReaderContext> leaves;
+
+        private LeafReader leaf;
+        private StoredFields storedFields;
+        private NumericDocValues published;
+        private Bits liveDocs;
+        private int doc;
+
+        private long weight;
+        private Set<BytesRef> contexts;
+
+        Titles(IndexSearcher searcher) {
+            this.leaves = searcher.getIndexReader().leaves().iterator();
+        }
+
+        @Override
+        public BytesRef next() throws IOException {
+            while (true) {
+                if (leaf == null || ++doc >= leaf.maxDoc()) {
+                    if (!leaves.hasNext()) {
+                        return null;
+                    }
+                    leaf = leaves.next().reader();
+                    storedFields = leaf.storedFields();
+                    published = leaf.getNumericDocValues(FieldConstants.PUBLISHED);
+                    liveDocs = leaf.getLiveDocs();
+                    doc = -1;
+                    continue;
+                }
+                if (liveDocs != null && !liveDocs.get(doc)) {
+                    continue;
+                }
+
+                Document document = storedFields.document(doc, FIELDS);
+                String title = document.get(FieldConstants.TITLE);
+                String id = document.get(FieldConstants.ID);
+                String handle = document.get(FieldConstants.WEBSITE_HANDLE);
+                if (title == null || title.isBlank() || id == null || handle == null) {
+                    continue;
+                }
+                weight = (published != null && published.advanceExact(doc)) ? published.longValue() : 0;
+                contexts = Set.of(handleContext(handle), idContext(id));
+                return new BytesRef(title);
+            }
+        }
+
+        @Override
+        public long weight() {
+            return weight;
+        }
+
+        @Override
+        public BytesRef payload() {
+            return null;
+        }
+
+        @Override
+        public boolean hasPayloads() {
+            return false;
+        }
+
+        @Override
+        public Set<BytesRef> contexts() {
+            return contexts;
+        }
+
+        @Override
+        public boolean hasContexts() {
+            return true;
+        }
+    }
+
+}
@@ -18,11 +18,14 @@
 /* Created on Aug 12, 2003 */
 package org.apache.roller.weblogger.business.search.lucene;
 
+import java.io.IOException;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 /**
- * An operation that writes to index.
+ * An operation that writes to index. Write operations run one at a time and
+ * searchers are not refreshed while one is running, so searches never see
+ * an operation half done.
  * @author Mindaugas Idzelis (min@idzelis.com)
  */
 public abstract class WriteToIndexOperation extends IndexOperation {
@@ -34,12 +37,33 @@ public abstract class WriteToIndexOperation extends IndexOperation {
     private static Log logger =
             LogFactory.getFactory().getInstance(WriteToIndexOperation.class);
     
+    /**
+     * Key which identifies what the operation changes, see
+     * IndexOperationQueue. A queued operation is replaced by a later one
+     * with the same key.
+     *
+     * @return the key, or null if the operation is never replaced
+     */
+    protected String getQueueKey() {
+        return null;
+    }
+
+    /**
+     * Bring title suggestions in line with what the operation changed in
+     * the index, right after it has been applied. Unless the operation
+     * knows better, the suggester is built again from the index.
+     */
+    void updateSuggestions(TitleSuggester titles) throws IOException {
+        titles.buildLater();
+    }
+
     @Override
     public void run() {
         try {
             manager.getReadWriteLock().writeLock().lock();
             logger.debug("Starting search index operation");
             doRun();
+            manager.operationApplied(this);
             logger.debug("Search index operation complete");
 
         } catch (Exception e) {
@@ -48,6 +72,5 @@ public abstract class WriteToIndexOperation extends IndexOperation {
         } finally {
             manager.getReadWriteLock().writeLock().unlock();
         }
-        manager.resetSharedReader();
     }
 }
@@ -70,6 +70,10 @@ public class Weblog implements Serializable {
 
     private Map<String, WeblogEntryPlugin> initializedPlugins = null;
 
+    // last modified time this instance was loaded with, once it changes
+    private Date previousLastModified = null;
+    private boolean lastModifiedSet = false;
+
     private List<WeblogCategory> weblogCategories = new ArrayList<>();
 
     private List<WeblogBookmarkFolder> bookmarkFolders = new ArrayList<>();
@@ -468,8 +472,22 @@ public class Weblog implements Serializable {
     }
 
     public void setLastModified(Date lastModified) {
+        // the first time is when the weblog is loaded
+        if (lastModifiedSet && previousLastModified == null) {
+            previousLastModified = settings.getLastModified();
+        }
+        lastModifiedSet = true;
         settings.setLastModified(lastModified);
     }
+
+    /**
+     * The last modified time this weblog had before it was modified through
+     * this instance, or null if it hasn't been.  Caches use this to tell if
+     * they have seen every modification of the weblog.
+     */
+    public Date getPreviousLastModified() {
+        return previousLastModified;
+    }
   
     
     /**
@@ -96,8 +96,15 @@ public class WeblogEntry implements Serializable {
     private Weblog        website  = null;
     private WeblogCategory category = null;
 
+    // category and pubtime this instance was loaded with, once they change
+    private WeblogCategory previousCategory = null;
+    private Timestamp previousPubTime = null;
+
     // Resolved creator (injected, avoids Service Locator calls)
     private transient User creator = null;
+
+    // Number of approved comments, when counted for many entries at once
+    private transient Integer commentCount = null;
     
     // Collection of name/value entry attributes
     private Set<WeblogEntryAttribute> attSet = new TreeSet<>();
@@ -306,8 +313,19 @@ public class WeblogEntry implements Serializable {
     }
     
     public void setCategory(WeblogCategory category) {
+        if (this.previousCategory == null) {
+            this.previousCategory = this.category;
+        }
         this.category = category;
     }
+
+    /**
+     * The category this entry was in before it was changed through this
+     * instance, or null if it hasn't been.
+     */
+    public WeblogCategory getPreviousCategory() {
+        return previousCategory;
+    }
        
     /**
      * Return collection of WeblogCategory objects of this entry.
@@ -525,8 +543,19 @@ public class WeblogEntry implements Serializable {
     }
     
     public void setPubTime(Timestamp pubTime) {
+        if (this.previousPubTime == null) {
+            this.previousPubTime = this.pubTime;
+        }
         this.pubTime = pubTime;
     }
+
+    /**
+     * The publish time this entry had before it was changed through this
+     * instance, or null if it hasn't been.
+     */
+    public Timestamp getPreviousPubTime() {
+        return previousPubTime;
+    }
     
     /**
      * <p>Update time is the last time that an weblog entry was saved in the
@@ -844,8 +873,19 @@ public class WeblogEntry implements Serializable {
     }
     
     public int getCommentCount() {
+        if (commentCount != null) {
+            return commentCount;
+        }
         return getComments().size();
     }
+
+    /**
+     * Set the number of approved comments, as counted for a page of entries
+     * by WeblogEntryManager.prefetch(), so getCommentCount() needn't query.
+     */
+    public void setCommentCount(int commentCount) {
+        this.commentCount = commentCount;
+    }
     
     //------------------------------------------------------------------------
         
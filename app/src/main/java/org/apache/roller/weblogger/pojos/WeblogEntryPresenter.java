@@ -28,6 +28,7 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.commons.text.StringEscapeUtils;
 import org.apache.roller.util.RollerConstants;
 import org.apache.roller.weblogger.business.plugins.entry.WeblogEntryPlugin;
+import org.apache.roller.weblogger.ui.rendering.util.cache.RenderedEntryCache;
 import org.apache.roller.weblogger.util.HTMLSanitizer;
 import org.apache.roller.weblogger.util.I18nMessages;
 import org.apache.roller.weblogger.util.Utilities;
@@ -150,14 +151,14 @@ public class WeblogEntryPresenter {
      * Get entry text, transformed by plugins enabled for this entry.
      */
     public String getTransformedText() {
-        return render(entry.getText());
+        return render(RenderedEntryCache.TEXT, entry.getText());
     }
 
     /**
      * Get entry summary, transformed by plugins enabled for this entry.
      */
     public String getTransformedSummary() {
-        return render(entry.getSummary());
+        return render(RenderedEntryCache.SUMMARY, entry.getSummary());
     }
 
     /**
@@ -207,6 +208,23 @@ public class WeblogEntryPresenter {
     // Internal rendering
     // -----------------------------------------------------------------------
 
+    /**
+     * Transform part of the entry, reusing what was rendered before if the
+     * entry hasn't changed since.
+     */
+    private String render(String part, String str) {
+        if (str == null) {
+            return null;
+        }
+        RenderedEntryCache cache = RenderedEntryCache.getInstance();
+        String ret = cache.get(entry, part, str);
+        if (ret == null) {
+            ret = render(str);
+            cache.put(entry, part, str, ret);
+        }
+        return ret;
+    }
+
     /**
      * Transform string based on plugins enabled for this weblog entry.
      */
@@ -54,6 +54,10 @@ public class WeblogEntrySearchCriteria {
     private int offset = 0;
 
     private int maxResults = -1;
+    // Publication time and id of the entry to continue after, for paging by
+    // seeking rather than by offset; only used when sorting by publication time
+    private Date afterPubTime;
+    private String afterId;
 
     public Weblog getWeblog() {
         return weblog;
@@ -159,4 +163,22 @@ public class WeblogEntrySearchCriteria {
         this.maxResults = maxResults;
     }
 
+    public Date getAfterPubTime() {
+        return afterPubTime;
+    }
+
+    public String getAfterId() {
+        return afterId;
+    }
+
+    /**
+     * Only get entries which come after the given one in the sort order,
+     * which unlike an offset costs the same however deep into the results.
+     * Entries with the same publication time are ordered by id.
+     */
+    public void setAfter(Date pubTime, String id) {
+        this.afterPubTime = pubTime;
+        this.afterId = id;
+    }
+
 }
@@ -27,6 +27,7 @@ import org.apache.roller.weblogger.pojos.WeblogEntry;
 import org.apache.roller.weblogger.pojos.WeblogEntry.PubStatus;
 import org.apache.roller.weblogger.pojos.WeblogEntryTagComparator;
 import org.apache.roller.weblogger.util.HTMLSanitizer;
+import org.apache.roller.weblogger.util.cache.CacheDependencies;
 
 
 /**
@@ -51,6 +52,8 @@ public final class WeblogEntryWrapper {
     // wrap the given pojo if it is not null
     public static WeblogEntryWrapper wrap(WeblogEntry toWrap, URLStrategy strat) {
         if(toWrap != null) {
+            // whatever is rendering the entry depends on it
+            CacheDependencies.recordEntry(toWrap);
             return new WeblogEntryWrapper(toWrap, strat);
         }
         return null;
@@ -27,6 +27,7 @@ import org.apache.roller.weblogger.WebloggerException;
 import org.apache.roller.weblogger.business.URLStrategy;
 import org.apache.roller.weblogger.pojos.TagStat;
 import org.apache.roller.weblogger.util.HTMLSanitizer;
+import org.apache.roller.weblogger.util.cache.CacheDependencies;
 
 import java.util.stream.Collectors;
 import org.apache.roller.weblogger.pojos.ThemeTemplate.ComponentType;
@@ -290,6 +291,7 @@ public final class WeblogWrapper {
 
     
     public List<WeblogEntryWrapper> getRecentWeblogEntries(String cat, int length) {
+        CacheDependencies.recordEntries(this.pojo, (cat == null || "nil".equals(cat)) ? null : cat, null, null);
         return this.pojo.getRecentWeblogEntries(cat, length).stream()
                 .map(entry -> WeblogEntryWrapper.wrap(entry, urlStrategy))
                 .collect(Collectors.toList());
@@ -297,6 +299,8 @@ public final class WeblogWrapper {
     
     
     public List<WeblogEntryWrapper> getRecentWeblogEntriesByTag(String tag, int length) {
+        CacheDependencies.recordEntries(this.pojo, null,
+                (tag == null || "nil".equals(tag)) ? null : List.of(tag), null);
         return this.pojo.getRecentWeblogEntriesByTag(tag, length).stream()
                 .map(entry -> WeblogEntryWrapper.wrap(entry, urlStrategy))
                 .collect(Collectors.toList());
@@ -304,6 +308,7 @@ public final class WeblogWrapper {
     
     
     public List<WeblogEntryCommentWrapper> getRecentComments(int length) {
+        CacheDependencies.recordComments(this.pojo);
         return this.pojo.getRecentComments(length).stream()
                 .map(wec -> WeblogEntryCommentWrapper.wrap(wec, urlStrategy))
                 .collect(Collectors.toList());
@@ -319,16 +324,19 @@ public final class WeblogWrapper {
     }
     
     public List<TagStat> getPopularTags(int sinceDays,int length) {
+        CacheDependencies.recordEntries(this.pojo, null, null, null);
         return this.pojo.getPopularTags(sinceDays,length);
     }
     
     
     public long getCommentCount() {
+        CacheDependencies.recordComments(this.pojo);
         return this.pojo.getCommentCount();
     }
     
     
     public long getEntryCount() {
+        CacheDependencies.recordEntries(this.pojo, null, null, null);
         return this.pojo.getEntryCount();
     }
     
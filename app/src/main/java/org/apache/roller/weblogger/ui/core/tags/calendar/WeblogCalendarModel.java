@@ -23,7 +23,6 @@ import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.TimeZone;
@@ -34,7 +33,6 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.roller.weblogger.WebloggerException;
 import org.apache.roller.weblogger.business.WebloggerFactory;
 import org.apache.roller.weblogger.business.WeblogEntryManager;
-import org.apache.roller.weblogger.pojos.WeblogEntry;
 import org.apache.roller.weblogger.pojos.WeblogEntry.PubStatus;
 import org.apache.roller.weblogger.pojos.Weblog;
 import org.apache.roller.weblogger.pojos.WeblogEntrySearchCriteria;
@@ -103,8 +101,8 @@ public class WeblogCalendarModel implements CalendarModel {
         Date endDate = DateBoundaryUtil.getEndOfMonth(month,cal);
         
         // Determine previous non-empty month
-        // Get entries before startDate, using category restriction limit 1
-        // Use entry's date as previous month
+        // Get days with entries before startDate, using category restriction limit 1
+        // Use that day as previous month
         try {
             WeblogEntryManager mgr = WebloggerFactory.getWeblogger().getWeblogEntryManager();
             WeblogEntrySearchCriteria wesc = new WeblogEntrySearchCriteria();
@@ -116,19 +114,19 @@ public class WeblogCalendarModel implements CalendarModel {
             wesc.setSortOrder(WeblogEntrySearchCriteria.SortOrder.DESCENDING);
             wesc.setLocale(locale);
             wesc.setMaxResults(1);
-            List<WeblogEntry> prevEntries = mgr.getWeblogEntries(wesc);
+            Map<Date, Integer> prevDays = mgr.getWeblogEntryDayCounts(wesc);
 
-            if (!prevEntries.isEmpty()) {
-                WeblogEntry prevEntry = prevEntries.get(0);
-                prevMonth = DateBoundaryUtil.getStartOfMonth(new Date(prevEntry.getPubTime().getTime()),getCalendar());
+            if (!prevDays.isEmpty()) {
+                Date prevDay = prevDays.keySet().iterator().next();
+                prevMonth = DateBoundaryUtil.getStartOfMonth(prevDay,getCalendar());
             }
         } catch (WebloggerException e) {
             log.error("ERROR determining previous non-empty month");
         }
         
         // Determine next non-empty month
-        // Get entries after endDate, using category restriction limit 1
-        // Use entry's date as next month
+        // Get days with entries after endDate, using category restriction limit 1
+        // Use that day as next month
         try {
             WeblogEntryManager mgr = WebloggerFactory.getWeblogger().getWeblogEntryManager();
             WeblogEntrySearchCriteria wesc = new WeblogEntrySearchCriteria();
@@ -140,10 +138,10 @@ public class WeblogCalendarModel implements CalendarModel {
             wesc.setSortOrder(WeblogEntrySearchCriteria.SortOrder.ASCENDING);
             wesc.setLocale(locale);
             wesc.setMaxResults(1);
-            List<WeblogEntry> nextEntries = mgr.getWeblogEntries(wesc);
-            if (!nextEntries.isEmpty()) {
-                WeblogEntry nextEntry = nextEntries.get(0);
-                nextMonth = DateBoundaryUtil.getStartOfMonth(new Date(nextEntry.getPubTime().getTime()),getCalendar());
+            Map<Date, Integer> nextDays = mgr.getWeblogEntryDayCounts(wesc);
+            if (!nextDays.isEmpty()) {
+                Date nextDay = nextDays.keySet().iterator().next();
+                nextMonth = DateBoundaryUtil.getStartOfMonth(nextDay,getCalendar());
             }
         } catch (WebloggerException e) {
             log.error("ERROR determining next non-empty month");
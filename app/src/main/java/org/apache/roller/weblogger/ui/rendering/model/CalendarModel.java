@@ -29,6 +29,7 @@ import org.apache.roller.weblogger.ui.core.tags.calendar.CalendarTag;
 import org.apache.roller.weblogger.ui.core.tags.calendar.WeblogCalendarModel;
 import org.apache.roller.weblogger.ui.rendering.util.WeblogPageRequest;
 import org.apache.roller.weblogger.ui.rendering.util.WeblogRequest;
+import org.apache.roller.weblogger.util.cache.CacheDependencies;
 
 
 /**
@@ -90,6 +91,10 @@ public class CalendarModel implements Model {
         if ("nil".equals(catArgument)) {
             catArgument = null;
         }
+        
+        // the calendar links to days and months with entries
+        CacheDependencies.recordEntries(websiteWrapper.getPojo(), catArgument, null, null);
+        
         String ret = null;
         try {
             org.apache.roller.weblogger.ui.core.tags.calendar.CalendarModel model = null;
@@ -276,7 +276,8 @@ public class PageModel implements Model {
                     pageRequest.getWeblogDate(),
                     cat,
                     tags,
-                    pageRequest.getPageNum());
+                    pageRequest.getPageNum(),
+                    pageRequest.getCursor());
         } else if (dateString != null && dateString.length() == 6) {
             return new WeblogEntriesMonthPager(
                     urlStrategy,
@@ -287,7 +288,8 @@ public class PageModel implements Model {
                     pageRequest.getWeblogDate(),
                     cat,
                     tags,
-                    pageRequest.getPageNum());
+                    pageRequest.getPageNum(),
+                    pageRequest.getCursor());
           
         } else {
             return new WeblogEntriesLatestPager(
@@ -299,7 +301,8 @@ public class PageModel implements Model {
                     pageRequest.getWeblogDate(),
                     cat,
                     tags,
-                    pageRequest.getPageNum());
+                    pageRequest.getPageNum(),
+                    pageRequest.getCursor());
         }
     }
         
@@ -23,6 +23,8 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import org.apache.commons.text.StringEscapeUtils;
 import org.apache.roller.weblogger.WebloggerException;
 import org.apache.roller.weblogger.business.URLStrategy;
@@ -39,6 +41,7 @@ import org.apache.roller.weblogger.ui.rendering.pagers.SearchResultsFeedPager;
 import org.apache.roller.weblogger.ui.rendering.util.WeblogFeedRequest;
 import org.apache.roller.weblogger.ui.rendering.util.WeblogRequest;
 import org.apache.roller.weblogger.util.Utilities;
+import org.apache.roller.weblogger.util.cache.CacheDependencies;
 
 /**
  * Extends normal page renderer model to represent search results for Atom
@@ -65,6 +68,11 @@ public class SearchResultsFeedModel implements Model {
 
 	private String errorMessage = "";
 
+	private String pagerUrl = null;
+
+	// search running while the feed is rendered, see awaitSearch()
+	private CompletableFuture<SearchResultList> pendingSearch = null;
+
 	@Override
 	public String getModelName() {
 		return "model";
@@ -96,12 +104,19 @@ public class SearchResultsFeedModel implements Model {
 		// extract weblog object
 		weblog = feedRequest.getWeblog();
 
-		String pagerUrl = urlStrategy.getWeblogFeedURL(weblog,
+		pagerUrl = urlStrategy.getWeblogFeedURL(weblog,
 				feedRequest.getLocale(), feedRequest.getType(),
 				// cat and term below null but added to URL in pager
                 feedRequest.getFormat(), null, null,
 				null, false, true);
 
+		// newly published entries may match the query
+		if (WebloggerRuntimeConfig.isSiteWideWeblog(weblog.getHandle())) {
+			CacheDependencies.recordEntries(null, null, null, null);
+		} else {
+			CacheDependencies.recordEntries(weblog, feedRequest.getWeblogCategoryName(), null, null);
+		}
+
 		// if there is no query, then we are done
 		if (feedRequest.getTerm() == null) {
 			pager = new SearchResultsFeedPager(urlStrategy, pagerUrl,
@@ -111,26 +126,42 @@ public class SearchResultsFeedModel implements Model {
 
 		int entryCount = WebloggerRuntimeConfig.getIntProperty("site.newsfeeds.defaultEntries");
 
-		// setup the search
+		// start the search, the results are picked up when first needed
 		IndexManager indexMgr = WebloggerFactory.getWeblogger().getIndexManager();
+		pendingSearch = indexMgr.searchAsync(
+			feedRequest.getTerm(),
+			feedRequest.getWeblogHandle(),
+			feedRequest.getWeblogCategoryName(),
+			feedRequest.getLocale(),
+			null, null, null, null,
+			feedRequest.getPage(),
+			entryCount,
+			urlStrategy
+		);
+	}
+
+	/**
+	 * Wait for the search started by init() to finish and set up the
+	 * results and pager.
+	 */
+	private void awaitSearch() {
+
+		if (pendingSearch == null) {
+			return;
+		}
+		CompletableFuture<SearchResultList> search = pendingSearch;
+		pendingSearch = null;
+
 		try {
-			SearchResultList searchResult = indexMgr.search(
-				feedRequest.getTerm(),
-				feedRequest.getWeblogHandle(),
-				feedRequest.getWeblogCategoryName(),
-				feedRequest.getLocale(),
-				feedRequest.getPage(),
-				entryCount,
-				urlStrategy
-			);
-			this.hits = searchResult.getResults().size();
+			SearchResultList searchResult = search.join();
+			this.hits = searchResult.getTotalHits();
 			this.offset = searchResult.getOffset();
 			this.limit = searchResult.getLimit();
 			this.results = searchResult.getResults();
 			this.categories = searchResult.getCategories();
 
-		} catch (WebloggerException we) {
-			errorMessage = we.getMessage();
+		} catch (CompletionException e) {
+			errorMessage = e.getCause().getMessage();
 		}
 
 		// search completed, setup pager based on results
@@ -140,6 +171,7 @@ public class SearchResultsFeedModel implements Model {
 	}
 
 	public Pager<WeblogEntryWrapper> getSearchResultsPager() {
+		awaitSearch();
 		return pager;
 	}
 
@@ -158,10 +190,12 @@ public class SearchResultsFeedModel implements Model {
 	}
 
 	public int getHits() {
+		awaitSearch();
 		return hits;
 	}
 
 	public int getOffset() {
+		awaitSearch();
 		return offset;
 	}
 
@@ -170,14 +204,17 @@ public class SearchResultsFeedModel implements Model {
 	}
 
 	public int getLimit() {
+		awaitSearch();
 		return limit;
 	}
 
 	public List<WeblogEntryWrapper> getResults() {
+		awaitSearch();
 		return results;
 	}
 
 	public Set<String> getCategories() {
+		awaitSearch();
 		return categories;
 	}
 
@@ -186,6 +223,7 @@ public class SearchResultsFeedModel implements Model {
 	}
 
 	public String getErrorMessage() {
+		awaitSearch();
 		return errorMessage;
 	}
 
@@ -25,6 +25,8 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import org.apache.commons.text.StringEscapeUtils;
 import org.apache.roller.util.DateBoundaryUtil;
 import org.apache.roller.weblogger.WebloggerException;
@@ -64,6 +66,9 @@ public class SearchResultsModel extends PageModel {
 	private Set<String> categories = new TreeSet<String>();
 	private String errorMessage = "";
 
+	// search running while the other models are loaded, see awaitSearch()
+	private CompletableFuture<SearchResultList> pendingSearch = null;
+
 	@Override
 	public void init(Map<String, Object> initData) throws WebloggerException {
 
@@ -88,19 +93,35 @@ public class SearchResultsModel extends PageModel {
 			return;
 		}
 
-		// setup the search
+		// start the search, the results are picked up when first needed
 		IndexManager indexMgr = WebloggerFactory.getWeblogger().getIndexManager();
+		pendingSearch = indexMgr.searchAsync(
+			searchRequest.getQuery(),
+			searchRequest.getWeblogHandle(),
+			searchRequest.getWeblogCategoryName(),
+			searchRequest.getLocale(),
+			null, null, null, null,
+			searchRequest.getPageNum(),
+			RESULTS_PER_PAGE,
+			urlStrategy
+		);
+	}
+
+	/**
+	 * Wait for the search started by init() to finish and set up the
+	 * results and pager.
+	 */
+	private void awaitSearch() {
+
+		if (pendingSearch == null) {
+			return;
+		}
+		CompletableFuture<SearchResultList> search = pendingSearch;
+		pendingSearch = null;
+
 		try {
-			SearchResultList searchResultList = indexMgr.search(
-				searchRequest.getQuery(),
-				searchRequest.getWeblogHandle(),
-				searchRequest.getWeblogCategoryName(),
-				searchRequest.getLocale(),
-				searchRequest.getPageNum(),
-				RESULTS_PER_PAGE,
-				urlStrategy
-			);
-			hits = searchResultList.getResults().size();
+			SearchResultList searchResultList = search.join();
+			hits = searchResultList.getTotalHits();
 			offset = searchResultList.getOffset();
 			limit = searchResultList.getLimit();
 			categories = searchResultList.getCategories();
@@ -112,8 +133,8 @@ public class SearchResultsModel extends PageModel {
 				}
 			}
 
-		} catch (WebloggerException we) {
-			errorMessage = we.getMessage();
+		} catch (CompletionException e) {
+			errorMessage = e.getCause().getMessage();
 		}
 
 		// search completed, setup pager based on results
@@ -150,12 +171,14 @@ public class SearchResultsModel extends PageModel {
 	// override page model and return search results pager
 	@Override
 	public WeblogEntriesPager getWeblogEntriesPager() {
+		awaitSearch();
 		return pager;
 	}
 
 	// override page model and return search results pager
 	@Override
 	public WeblogEntriesPager getWeblogEntriesPager(String category) {
+		awaitSearch();
 		return pager;
 	}
 
@@ -171,26 +194,32 @@ public class SearchResultsModel extends PageModel {
 	}
 
 	public int getHits() {
+		awaitSearch();
 		return hits;
 	}
 
 	public int getOffset() {
+		awaitSearch();
 		return offset;
 	}
 
 	public int getLimit() {
+		awaitSearch();
 		return limit;
 	}
 
 	public Map<Date, Set<WeblogEntryWrapper>> getResults() {
+		awaitSearch();
 		return results;
 	}
 
 	public Set<String> getCategories() {
+		awaitSearch();
 		return categories;
 	}
 
 	public String getErrorMessage() {
+		awaitSearch();
 		return errorMessage;
 	}
 
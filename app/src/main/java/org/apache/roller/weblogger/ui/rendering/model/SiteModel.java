@@ -54,6 +54,7 @@ import org.apache.roller.weblogger.ui.rendering.pagers.WeblogsPager;
 import org.apache.roller.weblogger.ui.rendering.util.WeblogFeedRequest;
 import org.apache.roller.weblogger.ui.rendering.util.WeblogPageRequest;
 import org.apache.roller.weblogger.ui.rendering.util.WeblogRequest;
+import org.apache.roller.weblogger.util.cache.CacheDependencies;
 
 
 /**
@@ -69,6 +70,7 @@ public class SiteModel implements Model {
     private List<String> tags = Collections.emptyList();
     private String pageLink = null;
     private int pageNum = 0;
+    private String cursor = null;
     
     private URLStrategy urlStrategy = null;
     
@@ -91,6 +93,7 @@ public class SiteModel implements Model {
             ThemeTemplate weblogPage = ((WeblogPageRequest)weblogRequest).getWeblogPage();
             pageLink = (weblogPage != null) ? weblogPage.getLink() : null;
             pageNum = ((WeblogPageRequest)weblogRequest).getPageNum();
+            cursor = ((WeblogPageRequest)weblogRequest).getCursor();
             tags = ((WeblogPageRequest)weblogRequest).getTags();
         } else if (weblogRequest instanceof WeblogFeedRequest) {
             this.feedRequest = (WeblogFeedRequest) weblogRequest;
@@ -137,7 +140,8 @@ public class SiteModel implements Model {
             weblogRequest.getLocale(),
             sinceDays,
             pageNum, 
-            length);
+            length,
+            cursor);
     }
     
        
@@ -194,7 +198,8 @@ public class SiteModel implements Model {
             weblogRequest.getLocale(),
             sinceDays,
             pageNum, 
-            length);
+            length,
+            cursor);
     }    
     
     
@@ -286,6 +291,7 @@ public class SiteModel implements Model {
      * names start with each letter.
      */
     public Map<String, Long> getUserNameLetterMap() {
+        CacheDependencies.recordWeblogs();
         try {
             Weblogger roller = WebloggerFactory.getWeblogger();
             UserManager umgr = roller.getUserManager();
@@ -303,6 +309,7 @@ public class SiteModel implements Model {
      * names start with each letter.
      */
     public Map<String, Long> getWeblogHandleLetterMap() {
+        CacheDependencies.recordWeblogs();
         try {
             return WebloggerFactory.getWeblogger().getWeblogManager().getWeblogHandleLetterMap();
         } catch (Exception e) {
@@ -316,6 +323,7 @@ public class SiteModel implements Model {
      * Return list of weblogs that user belongs to.
      */
     public List<WeblogWrapper> getUsersWeblogs(String userName) {
+        CacheDependencies.recordWeblogs();
         List<WeblogWrapper> results = new ArrayList<>();
         try {
             Weblogger roller = WebloggerFactory.getWeblogger();
@@ -336,6 +344,7 @@ public class SiteModel implements Model {
      * Return list of users that belong to website.
      */
     public List<UserWrapper> getWeblogsUsers(String handle) {
+        CacheDependencies.recordWeblogs();
         List<UserWrapper> results = new ArrayList<>();
         try {
             Weblogger roller = WebloggerFactory.getWeblogger();
@@ -390,6 +399,7 @@ public class SiteModel implements Model {
      * @param len      Max number of results to return
      */
     public List<WeblogWrapper> getNewWeblogs(int sinceDays, int length) {
+        CacheDependencies.recordWeblogs();
         List<WeblogWrapper> results = new ArrayList<>();
         Date startDate = JPAWeblogEntryManagerImpl.getStartDateNow(sinceDays);
         try {            
@@ -411,6 +421,7 @@ public class SiteModel implements Model {
      * @param len      Max number of results to return
      */
     public List<UserWrapper> getNewUsers(int sinceDays, int length) {
+        CacheDependencies.recordWeblogs();
         List<UserWrapper> results = new ArrayList<>();
         try {            
             Weblogger roller = WebloggerFactory.getWeblogger();
@@ -432,6 +443,7 @@ public class SiteModel implements Model {
      * @param length      Max number of results to return
      */
     public List<StatCount> getHotWeblogs(int sinceDays, int length) {
+        CacheDependencies.recordWeblogs();
         
         List<StatCount> results = new ArrayList<>();
         try {
@@ -464,6 +476,7 @@ public class SiteModel implements Model {
      * @param length   Max number of results to return
      */
     public List<StatCount> getMostCommentedWeblogs(int sinceDays , int length) {
+        CacheDependencies.recordComments(null);
         Date startDate = JPAWeblogEntryManagerImpl.getStartDateNow(sinceDays);
         try {
             return WebloggerFactory.getWeblogger().getWeblogManager().getMostCommentedWeblogs(
@@ -483,6 +496,7 @@ public class SiteModel implements Model {
      * @param length      Max number of results to return
      */
     public List<StatCount> getMostCommentedWeblogEntries(List<String> cats, int sinceDays, int length) {
+        CacheDependencies.recordComments(null);
         Date startDate = JPAWeblogEntryManagerImpl.getStartDateNow(sinceDays);
         try {
             Weblogger roller = WebloggerFactory.getWeblogger();
@@ -500,6 +514,7 @@ public class SiteModel implements Model {
      * @param length    Max number of results to return
      */
     public List<WeblogEntryWrapper> getPinnedWeblogEntries(int length) {
+        CacheDependencies.recordEntries(null, null, null, null);
         List<WeblogEntryWrapper> results = new ArrayList<>();
         try {            
             Weblogger roller = WebloggerFactory.getWeblogger();
@@ -521,6 +536,7 @@ public class SiteModel implements Model {
      * @return
      */
     public List<TagStat> getPopularTags(int sinceDays, int length) {
+        CacheDependencies.recordEntries(null, null, null, null);
         Date startDate = null;
         if(sinceDays > 0) {
             Calendar cal = Calendar.getInstance();
@@ -541,6 +557,7 @@ public class SiteModel implements Model {
     
     
     public long getCommentCount() {
+        CacheDependencies.recordComments(null);
         long count = 0;
         try {
             Weblogger roller = WebloggerFactory.getWeblogger();
@@ -554,6 +571,7 @@ public class SiteModel implements Model {
     
     
     public long getEntryCount() {
+        CacheDependencies.recordEntries(null, null, null, null);
         long count = 0;
         try {
             Weblogger roller = WebloggerFactory.getWeblogger();
@@ -567,6 +585,7 @@ public class SiteModel implements Model {
     
     
     public long getWeblogCount() {
+        CacheDependencies.recordWeblogs();
         long count = 0;
         try {
             count = WebloggerFactory.getWeblogger().getWeblogManager().getWeblogCount();            
@@ -578,6 +597,7 @@ public class SiteModel implements Model {
     
     
     public long getUserCount() {
+        CacheDependencies.recordWeblogs();
         long count = 0;
         try {
             Weblogger roller = WebloggerFactory.getWeblogger();
@@ -20,17 +20,29 @@ package org.apache.roller.weblogger.ui.rendering.pagers;
 
 import java.text.ParsePosition;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.roller.weblogger.WebloggerException;
 import org.apache.roller.weblogger.config.WebloggerRuntimeConfig;
 import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.pojos.WeblogEntry;
+import org.apache.roller.weblogger.pojos.WeblogEntrySearchCriteria;
+import org.apache.roller.weblogger.pojos.wrapper.WeblogEntryWrapper;
+import org.apache.roller.util.DateBoundaryUtil;
 import org.apache.roller.util.DateFormatUtil;
 import org.apache.roller.weblogger.business.URLStrategy;
+import org.apache.roller.weblogger.business.WeblogEntryManager;
+import org.apache.roller.weblogger.business.WebloggerFactory;
 import org.apache.roller.weblogger.util.I18nMessages;
+import org.apache.roller.weblogger.util.cache.CacheDependencies;
 
 /**
  * An abstract implementation of a WeblogEntriesPager.
@@ -60,6 +72,16 @@ public abstract class AbstractWeblogEntriesPager implements WeblogEntriesPager {
     
     final List<String> tags;
     
+    // where the page starts, or null to skip to it by offset
+    final EntryCursor cursor;
+    
+    // are there more entries after this page?
+    boolean more = false;
+    
+    // first and last entries of the page, where the pages around it start
+    private WeblogEntryWrapper firstEntry = null;
+    private WeblogEntryWrapper lastEntry = null;
+    
     
     public AbstractWeblogEntriesPager(
             URLStrategy        strat,
@@ -72,6 +94,26 @@ public abstract class AbstractWeblogEntriesPager implements WeblogEntriesPager {
             List<String>       tags,
             int                page) {
         
+        this(strat, weblog, locale, pageLink, entryAnchor, dateString, catName, tags, page, null);
+    }
+    
+    
+    /**
+     * @param cursor cursor from a next or previous link the page was
+     *               requested with, or null to find the page by number.
+     */
+    public AbstractWeblogEntriesPager(
+            URLStrategy        strat,
+            Weblog             weblog,
+            String             locale,
+            String             pageLink,
+            String             entryAnchor,
+            String             dateString,
+            String             catName,
+            List<String>       tags,
+            int                page,
+            String             cursor) {
+        
         this.urlStrategy = strat;
         
         this.weblog = weblog;
@@ -89,6 +131,7 @@ public abstract class AbstractWeblogEntriesPager implements WeblogEntriesPager {
         
         this.page = Math.max(0, page);
         this.offset = length * page;
+        this.cursor = this.page > 0 ? EntryCursor.parse(cursor) : null;
         
         // get a message utils instance to handle i18n of messages
         Locale viewLocale = null;
@@ -107,7 +150,7 @@ public abstract class AbstractWeblogEntriesPager implements WeblogEntriesPager {
     
     
     public boolean hasMoreEntries() {
-        return false;
+        return more;
     }
     
     
@@ -126,7 +169,7 @@ public abstract class AbstractWeblogEntriesPager implements WeblogEntriesPager {
     @Override
     public String getNextLink() {
         if (hasMoreEntries()) {
-            return createURL(page, 1, weblog, locale, pageLink, entryAnchor, dateString, catName, tags);
+            return withNextCursor(createURL(page, 1, weblog, locale, pageLink, entryAnchor, dateString, catName, tags));
         }
         return null;
     }
@@ -144,7 +187,7 @@ public abstract class AbstractWeblogEntriesPager implements WeblogEntriesPager {
     @Override
     public String getPrevLink() {
         if (page > 0) {
-            return createURL(page, -1, weblog, locale, pageLink, entryAnchor, dateString, catName, tags);
+            return withPrevCursor(createURL(page, -1, weblog, locale, pageLink, entryAnchor, dateString, catName, tags));
         }
         return null;
     }
@@ -232,6 +275,95 @@ public abstract class AbstractWeblogEntriesPager implements WeblogEntriesPager {
     }
     
     
+    /**
+     * Get the page of entries matching the criteria, wrapped and grouped by
+     * day, latest first.  The page is found by seeking from the cursor when
+     * there is one, which costs the same however deep the page, or else by
+     * skipping the entries of the pages before it.
+     */
+    protected Map<Date, List<WeblogEntryWrapper>> loadEntries(WeblogEntrySearchCriteria wesc)
+            throws WebloggerException {
+        
+        if (cursor != null) {
+            cursor.apply(wesc);
+        } else {
+            wesc.setOffset(offset);
+        }
+        wesc.setMaxResults(length + 1);
+        WeblogEntryManager mgr = WebloggerFactory.getWeblogger().getWeblogEntryManager();
+        List<WeblogEntry> found = mgr.getWeblogEntries(wesc);
+        
+        List<WeblogEntry> pageEntries = new ArrayList<>(found.subList(0, Math.min(length, found.size())));
+        mgr.prefetch(pageEntries, EnumSet.allOf(WeblogEntryManager.Association.class));
+        if (cursor != null && cursor.isBefore()) {
+            // found walking back from the page after this one
+            Collections.reverse(pageEntries);
+            more = true;
+        } else {
+            more = found.size() > length;
+        }
+        
+        Map<Date, List<WeblogEntryWrapper>> days = new TreeMap<>(Collections.reverseOrder());
+        Calendar cal = Calendar.getInstance(weblog.getTimeZoneInstance());
+        for (WeblogEntry entry : pageEntries) {
+            WeblogEntryWrapper wrapped = WeblogEntryWrapper.wrap(entry, urlStrategy);
+            Date day = DateBoundaryUtil.getNoonOfDay(entry.getPubTime(), cal);
+            days.computeIfAbsent(day, k -> new ArrayList<>()).add(wrapped);
+            if (firstEntry == null) {
+                firstEntry = wrapped;
+            }
+            lastEntry = wrapped;
+        }
+        return days;
+    }
+    
+    
+    /**
+     * Add the cursor of the page after this one to a link to it.
+     */
+    protected String withNextCursor(String url) {
+        if (url == null || lastEntry == null) {
+            return url;
+        }
+        return addCursor(url, EntryCursor.after(lastEntry));
+    }
+    
+    
+    /**
+     * Add the cursor of the page before this one to a link to it, unless
+     * that's the first page which is cheap to find anyway.
+     */
+    protected String withPrevCursor(String url) {
+        if (url == null || firstEntry == null || page <= 1) {
+            return url;
+        }
+        return addCursor(url, EntryCursor.before(firstEntry));
+    }
+    
+    
+    private static String addCursor(String url, String cursor) {
+        return url + (url.indexOf('?') < 0 ? '?' : '&') + EntryCursor.PARAM + '=' + cursor;
+    }
+    
+    
+    /**
+     * Record the listing this pager shows as a dependency of the content
+     * being rendered, see CacheDependencies.
+     *
+     * @param startDate start of the date range shown, or null if the range
+     *                  is open ended.
+     */
+    protected void recordDependencies(Date startDate) {
+        String month = null;
+        if (startDate != null) {
+            SimpleDateFormat monthFormat = DateFormatUtil.get6charDateFormat();
+            monthFormat.setTimeZone(weblog.getTimeZoneInstance());
+            month = monthFormat.format(startDate);
+        }
+        CacheDependencies.recordEntries(weblog, catName, tags, month);
+    }
+    
+    
     /**
      * Create URL that encodes pager state using most appropriate forms of URL.
      * @param pageAdd To be added to page number, or 0 for no page number
@@ -34,6 +34,7 @@ import org.apache.roller.weblogger.pojos.WeblogEntryComment;
 import org.apache.roller.weblogger.pojos.WeblogEntryComment.ApprovalStatus;
 import org.apache.roller.weblogger.pojos.Weblog;
 import org.apache.roller.weblogger.pojos.wrapper.WeblogEntryCommentWrapper;
+import org.apache.roller.weblogger.util.cache.CacheDependencies;
 
 
 /**
@@ -92,6 +93,7 @@ public class CommentsPager extends AbstractPager<WeblogEntryCommentWrapper> {
                 startDate = cal.getTime();
             }
             
+            CacheDependencies.recordComments(weblog);
             try {
                 Weblogger roller = WebloggerFactory.getWeblogger();
                 WeblogEntryManager wmgr = roller.getWeblogEntryManager();
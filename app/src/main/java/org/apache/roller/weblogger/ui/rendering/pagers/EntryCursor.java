@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.ui.rendering.pagers;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+import org.apache.roller.weblogger.pojos.WeblogEntrySearchCriteria;
+import org.apache.roller.weblogger.pojos.wrapper.WeblogEntryWrapper;
+
+
+/**
+ * Where a page of entries starts, carried in the next and previous links of
+ * entry pagers so the page can be found by seeking from the entry next to
+ * it rather than by skipping every entry on the pages before.
+ *
+ * A cursor points either after the last entry of a page, for the page
+ * after, or before the first, for the page before.  It is opaque to
+ * clients, and one which doesn't parse is ignored so that the pager falls
+ * back to the page number.
+ */
+public final class EntryCursor {
+
+    /** Request parameter carrying the cursor. */
+    static final String PARAM = "cursor";
+
+    private static final char AFTER = 'a';
+    private static final char BEFORE = 'b';
+
+    // ids are at most 48 characters
+    private static final int MAX_LENGTH = 80;
+
+    private final boolean before;
+    private final long pubTime;
+    private final String id;
+
+
+    private EntryCursor(boolean before, long pubTime, String id) {
+        this.before = before;
+        this.pubTime = pubTime;
+        this.id = id;
+    }
+
+
+    /**
+     * Cursor for the page following the given entry.
+     */
+    static String after(WeblogEntryWrapper entry) {
+        return encode(AFTER, entry);
+    }
+
+
+    /**
+     * Cursor for the page preceding the given entry.
+     */
+    static String before(WeblogEntryWrapper entry) {
+        return encode(BEFORE, entry);
+    }
+
+
+    /**
+     * Parse a cursor as written by after() or before().
+     *
+     * @return the cursor, or null if value is null or not a valid cursor.
+     */
+    static EntryCursor parse(String value) {
+        if (value == null || value.isEmpty() || value.length() > MAX_LENGTH) {
+            return null;
+        }
+        try {
+            String cursor = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8);
+            int dot = cursor.indexOf('.');
+            if (dot < 2 || dot == cursor.length() - 1
+                    || (cursor.charAt(0) != AFTER && cursor.charAt(0) != BEFORE)) {
+                return null;
+            }
+            return new EntryCursor(cursor.charAt(0) == BEFORE,
+                    Long.parseLong(cursor.substring(1, dot), Character.MAX_RADIX),
+                    cursor.substring(dot + 1));
+        } catch (IllegalArgumentException e) {
+            // bad base64 or number
+            return null;
+        }
+    }
+
+
+    /**
+     * The cursor a request parameter stands for, written as after() and
+     * before() write it, so that values which parse alike, such as the
+     * same cursor with and without padding, give the same string.  Caches
+     * key pages on it.
+     *
+     * @return the cursor, or null if value is null or not a valid cursor.
+     */
+    public static String canonical(String value) {
+        EntryCursor cursor = parse(value);
+        return (cursor != null) ? cursor.toString() : null;
+    }
+
+
+    /**
+     * True if the cursor is for the page before the entry it points at,
+     * which is found by seeking the other way and reversing the result.
+     */
+    boolean isBefore() {
+        return before;
+    }
+
+
+    /**
+     * Restrict the criteria to entries beyond the cursor, in the direction
+     * the cursor points.  Criteria for a page before the cursor are turned
+     * around to sort oldest first.
+     */
+    void apply(WeblogEntrySearchCriteria wesc) {
+        wesc.setAfter(new Date(pubTime), id);
+        if (before) {
+            wesc.setSortOrder(WeblogEntrySearchCriteria.SortOrder.ASCENDING);
+        }
+    }
+
+
+    @Override
+    public String toString() {
+        return encode(before ? BEFORE : AFTER, pubTime, id);
+    }
+
+
+    private static String encode(char direction, WeblogEntryWrapper entry) {
+        return encode(direction, entry.getPubTime().getTime(), entry.getId());
+    }
+
+
+    private static String encode(char direction, long pubTime, String id) {
+        String cursor = direction + Long.toString(pubTime, Character.MAX_RADIX) + '.' + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
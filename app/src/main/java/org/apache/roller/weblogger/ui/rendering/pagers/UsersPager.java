@@ -29,6 +29,7 @@ import org.apache.roller.weblogger.business.WebloggerFactory;
 import org.apache.roller.weblogger.business.UserManager;
 import org.apache.roller.weblogger.pojos.User;
 import org.apache.roller.weblogger.pojos.wrapper.UserWrapper;
+import org.apache.roller.weblogger.util.cache.CacheDependencies;
 
 
 /**
@@ -122,6 +123,7 @@ public class UsersPager extends AbstractPager<UserWrapper> {
             int offset = getPage() * length;
             
             List<UserWrapper> results = new ArrayList<>();
+            CacheDependencies.recordWeblogs();
             try {
                 Weblogger roller = WebloggerFactory.getWeblogger();
                 UserManager umgr = roller.getUserManager();
@@ -19,7 +19,6 @@
 package org.apache.roller.weblogger.ui.rendering.pagers;
 
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
@@ -29,7 +28,6 @@ import java.util.TreeMap;
 import java.util.TimeZone;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.apache.roller.weblogger.business.WebloggerFactory;
 import org.apache.roller.weblogger.pojos.WeblogEntry;
 import org.apache.roller.weblogger.pojos.Weblog;
 import org.apache.roller.weblogger.pojos.WeblogEntrySearchCriteria;
@@ -55,9 +53,6 @@ public class WeblogEntriesDayPager extends AbstractWeblogEntriesPager {
     // collection for the pager
     private Map<Date, List<WeblogEntryWrapper>> entries = null;
     
-    // are there more pages?
-    private boolean more = false;
-    
     
     public WeblogEntriesDayPager(
             URLStrategy        strat,
@@ -68,9 +63,10 @@ public class WeblogEntriesDayPager extends AbstractWeblogEntriesPager {
             String             dateString,
             String             catName,
             List<String>       tags,
-            int                page) {
+            int                page,
+            String             cursor) {
         
-        super(strat, weblog, locale, pageLink, entryAnchor, dateString, catName, tags, page);
+        super(strat, weblog, locale, pageLink, entryAnchor, dateString, catName, tags, page, cursor);
 
         TimeZone tz = weblog.getTimeZoneInstance();
 
@@ -118,6 +114,7 @@ public class WeblogEntriesDayPager extends AbstractWeblogEntriesPager {
         
         if (entries == null) {
             entries = new TreeMap<>(Collections.reverseOrder());
+            recordDependencies(startDate);
             try {
                 WeblogEntrySearchCriteria wesc = new WeblogEntrySearchCriteria();
                 wesc.setWeblog(weblog);
@@ -127,32 +124,7 @@ public class WeblogEntriesDayPager extends AbstractWeblogEntriesPager {
                 wesc.setTags(tags);
                 wesc.setStatus(WeblogEntry.PubStatus.PUBLISHED);
                 wesc.setLocale(locale);
-                wesc.setOffset(offset);
-                wesc.setMaxResults(length+1);
-                Map<Date, List<WeblogEntry>> mmap =
-                        WebloggerFactory.getWeblogger().getWeblogEntryManager().getWeblogEntryObjectMap(wesc);
-
-                // need to wrap pojos
-                int count = 0;
-                for (Map.Entry<Date, List<WeblogEntry>> entry : mmap.entrySet()) {
-                    // now we need to go through each entry in a day and wrap
-                    List<WeblogEntryWrapper> wrapped = new ArrayList<>();
-                    List<WeblogEntry> unwrapped = entry.getValue();
-                    for (int i=0; i < unwrapped.size(); i++) {
-                        if (count++ < length) {
-                            wrapped.add(i,WeblogEntryWrapper.wrap(unwrapped.get(i), urlStrategy));
-                        } else {
-                            more = true;
-                        }
-                    }
-                    
-                    // done with that day, put it in the map
-                    if (!wrapped.isEmpty()) {
-                        entries.put(entry.getKey(), wrapped);
-                    }
-                }
-                
-                
+                entries.putAll(loadEntries(wesc));
             } catch (Exception e) {
                 log.error("ERROR: getting entry month map", e);
             }
@@ -176,7 +148,7 @@ public class WeblogEntriesDayPager extends AbstractWeblogEntriesPager {
     @Override
     public String getNextLink() {
         if (more) {
-            return createURL(page, 1, weblog, locale, pageLink, null, dateString, catName, tags);
+            return withNextCursor(createURL(page, 1, weblog, locale, pageLink, null, dateString, catName, tags));
         }
         return null;
     }
@@ -194,7 +166,7 @@ public class WeblogEntriesDayPager extends AbstractWeblogEntriesPager {
     @Override
     public String getPrevLink() {
         if (page > 0) {
-            return createURL(page, -1, weblog, locale, pageLink, null, dateString, catName, tags);
+            return withPrevCursor(createURL(page, -1, weblog, locale, pageLink, null, dateString, catName, tags));
         }
         return null;
     }
@@ -18,7 +18,6 @@
 
 package org.apache.roller.weblogger.ui.rendering.pagers;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
@@ -27,7 +26,6 @@ import java.util.TreeMap;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.roller.weblogger.business.URLStrategy;
-import org.apache.roller.weblogger.business.WebloggerFactory;
 import org.apache.roller.weblogger.pojos.WeblogEntry;
 import org.apache.roller.weblogger.pojos.Weblog;
 import org.apache.roller.weblogger.pojos.WeblogEntrySearchCriteria;
@@ -44,9 +42,6 @@ public class WeblogEntriesLatestPager extends AbstractWeblogEntriesPager {
     // collection for the pager
     private Map<Date, List<WeblogEntryWrapper>> entries = null;
     
-    // are there more pages?
-    private boolean more = false;
-    
     
     public WeblogEntriesLatestPager(
             URLStrategy        strat,
@@ -57,9 +52,10 @@ public class WeblogEntriesLatestPager extends AbstractWeblogEntriesPager {
             String             dateString,
             String             catName,
             List<String>       tags,
-            int                page) {
+            int                page,
+            String             cursor) {
         
-        super(strat, weblog, locale, pageLink, entryAnchor, dateString, catName, tags, page);
+        super(strat, weblog, locale, pageLink, entryAnchor, dateString, catName, tags, page, cursor);
         
         // initialize the pager collection
         getEntries();
@@ -71,6 +67,7 @@ public class WeblogEntriesLatestPager extends AbstractWeblogEntriesPager {
         
         if (entries == null) {
             entries = new TreeMap<>(Collections.reverseOrder());
+            recordDependencies(null);
             try {
                 WeblogEntrySearchCriteria wesc = new WeblogEntrySearchCriteria();
                 wesc.setWeblog(weblog);
@@ -79,29 +76,7 @@ public class WeblogEntriesLatestPager extends AbstractWeblogEntriesPager {
                 wesc.setTags(tags);
                 wesc.setStatus(WeblogEntry.PubStatus.PUBLISHED);
                 wesc.setLocale(locale);
-                wesc.setOffset(offset);
-                wesc.setMaxResults(length+1);
-                Map<Date, List<WeblogEntry>> mmap = WebloggerFactory.getWeblogger().getWeblogEntryManager().getWeblogEntryObjectMap(wesc);
-
-                // need to wrap pojos
-                int count = 0;
-                for (Map.Entry<Date, List<WeblogEntry>> entry : mmap.entrySet()) {
-                    // now we need to go through each entry in a day and wrap
-                    List<WeblogEntryWrapper> wrapped = new ArrayList<>();
-                    List<WeblogEntry> unwrapped = entry.getValue();
-                    for (int i=0; i < unwrapped.size(); i++) {
-                        if (count++ < length) {
-                            wrapped.add(i,WeblogEntryWrapper.wrap(unwrapped.get(i), urlStrategy));
-                        } else {
-                            more = true;
-                        }
-                    }
-                    
-                    // done with that day, put it in the map
-                    if (!wrapped.isEmpty()) {
-                        entries.put(entry.getKey(), wrapped);
-                    }
-                }
+                entries.putAll(loadEntries(wesc));
             } catch (Exception e) {
                 log.error("ERROR: getting entry month map", e);
             }
@@ -110,10 +85,4 @@ public class WeblogEntriesLatestPager extends AbstractWeblogEntriesPager {
         return entries;
     }
     
-    
-    @Override
-    public boolean hasMoreEntries() {
-        return more;
-    }
-    
 }
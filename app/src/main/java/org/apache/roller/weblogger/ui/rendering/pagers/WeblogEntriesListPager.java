@@ -21,17 +21,21 @@ package org.apache.roller.weblogger.ui.rendering.pagers;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
+import java.util.EnumSet;
 import java.util.List;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.roller.weblogger.business.URLStrategy;
+import org.apache.roller.weblogger.business.WeblogEntryManager;
 import org.apache.roller.weblogger.business.WebloggerFactory;
 import org.apache.roller.weblogger.pojos.User;
 import org.apache.roller.weblogger.pojos.WeblogEntry;
 import org.apache.roller.weblogger.pojos.Weblog;
 import org.apache.roller.weblogger.pojos.WeblogEntrySearchCriteria;
 import org.apache.roller.weblogger.pojos.wrapper.WeblogEntryWrapper;
+import org.apache.roller.weblogger.util.cache.CacheDependencies;
 
 
 /**
@@ -50,6 +54,9 @@ public class WeblogEntriesListPager extends AbstractPager<WeblogEntryWrapper> {
     private String queryCat = null;
     private List<String> queryTags = null;
     
+    // where the page starts, or null to skip to it by offset
+    private EntryCursor cursor = null;
+    
     // entries for the pager
     private List<WeblogEntryWrapper> entries;
     
@@ -72,6 +79,28 @@ public class WeblogEntriesListPager extends AbstractPager<WeblogEntryWrapper> {
             int            pageNum,
             int            length) {
         
+        this(strat, baseUrl, queryWeblog, queryUser, queryCat, queryTags,
+                locale, sinceDays, pageNum, length, null);
+    }
+    
+    
+    /**
+     * @param cursor cursor from a next or previous link the page was
+     *               requested with, or null to find the page by number.
+     */
+    public WeblogEntriesListPager(
+            URLStrategy    strat,
+            String         baseUrl,
+            Weblog         queryWeblog,
+            User           queryUser,
+            String         queryCat,
+            List<String>   queryTags,
+            String         locale,
+            int            sinceDays,
+            int            pageNum,
+            int            length,
+            String         cursor) {
+        
         super(strat, baseUrl, pageNum);
         
         // store the data
@@ -82,6 +111,9 @@ public class WeblogEntriesListPager extends AbstractPager<WeblogEntryWrapper> {
         this.locale = locale;
         this.sinceDays = sinceDays;
         this.length = length;
+        if (getPage() > 0) {
+            this.cursor = EntryCursor.parse(cursor);
+        }
         
         // initialize the pager collection
         getItems();
@@ -105,6 +137,7 @@ public class WeblogEntriesListPager extends AbstractPager<WeblogEntryWrapper> {
                 startDate = cal.getTime();
             }
             
+            CacheDependencies.recordEntries(queryWeblog, queryCat, queryTags, null);
             try {
                 WeblogEntrySearchCriteria wesc = new WeblogEntrySearchCriteria();
                 wesc.setWeblog(queryWeblog);
@@ -114,19 +147,26 @@ public class WeblogEntriesListPager extends AbstractPager<WeblogEntryWrapper> {
                 wesc.setTags(queryTags);
                 wesc.setStatus(WeblogEntry.PubStatus.PUBLISHED);
                 wesc.setLocale(locale);
-                wesc.setOffset(offset);
+                if (cursor != null) {
+                    cursor.apply(wesc);
+                } else {
+                    wesc.setOffset(offset);
+                }
                 wesc.setMaxResults(length+1);
-                List<WeblogEntry> rawEntries = WebloggerFactory.getWeblogger()
-                        .getWeblogEntryManager().getWeblogEntries(wesc);
+                WeblogEntryManager mgr = WebloggerFactory.getWeblogger().getWeblogEntryManager();
+                List<WeblogEntry> rawEntries = mgr.getWeblogEntries(wesc);
+                List<WeblogEntry> pageEntries = rawEntries.subList(0, Math.min(length, rawEntries.size()));
+                mgr.prefetch(pageEntries, EnumSet.allOf(WeblogEntryManager.Association.class));
 
                 // wrap the results
-                int count = 0;
-                for (WeblogEntry entry : rawEntries) {
-                    if (count++ < length) {
-                        results.add(WeblogEntryWrapper.wrap(entry, urlStrategy));
-                    }
+                for (WeblogEntry entry : pageEntries) {
+                    results.add(WeblogEntryWrapper.wrap(entry, urlStrategy));
                 }
-                if (rawEntries.size() > length) {
+                if (cursor != null && cursor.isBefore()) {
+                    // found walking back from the page after this one
+                    Collections.reverse(results);
+                    more = true;
+                } else if (rawEntries.size() > length) {
                     more = true;
                 }
                 
@@ -145,6 +185,27 @@ public class WeblogEntriesListPager extends AbstractPager<WeblogEntryWrapper> {
     public boolean hasMoreItems() {
         return more;
     }
+    
+    
+    @Override
+    public String getNextLink() {
+        String link = super.getNextLink();
+        if (link != null && !getItems().isEmpty()) {
+            link += '&' + EntryCursor.PARAM + '=' + EntryCursor.after(getItems().get(getItems().size() - 1));
+        }
+        return link;
+    }
+    
+    
+    @Override
+    public String getPrevLink() {
+        String link = super.getPrevLink();
+        // the first page is cheap to find anyway
+        if (link != null && getPage() > 1 && !getItems().isEmpty()) {
+            link += '&' + EntryCursor.PARAM + '=' + EntryCursor.before(getItems().get(0));
+        }
+        return link;
+    }
 
     /** Get last updated time from items in pager */
     public Date getLastUpdated() {
@@ -23,7 +23,6 @@ import java.util.*;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.apache.roller.weblogger.business.WebloggerFactory;
 import org.apache.roller.weblogger.pojos.WeblogEntry;
 import org.apache.roller.weblogger.pojos.Weblog;
 import org.apache.roller.weblogger.pojos.WeblogEntrySearchCriteria;
@@ -49,9 +48,6 @@ public class WeblogEntriesMonthPager extends AbstractWeblogEntriesPager {
     // collection for the pager
     private Map<Date, List<WeblogEntryWrapper>> entries = null;
     
-    // are there more pages?
-    private boolean more = false;
-    
     
     public WeblogEntriesMonthPager(
             URLStrategy        strat,
@@ -62,9 +58,10 @@ public class WeblogEntriesMonthPager extends AbstractWeblogEntriesPager {
             String             dateString,
             String             catName,
             List<String>       tags,
-            int                page) {
+            int                page,
+            String             cursor) {
         
-        super(strat, weblog, locale, pageLink, entryAnchor, dateString, catName, tags, page);
+        super(strat, weblog, locale, pageLink, entryAnchor, dateString, catName, tags, page, cursor);
 
         TimeZone tz = weblog.getTimeZoneInstance();
 
@@ -108,6 +105,7 @@ public class WeblogEntriesMonthPager extends AbstractWeblogEntriesPager {
         
         if (entries == null) {
             entries = new TreeMap<>(Collections.reverseOrder());
+            recordDependencies(startDate);
             try {
                 WeblogEntrySearchCriteria wesc = new WeblogEntrySearchCriteria();
                 wesc.setWeblog(weblog);
@@ -117,30 +115,7 @@ public class WeblogEntriesMonthPager extends AbstractWeblogEntriesPager {
                 wesc.setTags(tags);
                 wesc.setStatus(WeblogEntry.PubStatus.PUBLISHED);
                 wesc.setLocale(locale);
-                wesc.setOffset(offset);
-                wesc.setMaxResults(length+1);
-                Map<Date, List<WeblogEntry>> mmap = WebloggerFactory.getWeblogger()
-                        .getWeblogEntryManager().getWeblogEntryObjectMap(wesc);
-
-                // need to wrap pojos
-                int count = 0;
-                for (Map.Entry<Date, List<WeblogEntry>> entry : mmap.entrySet()) {
-                    // now we need to go through each entry in a day and wrap
-                    List<WeblogEntryWrapper> wrapped = new ArrayList<>();
-                    List<WeblogEntry> unwrapped = entry.getValue();
-                    for (int i=0; i < unwrapped.size(); i++) {
-                        if (count++ < length) {
-                            wrapped.add(i,WeblogEntryWrapper.wrap(unwrapped.get(i), urlStrategy));
-                        } else {
-                            more = true;
-                        }
-                    }
-                    
-                    // done with that day, put it in the map
-                    if (!wrapped.isEmpty()) {
-                        entries.put(entry.getKey(), wrapped);
-                    }
-                }
+                entries.putAll(loadEntries(wesc));
             } catch (Exception e) {
                 log.error("ERROR: getting entry month map", e);
             }
@@ -164,7 +139,7 @@ public class WeblogEntriesMonthPager extends AbstractWeblogEntriesPager {
     @Override
     public String getNextLink() {
         if (more) {
-            return createURL(page, 1, weblog, locale, pageLink, null, dateString, catName, tags);
+            return withNextCursor(createURL(page, 1, weblog, locale, pageLink, null, dateString, catName, tags));
         }
         return null;
     }
@@ -182,7 +157,7 @@ public class WeblogEntriesMonthPager extends AbstractWeblogEntriesPager {
     @Override
     public String getPrevLink() {
         if (offset > 0) {
-            return createURL(page, -1, weblog, locale, pageLink, null, dateString, catName, tags);
+            return withPrevCursor(createURL(page, -1, weblog, locale, pageLink, null, dateString, catName, tags));
         }
         return null;
     }
@@ -18,11 +18,14 @@
 
 package org.apache.roller.weblogger.ui.rendering.pagers;
 
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.roller.util.DateFormatUtil;
 import org.apache.roller.weblogger.WebloggerException;
 import org.apache.roller.weblogger.business.URLStrategy;
 import org.apache.roller.weblogger.business.Weblogger;
@@ -33,6 +36,7 @@ import org.apache.roller.weblogger.pojos.WeblogEntry.PubStatus;
 import org.apache.roller.weblogger.pojos.Weblog;
 import org.apache.roller.weblogger.pojos.wrapper.WeblogEntryWrapper;
 import org.apache.roller.weblogger.util.Utilities;
+import org.apache.roller.weblogger.util.cache.CacheDependencies;
 
 
 /**
@@ -147,6 +151,7 @@ public class WeblogEntriesPermalinkPager extends AbstractWeblogEntriesPager {
                         && nextEntry.getStatus().equals(PubStatus.PUBLISHED)) {
                     nextEntry = null;
                 }
+                recordNeighbour(nextEntry);
             } catch (WebloggerException e) {
                 log.error("ERROR: getting next entry", e);
             }
@@ -167,6 +172,7 @@ public class WeblogEntriesPermalinkPager extends AbstractWeblogEntriesPager {
                         && prevEntry.getStatus().equals(PubStatus.PUBLISHED)) {
                     prevEntry = null;
                 }
+                recordNeighbour(prevEntry);
             } catch (WebloggerException e) {
                 log.error("ERROR: getting prev entry", e);
             }
@@ -175,4 +181,54 @@ public class WeblogEntriesPermalinkPager extends AbstractWeblogEntriesPager {
         return prevEntry;
     }
     
+    
+    
+    /**
+     * The next and previous links change along with the neighbouring entry
+     * or when an entry is published in between, so depend on the listings
+     * for the months the gap spans.
+     */
+    private void recordNeighbour(WeblogEntry neighbour) {
+        
+        if (currEntry == null || currEntry.getPubTime() == null) {
+            return;
+        }
+        
+        if (neighbour == null || neighbour.getPubTime() == null) {
+            // anything newer or older would become the neighbour
+            CacheDependencies.recordEntries(weblog, null, null, null);
+            return;
+        }
+        
+        CacheDependencies.recordEntry(neighbour);
+        
+        Date from = currEntry.getPubTime();
+        Date to = neighbour.getPubTime();
+        if (from.after(to)) {
+            Date swap = from;
+            from = to;
+            to = swap;
+        }
+        
+        SimpleDateFormat monthFormat = DateFormatUtil.get6charDateFormat();
+        monthFormat.setTimeZone(weblog.getTimeZoneInstance());
+        Calendar cal = Calendar.getInstance(weblog.getTimeZoneInstance());
+        cal.setTime(from);
+        cal.set(Calendar.DAY_OF_MONTH, 1);
+        cal.set(Calendar.HOUR_OF_DAY, 0);
+        cal.set(Calendar.MINUTE, 0);
+        cal.set(Calendar.SECOND, 0);
+        cal.set(Calendar.MILLISECOND, 0);
+        
+        for (int months = 0; !cal.getTime().after(to); months++) {
+            if (months == 12) {
+                // a big gap, just depend on everything
+                CacheDependencies.recordEntries(weblog, null, null, null);
+                return;
+            }
+            CacheDependencies.recordEntries(weblog, null, null, monthFormat.format(cal.getTime()));
+            cal.add(Calendar.MONTH, 1);
+        }
+    }
+    
 }
@@ -31,6 +31,7 @@ import org.apache.roller.weblogger.business.WebloggerFactory;
 import org.apache.roller.weblogger.business.WeblogManager;
 import org.apache.roller.weblogger.pojos.Weblog;
 import org.apache.roller.weblogger.pojos.wrapper.WeblogWrapper;
+import org.apache.roller.weblogger.util.cache.CacheDependencies;
 
 
 /**
@@ -127,6 +128,7 @@ public class WeblogsPager extends AbstractPager<WeblogWrapper> {
             int offset = getPage() * length;
             
             List<WeblogWrapper> results = new ArrayList<>();
+            CacheDependencies.recordWeblogs();
             Date startDate = null;
             if (sinceDays != -1) {
                 Calendar cal = Calendar.getInstance();
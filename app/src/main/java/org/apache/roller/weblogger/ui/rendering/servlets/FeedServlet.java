@@ -21,6 +21,7 @@ package org.apache.roller.weblogger.ui.rendering.servlets;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -39,6 +40,7 @@ import org.apache.roller.weblogger.pojos.Template;
 import org.apache.roller.weblogger.pojos.TemplateRendition.TemplateLanguage;
 import org.apache.roller.weblogger.pojos.Weblog;
 import org.apache.roller.weblogger.ui.rendering.util.WeblogFeedRequest;
+import org.apache.roller.weblogger.util.cache.CacheDependencies;
 import org.apache.roller.weblogger.util.cache.CachedContent;
 import org.apache.roller.weblogger.ui.rendering.Renderer;
 import org.apache.roller.weblogger.ui.rendering.RendererManager;
@@ -47,6 +49,7 @@ import org.apache.roller.weblogger.ui.rendering.model.ModelLoader;
 import org.apache.roller.weblogger.ui.rendering.model.SearchResultsFeedModel;
 import org.apache.roller.weblogger.ui.rendering.util.cache.SiteWideCache;
 import org.apache.roller.weblogger.ui.rendering.util.cache.WeblogFeedCache;
+import org.apache.roller.weblogger.ui.rendering.util.ContentEncodingUtil;
 import org.apache.roller.weblogger.ui.rendering.util.ModDateHeaderUtil;
 
 
@@ -59,6 +62,7 @@ public class FeedServlet extends HttpServlet {
 
     private WeblogFeedCache weblogFeedCache = null;
     private SiteWideCache siteWideCache = null;
+    private boolean compressContent = false;
 
 
     /**
@@ -76,6 +80,10 @@ public class FeedServlet extends HttpServlet {
 
         // get a reference to the site wide cache
         this.siteWideCache = SiteWideCache.getInstance();
+
+        // gzip rendered feeds once, rather than on every response
+        this.compressContent = WebloggerConfig
+                .getBooleanProperty("compression.gzipResponse.enabled");
     }
 
 
@@ -163,14 +171,22 @@ public class FeedServlet extends HttpServlet {
             cachedContent = (CachedContent) siteWideCache.get(cacheKey);
         } else {
             cachedContent = (CachedContent) weblogFeedCache.get(cacheKey,
-                    lastModified);
+                    weblog.getHandle(), lastModified);
         }
 
-        if (cachedContent != null) {
+        // content may live off-heap, so hold on to it while we write it
+        if (cachedContent != null && cachedContent.retain()) {
             log.debug("HIT " + cacheKey);
 
-            response.setContentLength(cachedContent.getContent().length);
-            response.getOutputStream().write(cachedContent.getContent());
+            try {
+                if (!ContentEncodingUtil.respondIfNoneMatch(request, response,
+                        cachedContent)) {
+                    ContentEncodingUtil.writeContent(request, response,
+                            cachedContent);
+                }
+            } finally {
+                cachedContent.release();
+            }
             return;
 
         } else {
@@ -216,127 +232,139 @@ public class FeedServlet extends HttpServlet {
             feedRequest.setLocale(weblog.getLocale());
         }
 
-        // looks like we need to render content
-        HashMap<String, Object> model = new HashMap<>();
-        String pageId;
+        // record what the content depends on, until it has been rendered
+        CachedContent rendererOutput;
+        Set<String> dependencies;
+        CacheDependencies.begin();
         try {
-            // determine what template to render with
-            boolean siteWide = WebloggerRuntimeConfig.isSiteWideWeblog(weblog
-                    .getHandle());
-            if (siteWide && "entries".equals(feedRequest.getType())
-                    && feedRequest.getTerm() != null) {
-                pageId = "site-search-atom.vm";
-
-            } else if ("entries".equals(feedRequest.getType())
-                    && feedRequest.getTerm() != null) {
-                pageId = "feeds/weblog-search-atom.vm";
-
-            } else if (siteWide) {
-                pageId = "site-" + feedRequest.getType() + "-"
-                        + feedRequest.getFormat() + ".vm";
-
-            } else {
-                pageId = "weblog-" + feedRequest.getType() + "-"
-                        + feedRequest.getFormat() + ".vm";
-            }
-
-            // populate the rendering model
-            Map<String, Object> initData = new HashMap<>();
-            initData.put("parsedRequest", feedRequest);
-
-            // define url strategy
-            initData.put("urlStrategy", WebloggerFactory.getWeblogger()
-                    .getUrlStrategy());
-
-            // Load models for feeds
-            String feedModels = WebloggerConfig
-                    .getProperty("rendering.feedModels");
-            ModelLoader.loadModels(feedModels, model, initData, true);
-
-            // Load special models for site-wide blog
-
-            if (siteWide) {
-                String siteModels = WebloggerConfig
-                        .getProperty("rendering.siteModels");
-                ModelLoader.loadModels(siteModels, model, initData, true);
-            }
+            CacheDependencies.recordWeblog(weblog);
 
-            // Load search models if search feed
-            if ("entries".equals(feedRequest.getType())
-                    && feedRequest.getTerm() != null) {
-                ModelLoader.loadModels(SearchResultsFeedModel.class.getName(),
-                        model, initData, true);
-            }
-
-        } catch (WebloggerException ex) {
-            log.error("ERROR loading model for page", ex);
+            // looks like we need to render content
+            HashMap<String, Object> model = new HashMap<>();
+            String pageId;
+            try {
+                // determine what template to render with
+                boolean siteWide = WebloggerRuntimeConfig.isSiteWideWeblog(weblog
+                        .getHandle());
+                if (siteWide && "entries".equals(feedRequest.getType())
+                        && feedRequest.getTerm() != null) {
+                    pageId = "site-search-atom.vm";
+
+                } else if ("entries".equals(feedRequest.getType())
+                        && feedRequest.getTerm() != null) {
+                    pageId = "feeds/weblog-search-atom.vm";
+
+                } else if (siteWide) {
+                    pageId = "site-" + feedRequest.getType() + "-"
+                            + feedRequest.getFormat() + ".vm";
+
+                } else {
+                    pageId = "weblog-" + feedRequest.getType() + "-"
+                            + feedRequest.getFormat() + ".vm";
+                }
+
+                // populate the rendering model
+                Map<String, Object> initData = new HashMap<>();
+                initData.put("parsedRequest", feedRequest);
+
+                // define url strategy
+                initData.put("urlStrategy", WebloggerFactory.getWeblogger()
+                        .getUrlStrategy());
+
+                // Load models for feeds
+                String feedModels = WebloggerConfig
+                        .getProperty("rendering.feedModels");
+                ModelLoader.loadModels(feedModels, model, initData, true);
+
+                // Load special models for site-wide blog
+
+                if (siteWide) {
+                    String siteModels = WebloggerConfig
+                            .getProperty("rendering.siteModels");
+                    ModelLoader.loadModels(siteModels, model, initData, true);
+                }
+
+                // Load search models if search feed
+                if ("entries".equals(feedRequest.getType())
+                        && feedRequest.getTerm() != null) {
+                    ModelLoader.loadModels(SearchResultsFeedModel.class.getName(),
+                            model, initData, true);
+                }
 
-            if (!response.isCommitted()) {
-                response.reset();
+            } catch (WebloggerException ex) {
+                log.error("ERROR loading model for page", ex);
+                if (!response.isCommitted()) {
+                    response.reset();
+                }
+                response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                return;
             }
-            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            return;
-        }
-
-        // lookup Renderer we are going to use
-        Renderer renderer;
-        try {
-            log.debug("Looking up renderer");
-            Template template = new StaticTemplate(pageId, TemplateLanguage.VELOCITY);
-            renderer = RendererManager.getRenderer(template,
-                    MobileDeviceRepository.DeviceType.standard);
-        } catch (Exception e) {
-            // nobody wants to render my content :(
-
-            // TODO: this log message has been disabled because it fills up
-            // the logs with useless errors due to the fact that the way these
-            // template ids are formed comes directly from the request and it
-            // often gets bunk data causing invalid template ids.
-            // at some point we should have better validation on the input so
-            // that we can quickly dispatch invalid feed requests and only
-            // get this far if we expect the template to be found
-            // log.error("Couldn't find renderer for page "+pageId, e);
 
-            if (!response.isCommitted()) {
-                response.reset();
+            // lookup Renderer we are going to use
+            Renderer renderer;
+            try {
+                log.debug("Looking up renderer");
+                Template template = new StaticTemplate(pageId, TemplateLanguage.VELOCITY);
+                renderer = RendererManager.getRenderer(template,
+                        MobileDeviceRepository.DeviceType.standard);
+            } catch (Exception e) {
+                // nobody wants to render my content :(
+
+                // TODO: this log message has been disabled because it fills up
+                // the logs with useless errors due to the fact that the way these
+                // template ids are formed comes directly from the request and it
+                // often gets bunk data causing invalid template ids.
+                // at some point we should have better validation on the input so
+                // that we can quickly dispatch invalid feed requests and only
+                // get this far if we expect the template to be found
+                // log.error("Couldn't find renderer for page "+pageId, e);
+
+                if (!response.isCommitted()) {
+                    response.reset();
+                }
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return;
             }
-            response.sendError(HttpServletResponse.SC_NOT_FOUND);
-            return;
-        }
 
-        // render content. use default size of 24K for a standard page
-        CachedContent rendererOutput = new CachedContent(RollerConstants.TWENTYFOUR_KB_IN_BYTES);
-        try {
-            log.debug("Doing rendering");
-            renderer.render(model, rendererOutput.getCachedWriter());
-
-            // flush rendered output and close
-            rendererOutput.flush();
-            rendererOutput.close();
-        } catch (Exception e) {
-            // bummer, error during rendering
-            log.error("Error during rendering for page " + pageId, e);
-
-            if (!response.isCommitted()) {
-                response.reset();
+            // render content. use default size of 24K for a standard page
+            rendererOutput = new CachedContent(
+                    RollerConstants.TWENTYFOUR_KB_IN_BYTES, null, compressContent);
+            try {
+                log.debug("Doing rendering");
+                renderer.render(model, rendererOutput.getCachedWriter());
+
+                // flush rendered output and close
+                rendererOutput.flush();
+                rendererOutput.close();
+            } catch (Exception e) {
+                // bummer, error during rendering
+                log.error("Error during rendering for page " + pageId, e);
+
+                if (!response.isCommitted()) {
+                    response.reset();
+                }
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return;
             }
-            response.sendError(HttpServletResponse.SC_NOT_FOUND);
-            return;
+        } finally {
+            dependencies = CacheDependencies.end();
         }
 
         // post rendering process
 
         // flush rendered content to response
         log.debug("Flushing response output");
-        response.setContentLength(rendererOutput.getContent().length);
-        response.getOutputStream().write(rendererOutput.getContent());
+        if (!ContentEncodingUtil.respondIfNoneMatch(request, response,
+                rendererOutput)) {
+            ContentEncodingUtil.writeContent(request, response, rendererOutput);
+        }
 
         // cache rendered content. only cache if user is not logged in?
         log.debug("PUT " + cacheKey);
         if (isSiteWide) {
-            siteWideCache.put(cacheKey, rendererOutput);
+            siteWideCache.put(cacheKey, rendererOutput, dependencies);
         } else {
-            weblogFeedCache.put(cacheKey, rendererOutput);
+            weblogFeedCache.put(cacheKey, rendererOutput, dependencies);
         }
 
         log.debug("Exiting");
@@ -44,6 +44,7 @@ import org.apache.roller.weblogger.ui.rendering.Renderer;
 import org.apache.roller.weblogger.ui.rendering.RendererManager;
 import org.apache.roller.weblogger.ui.rendering.model.ModelLoader;
 import org.apache.roller.weblogger.ui.rendering.util.InvalidRequestException;
+import org.apache.roller.weblogger.ui.rendering.util.ContentEncodingUtil;
 import org.apache.roller.weblogger.ui.rendering.util.ModDateHeaderUtil;
 import org.apache.roller.weblogger.ui.rendering.util.WeblogEntryCommentForm;
 import org.apache.roller.weblogger.ui.rendering.util.WeblogPageRequest;
@@ -51,6 +52,7 @@ import org.apache.roller.weblogger.ui.rendering.util.cache.SiteWideCache;
 import org.apache.roller.weblogger.ui.rendering.util.cache.WeblogPageCache;
 import org.apache.roller.weblogger.util.BannedwordslistChecker;
 import org.apache.roller.weblogger.util.I18nMessages;
+import org.apache.roller.weblogger.util.cache.CacheDependencies;
 import org.apache.roller.weblogger.util.cache.CachedContent;
 
 import javax.servlet.ServletConfig;
@@ -64,6 +66,7 @@ import java.io.IOException;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.regex.Pattern;
 
 /**
@@ -77,6 +80,7 @@ public class PageServlet extends HttpServlet {
     private static Pattern robotPattern = null;
     // for caching
     private boolean excludeOwnerPages = false;
+    private boolean compressContent = false;
     private WeblogPageCache weblogPageCache = null;
     private SiteWideCache siteWideCache = null;
 
@@ -96,6 +100,10 @@ public class PageServlet extends HttpServlet {
         this.excludeOwnerPages = WebloggerConfig
                 .getBooleanProperty("cache.excludeOwnerEditPages");
 
+        // gzip rendered content once, rather than on every response
+        this.compressContent = WebloggerConfig
+                .getBooleanProperty("compression.gzipResponse.enabled");
+
         // get a reference to the weblog page cache
         this.weblogPageCache = WeblogPageCache.getInstance();
 
@@ -242,22 +250,30 @@ public class PageServlet extends HttpServlet {
                 cachedContent = (CachedContent) siteWideCache.get(cacheKey);
             } else {
                 cachedContent = (CachedContent) weblogPageCache.get(cacheKey,
-                        lastModified);
+                        weblog.getHandle(), lastModified);
             }
 
-            if (cachedContent != null) {
+            // content may live off-heap, so hold on to it while we write it
+            if (cachedContent != null && cachedContent.retain()) {
                 log.debug("HIT " + cacheKey);
 
-                // allow for hit counting
-                if (!isSiteWide
-                        && (pageRequest.isWebsitePageHit() || pageRequest
-                                .isOtherPageHit())) {
-                    this.processHit(weblog);
-                }
+                try {
+                    // allow for hit counting
+                    if (!isSiteWide
+                            && (pageRequest.isWebsitePageHit() || pageRequest
+                                    .isOtherPageHit())) {
+                        this.processHit(weblog);
+                    }
 
-                response.setContentLength(cachedContent.getContent().length);
-                response.setContentType(cachedContent.getContentType());
-                response.getOutputStream().write(cachedContent.getContent());
+                    if (!ContentEncodingUtil.respondIfNoneMatch(request,
+                            response, cachedContent)) {
+                        response.setContentType(cachedContent.getContentType());
+                        ContentEncodingUtil.writeContent(request, response,
+                                cachedContent);
+                    }
+                } finally {
+                    cachedContent.release();
+                }
                 return;
             } else {
                 log.debug("MISS " + cacheKey);
@@ -439,97 +455,109 @@ public class PageServlet extends HttpServlet {
             }
         }
 
-        HashMap<String, Object> model = new HashMap<>();
+        // record what the content depends on, until it has been rendered
+        CachedContent rendererOutput;
+        Set<String> dependencies;
+        CacheDependencies.begin();
         try {
-            PageContext pageContext = JspFactory.getDefaultFactory()
-                    .getPageContext(this, request, response, "", false,
-                            RollerConstants.EIGHT_KB_IN_BYTES, true);
-
-            // special hack for menu tag
-            request.setAttribute("pageRequest", pageRequest);
-
-            // populate the rendering model
-            Map<String, Object> initData = new HashMap<>();
-            initData.put("requestParameters", request.getParameterMap());
-            initData.put("parsedRequest", pageRequest);
-            initData.put("pageContext", pageContext);
-
-            // define url strategy
-            initData.put("urlStrategy", WebloggerFactory.getWeblogger()
-                    .getUrlStrategy());
-
-            // if this was a comment posting, check for comment form
-            WeblogEntryCommentForm commentForm = (WeblogEntryCommentForm) request
-                    .getAttribute("commentForm");
-            if (commentForm != null) {
-                initData.put("commentForm", commentForm);
-            }
+            CacheDependencies.recordWeblog(weblog);
 
-            // Load models for pages
-            String pageModels = WebloggerConfig
-                    .getProperty("rendering.pageModels");
-            ModelLoader.loadModels(pageModels, model, initData, true);
-            // Load special models for site-wide blog
-            if (WebloggerRuntimeConfig.isSiteWideWeblog(weblog.getHandle())) {
-                String siteModels = WebloggerConfig
-                        .getProperty("rendering.siteModels");
-                ModelLoader.loadModels(siteModels, model, initData, true);
-            }
+            HashMap<String, Object> model = new HashMap<>();
+            try {
+                PageContext pageContext = JspFactory.getDefaultFactory()
+                        .getPageContext(this, request, response, "", false,
+                                RollerConstants.EIGHT_KB_IN_BYTES, true);
+
+                // special hack for menu tag
+                request.setAttribute("pageRequest", pageRequest);
+
+                // populate the rendering model
+                Map<String, Object> initData = new HashMap<>();
+                initData.put("requestParameters", request.getParameterMap());
+                initData.put("parsedRequest", pageRequest);
+                initData.put("pageContext", pageContext);
+
+                // define url strategy
+                initData.put("urlStrategy", WebloggerFactory.getWeblogger()
+                        .getUrlStrategy());
+
+                // if this was a comment posting, check for comment form
+                WeblogEntryCommentForm commentForm = (WeblogEntryCommentForm) request
+                        .getAttribute("commentForm");
+                if (commentForm != null) {
+                    initData.put("commentForm", commentForm);
+                }
 
-        } catch (WebloggerException ex) {
-            log.error("Error loading model objects for page", ex);
+                // Load models for pages
+                String pageModels = WebloggerConfig
+                        .getProperty("rendering.pageModels");
+                ModelLoader.loadModels(pageModels, model, initData, true);
+                // Load special models for site-wide blog
+                if (WebloggerRuntimeConfig.isSiteWideWeblog(weblog.getHandle())) {
+                    String siteModels = WebloggerConfig
+                            .getProperty("rendering.siteModels");
+                    ModelLoader.loadModels(siteModels, model, initData, true);
+                }
 
-            if (!response.isCommitted()) {
-                response.reset();
+            } catch (WebloggerException ex) {
+                log.error("Error loading model objects for page", ex);
+                if (!response.isCommitted()) {
+                    response.reset();
+                }
+                response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                return;
             }
-            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            return;
-        }
 
-        // lookup Renderer we are going to use
-        Renderer renderer;
-        try {
-            log.debug("Looking up renderer");
-            renderer = RendererManager.getRenderer(page,
-                    pageRequest.getDeviceType());
-        } catch (Exception e) {
-            // nobody wants to render my content :(
-            log.error("Couldn't find renderer for page " + page.getId(), e);
+            // lookup Renderer we are going to use
+            Renderer renderer;
+            try {
+                log.debug("Looking up renderer");
+                renderer = RendererManager.getRenderer(page,
+                        pageRequest.getDeviceType());
+            } catch (Exception e) {
+                // nobody wants to render my content :(
+                log.error("Couldn't find renderer for page " + page.getId(), e);
 
-            if (!response.isCommitted()) {
-                response.reset();
+                if (!response.isCommitted()) {
+                    response.reset();
+                }
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return;
             }
-            response.sendError(HttpServletResponse.SC_NOT_FOUND);
-            return;
-        }
 
-        // render content
-        CachedContent rendererOutput = new CachedContent(
-                RollerConstants.TWENTYFOUR_KB_IN_BYTES, contentType);
-        try {
-            log.debug("Doing rendering");
-            renderer.render(model, rendererOutput.getCachedWriter());
+            // render content
+            rendererOutput = new CachedContent(
+                    RollerConstants.TWENTYFOUR_KB_IN_BYTES, contentType,
+                    compressContent);
+            try {
+                log.debug("Doing rendering");
+                renderer.render(model, rendererOutput.getCachedWriter());
 
-            // flush rendered output and close
-            rendererOutput.flush();
-            rendererOutput.close();
-        } catch (Exception e) {
-            // bummer, error during rendering
-            log.error("Error during rendering for page " + page.getId(), e);
+                // flush rendered output and close
+                rendererOutput.flush();
+                rendererOutput.close();
+            } catch (Exception e) {
+                // bummer, error during rendering
+                log.error("Error during rendering for page " + page.getId(), e);
 
-            if (!response.isCommitted()) {
-                response.reset();
+                if (!response.isCommitted()) {
+                    response.reset();
+                }
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return;
             }
-            response.sendError(HttpServletResponse.SC_NOT_FOUND);
-            return;
+        } finally {
+            dependencies = CacheDependencies.end();
         }
 
         // post rendering process
         // flush rendered content to response
         log.debug("Flushing response output");
-        response.setContentType(contentType);
-        response.setContentLength(rendererOutput.getContent().length);
-        response.getOutputStream().write(rendererOutput.getContent());
+        if (!ContentEncodingUtil.respondIfNoneMatch(request, response,
+                rendererOutput)) {
+            response.setContentType(contentType);
+            ContentEncodingUtil.writeContent(request, response, rendererOutput);
+        }
 
         // cache rendered content. only cache if user is not logged in?
         if ((!this.excludeOwnerPages || !pageRequest.isLoggedIn())
@@ -538,9 +566,9 @@ public class PageServlet extends HttpServlet {
 
             // put it in the right cache
             if (isSiteWide) {
-                siteWideCache.put(cacheKey, rendererOutput);
+                siteWideCache.put(cacheKey, rendererOutput, dependencies);
             } else {
-                weblogPageCache.put(cacheKey, rendererOutput);
+                weblogPageCache.put(cacheKey, rendererOutput, dependencies);
             }
         } else {
             log.debug("SKIPPED " + cacheKey);
@@ -46,6 +46,7 @@ import org.apache.roller.weblogger.ui.rendering.mobile.MobileDeviceRepository.De
 import org.apache.roller.weblogger.ui.rendering.model.UtilitiesModel;
 import org.apache.roller.weblogger.ui.rendering.util.cache.PlanetCache;
 import org.apache.roller.weblogger.ui.rendering.util.PlanetRequest;
+import org.apache.roller.weblogger.ui.rendering.util.ContentEncodingUtil;
 import org.apache.roller.weblogger.ui.rendering.util.ModDateHeaderUtil;
 import org.apache.roller.weblogger.util.cache.CachedContent;
 
@@ -123,9 +124,15 @@ public class PlanetFeedServlet extends HttpServlet {
         String cacheKey = PlanetCache.CACHE_ID + ":"
                 + this.generateKey(planetRequest);
         CachedContent entry = (CachedContent) planetCache.get(cacheKey);
-        if (entry != null) {
-            response.setContentLength(entry.getContent().length);
-            response.getOutputStream().write(entry.getContent());
+        if (entry != null && entry.retain()) {
+            try {
+                if (!ContentEncodingUtil.respondIfNoneMatch(request, response,
+                        entry)) {
+                    ContentEncodingUtil.writeContent(request, response, entry);
+                }
+            } finally {
+                entry.release();
+            }
             return;
         }
 
@@ -236,8 +243,10 @@ public class PlanetFeedServlet extends HttpServlet {
         // post rendering process
         // flush rendered content to response
         log.debug("Flushing response output");
-        response.setContentLength(rendererOutput.getContent().length);
-        response.getOutputStream().write(rendererOutput.getContent());
+        if (!ContentEncodingUtil.respondIfNoneMatch(request, response,
+                rendererOutput)) {
+            ContentEncodingUtil.writeContent(request, response, rendererOutput);
+        }
 
         // cache rendered content.
         this.planetCache.put(cacheKey, rendererOutput);
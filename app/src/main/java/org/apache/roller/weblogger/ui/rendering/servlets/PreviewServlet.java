@@ -35,6 +35,7 @@ import org.apache.roller.weblogger.ui.rendering.Renderer;
 import org.apache.roller.weblogger.ui.rendering.RendererManager;
 import org.apache.roller.weblogger.ui.rendering.model.ModelLoader;
 import org.apache.roller.weblogger.ui.rendering.util.WeblogPreviewRequest;
+import org.apache.roller.weblogger.ui.rendering.util.cache.RenderedEntryCache;
 import org.apache.roller.weblogger.util.cache.CachedContent;
 
 import javax.servlet.ServletConfig;
@@ -263,6 +264,7 @@ public class PreviewServlet extends HttpServlet {
         
         // render content
         CachedContent rendererOutput = new CachedContent(RollerConstants.TWENTYFOUR_KB_IN_BYTES);
+        RenderedEntryCache.beginPreview();
         try {
             log.debug("Doing rendering");
             renderer.render(model, rendererOutput.getCachedWriter());
@@ -279,6 +281,8 @@ public class PreviewServlet extends HttpServlet {
             }
             response.sendError(HttpServletResponse.SC_NOT_FOUND);
             return;
+        } finally {
+            RenderedEntryCache.endPreview();
         }
         
         
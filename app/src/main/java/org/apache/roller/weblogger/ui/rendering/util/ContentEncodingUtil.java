@@ -0,0 +1,213 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.ui.rendering.util;
+
+import java.io.IOException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.weblogger.util.cache.CachedContent;
+
+
+/**
+ * Utility class for sending CachedContent with the best content encoding
+ * the client supports, and for answering conditional requests against the
+ * content's ETag.
+ */
+public final class ContentEncodingUtil {
+
+    private static Log log = LogFactory.getLog(ContentEncodingUtil.class);
+
+    // suffix which marks the ETag of the gzip representation
+    private static final String GZIP_SUFFIX = "-gzip";
+
+    private ContentEncodingUtil() {
+    }
+
+    /**
+     * Sets the ETag header for the given content and, if the request
+     * contains an If-None-Match header which matches it, sets the HTTP
+     * response status to 304 (NOT MODIFIED).  Returns true if the response
+     * status was set, in which case no body should be written.
+     *
+     * The ETag is a strong one derived from the content itself, with a
+     * suffix for the gzip representation so that caches never mix up the
+     * two encodings.  Either form of the tag is taken as a match since the
+     * underlying content is the same.
+     *
+     * @param request
+     *            the request
+     * @param response
+     *            the response
+     * @param content
+     *            closed content
+     *
+     * @return true if a response status was sent, false otherwise.
+     */
+    public static boolean respondIfNoneMatch(HttpServletRequest request,
+            HttpServletResponse response, CachedContent content) {
+
+        String hash = content.getContentHash();
+
+        if (content.isCompressed()) {
+            response.setHeader("Vary", "Accept-Encoding");
+            response.setHeader("ETag", acceptsGzip(request)
+                    ? "\"" + hash + GZIP_SUFFIX + "\"" : "\"" + hash + "\"");
+        } else {
+            response.setHeader("ETag", "\"" + hash + "\"");
+        }
+
+        if (matches(request.getHeader("If-None-Match"), hash)) {
+
+            if (log.isDebugEnabled()) {
+                log.debug("NOT MODIFIED " + request.getRequestURL());
+            }
+
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Write the given content to the response body, along with the
+     * Content-Length header and, for compressed content, the Vary and
+     * Content-Encoding headers.
+     *
+     * Compressed content is sent as-is to clients which accept gzip and is
+     * decompressed on the fly for clients which don't.
+     *
+     * @param request
+     *            the request, used to check the Accept-Encoding header
+     * @param response
+     *            the response
+     * @param content
+     *            closed content, retained by the caller if it came from a cache
+     */
+    public static void writeContent(HttpServletRequest request,
+            HttpServletResponse response, CachedContent content) throws IOException {
+
+        if (!content.isCompressed()) {
+            response.setContentLength(content.getContentLength());
+            content.writeTo(response.getOutputStream());
+            return;
+        }
+
+        // intermediate caches must not hand gzip to clients which can't take it
+        response.setHeader("Vary", "Accept-Encoding");
+
+        if (acceptsGzip(request)) {
+            response.setHeader("Content-Encoding", "gzip");
+            response.setContentLength(content.getStoredLength());
+            content.writeCompressedTo(response.getOutputStream());
+        } else {
+            response.setContentLength(content.getContentLength());
+            content.writeTo(response.getOutputStream());
+        }
+    }
+
+    /**
+     * Determine if the client accepts gzip encoded responses, according to
+     * the Accept-Encoding request header.  An explicit gzip coding takes
+     * precedence over a "*" wildcard, and a q-value of 0 means not accepted.
+     *
+     * @param request
+     *            the request
+     *
+     * @return true if a gzip encoded response is acceptable.
+     */
+    public static boolean acceptsGzip(HttpServletRequest request) {
+
+        String header = request.getHeader("Accept-Encoding");
+        if (header == null) {
+            return false;
+        }
+
+        Boolean gzip = null;
+        Boolean wildcard = null;
+
+        for (String coding : header.split(",")) {
+            String[] params = coding.split(";");
+            String name = params[0].trim();
+
+            boolean acceptable = qualityOf(params) > 0;
+            if ("gzip".equalsIgnoreCase(name) || "x-gzip".equalsIgnoreCase(name)) {
+                gzip = acceptable;
+            } else if ("*".equals(name)) {
+                wildcard = acceptable;
+            }
+        }
+
+        if (gzip != null) {
+            return gzip;
+        }
+        return wildcard != null && wildcard;
+    }
+
+    /**
+     * Determine if an If-None-Match header value matches the given content
+     * hash.  Comparison is weak, as the spec requires for If-None-Match, so
+     * W/ prefixes are ignored.
+     */
+    static boolean matches(String header, String hash) {
+
+        if (header == null) {
+            return false;
+        }
+
+        for (String tag : header.split(",")) {
+            tag = tag.trim();
+            if ("*".equals(tag)) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.length() < 2 || tag.charAt(0) != '"' || tag.charAt(tag.length() - 1) != '"') {
+                continue;
+            }
+            tag = tag.substring(1, tag.length() - 1);
+            if (tag.endsWith(GZIP_SUFFIX)) {
+                tag = tag.substring(0, tag.length() - GZIP_SUFFIX.length());
+            }
+            if (tag.equals(hash)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static double qualityOf(String[] params) {
+        for (int i = 1; i < params.length; i++) {
+            String param = params[i].trim();
+            if (param.startsWith("q=") || param.startsWith("Q=")) {
+                try {
+                    return Double.parseDouble(param.substring(2).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+}
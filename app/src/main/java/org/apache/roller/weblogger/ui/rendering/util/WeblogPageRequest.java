@@ -60,6 +60,7 @@ public class WeblogPageRequest extends WeblogRequest {
     private String weblogDate = null;
     private List<String> tags = null;
     private int pageNum = 0;
+    private String cursor = null;
     private Map<String, String[]> customParams = Collections.emptyMap();
 
     // heavyweight attributes
@@ -246,6 +247,11 @@ public class WeblogPageRequest extends WeblogRequest {
             }
         }
 
+        // where the page starts, from the next and previous links of pagers
+        if (request.getParameter("cursor") != null) {
+            this.cursor = request.getParameter("cursor");
+        }
+
         // build customParams Map, we remove built-in params because we only
         // want this map to represent params defined by the template author
         customParams = new HashMap<>(request.getParameterMap());
@@ -254,6 +260,7 @@ public class WeblogPageRequest extends WeblogRequest {
         customParams.remove("date");
         customParams.remove("cat");
         customParams.remove("page");
+        customParams.remove("cursor");
         customParams.remove("tags");
 
         if (log.isDebugEnabled()) {
@@ -264,6 +271,7 @@ public class WeblogPageRequest extends WeblogRequest {
             log.debug("tags = " + this.tags);
             log.debug("weblogPage = " + this.weblogPageName);
             log.debug("pageNum = " + this.pageNum);
+            log.debug("cursor = " + this.cursor);
         }
     }
 
@@ -325,6 +333,14 @@ public class WeblogPageRequest extends WeblogRequest {
         this.pageNum = pageNum;
     }
 
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
     public Map<String, String[]> getCustomParams() {
         return customParams;
     }
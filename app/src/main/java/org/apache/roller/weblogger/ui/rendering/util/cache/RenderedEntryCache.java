@@ -0,0 +1,255 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.ui.rendering.util.cache;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.weblogger.config.WebloggerConfig;
+import org.apache.roller.weblogger.pojos.WeblogEntry;
+import org.apache.roller.weblogger.util.HTMLSanitizer;
+import org.apache.roller.weblogger.util.cache.Cache;
+import org.apache.roller.weblogger.util.cache.CacheHandler;
+import org.apache.roller.weblogger.util.cache.CacheManager;
+
+
+/**
+ * Cache for entry text and summaries as transformed by the entry's plugins
+ * and sanitized, shared by everything that displays entries: pages, feeds,
+ * previews and search results.
+ *
+ * Content is kept by entry along with a fingerprint of what it was rendered
+ * from, the entry's update time, plugins and the sanitizer setting, and is
+ * only used while the fingerprint still matches.  Content is dropped when
+ * its entry changes.  Previews may use what was cached but never add to it,
+ * since what they render may never be saved.  Their text may have changed
+ * without the update time, so for them a SHA-256 digest of the source text
+ * must match too.
+ */
+public final class RenderedEntryCache implements CacheHandler {
+
+    private static final Log log = LogFactory.getLog(RenderedEntryCache.class);
+
+    // a unique identifier for this cache, this is used as the prefix for
+    // roller config properties that apply to this cache
+    public static final String CACHE_ID = "cache.renderedentry";
+
+    /** Part of an entry, its text. */
+    public static final String TEXT = "text";
+
+    /** Part of an entry, its summary. */
+    public static final String SUMMARY = "summary";
+
+    // keep cached content
+    private boolean cacheEnabled = true;
+    private Cache contentCache = null;
+
+    // set on threads rendering previews
+    private static final ThreadLocal<Boolean> previewing = new ThreadLocal<>();
+
+    // reference to our singleton instance
+    private static final RenderedEntryCache singletonInstance = new RenderedEntryCache();
+
+
+    private RenderedEntryCache() {
+
+        cacheEnabled = WebloggerConfig.getBooleanProperty(CACHE_ID+".enabled");
+
+        Map<String, String> cacheProps = new HashMap<>();
+        cacheProps.put("id", CACHE_ID);
+
+        Enumeration<Object> allProps = WebloggerConfig.keys();
+        String prop;
+        while(allProps.hasMoreElements()) {
+            prop = (String) allProps.nextElement();
+
+            // we are only interested in props for this cache
+            if(prop.startsWith(CACHE_ID+".")) {
+                cacheProps.put(prop.substring(CACHE_ID.length()+1),
+                        WebloggerConfig.getProperty(prop));
+            }
+        }
+
+        log.info(cacheProps);
+
+        if(cacheEnabled) {
+            contentCache = CacheManager.constructCache(this, cacheProps);
+        } else {
+            log.warn("Caching has been DISABLED");
+        }
+    }
+
+
+    public static RenderedEntryCache getInstance() {
+        return singletonInstance;
+    }
+
+
+    /**
+     * Start rendering a preview on this thread, whose content isn't kept
+     * until endPreview() is called.
+     */
+    public static void beginPreview() {
+        previewing.set(Boolean.TRUE);
+    }
+
+
+    /**
+     * Done rendering a preview on this thread.
+     */
+    public static void endPreview() {
+        previewing.remove();
+    }
+
+
+    /**
+     * Get a part of an entry as rendered from the given source.
+     *
+     * @param entry the entry
+     * @param part TEXT or SUMMARY
+     * @param source the text of the part being rendered
+     * @return the rendered content, or null if it isn't cached
+     */
+    public String get(WeblogEntry entry, String part, String source) {
+
+        if (!cacheEnabled) {
+            return null;
+        }
+
+        String key = generateKey(entry, part);
+        RenderedContent content = (RenderedContent) contentCache.get(key);
+        if(content == null) {
+            log.debug("MISS "+key);
+            return null;
+        }
+        if(!content.fingerprint.equals(fingerprint(entry))
+                || (previewing.get() != null && !content.sourceDigest.equals(digest(source)))) {
+            log.debug("HIT-EXPIRED "+key);
+            return null;
+        }
+        log.debug("HIT "+key);
+        return content.html;
+    }
+
+
+    /**
+     * Keep a part of an entry as rendered from the given source, unless
+     * rendering a preview.
+     */
+    public void put(WeblogEntry entry, String part, String source, String html) {
+
+        if (!cacheEnabled || entry.getId() == null || previewing.get() != null) {
+            return;
+        }
+
+        String key = generateKey(entry, part);
+        contentCache.put(key, new RenderedContent(fingerprint(entry), digest(source), html));
+        log.debug("PUT "+key);
+    }
+
+
+    public void clear() {
+
+        if (!cacheEnabled) {
+            return;
+        }
+
+        contentCache.clear();
+        log.debug("CLEAR");
+    }
+
+
+    /**
+     * Generate a cache key for a part of an entry, of the form ...
+     *
+     * <entry id>/<part>
+     */
+    private String generateKey(WeblogEntry entry, String part) {
+        return CACHE_ID + ':' + entry.getId() + '/' + part;
+    }
+
+
+    /**
+     * What content is rendered from besides the entry it belongs to and the
+     * source text, which for saved entries only changes along with the
+     * update time.
+     */
+    private static String fingerprint(WeblogEntry entry) {
+        StringBuilder fingerprint = new StringBuilder(64);
+        fingerprint.append(entry.getUpdateTime() != null ? entry.getUpdateTime().getTime() : 0);
+        fingerprint.append('|').append(entry.getPlugins());
+        fingerprint.append('|').append(HTMLSanitizer.xssEnabled);
+        return fingerprint.toString();
+    }
+
+
+    /**
+     * Digest of source text, which unlike a hash code can't be matched by
+     * different text.  Only taken when content is kept and when previews
+     * look it up.
+     */
+    private static String digest(String source) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(sha256.digest(source.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            // every JVM has SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+
+    /**
+     * A weblog entry has changed.
+     */
+    @Override
+    public void invalidate(WeblogEntry entry) {
+
+        if (!cacheEnabled) {
+            return;
+        }
+
+        contentCache.remove(generateKey(entry, TEXT));
+        contentCache.remove(generateKey(entry, SUMMARY));
+    }
+
+
+    private static final class RenderedContent implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String fingerprint;
+        private final String sourceDigest;
+        private final String html;
+
+        RenderedContent(String fingerprint, String sourceDigest, String html) {
+            this.fingerprint = fingerprint;
+            this.sourceDigest = sourceDigest;
+            this.html = html;
+        }
+    }
+
+}
@@ -25,6 +25,7 @@ import java.util.Date;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.roller.util.RollerConstants;
@@ -38,17 +39,24 @@ import org.apache.roller.weblogger.pojos.WeblogCategory;
 import org.apache.roller.weblogger.pojos.WeblogEntry;
 import org.apache.roller.weblogger.pojos.WeblogTemplate;
 import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.ui.rendering.pagers.EntryCursor;
 import org.apache.roller.weblogger.ui.rendering.util.WeblogFeedRequest;
 import org.apache.roller.weblogger.ui.rendering.util.WeblogPageRequest;
 import org.apache.roller.weblogger.util.Utilities;
 import org.apache.roller.weblogger.util.cache.Cache;
+import org.apache.roller.weblogger.util.cache.CacheDependencies;
 import org.apache.roller.weblogger.util.cache.CacheHandler;
 import org.apache.roller.weblogger.util.cache.CacheManager;
+import org.apache.roller.weblogger.util.cache.DependencyIndex;
 import org.apache.roller.weblogger.util.cache.ExpiringCacheEntry;
 
 
 /**
  * Cache for site-wide weblog content.
+ *
+ * Site-wide content draws on every weblog, so unless it was cached along
+ * with the dependencies recorded while rendering it the whole cache is
+ * flushed whenever anything changes.
  */
 public final class SiteWideCache implements CacheHandler {
     
@@ -62,6 +70,9 @@ public final class SiteWideCache implements CacheHandler {
     private boolean cacheEnabled = true;
     private Cache contentCache = null;
     
+    // which content depends on what, null if not tracking dependencies
+    private DependencyIndex dependencyIndex = null;
+    
     // keep a cached version of last expired time
     private ExpiringCacheEntry lastUpdateTime = null;
 
@@ -91,6 +102,18 @@ public final class SiteWideCache implements CacheHandler {
         
         if(cacheEnabled) {
             contentCache = CacheManager.constructCache(this, cacheProps);
+            
+            if(WebloggerConfig.getBooleanProperty(CACHE_ID+".trackDependencies")) {
+                // the index can't see the cache's own evictions, allow it
+                // a few times the number of keys the cache holds
+                int size = 100;
+                try {
+                    size = Integer.parseInt(cacheProps.get("size"));
+                } catch (NumberFormatException e) {
+                    // keep default
+                }
+                dependencyIndex = new DependencyIndex(Math.max(1000, 4 * size));
+            }
         } else {
             log.warn("Caching has been DISABLED");
         }
@@ -126,6 +149,29 @@ public final class SiteWideCache implements CacheHandler {
             return;
         }
         
+        if(dependencyIndex != null) {
+            dependencyIndex.remove(key);
+        }
+        contentCache.put(key, value);
+        log.debug("PUT "+key);
+    }
+    
+    
+    /**
+     * Put content in the cache along with the dependencies recorded while
+     * rendering it, see CacheDependencies.
+     */
+    public void put(String key, Object value, Set<String> dependencies) {
+        
+        if (!cacheEnabled) {
+            return;
+        }
+        
+        if(dependencyIndex != null && !dependencyIndex.register(key, dependencies)) {
+            log.debug("Dependency index full, clearing cache");
+            contentCache.clear();
+            dependencyIndex.register(key, dependencies);
+        }
         contentCache.put(key, value);
         log.debug("PUT "+key);
     }
@@ -138,6 +184,9 @@ public final class SiteWideCache implements CacheHandler {
         }
         
         contentCache.remove(key);
+        if(dependencyIndex != null) {
+            dependencyIndex.remove(key);
+        }
         log.debug("REMOVE "+key);
     }
     
@@ -149,6 +198,9 @@ public final class SiteWideCache implements CacheHandler {
         }
         
         contentCache.clear();
+        if(dependencyIndex != null) {
+            dependencyIndex.clear();
+        }
         this.lastUpdateTime = null;
         log.debug("CLEAR");
     }
@@ -234,6 +286,11 @@ public final class SiteWideCache implements CacheHandler {
         // add page number when applicable
         if(pageRequest.getWeblogAnchor() == null) {
             key.append("/page=").append(pageRequest.getPageNum());
+            // the pager ignores cursors which don't parse, so does the key
+            String cursor = EntryCursor.canonical(pageRequest.getCursor());
+            if(pageRequest.getPageNum() > 0 && cursor != null) {
+                key.append("/cursor=").append(cursor);
+            }
         }
         
         // add login state
@@ -306,17 +363,39 @@ public final class SiteWideCache implements CacheHandler {
     
     
     /**
-     * A weblog entry has changed.
+     * Evict all content which depends on any of the given dependencies, or
+     * everything if dependencies aren't being tracked.
      */
-    @Override
-    public void invalidate(WeblogEntry entry) {
+    private void evict(Set<String> dependencies) {
         
         if (!cacheEnabled) {
             return;
         }
         
-        this.contentCache.clear();
-        this.lastUpdateTime = null;
+        if(dependencyIndex == null) {
+            this.contentCache.clear();
+            this.lastUpdateTime = null;
+            return;
+        }
+        
+        Set<String> keys = dependencyIndex.invalidate(dependencies);
+        for(String key : keys) {
+            contentCache.remove(key);
+            log.debug("EVICT "+key);
+        }
+        
+        if(!keys.isEmpty()) {
+            this.lastUpdateTime = null;
+        }
+    }
+    
+    
+    /**
+     * A weblog entry has changed.
+     */
+    @Override
+    public void invalidate(WeblogEntry entry) {
+        evict(CacheDependencies.dependenciesOf(entry));
     }
     
     
@@ -325,13 +404,7 @@ public final class SiteWideCache implements CacheHandler {
      */
     @Override
     public void invalidate(Weblog website) {
-        
-        if (!cacheEnabled) {
-            return;
-        }
-        
-        this.contentCache.clear();
-        this.lastUpdateTime = null;
+        evict(CacheDependencies.dependenciesOf(website));
     }
     
     
@@ -362,7 +435,10 @@ public final class SiteWideCache implements CacheHandler {
      */
     @Override
     public void invalidate(WeblogEntryComment comment) {
-        if(WebloggerRuntimeConfig.isSiteWideWeblog(comment.getWeblogEntry().getWebsite().getHandle())) {
+        if(dependencyIndex != null) {
+            // comments from any weblog may be listed site-wide
+            evict(CacheDependencies.dependenciesOf(comment));
+        } else if(WebloggerRuntimeConfig.isSiteWideWeblog(comment.getWeblogEntry().getWebsite().getHandle())) {
             invalidate(comment.getWeblogEntry().getWebsite());
         }
     }
@@ -24,20 +24,35 @@ import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.roller.weblogger.config.WebloggerConfig;
+import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.pojos.WeblogBookmark;
+import org.apache.roller.weblogger.pojos.WeblogBookmarkFolder;
+import org.apache.roller.weblogger.pojos.WeblogCategory;
+import org.apache.roller.weblogger.pojos.WeblogEntry;
+import org.apache.roller.weblogger.pojos.WeblogEntryComment;
+import org.apache.roller.weblogger.pojos.WeblogTemplate;
 import org.apache.roller.weblogger.ui.rendering.util.WeblogFeedRequest;
 import org.apache.roller.weblogger.util.Utilities;
 import org.apache.roller.weblogger.util.cache.Cache;
+import org.apache.roller.weblogger.util.cache.CacheDependencies;
+import org.apache.roller.weblogger.util.cache.CacheHandler;
 import org.apache.roller.weblogger.util.cache.CacheManager;
+import org.apache.roller.weblogger.util.cache.DependencyIndex;
 import org.apache.roller.weblogger.util.cache.LazyExpiringCacheEntry;
 
 
 /**
  * Cache for weblog feed content.
+ *
+ * Content is expired whenever its weblog is modified, unless it was cached
+ * along with the dependencies recorded while rendering it, in which case a
+ * change only evicts the content which actually depended on it.
  */
-public final class WeblogFeedCache {
+public final class WeblogFeedCache implements CacheHandler {
     
     private static final Log log = LogFactory.getLog(WeblogFeedCache.class);
     
@@ -49,6 +64,9 @@ public final class WeblogFeedCache {
     private boolean cacheEnabled = true;
     private Cache contentCache = null;
     
+    // which content depends on what, null if not tracking dependencies
+    private DependencyIndex dependencyIndex = null;
+    
     // reference to our singleton instance
     private static final WeblogFeedCache singletonInstance = new WeblogFeedCache();
     
@@ -76,6 +94,19 @@ public final class WeblogFeedCache {
         
         if(cacheEnabled) {
             contentCache = CacheManager.constructCache(null, cacheProps);
+            
+            if(WebloggerConfig.getBooleanProperty(CACHE_ID+".trackDependencies")) {
+                // the index can't see the cache's own evictions, allow it
+                // a few times the number of keys the cache holds
+                int size = 100;
+                try {
+                    size = Integer.parseInt(cacheProps.get("size"));
+                } catch (NumberFormatException e) {
+                    // keep default
+                }
+                dependencyIndex = new DependencyIndex(Math.max(1000, 4 * size));
+                CacheManager.registerHandler(this);
+            }
         } else {
             log.warn("Caching has been DISABLED");
         }
@@ -87,7 +118,7 @@ public final class WeblogFeedCache {
     }
     
     
-    public Object get(String key, long lastModified) {
+    public Object get(String key, String handle, long lastModified) {
         
         if (!cacheEnabled) {
             return null;
@@ -100,6 +131,12 @@ public final class WeblogFeedCache {
         if(lazyEntry != null) {
             entry = lazyEntry.getValue(lastModified);
             
+            // the modification may already have evicted everything it affects
+            if(entry == null && dependencyIndex != null
+                    && dependencyIndex.isCurrent(key, handle, lastModified, lazyEntry.getTimeCached())) {
+                entry = lazyEntry.getValue(lazyEntry.getTimeCached());
+            }
+            
             if(entry != null) {
                 log.debug("HIT "+key);
             } else {
@@ -120,6 +157,29 @@ public final class WeblogFeedCache {
             return;
         }
         
+        if(dependencyIndex != null) {
+            dependencyIndex.remove(key);
+        }
+        contentCache.put(key, new LazyExpiringCacheEntry(value));
+        log.debug("PUT "+key);
+    }
+    
+    
+    /**
+     * Put content in the cache along with the dependencies recorded while
+     * rendering it, see CacheDependencies.
+     */
+    public void put(String key, Object value, Set<String> dependencies) {
+        
+        if (!cacheEnabled) {
+            return;
+        }
+        
+        if(dependencyIndex != null && !dependencyIndex.register(key, dependencies)) {
+            log.debug("Dependency index full, clearing cache");
+            contentCache.clear();
+            dependencyIndex.register(key, dependencies);
+        }
         contentCache.put(key, new LazyExpiringCacheEntry(value));
         log.debug("PUT "+key);
     }
@@ -132,6 +192,9 @@ public final class WeblogFeedCache {
         }
         
         contentCache.remove(key);
+        if(dependencyIndex != null) {
+            dependencyIndex.remove(key);
+        }
         log.debug("REMOVE "+key);
     }
     
@@ -143,6 +206,9 @@ public final class WeblogFeedCache {
         }
         
         contentCache.clear();
+        if(dependencyIndex != null) {
+            dependencyIndex.clear();
+        }
         log.debug("CLEAR");
     }
     
@@ -196,4 +262,90 @@ public final class WeblogFeedCache {
         return key.toString();
     }
     
+    
+    
+    /**
+     * Evict all content which depends on any of the given dependencies.
+     */
+    private void evict(Set<String> dependencies, Weblog weblog) {
+        
+        if (!cacheEnabled || dependencyIndex == null) {
+            return;
+        }
+        
+        for(String key : dependencyIndex.invalidate(dependencies)) {
+            contentCache.remove(key);
+            log.debug("EVICT "+key);
+        }
+        
+        if(weblog != null) {
+            dependencyIndex.markInvalidated(weblog.getHandle(),
+                    weblog.getPreviousLastModified(), weblog.getLastModified());
+        }
+    }
+    
+    
+    /**
+     * A weblog entry has changed.
+     */
+    @Override
+    public void invalidate(WeblogEntry entry) {
+        evict(CacheDependencies.dependenciesOf(entry), entry.getWebsite());
+    }
+    
+    
+    /**
+     * A weblog has changed.
+     */
+    @Override
+    public void invalidate(Weblog website) {
+        evict(CacheDependencies.dependenciesOf(website), website);
+    }
+    
+    
+    /**
+     * A bookmark has changed.
+     */
+    @Override
+    public void invalidate(WeblogBookmark bookmark) {
+        invalidate(bookmark.getWebsite());
+    }
+    
+    
+    /**
+     * A folder has changed.
+     */
+    @Override
+    public void invalidate(WeblogBookmarkFolder folder) {
+        invalidate(folder.getWeblog());
+    }
+    
+    
+    /**
+     * A comment has changed.
+     */
+    @Override
+    public void invalidate(WeblogEntryComment comment) {
+        evict(CacheDependencies.dependenciesOf(comment),
+                comment.getWeblogEntry().getWebsite());
+    }
+    
+    
+    /**
+     * A category has changed.
+     */
+    @Override
+    public void invalidate(WeblogCategory category) {
+        invalidate(category.getWeblog());
+    }
+    
+    
+    /**
+     * A weblog template has changed.
+     */
+    @Override
+    public void invalidate(WeblogTemplate template) {
+        invalidate(template.getWeblog());
+    }
+    
 }
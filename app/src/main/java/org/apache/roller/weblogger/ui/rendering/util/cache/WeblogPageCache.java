@@ -24,20 +24,36 @@ import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.roller.weblogger.config.WebloggerConfig;
+import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.pojos.WeblogBookmark;
+import org.apache.roller.weblogger.pojos.WeblogBookmarkFolder;
+import org.apache.roller.weblogger.pojos.WeblogCategory;
+import org.apache.roller.weblogger.pojos.WeblogEntry;
+import org.apache.roller.weblogger.pojos.WeblogEntryComment;
+import org.apache.roller.weblogger.pojos.WeblogTemplate;
+import org.apache.roller.weblogger.ui.rendering.pagers.EntryCursor;
 import org.apache.roller.weblogger.ui.rendering.util.WeblogPageRequest;
 import org.apache.roller.weblogger.util.Utilities;
 import org.apache.roller.weblogger.util.cache.Cache;
+import org.apache.roller.weblogger.util.cache.CacheDependencies;
+import org.apache.roller.weblogger.util.cache.CacheHandler;
 import org.apache.roller.weblogger.util.cache.CacheManager;
+import org.apache.roller.weblogger.util.cache.DependencyIndex;
 import org.apache.roller.weblogger.util.cache.LazyExpiringCacheEntry;
 
 
 /**
  * Cache for weblog page content.
+ *
+ * Content is expired whenever its weblog is modified, unless it was cached
+ * along with the dependencies recorded while rendering it, in which case a
+ * change only evicts the content which actually depended on it.
  */
-public final class WeblogPageCache {
+public final class WeblogPageCache implements CacheHandler {
     
     private static final Log log = LogFactory.getLog(WeblogPageCache.class);
     
@@ -49,6 +65,9 @@ public final class WeblogPageCache {
     private boolean cacheEnabled = true;
     private Cache contentCache = null;
     
+    // which content depends on what, null if not tracking dependencies
+    private DependencyIndex dependencyIndex = null;
+    
     // reference to our singleton instance
     private static final WeblogPageCache singletonInstance = new WeblogPageCache();
     
@@ -75,6 +94,19 @@ public final class WeblogPageCache {
         
         if (cacheEnabled) {
             contentCache = CacheManager.constructCache(null, cacheProps);
+            
+            if(WebloggerConfig.getBooleanProperty(CACHE_ID+".trackDependencies")) {
+                // the index can't see the cache's own evictions, allow it
+                // a few times the number of keys the cache holds
+                int size = 100;
+                try {
+                    size = Integer.parseInt(cacheProps.get("size"));
+                } catch (NumberFormatException e) {
+                    // keep default
+                }
+                dependencyIndex = new DependencyIndex(Math.max(1000, 4 * size));
+                CacheManager.registerHandler(this);
+            }
         } else {
             log.warn("Caching has been DISABLED");
         }
@@ -86,7 +118,7 @@ public final class WeblogPageCache {
     }
     
     
-    public Object get(String key, long lastModified) {
+    public Object get(String key, String handle, long lastModified) {
         
         if (!cacheEnabled) {
             return null;
@@ -98,6 +130,12 @@ public final class WeblogPageCache {
         if(lazyEntry != null) {
             entry = lazyEntry.getValue(lastModified);
             
+            // the modification may already have evicted everything it affects
+            if(entry == null && dependencyIndex != null
+                    && dependencyIndex.isCurrent(key, handle, lastModified, lazyEntry.getTimeCached())) {
+                entry = lazyEntry.getValue(lazyEntry.getTimeCached());
+            }
+            
             if(entry != null) {
                 log.debug("HIT "+key);
             } else {
@@ -118,6 +156,29 @@ public final class WeblogPageCache {
             return;
         }
         
+        if(dependencyIndex != null) {
+            dependencyIndex.remove(key);
+        }
+        contentCache.put(key, new LazyExpiringCacheEntry(value));
+        log.debug("PUT "+key);
+    }
+    
+    
+    /**
+     * Put content in the cache along with the dependencies recorded while
+     * rendering it, see CacheDependencies.
+     */
+    public void put(String key, Object value, Set<String> dependencies) {
+        
+        if (!cacheEnabled) {
+            return;
+        }
+        
+        if(dependencyIndex != null && !dependencyIndex.register(key, dependencies)) {
+            log.debug("Dependency index full, clearing cache");
+            contentCache.clear();
+            dependencyIndex.register(key, dependencies);
+        }
         contentCache.put(key, new LazyExpiringCacheEntry(value));
         log.debug("PUT "+key);
     }
@@ -130,6 +191,9 @@ public final class WeblogPageCache {
         }
         
         contentCache.remove(key);
+        if(dependencyIndex != null) {
+            dependencyIndex.remove(key);
+        }
         log.debug("REMOVE "+key);
     }
     
@@ -141,6 +205,9 @@ public final class WeblogPageCache {
         }
         
         contentCache.clear();
+        if(dependencyIndex != null) {
+            dependencyIndex.clear();
+        }
         log.debug("CLEAR");
     }
     
@@ -205,6 +272,11 @@ public final class WeblogPageCache {
         // add page number when applicable
         if(pageRequest.getWeblogAnchor() == null) {
             key.append("/page=").append(pageRequest.getPageNum());
+            // the pager ignores cursors which don't parse, so does the key
+            String cursor = EntryCursor.canonical(pageRequest.getCursor());
+            if(pageRequest.getPageNum() > 0 && cursor != null) {
+                key.append("/cursor=").append(cursor);
+            }
         }
         
         // add login state
@@ -240,4 +312,90 @@ public final class WeblogPageCache {
 
         return Utilities.toBase64(string.toString().substring(1).getBytes());
     }
+    
+    
+    /**
+     * Evict all content which depends on any of the given dependencies.
+     */
+    private void evict(Set<String> dependencies, Weblog weblog) {
+        
+        if (!cacheEnabled || dependencyIndex == null) {
+            return;
+        }
+        
+        for(String key : dependencyIndex.invalidate(dependencies)) {
+            contentCache.remove(key);
+            log.debug("EVICT "+key);
+        }
+        
+        if(weblog != null) {
+            dependencyIndex.markInvalidated(weblog.getHandle(),
+                    weblog.getPreviousLastModified(), weblog.getLastModified());
+        }
+    }
+    
+    
+    /**
+     * A weblog entry has changed.
+     */
+    @Override
+    public void invalidate(WeblogEntry entry) {
+        evict(CacheDependencies.dependenciesOf(entry), entry.getWebsite());
+    }
+    
+    
+    /**
+     * A weblog has changed.
+     */
+    @Override
+    public void invalidate(Weblog website) {
+        evict(CacheDependencies.dependenciesOf(website), website);
+    }
+    
+    
+    /**
+     * A bookmark has changed.
+     */
+    @Override
+    public void invalidate(WeblogBookmark bookmark) {
+        invalidate(bookmark.getWebsite());
+    }
+    
+    
+    /**
+     * A folder has changed.
+     */
+    @Override
+    public void invalidate(WeblogBookmarkFolder folder) {
+        invalidate(folder.getWeblog());
+    }
+    
+    
+    /**
+     * A comment has changed.
+     */
+    @Override
+    public void invalidate(WeblogEntryComment comment) {
+        evict(CacheDependencies.dependenciesOf(comment),
+                comment.getWeblogEntry().getWebsite());
+    }
+    
+    
+    /**
+     * A category has changed.
+     */
+    @Override
+    public void invalidate(WeblogCategory category) {
+        invalidate(category.getWeblog());
+    }
+    
+    
+    /**
+     * A weblog template has changed.
+     */
+    @Override
+    public void invalidate(WeblogTemplate template) {
+        invalidate(template.getWeblog());
+    }
+    
 }
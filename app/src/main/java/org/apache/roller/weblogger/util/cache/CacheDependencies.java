@@ -0,0 +1,261 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util.cache;
+
+import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import org.apache.roller.util.DateFormatUtil;
+import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.pojos.WeblogCategory;
+import org.apache.roller.weblogger.pojos.WeblogEntry;
+import org.apache.roller.weblogger.pojos.WeblogEntryComment;
+import org.apache.roller.weblogger.pojos.WeblogEntryTag;
+
+
+/**
+ * Records what a piece of content depends on while it is being rendered, so
+ * that a cached copy can be evicted only when something it used changes.
+ *
+ * Recording is bound to the rendering thread between begin() and end(), and
+ * the record methods are no-ops on any other thread, so models, pagers and
+ * wrappers can call them unconditionally.
+ *
+ * A dependency is a plain string, one of ...
+ *
+ * weblog:<handle>           - anything from the weblog was shown
+ * entry:<id>                - the entry was shown
+ * list:<handle>[/filter]    - a listing of entries, optionally narrowed to
+ *                             a category, a tag or a month
+ * comments:<handle>         - a listing of recent comments
+ * weblogs                   - a listing of weblogs
+ *
+ * where a handle of "*" means the listing spans the whole site.  The
+ * dependenciesOf() methods give the set of dependencies which a change to
+ * an object affects, see DependencyIndex for how the two are matched up.
+ */
+public final class CacheDependencies {
+
+    private static final String SITE = "*";
+
+    public static final String WEBLOGS = "weblogs";
+
+    private static final ThreadLocal<Set<String>> recorded = new ThreadLocal<>();
+
+
+    // a non-instantiable class
+    private CacheDependencies() {}
+
+
+    /**
+     * Start recording dependencies on this thread.
+     */
+    public static void begin() {
+        recorded.set(new HashSet<>());
+    }
+
+
+    /**
+     * Stop recording dependencies on this thread.
+     *
+     * @return the dependencies recorded since begin().
+     */
+    public static Set<String> end() {
+        Set<String> dependencies = recorded.get();
+        recorded.remove();
+        return (dependencies != null) ? dependencies : Collections.<String>emptySet();
+    }
+
+
+    public static void recordWeblog(Weblog weblog) {
+        Set<String> dependencies = recorded.get();
+        if(dependencies != null && weblog != null) {
+            dependencies.add("weblog:" + weblog.getHandle());
+        }
+    }
+
+
+    public static void recordEntry(WeblogEntry entry) {
+        Set<String> dependencies = recorded.get();
+        if(dependencies != null && entry != null) {
+            dependencies.add("entry:" + entry.getId());
+            if(entry.getWebsite() != null) {
+                dependencies.add("weblog:" + entry.getWebsite().getHandle());
+            }
+        }
+    }
+
+
+    /**
+     * Record a listing of entries.
+     *
+     * Only one filter is kept since any entry which could show up in the
+     * listing must match it, which is all that's needed to know when the
+     * listing changes.
+     *
+     * @param weblog weblog the listing is for, null for the whole site.
+     * @param catName category the listing is narrowed to, or null.
+     * @param tags tags the listing is narrowed to, or null.
+     * @param month month the listing is narrowed to in yyyyMM form, or null.
+     */
+    public static void recordEntries(Weblog weblog, String catName, List<String> tags, String month) {
+        Set<String> dependencies = recorded.get();
+        if(dependencies != null) {
+            String list = listOf(weblog);
+            if(weblog == null) {
+                // site wide listings aren't worth narrowing down
+                dependencies.add(list);
+            } else if(catName != null) {
+                dependencies.add(list + "/cat:" + catName);
+            } else if(tags != null && !tags.isEmpty()) {
+                dependencies.add(list + "/tag:" + tags.get(0).toLowerCase(Locale.ROOT));
+            } else if(month != null && month.length() >= 6) {
+                dependencies.add(list + "/month:" + month.substring(0, 6));
+            } else {
+                dependencies.add(list);
+            }
+        }
+    }
+
+
+    /**
+     * Record a listing of comments.
+     *
+     * @param weblog weblog the listing is for, null for the whole site.
+     */
+    public static void recordComments(Weblog weblog) {
+        Set<String> dependencies = recorded.get();
+        if(dependencies != null) {
+            dependencies.add("comments:" + (weblog != null ? weblog.getHandle() : SITE));
+        }
+    }
+
+
+    /**
+     * Record a listing of weblogs or users.
+     */
+    public static void recordWeblogs() {
+        Set<String> dependencies = recorded.get();
+        if(dependencies != null) {
+            dependencies.add(WEBLOGS);
+        }
+    }
+
+
+    /**
+     * Dependencies affected by a change to an entry.  This covers the entry
+     * itself, every listing the entry may now be part of, and the listings
+     * for the category, tags and month it had before the change, which
+     * calendars and archive menus depend on without showing the entry.
+     */
+    public static Set<String> dependenciesOf(WeblogEntry entry) {
+
+        Set<String> dependencies = new HashSet<>();
+        dependencies.add("entry:" + entry.getId());
+
+        dependencies.add(listOf(null));
+
+        Weblog weblog = entry.getWebsite();
+        if(weblog != null) {
+            String list = listOf(weblog);
+            dependencies.add(list);
+
+            addCategory(dependencies, list, entry.getCategory());
+            addCategory(dependencies, list, entry.getPreviousCategory());
+
+            addTags(dependencies, list, entry.getTags());
+            addTags(dependencies, list, entry.getRemovedTags());
+
+            addMonth(dependencies, list, weblog, entry.getPubTime());
+            addMonth(dependencies, list, weblog, entry.getPreviousPubTime());
+        }
+
+        return dependencies;
+    }
+
+
+    /**
+     * Dependencies affected by a change to a comment.
+     */
+    public static Set<String> dependenciesOf(WeblogEntryComment comment) {
+
+        Set<String> dependencies = new HashSet<>();
+        dependencies.add("comments:" + SITE);
+
+        WeblogEntry entry = comment.getWeblogEntry();
+        if(entry != null) {
+            dependencies.add("entry:" + entry.getId());
+            if(entry.getWebsite() != null) {
+                dependencies.add("comments:" + entry.getWebsite().getHandle());
+            }
+        }
+
+        return dependencies;
+    }
+
+
+    /**
+     * Dependencies affected by a change to a weblog or anything which is
+     * shown on all of its pages, like its categories, bookmarks or templates.
+     */
+    public static Set<String> dependenciesOf(Weblog weblog) {
+
+        Set<String> dependencies = new HashSet<>();
+        dependencies.add("weblog:" + weblog.getHandle());
+        dependencies.add(WEBLOGS);
+
+        return dependencies;
+    }
+
+
+    private static void addCategory(Set<String> dependencies, String list, WeblogCategory category) {
+        if(category != null) {
+            dependencies.add(list + "/cat:" + category.getName());
+        }
+    }
+
+
+    private static void addTags(Set<String> dependencies, String list, Set<WeblogEntryTag> tags) {
+        if(tags != null) {
+            for(WeblogEntryTag tag : tags) {
+                dependencies.add(list + "/tag:" + tag.getName().toLowerCase(Locale.ROOT));
+            }
+        }
+    }
+
+
+    private static void addMonth(Set<String> dependencies, String list, Weblog weblog, Timestamp pubTime) {
+        if(pubTime != null) {
+            SimpleDateFormat format = DateFormatUtil.get6charDateFormat();
+            format.setTimeZone(weblog.getTimeZoneInstance());
+            dependencies.add(list + "/month:" + format.format(new Date(pubTime.getTime())));
+        }
+    }
+
+
+    private static String listOf(Weblog weblog) {
+        return "list:" + (weblog != null ? weblog.getHandle() : SITE);
+    }
+
+}
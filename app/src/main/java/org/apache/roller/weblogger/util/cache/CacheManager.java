@@ -125,6 +125,7 @@ public final class CacheManager {
      *
      * example:
      *   factory -> org.apache.roller.weblogger.util.cache.LRUCacheFactoryImpl
+     *   factory -> org.apache.roller.weblogger.util.cache.ConcurrentCacheFactoryImpl
      *
      * This allows Roller admins the ability to choose a caching strategy to
      * use for the whole system, but override it in certain places where they
@@ -156,6 +157,14 @@ public final class CacheManager {
             }
         }
         
+        if(cache == null && properties != null && !properties.containsKey("factory")
+                && (properties.containsKey("maxBytes") || properties.containsKey("offHeapBytes"))
+                && !(cacheFactory instanceof ConcurrentCacheFactoryImpl)) {
+            // only concurrent caches can be bounded by bytes, so use one
+            // rather than ignore the budget
+            cache = new ConcurrentCacheFactoryImpl().constructCache(properties);
+        }
+        
         if(cache == null) {
             // ask our default cache factory for a new cache instance
             cache = cacheFactory.constructCache(properties);
@@ -308,7 +317,27 @@ public final class CacheManager {
      * Place to do any cleanup tasks for cache system.
      */
     public static void shutdown() {
-        // no-op
+        // let handlers which hold on to resources release them
+        for (CacheHandler handler : cacheHandlers) {
+            if (handler instanceof AutoCloseable) {
+                try {
+                    ((AutoCloseable) handler).close();
+                } catch (Exception e) {
+                    log.warn("Error closing cache handler " + handler, e);
+                }
+            }
+        }
+        
+        // and caches which hold on to storage outside the heap
+        for (Cache cache : caches.values()) {
+            if (cache instanceof AutoCloseable) {
+                try {
+                    ((AutoCloseable) cache).close();
+                } catch (Exception e) {
+                    log.warn("Error closing cache " + cache.getId(), e);
+                }
+            }
+        }
     }
     
 }
@@ -1,11 +1,20 @@
 
 package org.apache.roller.weblogger.util.cache;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32C;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.roller.util.RollerConstants;
@@ -14,14 +23,36 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 
 /**
  * A utility class for storing cached content written to a java.io.Writer.
+ *
+ * Content may optionally be gzipped once when it is closed, in which case
+ * only the compressed form is kept.  It can then be sent as-is to clients
+ * which accept gzip and is decompressed on the fly for everyone else.
+ *
+ * A hash of the content is computed when it is closed, which makes for a
+ * strong ETag that changes only when the content itself does.
  */
 public class CachedContent implements AutoCloseable, Serializable {
     
     private static final Log log = LogFactory.getLog(CachedContent.class);
     
+    // content smaller than this isn't worth the gzip overhead
+    private static final int MIN_COMPRESS_SIZE = RollerConstants.ONE_KB_IN_BYTES;
+    
     // the byte array we use to maintain the cached content
     private byte[] content = new byte[0];
     
+    // true if the byte array holds the gzipped content
+    private boolean compressed = false;
+    
+    // length of the uncompressed content
+    private int contentLength = 0;
+    
+    // 64 bit hash of the uncompressed content, computed on close()
+    private long contentHash = 0;
+    
+    // should we gzip the content on close()
+    private final transient boolean compress;
+    
     // content-type of data in byte array
     private final String contentType;
     
@@ -31,12 +62,19 @@ public class CachedContent implements AutoCloseable, Serializable {
     // The PrintWriter that users will be writing to
     private transient PrintWriter cachedWriter = null;
     
+    // set when the content has been moved off the heap, content is then empty
+    private transient OffHeapContent offHeapContent = null;
+    
     
     public CachedContent(int size) {
         this(size, null);
     }
     
     public CachedContent(int size, String contentType) {
+        this(size, contentType, false);
+    }
+    
+    public CachedContent(int size, String contentType, boolean compress) {
         // construct output stream
         if(size > 0) {
             this.outstream = new ByteArrayOutputStream(size);
@@ -47,6 +85,27 @@ public class CachedContent implements AutoCloseable, Serializable {
         // construct writer from output stream
         this.cachedWriter = new PrintWriter(new OutputStreamWriter(this.outstream, UTF_8));
         this.contentType = contentType;
+        this.compress = compress;
+    }
+    
+    // a closed copy of some content which lives in an off-heap store
+    private CachedContent(CachedContent original, OffHeapContent offHeapContent) {
+        this.offHeapContent = offHeapContent;
+        this.compressed = original.compressed;
+        this.contentLength = original.contentLength;
+        this.contentHash = original.contentHash;
+        this.contentType = original.contentType;
+        this.compress = false;
+    }
+    
+    // a closed copy of some content which lives on the heap
+    private CachedContent(CachedContent original, byte[] content) {
+        this.content = content;
+        this.compressed = original.compressed;
+        this.contentLength = original.contentLength;
+        this.contentHash = original.contentHash;
+        this.contentType = original.contentType;
+        this.compress = false;
     }
     
     
@@ -56,9 +115,153 @@ public class CachedContent implements AutoCloseable, Serializable {
      *
      * NOTE: the content is only a representation of the data written to the
      *       enclosed Writer up until the last call to flush().
+     *
+     * If the content is compressed or lives off-heap this makes a copy, so
+     * prefer writeTo().
      */
     public byte[] getContent() {
-        return this.content;
+        if(!this.compressed) {
+            return getStoredContent();
+        }
+        
+        ByteArrayOutputStream out = new ByteArrayOutputStream(this.contentLength);
+        try {
+            writeTo(out);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return out.toByteArray();
+    }
+    
+    
+    /**
+     * Get the length in bytes of the uncompressed content cached in this object.
+     */
+    public int getContentLength() {
+        return this.contentLength;
+    }
+    
+    
+    /**
+     * Get the number of bytes this object actually holds, which is smaller
+     * than the content length if the content is compressed.
+     */
+    public int getStoredLength() {
+        if(this.offHeapContent != null) {
+            return this.offHeapContent.getLength();
+        }
+        return this.content.length;
+    }
+    
+    
+    /**
+     * Get a hash of the uncompressed content, suitable for use as an ETag.
+     * Only available once this object has been closed.
+     *
+     * The hash combines a CRC32C and an Adler32 checksum, both of which are
+     * cheap to compute, into a 64 bit value.
+     */
+    public String getContentHash() {
+        if(this.outstream != null) {
+            throw new IllegalStateException("Content hash is only available after close()");
+        }
+        return Long.toHexString(this.contentHash);
+    }
+    
+    
+    /**
+     * True if the content is held in gzip form, see writeCompressedTo().
+     */
+    public boolean isCompressed() {
+        return this.compressed;
+    }
+    
+    
+    /**
+     * Write the uncompressed content cached in this object to a stream,
+     * without copying it onto the heap first.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        if(!this.compressed) {
+            writeStoredTo(out);
+            return;
+        }
+        
+        InputStream stored = (this.offHeapContent != null)
+                ? this.offHeapContent.newInputStream()
+                : new ByteArrayInputStream(this.content);
+        try (InputStream in = new GZIPInputStream(stored, RollerConstants.EIGHT_KB_IN_BYTES)) {
+            byte[] buffer = new byte[RollerConstants.EIGHT_KB_IN_BYTES];
+            int count;
+            while((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+        }
+    }
+    
+    
+    /**
+     * Write the gzipped content cached in this object to a stream, suitable
+     * for a response with a "Content-Encoding: gzip" header.
+     *
+     * @throws IllegalStateException if the content is not compressed.
+     */
+    public void writeCompressedTo(OutputStream out) throws IOException {
+        if(!this.compressed) {
+            throw new IllegalStateException("Content is not compressed");
+        }
+        writeStoredTo(out);
+    }
+    
+    
+    /**
+     * True if the content has been moved out of the java heap.
+     */
+    public boolean isOffHeap() {
+        return this.offHeapContent != null;
+    }
+    
+    
+    /**
+     * Make sure the content stays readable until release() is called.
+     *
+     * Content taken out of a cache may be stored off-heap, in which case the
+     * cache could recycle its storage at any time, so callers which are going
+     * to read the content must do so between retain() and release().
+     *
+     * @return false if the content is gone, which should be treated just like
+     *         a cache miss.
+     */
+    public boolean retain() {
+        return this.offHeapContent == null || this.offHeapContent.retain();
+    }
+    
+    
+    /**
+     * Counterpart to retain().
+     */
+    public void release() {
+        if(this.offHeapContent != null) {
+            this.offHeapContent.release();
+        }
+    }
+    
+    
+    /**
+     * Create a copy of this closed content in the given off-heap store.
+     *
+     * @return the off-heap copy, or null if the store has no room for it.
+     */
+    CachedContent moveOffHeap(OffHeapStore store) {
+        if(this.outstream != null || this.offHeapContent != null) {
+            throw new IllegalStateException("Only closed, on-heap content can move off-heap");
+        }
+        
+        OffHeapContent stored = store.store(this.content);
+        if(stored == null) {
+            return null;
+        }
+        return new CachedContent(this, stored);
     }
     
     
@@ -69,7 +272,7 @@ public class CachedContent implements AutoCloseable, Serializable {
      *       enclosed Writer up until the last call to flush().
      */
     public String getContentAsString() {
-        return new String(this.content, UTF_8);
+        return new String(getContent(), UTF_8);
     }
     
     
@@ -97,6 +300,7 @@ public class CachedContent implements AutoCloseable, Serializable {
         
         this.cachedWriter.flush();
         this.content = this.outstream.toByteArray();
+        this.contentLength = this.content.length;
         
         log.debug("FLUSHED "+this.content.length);
     }
@@ -118,12 +322,76 @@ public class CachedContent implements AutoCloseable, Serializable {
             // avoid copying the content again if it hasn't changed since last flush
             if(this.content.length != this.outstream.size()) {
                 this.content = this.outstream.toByteArray();
+                this.contentLength = this.content.length;
             }
             this.outstream.close();
             this.outstream = null;
+            
+            this.contentHash = hash(this.content);
+            
+            if(this.compress && this.content.length >= MIN_COMPRESS_SIZE) {
+                compressContent();
+            }
         }
         
         log.debug("CLOSED");
     }
     
+    
+    private void compressContent() throws IOException {
+        
+        ByteArrayOutputStream out = new ByteArrayOutputStream(this.content.length / 4);
+        
+        // this only happens once per render, so take the best ratio we can get
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out, RollerConstants.EIGHT_KB_IN_BYTES) {
+                { def.setLevel(Deflater.BEST_COMPRESSION); }
+            }) {
+            gzip.write(this.content);
+        }
+        
+        // incompressible content is left alone
+        if(out.size() < this.content.length) {
+            this.content = out.toByteArray();
+            this.compressed = true;
+            
+            log.debug("COMPRESSED "+this.contentLength+" -> "+this.content.length);
+        }
+    }
+    
+    
+    private static long hash(byte[] bytes) {
+        CRC32C crc = new CRC32C();
+        crc.update(bytes);
+        Adler32 adler = new Adler32();
+        adler.update(bytes);
+        return (adler.getValue() << 32) | crc.getValue();
+    }
+    
+    
+    // the bytes we hold, compressed or not
+    private byte[] getStoredContent() {
+        if(this.offHeapContent != null) {
+            return this.offHeapContent.toByteArray();
+        }
+        return this.content;
+    }
+    
+    
+    private void writeStoredTo(OutputStream out) throws IOException {
+        if(this.offHeapContent != null) {
+            this.offHeapContent.writeTo(out);
+        } else {
+            out.write(this.content);
+        }
+    }
+    
+    
+    // off-heap content does not travel, so serialize an on-heap copy instead
+    private Object writeReplace() {
+        if(this.offHeapContent != null) {
+            return new CachedContent(this, getStoredContent());
+        }
+        return this;
+    }
+    
 }
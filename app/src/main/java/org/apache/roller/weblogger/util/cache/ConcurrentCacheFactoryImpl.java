@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util.cache;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.weblogger.config.WebloggerConfig;
+
+
+/**
+ * Roller concurrent cache factory.
+ */
+public class ConcurrentCacheFactoryImpl implements CacheFactory {
+
+    private static final Log log = LogFactory.getLog(ConcurrentCacheFactoryImpl.class);
+
+
+    // protected so only the CacheManager can instantiate us
+    protected ConcurrentCacheFactoryImpl() {}
+
+
+    /**
+     * Construct a new instance of a Roller ConcurrentCache.
+     */
+    @Override
+    public Cache constructCache(Map<String, ?> properties) {
+
+        int size = 100;
+        long timeout = 15 * 60;
+        String id = "unknown";
+
+        try {
+            size = Integer.parseInt((String) properties.get("size"));
+        } catch(Exception e) {
+            log.warn("invalid size property", e);
+        }
+
+        try {
+            timeout = Long.parseLong((String) properties.get("timeout"));
+        } catch(Exception e) {
+            log.warn("invalid timeout property", e);
+        }
+
+        // optional, bounds the cache by content bytes as well as entry count
+        long maxBytes = 0;
+        String maxBytesProp = (String) properties.get("maxBytes");
+        if(maxBytesProp != null) {
+            try {
+                maxBytes = Long.parseLong(maxBytesProp.trim());
+            } catch(NumberFormatException e) {
+                log.warn("invalid maxBytes property", e);
+            }
+        }
+
+        // optional, size of a second cache tier outside of the java heap
+        long offHeapBytes = 0;
+        String offHeapBytesProp = (String) properties.get("offHeapBytes");
+        if(offHeapBytesProp != null) {
+            try {
+                offHeapBytes = Long.parseLong(offHeapBytesProp.trim());
+            } catch(NumberFormatException e) {
+                log.warn("invalid offHeapBytes property", e);
+            }
+        }
+
+        String cacheId = (String) properties.get("id");
+        if(cacheId != null) {
+            id = cacheId;
+        }
+
+        OffHeapStore store = null;
+        if(offHeapBytes > 0) {
+            store = constructOffHeapStore(id, offHeapBytes,
+                    "true".equals(properties.get("offHeapMapped")));
+        }
+
+        Cache cache;
+        if(store != null) {
+            cache = new OffHeapTieredCacheImpl(id, size, timeout,
+                    (maxBytes > 0) ? maxBytes : Long.MAX_VALUE, store);
+        } else if(maxBytes > 0) {
+            cache = new WeightedCacheImpl(id, size, timeout, maxBytes);
+        } else {
+            cache = new ConcurrentCacheImpl(id, size, timeout);
+        }
+
+        log.debug("new cache constructed. size=" + size + ", timeout=" + timeout
+                + ", maxBytes=" + maxBytes + ", offHeapBytes=" + offHeapBytes);
+
+        return cache;
+    }
+
+
+    private OffHeapStore constructOffHeapStore(String id, long offHeapBytes, boolean mapped) {
+
+        if(!mapped) {
+            return new OffHeapStore(offHeapBytes);
+        }
+
+        Path file = Paths.get(WebloggerConfig.getProperty("cache.dir"), id + ".offheap");
+        try {
+            return new OffHeapStore(offHeapBytes, file);
+        } catch(IOException e) {
+            log.error("Unable to map off-heap cache file ["+file+"], off-heap tier disabled", e);
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,444 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util.cache;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.util.RollerConstants;
+
+
+/**
+ * An expiring LRU cache which does not lock on reads.
+ *
+ * Entries live in a ConcurrentHashMap so a get() never takes a monitor.
+ * Instead of reordering an access-ordered map on every read, reads are
+ * recorded in a small set of striped, lossy ring buffers which are drained
+ * into the LRU ordering in batches whenever a buffer fills up or a write
+ * happens.  Writes and evictions are serialized on a single lock, which is
+ * fine for Roller since a cache write only happens after a full render.
+ *
+ * Every entry carries its own expiration time so callers may override the
+ * default timeout on a per-entry basis.
+ */
+public class ConcurrentCacheImpl implements Cache {
+
+    private static final Log log = LogFactory.getLog(ConcurrentCacheImpl.class);
+
+    // number of read buffers and slots per buffer, both must be powers of 2
+    private static final int READ_BUFFER_STRIPES = 16;
+    private static final int READ_BUFFER_SIZE = 32;
+    private static final int READ_BUFFER_MASK = READ_BUFFER_SIZE - 1;
+
+    private final String id;
+    private final int maxsize;
+
+    // default timeout for entries, in milliseconds.  0 means never expire
+    private final long timeout;
+
+    // the cached data, safe to read without locking
+    private final Map<String, CacheNode> data;
+
+    // LRU ordering of the cached data, only touched while holding evictionLock
+    private final LinkedHashMap<String, CacheNode> accessOrder;
+
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private final ReadBuffer[] readBuffers;
+
+    // for metrics
+    protected final LongAdder hits = new LongAdder();
+    protected final LongAdder misses = new LongAdder();
+    protected final LongAdder puts = new LongAdder();
+    protected final LongAdder removes = new LongAdder();
+    protected final LongAdder evictions = new LongAdder();
+    protected volatile Date startTime = new Date();
+
+
+    protected ConcurrentCacheImpl(String id, int maxsize, long timeout) {
+
+        this.id = id;
+        this.maxsize = Math.max(1, maxsize);
+
+        // timeout is specified in seconds; only positive values allowed
+        this.timeout = (timeout > 0) ? timeout * RollerConstants.SEC_IN_MS : 0;
+
+        this.data = new ConcurrentHashMap<>(this.maxsize * 4 / 3 + 1);
+        this.accessOrder = new LinkedHashMap<>(this.maxsize * 4 / 3 + 1, 0.75f, true);
+
+        this.readBuffers = new ReadBuffer[READ_BUFFER_STRIPES];
+        for (int i = 0; i < READ_BUFFER_STRIPES; i++) {
+            this.readBuffers[i] = new ReadBuffer();
+        }
+    }
+
+
+    @Override
+    public String getId() {
+        return this.id;
+    }
+
+
+    public int getMaxSize() {
+        return this.maxsize;
+    }
+
+
+    /**
+     * Store an entry in the cache using the default timeout of this cache.
+     */
+    @Override
+    public void put(String key, Object value) {
+        putNode(new CacheNode(key, value, expiryFor(this.timeout)));
+    }
+
+
+    /**
+     * Store an entry in the cache with its own timeout, in seconds.
+     * A timeout of 0 or less means the entry only leaves the cache when it
+     * is evicted or removed.
+     */
+    public void put(String key, Object value, long timeoutSeconds) {
+        long ttl = (timeoutSeconds > 0) ? timeoutSeconds * RollerConstants.SEC_IN_MS : 0;
+        putNode(new CacheNode(key, value, expiryFor(ttl)));
+    }
+
+
+    /**
+     * Store an entry in the cache which expires at the given point in time,
+     * as returned by System.currentTimeMillis().  Long.MAX_VALUE means never.
+     */
+    protected void putUntil(String key, Object value, long expiresAt) {
+        putNode(new CacheNode(key, value, expiresAt));
+    }
+
+
+    /**
+     * Retrieve an entry from the cache.
+     *
+     * This never blocks, the access is only recorded for later processing.
+     * Expired entries are treated as a miss and dropped from the cache.
+     */
+    @Override
+    public Object get(String key) {
+
+        CacheNode node = this.data.get(key);
+
+        if (node == null) {
+            misses.increment();
+            return null;
+        }
+
+        if (node.hasExpired(System.currentTimeMillis())) {
+            log.debug("EXPIRED ["+key+"]");
+            misses.increment();
+
+            evictionLock.lock();
+            try {
+                if (this.data.remove(key, node)) {
+                    this.accessOrder.remove(key);
+                    onRemoval(key, node.value, node.expiresAt, false);
+                }
+            } finally {
+                evictionLock.unlock();
+            }
+            return null;
+        }
+
+        hits.increment();
+        recordRead(node);
+
+        return node.value;
+    }
+
+
+    @Override
+    public void remove(String key) {
+
+        evictionLock.lock();
+        try {
+            CacheNode node = this.data.remove(key);
+            if (node != null) {
+                this.accessOrder.remove(key);
+                onRemoval(key, node.value, node.expiresAt, false);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+        removes.increment();
+    }
+
+
+    @Override
+    public void clear() {
+
+        evictionLock.lock();
+        try {
+            for (CacheNode node : this.data.values()) {
+                onRemoval(node.key, node.value, node.expiresAt, false);
+            }
+            this.data.clear();
+            this.accessOrder.clear();
+            for (ReadBuffer buffer : this.readBuffers) {
+                buffer.clear();
+            }
+
+            // clear metrics
+            hits.reset();
+            misses.reset();
+            puts.reset();
+            removes.reset();
+            evictions.reset();
+            startTime = new Date();
+
+            onClear();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+
+    @Override
+    public Map<String, Object> getStats() {
+
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("startTime", this.startTime);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("puts", puts.sum());
+        stats.put("removes", removes.sum());
+        stats.put("evictions", evictions.sum());
+        stats.put("size", this.data.size());
+        stats.put("maxSize", this.maxsize);
+
+        // calculate efficiency
+        if((hitCount + missCount) > 0) {
+            double efficiency = (double) hitCount / (hitCount + missCount);
+            stats.put("efficiency", efficiency * RollerConstants.PERCENT_100);
+        }
+
+        return stats;
+    }
+
+
+    /**
+     * Number of entries currently held, including ones which have expired
+     * but have not been noticed yet.
+     */
+    public int size() {
+        return this.data.size();
+    }
+
+
+    /**
+     * Decide if the cache holds more than it should and needs to evict.
+     * Called while holding the eviction lock.
+     */
+    protected boolean isOverCapacity() {
+        return this.data.size() > this.maxsize;
+    }
+
+
+    /**
+     * Callback for subclasses, invoked while holding the eviction lock
+     * whenever an entry leaves the cache.
+     *
+     * @param expiresAt when the entry would have expired, Long.MAX_VALUE if never.
+     * @param evicted true if the entry was dropped by the cache to make room,
+     *                false if it was removed, replaced by clear() or expired.
+     */
+    protected void onRemoval(String key, Object value, long expiresAt, boolean evicted) {
+        // no-op
+    }
+
+
+    /**
+     * Callback for subclasses, invoked while holding the eviction lock
+     * whenever an entry is added to the cache.
+     */
+    protected void onInsert(String key, Object value, Object replaced) {
+        // no-op
+    }
+
+
+    /**
+     * Callback for subclasses, invoked while holding the eviction lock
+     * after all entries have been cleared.
+     */
+    protected void onClear() {
+        // no-op
+    }
+
+
+    /**
+     * Evict the least recently used entry, if there is one.
+     *
+     * @return true if an entry was evicted.
+     */
+    protected boolean evictEldest() {
+
+        evictionLock.lock();
+        try {
+            drainReadBuffers();
+
+            Iterator<CacheNode> nodes = this.accessOrder.values().iterator();
+            if (nodes.hasNext()) {
+                CacheNode eldest = nodes.next();
+                nodes.remove();
+                evict(eldest);
+                return true;
+            }
+            return false;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+
+    private static long expiryFor(long ttl) {
+        return (ttl > 0) ? System.currentTimeMillis() + ttl : Long.MAX_VALUE;
+    }
+
+
+    private void putNode(CacheNode node) {
+
+        evictionLock.lock();
+        try {
+            // bring the LRU ordering up to date before deciding what to evict
+            drainReadBuffers();
+
+            CacheNode previous = this.data.put(node.key, node);
+            this.accessOrder.put(node.key, node);
+            onInsert(node.key, node.value, (previous != null) ? previous.value : null);
+
+            evictIfNeeded();
+        } finally {
+            evictionLock.unlock();
+        }
+        puts.increment();
+    }
+
+
+    private void evictIfNeeded() {
+
+        // expired entries which were never read again drift to the head of
+        // the LRU order, so they are naturally the first to go
+        Iterator<CacheNode> nodes = this.accessOrder.values().iterator();
+        while (isOverCapacity() && nodes.hasNext()) {
+            CacheNode eldest = nodes.next();
+            nodes.remove();
+            evict(eldest);
+        }
+    }
+
+
+    private void evict(CacheNode node) {
+        if (this.data.remove(node.key, node)) {
+            evictions.increment();
+            onRemoval(node.key, node.value, node.expiresAt, true);
+        }
+    }
+
+
+    private void recordRead(CacheNode node) {
+
+        ReadBuffer buffer = this.readBuffers[
+                (int) Thread.currentThread().getId() & (READ_BUFFER_STRIPES - 1)];
+
+        int index = (int) (buffer.writeCount.getAndIncrement() & READ_BUFFER_MASK);
+        buffer.slots.lazySet(index, node);
+
+        // once a buffer wraps around try to apply the batch, but never wait
+        if (index == READ_BUFFER_MASK && evictionLock.tryLock()) {
+            try {
+                drainReadBuffers();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+
+    // must be called while holding the eviction lock
+    private void drainReadBuffers() {
+        for (ReadBuffer buffer : this.readBuffers) {
+            for (int i = 0; i < READ_BUFFER_SIZE; i++) {
+                CacheNode node = buffer.slots.getAndSet(i, null);
+
+                // a get() on an access ordered map moves the entry to the tail
+                if (node != null) {
+                    this.accessOrder.get(node.key);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * A cached value along with the time at which it expires.
+     */
+    private static final class CacheNode {
+
+        private final String key;
+        private final Object value;
+        private final long expiresAt;
+
+        CacheNode(String key, Object value, long expiresAt) {
+            this.key = key;
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean hasExpired(long now) {
+            return this.expiresAt < now;
+        }
+    }
+
+
+    /**
+     * A lossy ring buffer of recent reads.  If readers lap the drainer then
+     * older reads are simply overwritten, which only makes the LRU ordering
+     * slightly less precise.
+     */
+    private static final class ReadBuffer {
+
+        private final AtomicLong writeCount = new AtomicLong();
+        private final AtomicReferenceArray<CacheNode> slots =
+                new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+
+        void clear() {
+            for (int i = 0; i < READ_BUFFER_SIZE; i++) {
+                slots.set(i, null);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,218 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util.cache;
+
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * An index from the dependencies recorded while rendering some content, see
+ * CacheDependencies, to the cache keys the content was stored under.
+ *
+ * The index also follows the modifications of each weblog which it has
+ * evicted dependents for, so caches which expire content by weblog last
+ * modified time can tell when every modification since some content was
+ * cached has already been accounted for.  Any other modification, such as
+ * one made by another cluster node, expires content cached before it was
+ * noticed.
+ *
+ * The index is not told when a cache evicts an entry on its own, so it
+ * holds on to a bounded number of keys and asks its owner to start over
+ * once that is exceeded.
+ */
+public class DependencyIndex {
+
+    private final int maxKeys;
+
+    // dependency -> keys of content which used it
+    private final Map<String, Set<String>> keysByDependency = new ConcurrentHashMap<>();
+
+    // key -> dependencies recorded for it
+    private final Map<String, Set<String>> dependenciesByKey = new ConcurrentHashMap<>();
+
+    // weblog handle -> modifications accounted for
+    private final Map<String, Watermark> watermarks = new ConcurrentHashMap<>();
+
+
+    public DependencyIndex(int maxKeys) {
+        this.maxKeys = maxKeys;
+    }
+
+
+    /**
+     * Record the dependencies of content about to be cached under key,
+     * replacing whatever was recorded for the key before.
+     *
+     * @return false if the index is full, in which case it has been cleared
+     *         and the caller must clear its cache since content cached so
+     *         far can no longer be invalidated through the index.
+     */
+    public boolean register(String key, Set<String> dependencies) {
+
+        remove(key);
+
+        if(dependenciesByKey.size() >= maxKeys) {
+            clear();
+            return false;
+        }
+
+        dependenciesByKey.put(key, new HashSet<>(dependencies));
+        for(String dependency : dependencies) {
+            keysByDependency.compute(dependency, (d, keys) -> {
+                Set<String> dependents = (keys != null) ? keys : new HashSet<>();
+                dependents.add(key);
+                return dependents;
+            });
+        }
+
+        return true;
+    }
+
+
+    /**
+     * True if the index knows the dependencies of the given key.
+     */
+    public boolean isTracked(String key) {
+        return dependenciesByKey.containsKey(key);
+    }
+
+
+    /**
+     * Forget about a key.
+     */
+    public void remove(String key) {
+
+        Set<String> dependencies = dependenciesByKey.remove(key);
+        if(dependencies != null) {
+            for(String dependency : dependencies) {
+                keysByDependency.computeIfPresent(dependency, (d, keys) -> {
+                    keys.remove(key);
+                    return keys.isEmpty() ? null : keys;
+                });
+            }
+        }
+    }
+
+
+    /**
+     * Find all keys whose content used any of the given dependencies and
+     * remove them from the index.
+     *
+     * @return the keys which the caller should now evict.
+     */
+    public Set<String> invalidate(Set<String> dependencies) {
+
+        Set<String> keys = new HashSet<>();
+        for(String dependency : dependencies) {
+            Set<String> dependents = keysByDependency.remove(dependency);
+            if(dependents != null) {
+                keys.addAll(dependents);
+            }
+        }
+
+        for(String key : keys) {
+            remove(key);
+        }
+
+        return keys;
+    }
+
+
+    /**
+     * Note that dependents of a modification of the given weblog have just
+     * been evicted, see isCurrent().
+     *
+     * @param previousModified last modified time of the weblog before the
+     *        modification, or null if not known.
+     * @param lastModified last modified time of the weblog after it.
+     */
+    public void markInvalidated(String handle, Date previousModified, Date lastModified) {
+        watermarks.compute(handle, (h, mark) -> {
+            if(lastModified == null) {
+                // can't tell which modification this was
+                return null;
+            }
+            if(mark != null && mark.lastModified == lastModified.getTime()) {
+                // nothing new was modified
+                return mark;
+            }
+            if(mark != null && previousModified != null
+                    && mark.lastModified == previousModified.getTime()) {
+                // picks up right where the last one we saw left off
+                return new Watermark(mark.since, lastModified.getTime());
+            }
+            // some modification went by unseen, only content cached from
+            // now on is known to be current
+            return new Watermark(System.currentTimeMillis(), lastModified.getTime());
+        });
+    }
+
+
+    /**
+     * Determine if content cached under key at timeCached is still current,
+     * even though its weblog was modified at lastModified after that.
+     *
+     * That is the case when the content's dependencies are known and every
+     * modification of the weblog since the content was cached had its
+     * dependents evicted, meaning the content did not depend on any of them.
+     */
+    public boolean isCurrent(String key, String handle, long lastModified, long timeCached) {
+
+        if(!isTracked(key)) {
+            return false;
+        }
+
+        Watermark mark = watermarks.get(handle);
+        return mark != null && mark.lastModified == lastModified && timeCached >= mark.since;
+    }
+
+
+    public void clear() {
+        keysByDependency.clear();
+        dependenciesByKey.clear();
+        watermarks.clear();
+    }
+
+
+    public int size() {
+        return dependenciesByKey.size();
+    }
+
+
+    /**
+     * Every modification of a weblog after local time since, up to the one
+     * which left it last modified at lastModified, had its dependents
+     * evicted.
+     */
+    private static final class Watermark {
+
+        private final long since;
+        private final long lastModified;
+
+        Watermark(long since, long lastModified) {
+            this.since = since;
+            this.lastModified = lastModified;
+        }
+    }
+
+}
@@ -57,6 +57,11 @@ public class ExpiringLRUCacheFactoryImpl implements CacheFactory {
             log.warn("invalid timeout property", e);
         }
         
+        if(properties.containsKey("maxBytes")) {
+            log.warn("maxBytes is not supported by "+getClass().getName()+
+                    ", use ConcurrentCacheFactoryImpl for a byte budget");
+        }
+        
         String cacheId = (String) properties.get("id");
         if(cacheId != null) {
             id = cacheId;
@@ -84,7 +84,7 @@ public class ExpiringLRUCacheImpl extends LRUCacheImpl {
             // if the value is null then that means this entry expired
             if (value == null) {
                 log.debug("EXPIRED ["+key+"]");
-                hits--;
+                hits.decrement();
                 super.remove(key);
             }
         }
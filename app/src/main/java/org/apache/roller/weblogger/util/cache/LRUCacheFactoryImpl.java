@@ -49,6 +49,11 @@ public class LRUCacheFactoryImpl implements CacheFactory {
             log.warn("invalide size property", e);
         }
         
+        if(properties.containsKey("maxBytes")) {
+            log.warn("maxBytes is not supported by "+getClass().getName()+
+                    ", use ConcurrentCacheFactoryImpl for a byte budget");
+        }
+        
         String cacheId = (String) properties.get("id");
         if (cacheId != null) {
             id = cacheId;
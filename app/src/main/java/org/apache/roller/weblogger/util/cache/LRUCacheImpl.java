@@ -22,6 +22,7 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
 import org.apache.roller.util.RollerConstants;
 
 
@@ -34,11 +35,11 @@ public class LRUCacheImpl implements Cache {
     private final Map<String, Object> cache;
     
     // for metrics
-    protected double hits = 0;
-    protected double misses = 0;
-    protected double puts = 0;
-    protected double removes = 0;
-    protected Date startTime = new Date();
+    protected final LongAdder hits = new LongAdder();
+    protected final LongAdder misses = new LongAdder();
+    protected final LongAdder puts = new LongAdder();
+    protected final LongAdder removes = new LongAdder();
+    protected volatile Date startTime = new Date();
     
     
     protected LRUCacheImpl(String id) {
@@ -67,7 +68,7 @@ public class LRUCacheImpl implements Cache {
     public synchronized void put(String key, Object value) {
         
         this.cache.put(key, value);
-        puts++;
+        puts.increment();
     }
     
     
@@ -81,9 +82,9 @@ public class LRUCacheImpl implements Cache {
         
         // for metrics
         if(obj == null) {
-            misses++;
+            misses.increment();
         } else {
-            hits++;
+            hits.increment();
         }
         
         return obj;
@@ -94,7 +95,7 @@ public class LRUCacheImpl implements Cache {
     public synchronized void remove(String key) {
         
         this.cache.remove(key);
-        removes++;
+        removes.increment();
     }
     
     
@@ -104,10 +105,10 @@ public class LRUCacheImpl implements Cache {
         this.cache.clear();
         
         // clear metrics
-        hits = 0;
-        misses = 0;
-        puts = 0;
-        removes = 0;
+        hits.reset();
+        misses.reset();
+        puts.reset();
+        removes.reset();
         startTime = new Date();
     }
     
@@ -115,16 +116,20 @@ public class LRUCacheImpl implements Cache {
     @Override
     public Map<String, Object> getStats() {
         
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long removeCount = removes.sum();
+        
         Map<String, Object> stats = new HashMap<>();
         stats.put("startTime", this.startTime);
-        stats.put("hits", this.hits);
-        stats.put("misses", this.misses);
-        stats.put("puts", this.puts);
-        stats.put("removes", this.removes);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("puts", puts.sum());
+        stats.put("removes", removeCount);
         
         // calculate efficiency
-        if((misses - removes) > 0) {
-            double efficiency = hits / (misses + hits);
+        if((missCount - removeCount) > 0) {
+            double efficiency = (double) hitCount / (missCount + hitCount);
             stats.put("efficiency", efficiency * RollerConstants.PERCENT_100);
         }
         
@@ -49,8 +49,17 @@ public class LazyExpiringCacheEntry implements Serializable {
     
     
     public LazyExpiringCacheEntry(Object item) {
+        this(item, System.currentTimeMillis());
+    }
+    
+    
+    /**
+     * Wrap an item which was originally cached at some earlier point in time,
+     * for cache implementations which move values between storage tiers.
+     */
+    LazyExpiringCacheEntry(Object item, long timeCached) {
         this.value = item;
-        this.timeCached = System.currentTimeMillis();
+        this.timeCached = timeCached;
     }
     
     
@@ -68,6 +77,15 @@ public class LazyExpiringCacheEntry implements Serializable {
     }
     
     
+    /**
+     * The wrapped value, regardless of whether it is still fresh.  Only meant
+     * for cache implementations which need to inspect what they are holding.
+     */
+    Object peekValue() {
+        return this.value;
+    }
+    
+    
     /**
      * Determine if this cache entry has expired.
      */
@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Content held in an OffHeapStore.
+ *
+ * The chunks are reference counted because they are recycled as soon as the
+ * content is released.  The cache holds one reference, and readers must
+ * retain() the content before reading and release() it when done, so that
+ * the chunks can't be reused for something else mid-response.
+ */
+public final class OffHeapContent {
+
+    // reused to move content to a stream, so a cache hit allocates nothing
+    private static final ThreadLocal<byte[]> TRANSFER_BUFFER =
+            ThreadLocal.withInitial(() -> new byte[OffHeapStore.CHUNK_SIZE]);
+
+    private final OffHeapStore store;
+    private final ByteBuffer[] chunks;
+    private final int length;
+
+    private final AtomicInteger references = new AtomicInteger(1);
+
+
+    OffHeapContent(OffHeapStore store, ByteBuffer[] chunks, int length) {
+        this.store = store;
+        this.chunks = chunks;
+        this.length = length;
+    }
+
+
+    public int getLength() {
+        return this.length;
+    }
+
+
+    /**
+     * Take a reference to this content.
+     *
+     * @return false if the content has already been released, in which case
+     *         it must not be read.
+     */
+    public boolean retain() {
+        int count;
+        do {
+            count = this.references.get();
+            if (count <= 0) {
+                return false;
+            }
+        } while (!this.references.compareAndSet(count, count + 1));
+
+        return true;
+    }
+
+
+    /**
+     * Drop a reference to this content, recycling its storage once the last
+     * reference is gone.
+     */
+    public void release() {
+        if (this.references.decrementAndGet() == 0) {
+            this.store.free(this.chunks);
+        }
+    }
+
+
+    /**
+     * Write the content to a stream.  Caller must hold a reference.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+
+        byte[] transfer = TRANSFER_BUFFER.get();
+
+        int remaining = this.length;
+        for (ByteBuffer chunk : this.chunks) {
+            int count = Math.min(OffHeapStore.CHUNK_SIZE, remaining);
+            ByteBuffer source = chunk.duplicate();
+            source.clear();
+            source.get(transfer, 0, count);
+            out.write(transfer, 0, count);
+            remaining -= count;
+        }
+    }
+
+
+    /**
+     * Read the content as a stream.  Caller must hold a reference until done.
+     */
+    public InputStream newInputStream() {
+        return new ChunkInputStream();
+    }
+
+
+    /**
+     * Copy the content back onto the heap.  Caller must hold a reference.
+     */
+    public byte[] toByteArray() {
+
+        byte[] content = new byte[this.length];
+
+        int offset = 0;
+        for (ByteBuffer chunk : this.chunks) {
+            int count = Math.min(OffHeapStore.CHUNK_SIZE, this.length - offset);
+            ByteBuffer source = chunk.duplicate();
+            source.clear();
+            source.get(content, offset, count);
+            offset += count;
+        }
+
+        return content;
+    }
+
+
+    private final class ChunkInputStream extends InputStream {
+
+        private int position = 0;
+
+        @Override
+        public int read() {
+            if (this.position >= OffHeapContent.this.length) {
+                return -1;
+            }
+            ByteBuffer chunk = OffHeapContent.this.chunks[this.position / OffHeapStore.CHUNK_SIZE];
+            int value = chunk.get(this.position % OffHeapStore.CHUNK_SIZE) & 0xff;
+            this.position++;
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) {
+            int remaining = OffHeapContent.this.length - this.position;
+            if (remaining <= 0) {
+                return (count == 0) ? 0 : -1;
+            }
+
+            int chunkOffset = this.position % OffHeapStore.CHUNK_SIZE;
+            int read = Math.min(Math.min(count, remaining), OffHeapStore.CHUNK_SIZE - chunkOffset);
+
+            ByteBuffer source = OffHeapContent.this.chunks[this.position / OffHeapStore.CHUNK_SIZE].duplicate();
+            source.clear();
+            source.position(chunkOffset);
+            source.get(buffer, offset, read);
+            this.position += read;
+
+            return read;
+        }
+
+        @Override
+        public int available() {
+            return OffHeapContent.this.length - this.position;
+        }
+    }
+
+}
@@ -0,0 +1,221 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util.cache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.util.RollerConstants;
+
+
+/**
+ * Storage for cached content outside of the java heap.
+ *
+ * Memory is reserved in slabs, either direct ByteBuffers or regions of a
+ * memory mapped file, which are cut into fixed size chunks.  Content is
+ * stored as a list of chunks and the chunks go back on a free list once the
+ * content is released, so slabs are never handed back to the JVM and the
+ * garbage collector only ever sees a handful of small buffer objects.
+ */
+public class OffHeapStore {
+
+    private static final Log log = LogFactory.getLog(OffHeapStore.class);
+
+    public static final int CHUNK_SIZE = 16 * RollerConstants.ONE_KB_IN_BYTES;
+
+    public static final int SLAB_SIZE = 4 * RollerConstants.ONE_MB_IN_BYTES;
+
+    private static final int CHUNKS_PER_SLAB = SLAB_SIZE / CHUNK_SIZE;
+
+    private final long maxBytes;
+
+    // backing file when memory mapped, null for direct buffers
+    private final FileChannel channel;
+
+    // chunks not currently used by any content
+    private final Deque<ByteBuffer> freeChunks = new ArrayDeque<>();
+
+    private int slabs = 0;
+    private long usedBytes = 0;
+    private boolean closed = false;
+
+
+    /**
+     * Create a store of direct buffers.
+     */
+    public OffHeapStore(long maxBytes) {
+        this.maxBytes = maxBytes;
+        this.channel = null;
+    }
+
+
+    /**
+     * Create a store backed by a memory mapped file.  The file is truncated
+     * when the store is created and deleted when the store is closed.
+     */
+    public OffHeapStore(long maxBytes, Path file) throws IOException {
+        this.maxBytes = maxBytes;
+
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        this.channel = FileChannel.open(file,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.DELETE_ON_CLOSE);
+
+        log.info("Off-heap cache storage mapped to "+file);
+    }
+
+
+    public long getMaxBytes() {
+        return this.maxBytes;
+    }
+
+
+    /**
+     * Bytes held by live content, in whole chunks.
+     */
+    public synchronized long getUsedBytes() {
+        return this.usedBytes;
+    }
+
+
+    /**
+     * Bytes reserved from the operating system so far.
+     */
+    public synchronized long getReservedBytes() {
+        return (long) this.slabs * SLAB_SIZE;
+    }
+
+
+    /**
+     * Copy the given content into this store.
+     *
+     * @return the stored content, or null if the store does not have room.
+     */
+    public OffHeapContent store(byte[] content) {
+
+        int needed = Math.max(1, (content.length + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        ByteBuffer[] chunks = allocate(needed);
+        if (chunks == null) {
+            return null;
+        }
+
+        int offset = 0;
+        for (ByteBuffer chunk : chunks) {
+            int length = Math.min(CHUNK_SIZE, content.length - offset);
+            ByteBuffer target = chunk.duplicate();
+            target.clear();
+            target.put(content, offset, length);
+            offset += length;
+        }
+
+        return new OffHeapContent(this, chunks, content.length);
+    }
+
+
+    /**
+     * Give back all storage and the backing file, if any.  Nothing more can
+     * be stored once the store has been closed, and content stored before
+     * must not be used.
+     */
+    public synchronized void close() {
+        this.closed = true;
+        this.freeChunks.clear();
+        this.slabs = 0;
+        this.usedBytes = 0;
+        if (this.channel != null) {
+            try {
+                this.channel.close();
+            } catch (IOException e) {
+                log.warn("Error closing off-heap cache storage", e);
+            }
+        }
+    }
+
+
+    synchronized void free(ByteBuffer[] chunks) {
+        if (this.closed) {
+            return;
+        }
+        for (ByteBuffer chunk : chunks) {
+            this.freeChunks.push(chunk);
+        }
+        this.usedBytes -= (long) chunks.length * CHUNK_SIZE;
+    }
+
+
+    private synchronized ByteBuffer[] allocate(int count) {
+
+        if (this.closed) {
+            return null;
+        }
+
+        while (this.freeChunks.size() < count) {
+            if ((long) (this.slabs + 1) * SLAB_SIZE > this.maxBytes || !addSlab()) {
+                return null;
+            }
+        }
+
+        ByteBuffer[] chunks = new ByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            chunks[i] = this.freeChunks.pop();
+        }
+        this.usedBytes += (long) count * CHUNK_SIZE;
+
+        return chunks;
+    }
+
+
+    private boolean addSlab() {
+
+        ByteBuffer slab;
+        try {
+            if (this.channel != null) {
+                slab = this.channel.map(FileChannel.MapMode.READ_WRITE,
+                        (long) this.slabs * SLAB_SIZE, SLAB_SIZE);
+            } else {
+                slab = ByteBuffer.allocateDirect(SLAB_SIZE);
+            }
+        } catch (IOException | OutOfMemoryError e) {
+            log.warn("Unable to reserve more off-heap cache storage", e);
+            return false;
+        }
+
+        for (int i = 0; i < CHUNKS_PER_SLAB; i++) {
+            slab.limit((i + 1) * CHUNK_SIZE);
+            slab.position(i * CHUNK_SIZE);
+            this.freeChunks.push(slab.slice());
+        }
+        this.slabs++;
+
+        log.debug("Reserved off-heap slab #"+this.slabs);
+
+        return true;
+    }
+
+}
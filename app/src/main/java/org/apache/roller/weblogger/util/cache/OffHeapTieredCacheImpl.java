@@ -0,0 +1,222 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util.cache;
+
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+
+/**
+ * A byte-budgeted cache with a second, off-heap tier for rendered content.
+ *
+ * Recently used entries stay on the heap.  When an entry holding
+ * CachedContent is evicted from the heap tier its content is copied into an
+ * OffHeapStore and the entry lives on in the off-heap tier, which has its
+ * own LRU ordering and is bounded by the size of the store.  Hits in the
+ * off-heap tier are served straight from the store and are not promoted back
+ * onto the heap.
+ *
+ * Content returned from this cache may be off-heap, so readers must bracket
+ * their use of it with CachedContent.retain() and release().
+ *
+ * The store is closed along with the cache when the cache system shuts down.
+ */
+public class OffHeapTieredCacheImpl extends WeightedCacheImpl implements AutoCloseable {
+
+    private static final Log log = LogFactory.getLog(OffHeapTieredCacheImpl.class);
+
+    private final OffHeapStore store;
+
+    // entries which have been demoted off the heap
+    private final OffHeapTier offHeap;
+
+    // for metrics
+    protected final LongAdder offHeapHits = new LongAdder();
+    protected final LongAdder demotions = new LongAdder();
+
+
+    protected OffHeapTieredCacheImpl(String id, int maxsize, long timeout,
+            long maxBytes, OffHeapStore store) {
+
+        super(id, maxsize, timeout, maxBytes);
+        this.store = store;
+
+        // the store is the real bound on the tier, so allow plenty of entries
+        int maxOffHeapEntries = (int) Math.min(Integer.MAX_VALUE,
+                Math.max(maxsize, store.getMaxBytes() / OffHeapStore.CHUNK_SIZE));
+        this.offHeap = new OffHeapTier(id + ".offheap", maxOffHeapEntries);
+    }
+
+
+    @Override
+    public void put(String key, Object value) {
+        super.put(key, value);
+        this.offHeap.remove(key);
+    }
+
+
+    @Override
+    public void put(String key, Object value, long timeoutSeconds) {
+        super.put(key, value, timeoutSeconds);
+        this.offHeap.remove(key);
+    }
+
+
+    @Override
+    public Object get(String key) {
+
+        Object value = super.get(key);
+        if (value == null) {
+            value = this.offHeap.get(key);
+            if (value != null) {
+                offHeapHits.increment();
+            }
+        }
+
+        return value;
+    }
+
+
+    @Override
+    public void remove(String key) {
+        super.remove(key);
+        this.offHeap.remove(key);
+    }
+
+
+    @Override
+    public void clear() {
+        super.clear();
+        this.offHeap.clear();
+        offHeapHits.reset();
+        demotions.reset();
+    }
+
+
+    /**
+     * Empty the cache and give back its off-heap storage.
+     */
+    @Override
+    public void close() {
+        clear();
+        this.store.close();
+        log.debug("CLOSED ["+getId()+"]");
+    }
+
+
+    @Override
+    public Map<String, Object> getStats() {
+
+        Map<String, Object> stats = super.getStats();
+        stats.put("offHeapHits", offHeapHits.sum());
+        stats.put("offHeapSize", this.offHeap.size());
+        stats.put("offHeapBytes", this.store.getUsedBytes());
+        stats.put("offHeapMaxBytes", this.store.getMaxBytes());
+        stats.put("demotions", demotions.sum());
+
+        return stats;
+    }
+
+
+    @Override
+    protected void onRemoval(String key, Object value, long expiresAt, boolean evicted) {
+
+        super.onRemoval(key, value, expiresAt, evicted);
+
+        // only entries pushed out for lack of room are worth keeping around
+        if (evicted && expiresAt > System.currentTimeMillis()) {
+            demote(key, value, expiresAt);
+        }
+    }
+
+
+    private void demote(String key, Object value, long expiresAt) {
+
+        Object demoted = null;
+        if (value instanceof LazyExpiringCacheEntry) {
+            LazyExpiringCacheEntry entry = (LazyExpiringCacheEntry) value;
+            if (entry.peekValue() instanceof CachedContent) {
+                CachedContent content = moveOffHeap((CachedContent) entry.peekValue());
+                if (content != null) {
+                    demoted = new LazyExpiringCacheEntry(content, entry.getTimeCached());
+                }
+            }
+        } else if (value instanceof CachedContent) {
+            demoted = moveOffHeap((CachedContent) value);
+        }
+
+        if (demoted != null) {
+            this.offHeap.putUntil(key, demoted, expiresAt);
+            demotions.increment();
+            log.debug("DEMOTED ["+key+"]");
+        }
+    }
+
+
+    private CachedContent moveOffHeap(CachedContent content) {
+
+        if (content.getStoredLength() > this.store.getMaxBytes()) {
+            return null;
+        }
+
+        // make room by dropping the coldest off-heap entries if necessary
+        CachedContent moved = content.moveOffHeap(this.store);
+        while (moved == null && this.offHeap.evictEldest()) {
+            moved = content.moveOffHeap(this.store);
+        }
+
+        return moved;
+    }
+
+
+    private static void release(Object value) {
+        if (value instanceof LazyExpiringCacheEntry) {
+            release(((LazyExpiringCacheEntry) value).peekValue());
+        } else if (value instanceof CachedContent) {
+            ((CachedContent) value).release();
+        }
+    }
+
+
+    /**
+     * The off-heap tier, which gives back storage as entries leave it.
+     */
+    private static final class OffHeapTier extends ConcurrentCacheImpl {
+
+        OffHeapTier(String id, int maxsize) {
+            super(id, maxsize, 0);
+        }
+
+        @Override
+        protected void onRemoval(String key, Object value, long expiresAt, boolean evicted) {
+            release(value);
+        }
+
+        // an entry may be demoted again before its earlier copy is removed
+        @Override
+        protected void onInsert(String key, Object value, Object replaced) {
+            if (replaced != null && replaced != value) {
+                release(replaced);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util.cache;
+
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+
+/**
+ * A ConcurrentCacheImpl which is bounded by the number of bytes it holds
+ * rather than just by the number of entries.
+ *
+ * Rendered pages and feeds vary from a few KB to several MB, so an entry
+ * count says very little about how much heap a cache uses.  The weight of an
+ * entry is the number of bytes its CachedContent holds, looking through the
+ * LazyExpiringCacheEntry wrapper used by the rendering caches.  Values which
+ * are not CachedContent weigh nothing and are only bounded by the entry count.
+ */
+public class WeightedCacheImpl extends ConcurrentCacheImpl {
+
+    private static final Log log = LogFactory.getLog(WeightedCacheImpl.class);
+
+    private final long maxBytes;
+
+    // only modified while holding the eviction lock, but read for stats
+    private volatile long bytes = 0;
+
+    // for metrics
+    protected final LongAdder evictedBytes = new LongAdder();
+    protected final LongAdder rejects = new LongAdder();
+
+
+    protected WeightedCacheImpl(String id, int maxsize, long timeout, long maxBytes) {
+
+        super(id, maxsize, timeout);
+        this.maxBytes = maxBytes;
+    }
+
+
+    public long getMaxBytes() {
+        return this.maxBytes;
+    }
+
+
+    public long getBytes() {
+        return this.bytes;
+    }
+
+
+    /**
+     * Store an entry in the cache, unless it alone would blow the budget.
+     */
+    @Override
+    public void put(String key, Object value) {
+
+        if (accept(key, value)) {
+            super.put(key, value);
+        }
+    }
+
+
+    @Override
+    public void put(String key, Object value, long timeoutSeconds) {
+
+        if (accept(key, value)) {
+            super.put(key, value, timeoutSeconds);
+        }
+    }
+
+
+    @Override
+    public Map<String, Object> getStats() {
+
+        Map<String, Object> stats = super.getStats();
+        stats.put("bytes", this.bytes);
+        stats.put("maxBytes", this.maxBytes);
+        stats.put("evictedBytes", evictedBytes.sum());
+        stats.put("rejects", rejects.sum());
+
+        return stats;
+    }
+
+
+    @Override
+    protected boolean isOverCapacity() {
+        return this.bytes > this.maxBytes || super.isOverCapacity();
+    }
+
+
+    @Override
+    protected void onInsert(String key, Object value, Object replaced) {
+        this.bytes += weigh(value) - weigh(replaced);
+    }
+
+
+    @Override
+    protected void onRemoval(String key, Object value, long expiresAt, boolean evicted) {
+
+        long weight = weigh(value);
+        this.bytes -= weight;
+
+        if (evicted) {
+            evictedBytes.add(weight);
+        }
+    }
+
+
+    @Override
+    protected void onClear() {
+        evictedBytes.reset();
+        rejects.reset();
+    }
+
+
+    /**
+     * The number of bytes a cached value is accounted for.
+     */
+    protected static long weigh(Object value) {
+
+        if (value instanceof LazyExpiringCacheEntry) {
+            return weigh(((LazyExpiringCacheEntry) value).peekValue());
+        } else if (value instanceof CachedContent) {
+            return ((CachedContent) value).getStoredLength();
+        }
+
+        return 0;
+    }
+
+
+    private boolean accept(String key, Object value) {
+
+        if (weigh(value) > this.maxBytes) {
+            log.debug("TOO BIG ["+key+"]");
+            rejects.increment();
+
+            // don't keep serving an older, smaller version of the same key
+            remove(key);
+            return false;
+        }
+
+        return true;
+    }
+
+}
@@ -0,0 +1,318 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.weblogger.util.cache.cluster;
+
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.HashSet;
+import java.util.Set;
+import org.apache.roller.weblogger.pojos.User;
+import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.pojos.WeblogBookmark;
+import org.apache.roller.weblogger.pojos.WeblogBookmarkFolder;
+import org.apache.roller.weblogger.pojos.WeblogCategory;
+import org.apache.roller.weblogger.pojos.WeblogEntry;
+import org.apache.roller.weblogger.pojos.WeblogEntryComment;
+import org.apache.roller.weblogger.pojos.WeblogEntryTag;
+import org.apache.roller.weblogger.pojos.WeblogTemplate;
+import org.apache.roller.weblogger.util.cache.CacheManager;
+
+
+/**
+ * An invalidation event as it travels between the nodes of a cluster.
+ *
+ * An event is a single line of text, the event type followed by the fields
+ * that identify the changed object, each url encoded and separated by a
+ * space.  Events carry just enough for caches to work out what to evict, so
+ * the receiving node rebuilds a skeleton of the changed object rather than
+ * loading it, which also works for objects that have since been deleted.
+ *
+ * Comment events only identify the comment's entry, since that is all the
+ * caches use, which lets a batch of comment changes to the same entry
+ * collapse into a single event.
+ */
+final class CacheEvent {
+
+    enum Type {
+        ENTRY, WEBLOG, BOOKMARK, FOLDER, COMMENT, USER, CATEGORY, TEMPLATE, CLEAR
+    }
+
+    private final Type type;
+    private final String[] fields;
+
+
+    private CacheEvent(Type type, String... fields) {
+        this.type = type;
+        this.fields = fields;
+    }
+
+
+    static CacheEvent of(WeblogEntry entry) {
+        Weblog weblog = entry.getWebsite();
+
+        // tags the entry lost affect the same listings as those it has
+        StringBuilder tags = new StringBuilder();
+        appendTags(tags, entry.getTags());
+        appendTags(tags, entry.getRemovedTags());
+
+        return new CacheEvent(Type.ENTRY,
+                entry.getId(),
+                weblog != null ? weblog.getHandle() : "",
+                weblog != null ? weblog.getTimeZone() : "",
+                nameOf(entry.getCategory()),
+                tags.toString(),
+                timeOf(entry.getPubTime()),
+                nameOf(entry.getPreviousCategory()),
+                timeOf(entry.getPreviousPubTime()));
+    }
+
+    static CacheEvent of(Weblog weblog) {
+        return new CacheEvent(Type.WEBLOG, weblog.getId(), weblog.getHandle());
+    }
+
+    static CacheEvent of(WeblogBookmark bookmark) {
+        return new CacheEvent(Type.BOOKMARK, bookmark.getId(), handleOf(bookmark.getWebsite()));
+    }
+
+    static CacheEvent of(WeblogBookmarkFolder folder) {
+        return new CacheEvent(Type.FOLDER, folder.getId(), handleOf(folder.getWeblog()));
+    }
+
+    static CacheEvent of(WeblogEntryComment comment) {
+        WeblogEntry entry = comment.getWeblogEntry();
+        return new CacheEvent(Type.COMMENT,
+                entry != null ? entry.getId() : "",
+                entry != null ? handleOf(entry.getWebsite()) : "");
+    }
+
+    static CacheEvent of(User user) {
+        return new CacheEvent(Type.USER, user.getId(), user.getUserName());
+    }
+
+    static CacheEvent of(WeblogCategory category) {
+        return new CacheEvent(Type.CATEGORY, category.getId(), handleOf(category.getWeblog()),
+                category.getName());
+    }
+
+    static CacheEvent of(WeblogTemplate template) {
+        return new CacheEvent(Type.TEMPLATE, template.getId(), handleOf(template.getWeblog()));
+    }
+
+    static CacheEvent clear() {
+        return new CacheEvent(Type.CLEAR);
+    }
+
+
+    Type getType() {
+        return type;
+    }
+
+
+    /**
+     * Parse an event written by toString().
+     *
+     * @throws IllegalArgumentException if the line is not a valid event.
+     */
+    static CacheEvent parse(String line) {
+        String[] parts = line.split(" ", -1);
+        String[] fields = new String[parts.length - 1];
+        for (int i = 1; i < parts.length; i++) {
+            fields[i - 1] = URLDecoder.decode(parts[i], StandardCharsets.UTF_8);
+        }
+        return new CacheEvent(Type.valueOf(parts[0]), fields);
+    }
+
+
+    /**
+     * Pass the event on to the local caches through the CacheManager.
+     */
+    void apply() {
+
+        switch (type) {
+            case ENTRY:
+                WeblogEntry entry = new WeblogEntry();
+                entry.setId(field(0));
+                entry.setWebsite(weblog(field(1), field(2)));
+                // set what the entry had before first, so it is remembered
+                // as the previous state once the current one is set
+                if (field(6) != null) {
+                    WeblogCategory previous = new WeblogCategory();
+                    previous.setName(field(6));
+                    entry.setCategory(previous);
+                }
+                if (field(7) != null) {
+                    entry.setPubTime(new Timestamp(Long.parseLong(field(7))));
+                }
+                if (field(3) != null) {
+                    WeblogCategory category = new WeblogCategory();
+                    category.setName(field(3));
+                    category.setWeblog(entry.getWebsite());
+                    entry.setCategory(category);
+                }
+                if (field(4) != null) {
+                    Set<WeblogEntryTag> tags = new HashSet<>();
+                    for (String name : field(4).split(",")) {
+                        WeblogEntryTag tag = new WeblogEntryTag();
+                        tag.setName(name);
+                        tag.setWeblog(entry.getWebsite());
+                        tag.setWeblogEntry(entry);
+                        tags.add(tag);
+                    }
+                    entry.getTags().addAll(tags);
+                }
+                if (field(5) != null) {
+                    entry.setPubTime(new Timestamp(Long.parseLong(field(5))));
+                }
+                CacheManager.invalidate(entry);
+                break;
+
+            case WEBLOG:
+                Weblog weblog = weblog(field(1), null);
+                weblog.setId(field(0));
+                CacheManager.invalidate(weblog);
+                break;
+
+            case BOOKMARK:
+                WeblogBookmarkFolder parent = new WeblogBookmarkFolder();
+                parent.setWeblog(weblog(field(1), null));
+                WeblogBookmark bookmark = new WeblogBookmark();
+                bookmark.setId(field(0));
+                bookmark.setFolder(parent);
+                CacheManager.invalidate(bookmark);
+                break;
+
+            case FOLDER:
+                WeblogBookmarkFolder folder = new WeblogBookmarkFolder();
+                folder.setId(field(0));
+                folder.setWeblog(weblog(field(1), null));
+                CacheManager.invalidate(folder);
+                break;
+
+            case COMMENT:
+                WeblogEntry commented = new WeblogEntry();
+                commented.setId(field(0));
+                commented.setWebsite(weblog(field(1), null));
+                WeblogEntryComment comment = new WeblogEntryComment();
+                comment.setWeblogEntry(commented);
+                CacheManager.invalidate(comment);
+                break;
+
+            case USER:
+                User user = new User();
+                user.setId(field(0));
+                user.setUserName(field(1));
+                CacheManager.invalidate(user);
+                break;
+
+            case CATEGORY:
+                WeblogCategory category = new WeblogCategory();
+                category.setId(field(0));
+                category.setWeblog(weblog(field(1), null));
+                category.setName(field(2));
+                CacheManager.invalidate(category);
+                break;
+
+            case TEMPLATE:
+                WeblogTemplate template = new WeblogTemplate();
+                template.setId(field(0));
+                template.setWeblog(weblog(field(1), null));
+                CacheManager.invalidate(template);
+                break;
+
+            case CLEAR:
+                CacheManager.clear();
+                break;
+
+            default:
+                break;
+        }
+    }
+
+
+    @Override
+    public String toString() {
+        StringBuilder line = new StringBuilder(type.name());
+        for (String field : fields) {
+            line.append(' ').append(URLEncoder.encode(field != null ? field : "", StandardCharsets.UTF_8));
+        }
+        return line.toString();
+    }
+
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof CacheEvent && toString().equals(other.toString());
+    }
+
+
+    @Override
+    public int hashCode() {
+        return toString().hashCode();
+    }
+
+
+    // empty fields come back as null
+    private String field(int i) {
+        if (i >= fields.length || fields[i].isEmpty()) {
+            return null;
+        }
+        return fields[i];
+    }
+
+
+    private static Weblog weblog(String handle, String timeZone) {
+        Weblog weblog = new Weblog();
+        weblog.setHandle(handle);
+        if (timeZone != null) {
+            weblog.setTimeZone(timeZone);
+        }
+        return weblog;
+    }
+
+
+    private static String handleOf(Weblog weblog) {
+        return weblog != null ? weblog.getHandle() : "";
+    }
+
+
+    private static String nameOf(WeblogCategory category) {
+        return category != null ? category.getName() : "";
+    }
+
+
+    private static String timeOf(Timestamp time) {
+        return time != null ? Long.toString(time.getTime()) : "";
+    }
+
+
+    private static void appendTags(StringBuilder tags, Set<WeblogEntryTag> entryTags) {
+        if (entryTags != null) {
+            for (WeblogEntryTag tag : entryTags) {
+                if (tags.length() > 0) {
+                    tags.append(',');
+                }
+                tags.append(tag.getName());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,383 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.weblogger.util.cache.cluster;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.weblogger.config.WebloggerConfig;
+import org.apache.roller.weblogger.pojos.User;
+import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.pojos.WeblogBookmark;
+import org.apache.roller.weblogger.pojos.WeblogBookmarkFolder;
+import org.apache.roller.weblogger.pojos.WeblogCategory;
+import org.apache.roller.weblogger.pojos.WeblogEntry;
+import org.apache.roller.weblogger.pojos.WeblogEntryComment;
+import org.apache.roller.weblogger.pojos.WeblogTemplate;
+import org.apache.roller.weblogger.util.Reflection;
+import org.apache.roller.weblogger.util.cache.CacheHandler;
+
+
+/**
+ * A CacheHandler which keeps the caches of all nodes in a cluster in step.
+ *
+ * Invalidations made on this node are published to the other nodes, and
+ * invalidations received from them are handed to the local caches through
+ * the CacheManager, just as if they had happened here.  The handler is
+ * enabled by adding it to the cache.customHandlers property, and the
+ * cache.cluster.transport property picks how events travel, which is one
+ * of "multicast", "jdbc", "tcp" or the classname of a ClusterTransport.
+ *
+ * Events are queued and sent in batches every cache.cluster.flushInterval
+ * milliseconds, with duplicates dropped, so bulk operations such as comment
+ * moderation don't flood the channel.  If more than cache.cluster.maxPending
+ * distinct events pile up before a flush then the other nodes are simply
+ * told to clear their caches.
+ *
+ * When cache.cluster.secret is set every message ends with an HMAC of its
+ * content made with that secret, and messages without a valid one are
+ * ignored, whichever transport carried them.  The secret must be the same
+ * on all nodes.
+ */
+public class ClusterCacheHandler implements CacheHandler, AutoCloseable {
+
+    private static final Log log = LogFactory.getLog(ClusterCacheHandler.class);
+
+    // first line of every message, followed by the id of the sending node
+    static final String HEADER = "roller-cache-events";
+
+    // last line of a signed message, followed by the Base64 HMAC of the rest
+    static final String SIGNATURE = "MAC ";
+
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+
+    // newline, prefix and Base64 of a 32 byte HMAC
+    private static final int SIGNATURE_LENGTH = 1 + SIGNATURE.length() + 44;
+
+    // set while applying events from other nodes, so they aren't sent back out
+    private static final ThreadLocal<Boolean> applying = new ThreadLocal<>();
+
+    private final String header = HEADER + " " + UUID.randomUUID();
+
+    private final ClusterTransport transport;
+    private final int maxPending;
+    private final SecretKeySpec secret;
+
+    // events waiting for the next flush, guarded by itself
+    private final Set<CacheEvent> pending = new LinkedHashSet<>();
+    private boolean overflowed = false;
+
+    private final ScheduledExecutorService flusher;
+
+
+    public ClusterCacheHandler() {
+        this(createTransport(),
+                WebloggerConfig.getIntProperty("cache.cluster.flushInterval", 250),
+                WebloggerConfig.getIntProperty("cache.cluster.maxPending", 5000),
+                WebloggerConfig.getProperty("cache.cluster.secret"));
+    }
+
+
+    ClusterCacheHandler(ClusterTransport transport, long flushInterval, int maxPending) {
+        this(transport, flushInterval, maxPending, null);
+    }
+
+
+    ClusterCacheHandler(ClusterTransport transport, long flushInterval, int maxPending, String secret) {
+
+        this.maxPending = maxPending;
+
+        if (secret != null && !secret.isBlank()) {
+            this.secret = new SecretKeySpec(secret.trim().getBytes(StandardCharsets.UTF_8), MAC_ALGORITHM);
+        } else {
+            this.secret = null;
+            // events in the database are only as open as the database itself
+            if (transport != null && !(transport instanceof JdbcTransport)) {
+                log.warn("No cache.cluster.secret set, cache events from other nodes are not authenticated");
+            }
+        }
+
+        ClusterTransport started = null;
+        if (transport != null) {
+            try {
+                transport.start(this::receive);
+                started = transport;
+                log.info("Cluster cache invalidation started using " + transport.getClass().getName());
+            } catch (IOException e) {
+                log.error("Unable to start cluster transport, cache invalidations will not be shared", e);
+            }
+        }
+        this.transport = started;
+
+        if (this.transport != null && flushInterval > 0) {
+            flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "roller-cache-cluster");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+        } else {
+            flusher = null;
+        }
+    }
+
+
+    private static ClusterTransport createTransport() {
+
+        String name = WebloggerConfig.getProperty("cache.cluster.transport", "multicast").trim();
+        String classname;
+        if ("multicast".equals(name)) {
+            classname = MulticastTransport.class.getName();
+        } else if ("jdbc".equals(name)) {
+            classname = JdbcTransport.class.getName();
+        } else if ("tcp".equals(name)) {
+            classname = TcpTransport.class.getName();
+        } else {
+            classname = name;
+        }
+
+        try {
+            return (ClusterTransport) Reflection.newInstance(classname);
+        } catch (ClassCastException cce) {
+            log.error("It appears that [" + classname + "] does not implement the ClusterTransport interface", cce);
+        } catch (ReflectiveOperationException e) {
+            log.error("Unable to instantiate cluster transport [" + classname + "]", e);
+        }
+        return null;
+    }
+
+
+    private void queue(CacheEvent event) {
+
+        if (transport == null || Boolean.TRUE.equals(applying.get())) {
+            return;
+        }
+
+        synchronized (pending) {
+            if (overflowed) {
+                return;
+            }
+            if (pending.size() >= maxPending) {
+                log.debug("Too many pending cache events, peers will be cleared");
+                pending.clear();
+                overflowed = true;
+            } else {
+                pending.add(event);
+            }
+        }
+    }
+
+
+    /**
+     * Send all pending events to the other nodes.
+     */
+    void flush() {
+
+        List<CacheEvent> batch;
+        synchronized (pending) {
+            if (pending.isEmpty() && !overflowed) {
+                return;
+            }
+            batch = overflowed ? List.of(CacheEvent.clear()) : new ArrayList<>(pending);
+            pending.clear();
+            overflowed = false;
+        }
+
+        int maxSize = transport.getMaxMessageSize() - (secret != null ? SIGNATURE_LENGTH : 0);
+        List<String> lines = new ArrayList<>(batch.size());
+        for (CacheEvent event : batch) {
+            String line = event.toString();
+            if (header.length() + line.length() + 1 > maxSize) {
+                // can't be sent at all, so have the peers start over
+                log.debug("Cache event too large to send, peers will be cleared");
+                lines = List.of(CacheEvent.clear().toString());
+                break;
+            }
+            lines.add(line);
+        }
+
+        StringBuilder message = new StringBuilder(header);
+        for (String line : lines) {
+            if (message.length() > header.length() && message.length() + line.length() + 1 > maxSize) {
+                send(message.toString());
+                message = new StringBuilder(header);
+            }
+            message.append('\n').append(line);
+        }
+        send(message.toString());
+
+        if (log.isDebugEnabled()) {
+            log.debug("Sent " + batch.size() + " cache events");
+        }
+    }
+
+
+    private void send(String message) {
+        if (secret != null) {
+            message = message + "\n" + SIGNATURE + Base64.getEncoder().encodeToString(mac(message));
+        }
+        try {
+            transport.send(message);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Unable to send cache events to peers: " + e.getMessage());
+            log.debug(e);
+        }
+    }
+
+
+    /**
+     * Apply a message sent by another node.
+     */
+    void receive(String message) {
+
+        if (secret != null) {
+            int last = message.lastIndexOf('\n');
+            byte[] signature = null;
+            if (last >= 0 && message.startsWith(SIGNATURE, last + 1)) {
+                try {
+                    signature = Base64.getDecoder().decode(message.substring(last + 1 + SIGNATURE.length()));
+                } catch (IllegalArgumentException ignored) {
+                }
+            }
+            if (signature == null || !MessageDigest.isEqual(signature, mac(message.substring(0, last)))) {
+                log.warn("Ignoring cluster message not signed with the shared secret");
+                return;
+            }
+            message = message.substring(0, last);
+        }
+
+        String[] lines = message.split("\n");
+        if (!lines[0].startsWith(HEADER + " ")) {
+            log.warn("Ignoring unknown cluster message");
+            return;
+        }
+        if (lines[0].equals(header)) {
+            // our own message, looped back
+            return;
+        }
+
+        applying.set(Boolean.TRUE);
+        try {
+            for (int i = 1; i < lines.length; i++) {
+                try {
+                    CacheEvent.parse(lines[i]).apply();
+                } catch (RuntimeException e) {
+                    log.warn("Ignoring bad cache event [" + lines[i] + "]", e);
+                }
+            }
+        } finally {
+            applying.remove();
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Applied " + (lines.length - 1) + " cache events from " + lines[0].substring(HEADER.length() + 1));
+        }
+    }
+
+
+    private byte[] mac(String message) {
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(secret);
+            return mac.doFinal(message.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            // every JVM has HmacSHA256
+            throw new IllegalStateException(e);
+        }
+    }
+
+
+    /**
+     * Send whatever is pending and stop talking to the other nodes.
+     */
+    @Override
+    public void close() {
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+        if (transport != null) {
+            flush();
+            transport.stop();
+        }
+    }
+
+
+    @Override
+    public void invalidate(WeblogEntry entry) {
+        queue(CacheEvent.of(entry));
+    }
+
+
+    @Override
+    public void invalidate(Weblog website) {
+        queue(CacheEvent.of(website));
+    }
+
+
+    @Override
+    public void invalidate(WeblogBookmark bookmark) {
+        queue(CacheEvent.of(bookmark));
+    }
+
+
+    @Override
+    public void invalidate(WeblogBookmarkFolder folder) {
+        queue(CacheEvent.of(folder));
+    }
+
+
+    @Override
+    public void invalidate(WeblogEntryComment comment) {
+        queue(CacheEvent.of(comment));
+    }
+
+
+    @Override
+    public void invalidate(User user) {
+        queue(CacheEvent.of(user));
+    }
+
+
+    @Override
+    public void invalidate(WeblogCategory category) {
+        queue(CacheEvent.of(category));
+    }
+
+
+    @Override
+    public void invalidate(WeblogTemplate template) {
+        queue(CacheEvent.of(template));
+    }
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.weblogger.util.cache.cluster;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+
+/**
+ * Carries batches of invalidation events between the nodes of a cluster.
+ *
+ * A transport only moves opaque messages around, the ClusterCacheHandler
+ * takes care of what's in them.  Implementations must have a no-argument
+ * constructor and read their settings from the cache.cluster.* properties.
+ * Messages a node sends may or may not be delivered back to it.
+ */
+public interface ClusterTransport {
+
+    /**
+     * Start sending and receiving messages.
+     *
+     * @param receiver called with each message from another node, on a
+     *        thread owned by the transport.
+     */
+    void start(Consumer<String> receiver) throws IOException;
+
+    /**
+     * Send a message to all other nodes.  Delivery is best effort.
+     */
+    void send(String message) throws IOException;
+
+    /**
+     * The largest message, in characters, that the transport can send.
+     */
+    int getMaxMessageSize();
+
+    /**
+     * Stop the transport and release its resources.
+     */
+    void stop();
+
+}
@@ -0,0 +1,243 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.weblogger.util.cache.cluster;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.weblogger.business.startup.WebloggerStartup;
+import org.apache.roller.weblogger.config.WebloggerConfig;
+
+
+/**
+ * Sends cache events through the roller_cacheevent table of the Roller
+ * database, which every node polls for new rows.  This needs no extra
+ * network setup at the cost of some latency, set by
+ * cache.cluster.jdbc.pollInterval in milliseconds.
+ *
+ * Rows are stamped with the database clock so that node clocks don't need
+ * to agree, and each poll looks back a little further than the newest row
+ * it has seen to catch rows from transactions which committed late.  Rows
+ * older than cache.cluster.jdbc.retention seconds are deleted.
+ */
+public class JdbcTransport implements ClusterTransport {
+
+    private static final Log log = LogFactory.getLog(JdbcTransport.class);
+
+    static final String TABLE = "roller_cacheevent";
+
+    // the size of the message column
+    private static final int MAX_MESSAGE_SIZE = 4000;
+
+    // how far back each poll looks for rows committed out of order
+    private static final long OVERLAP = 10000;
+
+    // purge old rows every this many polls
+    private static final int PURGE_EVERY = 60;
+
+    private final long pollInterval;
+    private final long retention;
+
+    private Connection connection;
+    private ScheduledExecutorService poller;
+
+    // newest row seen so far, null until the first poll
+    private Timestamp watermark;
+
+    // rows seen within the overlap window, by id
+    private final Map<String, Timestamp> seen = new LinkedHashMap<>();
+
+    private int polls = 0;
+
+
+    public JdbcTransport() {
+        this.pollInterval = WebloggerConfig.getIntProperty("cache.cluster.jdbc.pollInterval", 1000);
+        this.retention = WebloggerConfig.getIntProperty("cache.cluster.jdbc.retention", 600) * 1000L;
+    }
+
+
+    @Override
+    public void start(Consumer<String> receiver) {
+        poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "roller-cache-jdbc");
+            thread.setDaemon(true);
+            return thread;
+        });
+        poller.scheduleWithFixedDelay(() -> poll(receiver), pollInterval, pollInterval, TimeUnit.MILLISECONDS);
+    }
+
+
+    private synchronized Connection getConnection() throws SQLException {
+        if (connection == null || connection.isClosed()) {
+            connection = WebloggerStartup.getDatabaseProvider().getConnection();
+            connection.setAutoCommit(true);
+            createTableIfMissing(connection);
+        }
+        return connection;
+    }
+
+
+    private synchronized void closeConnection() {
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException ignored) {
+            }
+            connection = null;
+        }
+    }
+
+
+    /**
+     * New installs get the table from the database creation scripts, this
+     * takes care of installs which were upgraded in place.
+     */
+    private static void createTableIfMissing(Connection con) throws SQLException {
+
+        DatabaseMetaData meta = con.getMetaData();
+        for (String name : new String[] {TABLE, TABLE.toUpperCase()}) {
+            try (ResultSet tables = meta.getTables(null, null, name, null)) {
+                if (tables.next()) {
+                    return;
+                }
+            }
+        }
+
+        String timestamp = meta.getDatabaseProductName().contains("SQL Server") ? "datetime2" : "timestamp";
+        try (Statement stmt = con.createStatement()) {
+            stmt.executeUpdate("create table " + TABLE + " ("
+                    + "id varchar(48) not null primary key, "
+                    + "created " + timestamp + " not null, "
+                    + "message varchar(" + MAX_MESSAGE_SIZE + ") not null)");
+            stmt.executeUpdate("create index rce_created_idx on " + TABLE + "( created )");
+        }
+        log.info("Created table " + TABLE);
+    }
+
+
+    private synchronized void poll(Consumer<String> receiver) {
+        try {
+            Connection con = getConnection();
+
+            if (watermark == null) {
+                // start from whatever is there now
+                try (Statement stmt = con.createStatement();
+                     ResultSet rs = stmt.executeQuery("select max(created) from " + TABLE)) {
+                    Timestamp newest = rs.next() ? rs.getTimestamp(1) : null;
+                    watermark = (newest != null) ? newest : new Timestamp(0);
+                }
+                return;
+            }
+
+            Timestamp since = new Timestamp(watermark.getTime() - OVERLAP);
+            try (PreparedStatement stmt = con.prepareStatement(
+                    "select id, created, message from " + TABLE + " where created > ? order by created")) {
+                stmt.setTimestamp(1, since);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        String id = rs.getString(1);
+                        Timestamp created = rs.getTimestamp(2);
+                        if (seen.putIfAbsent(id, created) == null) {
+                            if (created.after(watermark)) {
+                                watermark = created;
+                            }
+                            try {
+                                receiver.accept(rs.getString(3));
+                            } catch (RuntimeException e) {
+                                log.error("Error applying cache events", e);
+                            }
+                        }
+                    }
+                }
+            }
+
+            // forget rows which no longer fall in the overlap window
+            Timestamp horizon = new Timestamp(watermark.getTime() - OVERLAP);
+            for (Iterator<Timestamp> it = seen.values().iterator(); it.hasNext();) {
+                if (it.next().before(horizon)) {
+                    it.remove();
+                }
+            }
+
+            if (++polls % PURGE_EVERY == 0) {
+                try (PreparedStatement stmt = con.prepareStatement(
+                        "delete from " + TABLE + " where created < ?")) {
+                    stmt.setTimestamp(1, new Timestamp(watermark.getTime() - retention));
+                    stmt.executeUpdate();
+                }
+            }
+
+        } catch (IllegalStateException e) {
+            // roller isn't prepared yet, try again next time
+            log.debug(e.getMessage());
+        } catch (SQLException e) {
+            log.warn("Error polling for cache events: " + e.getMessage());
+            closeConnection();
+        }
+    }
+
+
+    @Override
+    public synchronized void send(String message) throws IOException {
+        try {
+            Connection con = getConnection();
+            try (PreparedStatement stmt = con.prepareStatement(
+                    "insert into " + TABLE + " (id, created, message) values (?, current_timestamp, ?)")) {
+                stmt.setString(1, UUID.randomUUID().toString());
+                stmt.setString(2, message);
+                stmt.executeUpdate();
+            }
+        } catch (SQLException e) {
+            closeConnection();
+            throw new IOException(e);
+        }
+    }
+
+
+    @Override
+    public int getMaxMessageSize() {
+        return MAX_MESSAGE_SIZE;
+    }
+
+
+    @Override
+    public void stop() {
+        if (poller != null) {
+            poller.shutdownNow();
+        }
+        closeConnection();
+    }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.weblogger.util.cache.cluster;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+import java.net.NetworkInterface;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.weblogger.config.WebloggerConfig;
+
+
+/**
+ * Sends cache events to a UDP multicast group, which suits nodes on the
+ * same network segment and needs no list of peers.
+ *
+ * Configured through cache.cluster.multicast.group, .port, .ttl and
+ * optionally .interface, the name of the network interface to use.
+ */
+public class MulticastTransport implements ClusterTransport {
+
+    private static final Log log = LogFactory.getLog(MulticastTransport.class);
+
+    // keep datagrams well under the usual MTU multiples to avoid fragmentation
+    private static final int MAX_MESSAGE_SIZE = 8192;
+
+    private final InetSocketAddress group;
+    private final int ttl;
+    private final String interfaceName;
+
+    private MulticastSocket socket;
+    private NetworkInterface networkInterface;
+
+
+    public MulticastTransport() throws IOException {
+        this.group = new InetSocketAddress(
+                InetAddress.getByName(WebloggerConfig.getProperty("cache.cluster.multicast.group", "239.255.42.99")),
+                WebloggerConfig.getIntProperty("cache.cluster.multicast.port", 45599));
+        this.ttl = WebloggerConfig.getIntProperty("cache.cluster.multicast.ttl", 1);
+        this.interfaceName = WebloggerConfig.getProperty("cache.cluster.multicast.interface");
+    }
+
+
+    @Override
+    public void start(Consumer<String> receiver) throws IOException {
+
+        socket = new MulticastSocket(group.getPort());
+        socket.setTimeToLive(ttl);
+
+        if (interfaceName != null && !interfaceName.isBlank()) {
+            networkInterface = NetworkInterface.getByName(interfaceName.trim());
+            if (networkInterface == null) {
+                socket.close();
+                throw new IOException("No such network interface: " + interfaceName);
+            }
+            socket.setNetworkInterface(networkInterface);
+        }
+        socket.joinGroup(group, networkInterface);
+
+        Thread listener = new Thread(() -> {
+            byte[] buffer = new byte[65535];
+            while (!socket.isClosed()) {
+                try {
+                    DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                    socket.receive(packet);
+                    receiver.accept(new String(packet.getData(), 0, packet.getLength(), StandardCharsets.UTF_8));
+                } catch (IOException e) {
+                    if (!socket.isClosed()) {
+                        log.warn("Error receiving cache events: " + e.getMessage());
+                    }
+                } catch (RuntimeException e) {
+                    log.error("Error applying cache events", e);
+                }
+            }
+        }, "roller-cache-multicast");
+        listener.setDaemon(true);
+        listener.start();
+    }
+
+
+    @Override
+    public void send(String message) throws IOException {
+        byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        socket.send(new DatagramPacket(bytes, bytes.length, group));
+    }
+
+
+    @Override
+    public int getMaxMessageSize() {
+        return MAX_MESSAGE_SIZE;
+    }
+
+
+    @Override
+    public void stop() {
+        if (socket != null) {
+            try {
+                socket.leaveGroup(group, networkInterface);
+            } catch (IOException e) {
+                log.debug("Error leaving multicast group", e);
+            }
+            socket.close();
+        }
+    }
+
+}
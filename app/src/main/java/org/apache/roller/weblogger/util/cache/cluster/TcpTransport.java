@@ -0,0 +1,302 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.weblogger.util.cache.cluster;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.weblogger.config.WebloggerConfig;
+
+
+/**
+ * Sends cache events over TCP to a fixed list of peers, for networks where
+ * multicast isn't available.
+ *
+ * Each node listens on cache.cluster.tcp.port, bound to
+ * cache.cluster.tcp.bindAddress or to the loopback address if none is
+ * given, and sends to every host:port listed in cache.cluster.tcp.peers.
+ * The same list can be used on every node since a node ignores its own
+ * messages.  Connections to peers are kept open and re-established when
+ * they fail.
+ *
+ * Connections are only accepted from the hosts in the peer list.  Messages
+ * are signed by the ClusterCacheHandler when cache.cluster.secret is set.
+ */
+public class TcpTransport implements ClusterTransport {
+
+    private static final Log log = LogFactory.getLog(TcpTransport.class);
+
+    private static final int MAX_MESSAGE_SIZE = 1024 * 1024;
+
+    private static final int CONNECT_TIMEOUT = 2000;
+
+    private final int port;
+    private final String bindAddress;
+    private final List<Peer> peers = new ArrayList<>();
+
+    private ServerSocket serverSocket;
+    private Thread acceptor;
+    private ExecutorService readers;
+
+
+    public TcpTransport() {
+        this(WebloggerConfig.getIntProperty("cache.cluster.tcp.port", 45600),
+                WebloggerConfig.getProperty("cache.cluster.tcp.bindAddress"),
+                WebloggerConfig.getProperty("cache.cluster.tcp.peers", ""));
+    }
+
+
+    TcpTransport(int port, String bindAddress, String peerList) {
+        this.port = port;
+        this.bindAddress = bindAddress;
+
+        for (String peer : peerList.split(",")) {
+            peer = peer.trim();
+            if (!peer.isEmpty()) {
+                int colon = peer.lastIndexOf(':');
+                if (colon < 0) {
+                    peers.add(new Peer(peer, port));
+                } else {
+                    peers.add(new Peer(peer.substring(0, colon), Integer.parseInt(peer.substring(colon + 1))));
+                }
+            }
+        }
+    }
+
+
+    @Override
+    public void start(Consumer<String> receiver) throws IOException {
+
+        serverSocket = new ServerSocket();
+        if (bindAddress != null && !bindAddress.isBlank()) {
+            serverSocket.bind(new InetSocketAddress(InetAddress.getByName(bindAddress.trim()), port));
+        } else {
+            // other nodes can't reach us until told which interface to use
+            serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            log.warn("No cache.cluster.tcp.bindAddress set, listening for cache events on loopback only");
+        }
+
+        // a reader for each peer plus room for a peer's dead connection to
+        // linger while it reconnects, anything more is turned away
+        readers = new ThreadPoolExecutor(0, Math.max(1, 2 * peers.size()), 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "roller-cache-tcp");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        acceptor = new Thread(() -> {
+            while (!serverSocket.isClosed()) {
+                try {
+                    accept(serverSocket.accept(), receiver);
+                } catch (IOException e) {
+                    if (!serverSocket.isClosed()) {
+                        log.warn("Error accepting cache event connection: " + e.getMessage());
+                    }
+                }
+            }
+        }, "roller-cache-tcp-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+
+    private void accept(Socket socket, Consumer<String> receiver) {
+
+        if (!isPeer(socket.getInetAddress())) {
+            log.warn("Refusing cache event connection from " + socket.getRemoteSocketAddress()
+                    + ", not a configured peer");
+            closeQuietly(socket);
+            return;
+        }
+
+        try {
+            readers.execute(() -> read(socket, receiver));
+        } catch (RejectedExecutionException e) {
+            log.warn("Refusing cache event connection from " + socket.getRemoteSocketAddress()
+                    + ", too many connections");
+            closeQuietly(socket);
+        }
+    }
+
+
+    /**
+     * True if the address is one of the configured peers.  Peer host names
+     * are looked up each time since connections are few and long lived.
+     */
+    private boolean isPeer(InetAddress address) {
+        for (Peer peer : peers) {
+            try {
+                for (InetAddress peerAddress : InetAddress.getAllByName(peer.host)) {
+                    if (peerAddress.equals(address)) {
+                        return true;
+                    }
+                }
+            } catch (UnknownHostException e) {
+                log.debug("Unable to resolve cache event peer " + peer.host);
+            }
+        }
+        return false;
+    }
+
+
+    private void read(Socket socket, Consumer<String> receiver) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+            while (true) {
+                int length = in.readInt();
+                if (length < 0 || length > MAX_MESSAGE_SIZE) {
+                    log.warn("Dropping connection from " + socket.getRemoteSocketAddress()
+                            + ", bad message length " + length);
+                    return;
+                }
+                byte[] bytes = new byte[length];
+                in.readFully(bytes);
+                try {
+                    receiver.accept(new String(bytes, StandardCharsets.UTF_8));
+                } catch (RuntimeException e) {
+                    log.error("Error applying cache events", e);
+                }
+            }
+        } catch (EOFException e) {
+            // peer closed the connection
+        } catch (IOException e) {
+            if (!serverSocket.isClosed()) {
+                log.debug("Error reading cache events from " + socket.getRemoteSocketAddress(), e);
+            }
+        } finally {
+            closeQuietly(socket);
+        }
+    }
+
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+
+    @Override
+    public void send(String message) {
+        byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        for (Peer peer : peers) {
+            peer.send(bytes);
+        }
+    }
+
+
+    @Override
+    public int getMaxMessageSize() {
+        return MAX_MESSAGE_SIZE;
+    }
+
+
+    @Override
+    public void stop() {
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        } catch (IOException e) {
+            log.debug("Error closing cache event listener", e);
+        }
+        if (acceptor != null) {
+            acceptor.interrupt();
+        }
+        if (readers != null) {
+            readers.shutdownNow();
+        }
+        for (Peer peer : peers) {
+            peer.close();
+        }
+    }
+
+
+    /**
+     * A node to send events to, and the connection to it if there is one.
+     */
+    private static class Peer {
+
+        private final String host;
+        private final int port;
+
+        private Socket socket;
+        private DataOutputStream out;
+
+        Peer(String host, int port) {
+            this.host = host;
+            this.port = port;
+        }
+
+        synchronized void send(byte[] message) {
+            // try once on the current connection and once on a new one
+            for (int attempt = 0; attempt < 2; attempt++) {
+                try {
+                    if (socket == null) {
+                        socket = new Socket();
+                        socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT);
+                        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                    }
+                    out.writeInt(message.length);
+                    out.write(message);
+                    out.flush();
+                    return;
+                } catch (IOException e) {
+                    close();
+                    if (attempt > 0) {
+                        log.warn("Unable to send cache events to " + host + ":" + port + ": " + e.getMessage());
+                    }
+                }
+            }
+        }
+
+        synchronized void close() {
+            if (socket != null) {
+                try {
+                    socket.close();
+                } catch (IOException ignored) {
+                }
+                socket = null;
+                out = null;
+            }
+        }
+    }
+
+}
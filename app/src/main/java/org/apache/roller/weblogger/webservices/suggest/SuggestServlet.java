@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+package org.apache.roller.weblogger.webservices.suggest;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Iterator;
+import java.util.List;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.commons.text.StringEscapeUtils;
+import org.apache.roller.weblogger.WebloggerException;
+import org.apache.roller.weblogger.business.WebloggerFactory;
+import org.apache.roller.weblogger.business.search.SuggestionList;
+import org.apache.roller.weblogger.config.WebloggerConfig;
+import org.apache.roller.weblogger.util.Utilities;
+
+
+/**
+ * Return search suggestions in JSON format, for search-as-you-type.
+ * These URLs are supported:
+ * <ul>
+ * <li>/roller-services/suggest?q=[prefix] - suggest from entire site</li>
+ * <li>/roller-services/suggest/weblog/[handle]?q=[prefix] - suggest from specific weblog</li>
+ * </ul>
+ * Suggestions come from the search index alone, without going to the
+ * database, and responses may be cached by clients and proxies for
+ * search.suggest.maxAge seconds.
+ */
+public class SuggestServlet extends HttpServlet {
+
+    private static final Log log = LogFactory.getLog(SuggestServlet.class);
+
+    private static final int MAX = WebloggerConfig.getIntProperty("search.suggest.max", 10);
+
+    private static final int MAX_AGE = WebloggerConfig.getIntProperty("search.suggest.maxAge", 60);
+
+    // longer prefixes are not search-as-you-type
+    private static final int MAX_PREFIX = 100;
+
+
+    @Override
+    public void doGet(
+            HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+
+        String[] pathInfo = new String[0];
+
+        if (request.getPathInfo() != null) {
+            pathInfo = Utilities.stringToStringArray(request.getPathInfo(),"/");
+        }
+
+        String handle;
+
+        if (pathInfo.length == 0) {
+            handle = null;
+        } else if (pathInfo.length == 2 && "weblog".equals(pathInfo[0]) && StringUtils.isAlphanumeric(pathInfo[1])) {
+            handle = pathInfo[1];
+        } else {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Malformed URL");
+            return;
+        }
+
+        String prefix = request.getParameter("q");
+
+        if (prefix != null && prefix.length() > MAX_PREFIX) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Malformed URL");
+            return;
+        }
+
+        SuggestionList suggestions;
+        try {
+            suggestions = WebloggerFactory.getWeblogger().getIndexManager().suggest(prefix, handle, MAX);
+        } catch (WebloggerException we) {
+            log.error("ERROR suggesting search terms", we);
+            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "ERROR suggesting search terms");
+            return;
+        }
+
+        response.setContentType("application/json; charset=utf-8");
+        response.setHeader("Cache-Control", "public, max-age=" + MAX_AGE);
+        PrintWriter pw = response.getWriter();
+        pw.println("{ \"prefix\": \"" + (prefix == null ? "" : StringEscapeUtils.escapeJson(prefix)) + "\",");
+        pw.println("  \"weblog\": \"" + (handle == null ? "" : handle) + "\",");
+        pw.println("  \"titles\": " + toJson(suggestions.getTitles()) + ",");
+        pw.println("  \"tags\": " + toJson(suggestions.getTags()));
+        pw.println("}");
+        response.flushBuffer();
+    }
+
+
+    private static String toJson(List<String> values) {
+        StringBuilder json = new StringBuilder("[");
+        for (Iterator<String> it = values.iterator(); it.hasNext();) {
+            json.append('"').append(StringEscapeUtils.escapeJson(it.next())).append('"');
+            if (it.hasNext()) {
+                json.append(", ");
+            }
+        }
+        return json.append(']').toString();
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.weblogger.business;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.apache.roller.weblogger.pojos.Weblog;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test HitCountQueue tallying, no database involved.
+ */
+public class HitCountQueueTest {
+
+    @Test
+    public void testDrain() {
+        HitCountQueue queue = new HitCountQueue(0);
+        Weblog a = weblog("a");
+        Weblog b = weblog("b");
+
+        queue.processHit(a);
+        queue.processHit(a);
+        queue.processHit(b);
+        queue.processHit(null);
+
+        assertEquals(2, queue.getQueueDepth());
+        assertEquals(3, queue.getQueuedHits());
+
+        Map<String, Long> hits = queue.drainHits();
+        assertEquals(Map.of("a", 2L, "b", 1L), hits);
+        assertEquals(2, queue.getLastDrainWeblogs());
+        assertEquals(3, queue.getLastDrainHits());
+
+        assertEquals(0, queue.getQueueDepth());
+        assertTrue(queue.drainHits().isEmpty());
+
+        // weblogs without new hits aren't kept around
+        queue.processHit(b);
+        assertEquals(1, queue.getQueueDepth());
+        assertEquals(Map.of("b", 1L), queue.drainHits());
+    }
+
+    @Test
+    public void testConcurrentHitsKept() throws Exception {
+        HitCountQueue queue = new HitCountQueue(10);
+        Weblog[] weblogs = { weblog("a"), weblog("b"), weblog("c") };
+
+        int threads = 4;
+        int hitsPerThread = 50000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            pool.execute(() -> {
+                for (int i = 0; i < hitsPerThread; i++) {
+                    queue.processHit(weblogs[i % weblogs.length]);
+                }
+            });
+        }
+
+        // drain while hits are still coming in
+        long total = 0;
+        pool.shutdown();
+        while (!pool.awaitTermination(20, TimeUnit.MILLISECONDS)) {
+            for (long count : queue.drainHits().values()) {
+                total += count;
+            }
+        }
+        for (int i = 0; i < 2; i++) {
+            for (long count : queue.drainHits().values()) {
+                total += count;
+            }
+        }
+
+        // a hit delayed past the grace period may be lost, but no more
+        long expected = (long) threads * hitsPerThread;
+        assertTrue(total <= expected);
+        assertTrue(total >= expected - threads, "lost " + (expected - total) + " hits");
+    }
+
+    private static Weblog weblog(String handle) {
+        Weblog weblog = new Weblog();
+        weblog.setHandle(handle);
+        return weblog;
+    }
+
+}
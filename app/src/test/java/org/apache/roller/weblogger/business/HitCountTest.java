@@ -28,8 +28,10 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -199,6 +201,46 @@ public class HitCountTest  {
         assertNull(hitCount);
     }
     
+    @Test
+    public void testIncrementHitCounts() throws Exception {
+        WeblogEntryManager mgr = WebloggerFactory.getWeblogger().getWeblogEntryManager();
+        
+        testUser = TestUtils.getManagedUser(testUser);
+        Weblog blog1 = TestUtils.setupWeblog("hitCntIncTest1", testUser);
+        Weblog blog2 = TestUtils.setupWeblog("hitCntIncTest2", testUser);
+        WeblogHitCount cnt1 = TestUtils.setupHitCount(blog1, 10);
+        TestUtils.endSession(true);
+        
+        try {
+            Map<String, Long> hits = new HashMap<>();
+            hits.put("hitCntIncTest1", 5L);
+            hits.put("hitCntIncTest2", 7L);
+            hits.put("hitCntIncTestNoSuchWeblog", 3L);
+            mgr.incrementHitCounts(hits);
+            TestUtils.endSession(true);
+            
+            // existing count incremented, missing one created
+            assertEquals(15, mgr.getHitCount(cnt1.getId()).getDailyHits());
+            blog2 = TestUtils.getManagedWebsite(blog2);
+            WeblogHitCount cnt2 = mgr.getHitCountByWeblog(blog2);
+            assertNotNull(cnt2);
+            assertEquals(7, cnt2.getDailyHits());
+            
+            mgr.incrementHitCounts(hits);
+            TestUtils.endSession(true);
+            
+            assertEquals(20, mgr.getHitCount(cnt1.getId()).getDailyHits());
+            assertEquals(14, mgr.getHitCount(cnt2.getId()).getDailyHits());
+            
+            TestUtils.teardownHitCount(cnt2.getId());
+        } finally {
+            // cleanup
+            TestUtils.teardownHitCount(cnt1.getId());
+            TestUtils.teardownWeblog(blog1.getId());
+            TestUtils.teardownWeblog(blog2.getId());
+        }
+    }
+    
     @Test
     public void testResetHitCounts() throws Exception {
         WeblogEntryManager mgr = WebloggerFactory.getWeblogger().getWeblogEntryManager();
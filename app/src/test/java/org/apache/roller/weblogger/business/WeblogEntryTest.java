@@ -117,9 +117,22 @@ public class WeblogEntryTest  {
         assertNotNull(entry);
         assertEquals(testEntry, entry);
         
+        // nothing has been changed since it was loaded
+        assertNull(entry.getPreviousCategory());
+        assertNull(entry.getPreviousPubTime());
+        assertNull(entry.getWebsite().getPreviousLastModified());
+        java.util.Date loadedModified = entry.getWebsite().getLastModified();
+        
         // update a weblog entry
         entry.setTitle("testtest");
+        java.sql.Timestamp loadedPubTime = entry.getPubTime();
+        entry.setPubTime(new java.sql.Timestamp(loadedPubTime.getTime() + 1000));
+        entry.setStatus(PubStatus.PUBLISHED);
         mgr.saveWeblogEntry(entry);
+        
+        // caches are told what it was before
+        assertEquals(loadedPubTime, entry.getPreviousPubTime());
+        assertEquals(loadedModified, entry.getWebsite().getPreviousLastModified());
         TestUtils.endSession(true);
         
         // make sure entry was updated
@@ -262,7 +275,23 @@ public class WeblogEntryTest  {
         assertNotNull(entries);
         assertEquals(1, entries.size());
         assertEquals(entry2, entries.get(0));
-        
+
+        // get all entries, seeking past the latest instead of skipping it
+        WeblogEntrySearchCriteria wesc11 = new WeblogEntrySearchCriteria();
+        wesc11.setWeblog(testWeblog);
+        wesc11.setAfter(entry3.getPubTime(), entry3.getId());
+        wesc11.setMaxResults(1);
+        entries = mgr.getWeblogEntries(wesc11);
+        assertEquals(1, entries.size());
+        assertEquals(entry2, entries.get(0));
+
+        // and seeking back the other way
+        wesc11.setAfter(entry2.getPubTime(), entry2.getId());
+        wesc11.setSortOrder(WeblogEntrySearchCriteria.SortOrder.ASCENDING);
+        entries = mgr.getWeblogEntries(wesc11);
+        assertEquals(1, entries.size());
+        assertEquals(entry3, entries.get(0));
+
         // get all entries, limited by locale
         WeblogEntrySearchCriteria wesc7 = new WeblogEntrySearchCriteria();
         wesc7.setWeblog(testWeblog);
@@ -299,12 +328,45 @@ public class WeblogEntryTest  {
         entryMap = mgr.getWeblogEntryStringMap(wesc8);
         assertNotNull(entryMap);
         assertTrue(entryMap.keySet().size() > 1);
+        
+        // get day counts of (non-future) PUBLISHED entries
+        WeblogEntrySearchCriteria wesc10 = new WeblogEntrySearchCriteria();
+        wesc10.setWeblog(testWeblog);
+        wesc10.setStatus(PubStatus.PUBLISHED);
+        Map<Date, Integer> dayCounts = mgr.getWeblogEntryDayCounts(wesc10);
+        assertEquals(3, countEntries(dayCounts));
+        assertEquals(dayCounts.keySet(), mgr.getWeblogEntryStringMap(wesc10).keySet());
+        
+        // get only the latest day
+        wesc10.setMaxResults(1);
+        Map<Date, Integer> latestDay = mgr.getWeblogEntryDayCounts(wesc10);
+        assertEquals(1, latestDay.size());
+        assertEquals(dayCounts.keySet().iterator().next(), latestDay.keySet().iterator().next());
+        
+        // get day counts limited by locale
+        wesc10.setMaxResults(-1);
+        wesc10.setLocale("en_US");
+        assertEquals(3, countEntries(mgr.getWeblogEntryDayCounts(wesc10)));
+        wesc10.setLocale("ja_JP");
+        assertTrue(mgr.getWeblogEntryDayCounts(wesc10).isEmpty());
                 
         // teardown our test entries
         TestUtils.teardownWeblogEntry(entry1.getId());
         TestUtils.teardownWeblogEntry(entry2.getId());
         TestUtils.teardownWeblogEntry(entry3.getId());
         TestUtils.endSession(true);
+        
+        // day counts follow removed entries
+        wesc10.setLocale(null);
+        assertEquals(2, countEntries(mgr.getWeblogEntryDayCounts(wesc10)));
+    }
+    
+    private static int countEntries(Map<Date, Integer> dayCounts) {
+        int count = 0;
+        for (int dayCount : dayCounts.values()) {
+            count += dayCount;
+        }
+        return count;
     }
 
     /**
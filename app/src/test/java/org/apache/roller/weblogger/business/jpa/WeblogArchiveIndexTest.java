@@ -0,0 +1,205 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.business.jpa;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import org.apache.roller.weblogger.business.jpa.WeblogArchiveIndex.Archive;
+import org.apache.roller.weblogger.business.jpa.WeblogArchiveIndex.ArchivedEntry;
+import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.pojos.WeblogCategory;
+import org.apache.roller.weblogger.pojos.WeblogEntry;
+import org.apache.roller.weblogger.pojos.WeblogEntry.PubStatus;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test WeblogArchiveIndex.
+ */
+public class WeblogArchiveIndexTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    private static final long DAY = 24 * HOUR;
+
+    // 2024-03-01 00:00 UTC
+    private static final long MARCH_1 = 1709251200000L;
+
+
+    @Test
+    public void testCountByDay() {
+        List<ArchivedEntry> entries = new ArrayList<>();
+        entries.add(new ArchivedEntry("a", MARCH_1 + HOUR, "general", "en_US"));
+        entries.add(new ArchivedEntry("b", MARCH_1 + 23 * HOUR, "java", "en_US"));
+        entries.add(new ArchivedEntry("c", MARCH_1 + 2 * DAY, "java", "de_DE"));
+        entries.add(new ArchivedEntry("d", MARCH_1 + 40 * DAY, "general", "en"));
+        Archive archive = new WeblogArchiveIndex(10).load("blog", entries, 0);
+
+        Map<Date, Integer> days = archive.countByDay(Long.MIN_VALUE, Long.MAX_VALUE,
+                null, null, false, 0, -1, utc());
+        assertEquals(3, days.size());
+        assertEquals(Integer.valueOf(2), days.get(noon(MARCH_1)));
+        assertEquals(Integer.valueOf(1), days.get(noon(MARCH_1 + 2 * DAY)));
+        assertEquals(noon(MARCH_1 + 40 * DAY), days.keySet().iterator().next());
+
+        // the month of March, by category and locale
+        long endOfMarch = MARCH_1 + 31 * DAY - 1;
+        assertEquals(2, archive.countByDay(MARCH_1, endOfMarch, null, null, false, 0, -1, utc()).size());
+        assertEquals(Map.of(noon(MARCH_1), 1, noon(MARCH_1 + 2 * DAY), 1),
+                archive.countByDay(MARCH_1, endOfMarch, "java", null, false, 0, -1, utc()));
+        assertEquals(Map.of(noon(MARCH_1), 2),
+                archive.countByDay(MARCH_1, endOfMarch, null, "en", false, 0, -1, utc()));
+
+        // the first day after March 1st, and the latest before April
+        assertEquals(Map.of(noon(MARCH_1 + 2 * DAY), 1),
+                archive.countByDay(MARCH_1 + DAY, Long.MAX_VALUE, null, null, true, 0, 1, utc()));
+        assertEquals(Map.of(noon(MARCH_1 + 2 * DAY), 1),
+                archive.countByDay(Long.MIN_VALUE, endOfMarch, null, null, false, 0, 1, utc()));
+
+        // paging counts days
+        assertEquals(Map.of(noon(MARCH_1), 2),
+                archive.countByDay(Long.MIN_VALUE, Long.MAX_VALUE, null, null, false, 2, 5, utc()));
+        assertTrue(archive.countByDay(Long.MIN_VALUE, Long.MAX_VALUE, null, null, false, 0, 0, utc()).isEmpty());
+    }
+
+
+    @Test
+    public void testDaysFollowTimeZone() {
+        List<ArchivedEntry> entries = new ArrayList<>();
+        entries.add(new ArchivedEntry("a", MARCH_1 + HOUR, "general", "en_US"));
+        entries.add(new ArchivedEntry("b", MARCH_1 + 23 * HOUR, "general", "en_US"));
+        Archive archive = new WeblogArchiveIndex(10).load("blog", entries, 0);
+
+        // 23:00 UTC is already the next day in Berlin
+        Calendar berlin = Calendar.getInstance(TimeZone.getTimeZone("Europe/Berlin"), Locale.GERMANY);
+        assertEquals(2, archive.countByDay(Long.MIN_VALUE, Long.MAX_VALUE,
+                null, null, false, 0, -1, berlin).size());
+    }
+
+
+    @Test
+    public void testEntryChanges() {
+        WeblogArchiveIndex index = new WeblogArchiveIndex(10);
+        Weblog weblog = new Weblog();
+        weblog.setHandle("blog");
+        index.load("blog", new ArrayList<>(), 0);
+
+        WeblogEntry entry = entry(weblog, "a", MARCH_1, PubStatus.PUBLISHED);
+        index.entrySaved(entry).run();
+        index.entrySaved(entry(weblog, "b", MARCH_1, PubStatus.DRAFT)).run();
+        assertEquals(1, index.get("blog", null).size());
+
+        // moved to another day
+        entry.setPubTime(new Timestamp(MARCH_1 + 3 * DAY));
+        index.entrySaved(entry).run();
+        assertEquals(Map.of(noon(MARCH_1 + 3 * DAY), 1), index.get("blog", null)
+                .countByDay(Long.MIN_VALUE, Long.MAX_VALUE, null, null, false, 0, -1, utc()));
+
+        // unpublished, then removed
+        entry.setStatus(PubStatus.DRAFT);
+        index.entrySaved(entry).run();
+        assertEquals(0, index.get("blog", null).size());
+        entry.setStatus(PubStatus.PUBLISHED);
+        index.entrySaved(entry).run();
+        index.entryRemoved(entry).run();
+        assertEquals(0, index.get("blog", null).size());
+
+        // entries of weblogs not loaded are ignored
+        Weblog other = new Weblog();
+        other.setHandle("other");
+        index.entrySaved(entry(other, "c", MARCH_1, PubStatus.PUBLISHED)).run();
+        assertNull(index.get("other", null));
+    }
+
+
+    @Test
+    public void testOnlySeenModificationsKeepArchiveCurrent() {
+        WeblogArchiveIndex index = new WeblogArchiveIndex(10);
+        index.load("blog", new ArrayList<>(), 1000);
+
+        // modified here, from the state the archive was loaded in
+        Weblog weblog = weblog("blog", 500, 2000);
+        Runnable update = index.entrySaved(entry(weblog, "a", MARCH_1, PubStatus.PUBLISHED));
+        assertEquals(0, index.get("blog", null).size());
+        update.run();
+        assertNotNull(index.get("blog", new Date(2000)));
+        assertEquals(1, index.get("blog", null).size());
+
+        // modified here after a modification made elsewhere
+        weblog = weblog("blog", 3000, 4000);
+        index.entrySaved(entry(weblog, "b", MARCH_1, PubStatus.PUBLISHED)).run();
+        assertNull(index.get("blog", new Date(4000)));
+    }
+
+
+    @Test
+    public void testStaleAndBounded() {
+        WeblogArchiveIndex index = new WeblogArchiveIndex(2);
+        index.load("one", new ArrayList<>(), 1000);
+
+        // weblog modified since, perhaps by another node
+        assertNotNull(index.get("one", new Date(1000)));
+        assertNull(index.get("one", new Date(1001)));
+
+        index.load("two", new ArrayList<>(), 1000);
+        index.get("one", null);
+        index.load("three", new ArrayList<>(), 1000);
+        assertEquals(2, index.size());
+        assertNull(index.get("two", null));
+        assertNotNull(index.get("one", null));
+    }
+
+
+    private static Weblog weblog(String handle, long loadedModified, long lastModified) {
+        Weblog weblog = new Weblog();
+        weblog.setHandle(handle);
+        weblog.setLastModified(new Date(loadedModified));
+        weblog.setLastModified(new Date(lastModified));
+        return weblog;
+    }
+
+    private static WeblogEntry entry(Weblog weblog, String id, long pubTime, PubStatus status) {
+        WeblogCategory category = new WeblogCategory();
+        category.setId("general");
+        WeblogEntry entry = new WeblogEntry();
+        entry.setId(id);
+        entry.setWebsite(weblog);
+        entry.setCategory(category);
+        entry.setLocale("en_US");
+        entry.setPubTime(new Timestamp(pubTime));
+        entry.setStatus(status);
+        return entry;
+    }
+
+    private static Calendar utc() {
+        return Calendar.getInstance(TimeZone.getTimeZone("UTC"), Locale.US);
+    }
+
+    private static Date noon(long day) {
+        return new Date(day - Math.floorMod(day, DAY) + 12 * HOUR);
+    }
+
+}
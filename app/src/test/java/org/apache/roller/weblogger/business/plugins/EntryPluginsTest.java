@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.business.plugins;
+
+import java.util.Date;
+import java.util.Map;
+import org.apache.roller.weblogger.TestUtils;
+import org.apache.roller.weblogger.business.WebloggerFactory;
+import org.apache.roller.weblogger.business.plugins.entry.WeblogEntryPlugin;
+import org.apache.roller.weblogger.pojos.Weblog;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test weblog entry plugins.
+ */
+public class EntryPluginsTest {
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        TestUtils.setupWeblogger();
+    }
+
+    @Test
+    public void testPluginsReused() {
+
+        PluginManager pmgr = WebloggerFactory.getWeblogger().getPluginManager();
+
+        Weblog weblog = new Weblog();
+        weblog.setId("entryPluginsTest");
+        weblog.setHandle("entryPluginsTest");
+        weblog.setLastModified(new Date(1000L));
+
+        Map<String, WeblogEntryPlugin> plugins = pmgr.getWeblogEntryPlugins(weblog);
+        assertFalse(plugins.isEmpty());
+        assertSame(plugins, pmgr.getWeblogEntryPlugins(weblog));
+
+        // rebuilt once the weblog changes
+        weblog.setLastModified(new Date(2000L));
+        Map<String, WeblogEntryPlugin> changed = pmgr.getWeblogEntryPlugins(weblog);
+        assertNotSame(plugins, changed);
+        assertEquals(plugins.keySet(), changed.keySet());
+        assertSame(changed, pmgr.getWeblogEntryPlugins(weblog));
+
+        // weblogs not saved yet aren't kept
+        Weblog unsaved = new Weblog();
+        unsaved.setId(null);
+        assertNotSame(pmgr.getWeblogEntryPlugins(unsaved), pmgr.getWeblogEntryPlugins(unsaved));
+    }
+
+    @Test
+    public void testSmileys() {
+
+        PluginManager pmgr = WebloggerFactory.getWeblogger().getPluginManager();
+        WeblogEntryPlugin smileys = pmgr.getWeblogEntryPlugins(new Weblog()).get("Emoticons");
+
+        assertEquals("no smileys here", smileys.render(null, "no smileys here"));
+
+        String output = smileys.render(null, "happy :-) sad :( crying :(( end");
+        assertTrue(output.startsWith("happy <img src=\""), output);
+        assertTrue(output.contains("/images/smileys/smile.gif\" class=\"smiley\" alt=\":-)\""), output);
+        assertTrue(output.contains("/images/smileys/sad.gif\" class=\"smiley\" alt=\":(\""), output);
+        assertTrue(output.contains("/images/smileys/cry.gif\" class=\"smiley\" alt=\":((\""), output);
+        assertTrue(output.endsWith(" /> end"), output);
+        assertEquals(3, output.split("<img ", -1).length - 1, output);
+    }
+
+}
@@ -18,18 +18,27 @@
 package org.apache.roller.weblogger.business.search;
 
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.roller.util.RollerConstants;
 import org.apache.roller.weblogger.TestUtils;
 import org.apache.roller.weblogger.business.WeblogEntryManager;
 import org.apache.roller.weblogger.business.WebloggerFactory;
+import org.apache.roller.weblogger.business.search.lucene.LuceneIndexManager;
+import org.apache.roller.weblogger.business.search.lucene.SearchOperation;
 import org.apache.roller.weblogger.pojos.User;
 import org.apache.roller.weblogger.pojos.Weblog;
 import org.apache.roller.weblogger.pojos.WeblogCategory;
 import org.apache.roller.weblogger.pojos.WeblogEntry;
+import org.apache.roller.weblogger.pojos.WeblogEntry.PubStatus;
+import org.apache.roller.weblogger.pojos.wrapper.WeblogEntryWrapper;
+import org.apache.roller.weblogger.util.cache.CacheManager;
 import org.instancio.Instancio;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -97,6 +106,154 @@ public class IndexManagerTest {
                 WebloggerFactory.getWeblogger().getUrlStrategy());
             assertEquals(1, result.getResults().size());
 
+            result = indexManager.searchAsync("Tholian",
+                testWeblog.getHandle(), null, testWeblog.getLocale(), null, null, null, null,
+                0, RESULTS_PER_PAGE, WebloggerFactory.getWeblogger().getUrlStrategy()).get();
+            assertEquals(1, result.getResults().size());
+            assertEquals("The Tholian Web", result.getResults().get(0).getTitle());
+
+        } finally {
+            for (WeblogEntry entry : entries) {
+                indexManager.removeEntryIndexOperation(TestUtils.getManagedWeblogEntry(entry));
+            }
+            indexManager.removeWeblogIndex(testWeblog);
+        }
+    }
+
+    @Test
+    public void testRebuildWeblogIndex() throws Exception {
+
+        IndexManager indexManager = WebloggerFactory.getWeblogger().getIndexManager();
+        WeblogEntryManager entryManager = WebloggerFactory.getWeblogger().getWeblogEntryManager();
+
+        List<WeblogEntry> entries = createWeblogEntries(testWeblog, indexManager, entryManager);
+
+        try {
+            // drop one entry from the index only, the rebuild brings it back
+            indexManager.removeEntryIndexOperation(TestUtils.getManagedWeblogEntry(entries.get(0)));
+            Thread.sleep(RollerConstants.SEC_IN_MS);
+            assertEquals(0, search(indexManager, "Tholian").getResults().size());
+
+            indexManager.rebuildWeblogIndex(TestUtils.getManagedWebsite(testWeblog));
+
+            SearchResultList result = null;
+            for (int i = 0; i < 20; i++) {
+                Thread.sleep(RollerConstants.HALF_SEC_IN_MS);
+                result = search(indexManager, "Tholian");
+                if (!result.getResults().isEmpty()) {
+                    break;
+                }
+            }
+            assertEquals(1, result.getResults().size());
+
+            // entries were indexed in chunks, each exactly once
+            assertEquals(2, search(indexManager, "Enterprise").getResults().size());
+
+        } finally {
+            for (WeblogEntry entry : entries) {
+                indexManager.removeEntryIndexOperation(TestUtils.getManagedWeblogEntry(entry));
+            }
+            indexManager.removeWeblogIndex(testWeblog);
+        }
+    }
+
+    @Test
+    public void testPagingAndCategories() throws Exception {
+
+        IndexManager indexManager = WebloggerFactory.getWeblogger().getIndexManager();
+        WeblogEntryManager entryManager = WebloggerFactory.getWeblogger().getWeblogEntryManager();
+
+        List<WeblogEntry> entries = createWeblogEntries(testWeblog, indexManager, entryManager);
+
+        try {
+            // one hit per page, newest first
+            SearchResultList first = indexManager.search("Enterprise",
+                testWeblog.getHandle(), null, testWeblog.getLocale(), 0, 1,
+                WebloggerFactory.getWeblogger().getUrlStrategy());
+            SearchResultList second = indexManager.search("Enterprise",
+                testWeblog.getHandle(), null, testWeblog.getLocale(), 1, 1,
+                WebloggerFactory.getWeblogger().getUrlStrategy());
+
+            assertEquals(2, first.getTotalHits());
+            assertEquals(2, second.getTotalHits());
+            assertEquals(1, second.getOffset());
+            assertEquals("A Piece of the Action", first.getResults().get(0).getTitle());
+            assertEquals("The Tholian Web", second.getResults().get(0).getTitle());
+
+            // categories are counted over all hits, not just the page
+            SearchOperation search = new SearchOperation((LuceneIndexManager) indexManager);
+            search.setTerm("Enterprise");
+            search.setLimit(1);
+            search.setCountCategories(true);
+            search.run();
+            try {
+                assertEquals(2, search.getResultsCount());
+                assertEquals(1, search.getResults().scoreDocs.length);
+                assertEquals(Set.of("general"), search.getCategories());
+            } finally {
+                search.release();
+            }
+
+        } finally {
+            for (WeblogEntry entry : entries) {
+                indexManager.removeEntryIndexOperation(TestUtils.getManagedWeblogEntry(entry));
+            }
+            indexManager.removeWeblogIndex(testWeblog);
+        }
+    }
+
+    @Test
+    public void testSearchResultCache() throws Exception {
+
+        IndexManager indexManager = WebloggerFactory.getWeblogger().getIndexManager();
+        WeblogEntryManager entryManager = WebloggerFactory.getWeblogger().getWeblogEntryManager();
+
+        List<WeblogEntry> entries = createWeblogEntries(testWeblog, indexManager, entryManager);
+
+        try {
+            assertEquals(1, search(indexManager, "Tholian").getResults().size());
+
+            // the same search, spelled a little differently, is served from the cache
+            long hits = cacheHits();
+            SearchResultList result = search(indexManager, "  Tholian ");
+            assertEquals(1, result.getResults().size());
+            assertEquals(hits + 1, cacheHits());
+
+            // until the index changes
+            indexManager.removeEntryIndexOperation(TestUtils.getManagedWeblogEntry(entries.get(0)));
+            Thread.sleep(RollerConstants.SEC_IN_MS);
+            assertEquals(0, search(indexManager, "Tholian").getResults().size());
+
+        } finally {
+            for (WeblogEntry entry : entries) {
+                indexManager.removeEntryIndexOperation(TestUtils.getManagedWeblogEntry(entry));
+            }
+            indexManager.removeWeblogIndex(testWeblog);
+        }
+    }
+
+    @Test
+    public void testFilters() throws Exception {
+
+        IndexManager indexManager = WebloggerFactory.getWeblogger().getIndexManager();
+        WeblogEntryManager entryManager = WebloggerFactory.getWeblogger().getWeblogEntryManager();
+
+        List<WeblogEntry> entries = createWeblogEntries(testWeblog, indexManager, entryManager);
+
+        try {
+            // entries were published half a second apart
+            assertEquals(List.of("A Piece of the Action"),
+                titles(search(indexManager, entries.get(1).getPubTime(), null, null, null)));
+            assertEquals(List.of("The Tholian Web"),
+                titles(search(indexManager, null, entries.get(0).getPubTime(), null, null)));
+
+            assertEquals(2, search(indexManager, null, null, testUser.getUserName(), null).getResults().size());
+            assertEquals(0, search(indexManager, null, null, "nobody", null).getResults().size());
+
+            assertEquals(List.of("The Tholian Web"),
+                titles(search(indexManager, null, null, null, List.of("defiant"))));
+            assertEquals(0, search(indexManager, null, null, null, List.of("defiant", "tribbles")).getResults().size());
+
         } finally {
             for (WeblogEntry entry : entries) {
                 indexManager.removeEntryIndexOperation(TestUtils.getManagedWeblogEntry(entry));
@@ -105,6 +262,76 @@ public class IndexManagerTest {
         }
     }
 
+    @Test
+    public void testSuggest() throws Exception {
+
+        IndexManager indexManager = WebloggerFactory.getWeblogger().getIndexManager();
+        WeblogEntryManager entryManager = WebloggerFactory.getWeblogger().getWeblogEntryManager();
+
+        List<WeblogEntry> entries = createWeblogEntries(testWeblog, indexManager, entryManager);
+
+        try {
+            SuggestionList suggestions = indexManager.suggest("Thol", testWeblog.getHandle(), 10);
+            assertEquals(List.of("The Tholian Web"), suggestions.getTitles());
+
+            // all but the last word must be complete
+            assertEquals(List.of("A Piece of the Action"),
+                indexManager.suggest("piece of th", testWeblog.getHandle(), 10).getTitles());
+            assertEquals(List.of(), indexManager.suggest("pie of th", testWeblog.getHandle(), 10).getTitles());
+
+            assertEquals(List.of("defiant"), indexManager.suggest("De", testWeblog.getHandle(), 10).getTags());
+            assertEquals(List.of("defiant"), indexManager.suggest("defi", null, 10).getTags());
+            assertEquals(List.of(), indexManager.suggest("defi", "nosuchweblog", 10).getTags());
+
+            // suggestions follow the index
+            WeblogEntry retitled = TestUtils.getManagedWeblogEntry(entries.get(1));
+            retitled.setTitle("A Piece of the Reaction");
+            entryManager.saveWeblogEntry(retitled);
+            TestUtils.endSession(true);
+            indexManager.addEntryReIndexOperation(retitled);
+            Thread.sleep(RollerConstants.SEC_IN_MS);
+            assertEquals(List.of("A Piece of the Reaction"),
+                indexManager.suggest("piece of th", testWeblog.getHandle(), 10).getTitles());
+
+            indexManager.removeEntryIndexOperation(TestUtils.getManagedWeblogEntry(entries.get(0)));
+            Thread.sleep(RollerConstants.SEC_IN_MS);
+            suggestions = indexManager.suggest("Thol", testWeblog.getHandle(), 10);
+            assertEquals(List.of(), suggestions.getTitles());
+            assertEquals(List.of(), indexManager.suggest("defi", null, 10).getTags());
+
+        } finally {
+            for (WeblogEntry entry : entries) {
+                indexManager.removeEntryIndexOperation(TestUtils.getManagedWeblogEntry(entry));
+            }
+            indexManager.removeWeblogIndex(testWeblog);
+        }
+    }
+
+    private SearchResultList search(IndexManager indexManager, Date startDate, Date endDate,
+            String userName, List<String> tags) throws Exception {
+        return indexManager.search("Enterprise",
+            testWeblog.getHandle(), null, testWeblog.getLocale(), startDate, endDate, userName, tags,
+            0, RESULTS_PER_PAGE, WebloggerFactory.getWeblogger().getUrlStrategy());
+    }
+
+    private static List<String> titles(SearchResultList result) {
+        List<String> titles = new ArrayList<>();
+        for (WeblogEntryWrapper entry : result.getResults()) {
+            titles.add(entry.getTitle());
+        }
+        return titles;
+    }
+
+    private static long cacheHits() {
+        return (Long) CacheManager.getStats().get("cache.search").get("hits");
+    }
+
+    private SearchResultList search(IndexManager indexManager, String term) throws Exception {
+        return indexManager.search(term,
+            testWeblog.getHandle(), null, testWeblog.getLocale(), 0, RESULTS_PER_PAGE,
+            WebloggerFactory.getWeblogger().getUrlStrategy());
+    }
+
     /**
      * Create some weblog entries, two with some Star Trek content
      */
@@ -116,6 +343,7 @@ public class IndexManagerTest {
         List<WeblogEntry> entries = Instancio.ofList(WeblogEntry.class).size(10).create();
 
         entries.get(0).setTitle("The Tholian Web");
+        entries.get(0).setStatus(PubStatus.PUBLISHED);
         entries.get(0).setPubTime(new Timestamp(System.currentTimeMillis()));
         entries.get(0).setText(
             "When the Enterprise attempts to ascertain the fate of the  "
@@ -124,7 +352,11 @@ public class IndexManagerTest {
 
         Thread.sleep(500);
 
+        entries.get(0).setCreatorUserName(testWeblog.getCreatorUserName());
+
         entries.get(1).setTitle("A Piece of the Action");
+        entries.get(1).setCreatorUserName(testWeblog.getCreatorUserName());
+        entries.get(1).setStatus(PubStatus.PUBLISHED);
         entries.get(1).setPubTime(new Timestamp(System.currentTimeMillis()));
         entries.get(1).setText(
             "The crew of the Enterprise attempts to make contact with "
@@ -142,9 +374,12 @@ public class IndexManagerTest {
             entry.setCategory(cat);
             entry.setWebsite(TestUtils.getManagedWebsite(testWeblog));
             entry.setEntryAttributes(Collections.emptySet());
-            entry.setTags(Collections.emptySet());
+            entry.setTags(new HashSet<>());
 
             entry.setLocale(testWeblog.getLocale());
+            if (entry == entries.get(0)) {
+                entry.addTag("Defiant");
+            }
 
             entryManager.saveWeblogEntry(entry);
             TestUtils.endSession(true);
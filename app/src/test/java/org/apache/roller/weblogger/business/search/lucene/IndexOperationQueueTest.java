@@ -0,0 +1,180 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.business.search.lucene;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test IndexOperationQueue coalescing and backpressure, no index involved.
+ */
+public class IndexOperationQueueTest {
+
+    private IndexOperationContext manager;
+    private List<String> applied;
+
+    @BeforeEach
+    public void setUp() {
+        manager = mock(IndexOperationContext.class);
+        when(manager.getReadWriteLock()).thenReturn(new ReentrantReadWriteLock());
+        applied = Collections.synchronizedList(new ArrayList<>());
+    }
+
+    @Test
+    public void testLastWriteWins() throws Exception {
+        IndexOperationQueue queue = new IndexOperationQueue(10, 5000);
+
+        Operation first = new Operation("entry:1", "add 1");
+        Operation second = new Operation("entry:2", "add 2");
+        Operation third = new Operation("entry:1", "remove 1");
+        queue.submit(first);
+        queue.submit(second);
+        queue.submit(third);
+        queue.submit(new Operation(null, "other"));
+        queue.submit(new Operation(null, "other"));
+
+        assertEquals(4, queue.getQueueDepth());
+        assertEquals(5, queue.getSubmitted());
+        assertEquals(1, queue.getCoalesced());
+
+        // the replacing operation goes where the last submission did
+        assertEquals(4, queue.flush());
+        assertEquals(List.of("add 2", "remove 1", "other", "other"), applied);
+        assertEquals(4, queue.getLastFlushOperations());
+        verify(manager).operationApplied(second);
+        verify(manager).operationApplied(third);
+
+        assertEquals(0, queue.getQueueDepth());
+        assertEquals(0, queue.flush());
+    }
+
+    @Test
+    public void testFullQueueWaits() throws Exception {
+        IndexOperationQueue queue = new IndexOperationQueue(1, 5000);
+        queue.submit(new Operation("entry:1", "add 1"));
+
+        // replacing a queued operation never waits
+        queue.submit(new Operation("entry:1", "reindex 1"));
+
+        Thread submitter = new Thread(() -> {
+            try {
+                queue.submit(new Operation("entry:2", "add 2"));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        submitter.start();
+        while (queue.getWaits() == 0) {
+            Thread.sleep(10);
+        }
+        assertTrue(submitter.isAlive());
+
+        queue.flush();
+        submitter.join(5000);
+        assertFalse(submitter.isAlive());
+
+        queue.flush();
+        assertEquals(List.of("reindex 1", "add 2"), applied);
+    }
+
+    @Test
+    public void testDroppedWhenFlushStalls() throws Exception {
+        IndexOperationQueue queue = new IndexOperationQueue(1, 100);
+        assertTrue(queue.submit(new Operation("entry:1", "add 1")));
+
+        // nothing flushes the queue
+        assertFalse(queue.submit(new Operation("entry:2", "add 2")));
+        assertEquals(1, queue.getWaits());
+        assertEquals(1, queue.getDropped());
+        assertEquals(1, queue.getQueueDepth());
+
+        queue.flush();
+        assertEquals(List.of("add 1"), applied);
+    }
+
+    @Test
+    public void testShardsLockedSeparately() throws Exception {
+        IndexOperationContext otherShard = mock(IndexOperationContext.class);
+        ReentrantReadWriteLock otherLock = new ReentrantReadWriteLock();
+        when(otherShard.getReadWriteLock()).thenReturn(otherLock);
+
+        IndexOperationQueue queue = new IndexOperationQueue(10, 5000);
+        Operation first = new Operation(manager, "entry:1", "add 1");
+        Operation second = new Operation(otherShard, "entry:2", "add 2");
+        Operation third = new Operation(manager, "entry:3", "add 3");
+        queue.submit(first);
+        queue.submit(second);
+        queue.submit(third);
+
+        // holding one shard's lock, as a rebuild does, holds up that shard only
+        otherLock.writeLock().lock();
+
+        Thread flusher = new Thread(queue::flush);
+        flusher.start();
+        while (applied.size() < 2) {
+            Thread.sleep(10);
+        }
+        assertEquals(List.of("add 1", "add 3"), applied);
+        assertTrue(flusher.isAlive());
+        verify(manager).operationApplied(first);
+        verify(manager).operationApplied(third);
+
+        otherLock.writeLock().unlock();
+        flusher.join(5000);
+        assertFalse(flusher.isAlive());
+        assertEquals(List.of("add 1", "add 3", "add 2"), applied);
+        verify(otherShard).operationApplied(second);
+    }
+
+    private class Operation extends WriteToIndexOperation {
+
+        private final String key;
+        private final String name;
+
+        Operation(String key, String name) {
+            this(IndexOperationQueueTest.this.manager, key, name);
+        }
+
+        Operation(IndexOperationContext shard, String key, String name) {
+            super(shard);
+            this.key = key;
+            this.name = name;
+        }
+
+        @Override
+        protected String getQueueKey() {
+            return key;
+        }
+
+        @Override
+        protected void doRun() {
+            applied.add(name);
+        }
+    }
+
+}
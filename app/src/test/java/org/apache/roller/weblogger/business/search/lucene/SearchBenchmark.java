@@ -0,0 +1,417 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.business.search.lucene;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.store.Directory;
+import org.apache.roller.weblogger.WebloggerException;
+import org.apache.roller.weblogger.pojos.User;
+import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.pojos.WeblogCategory;
+import org.apache.roller.weblogger.pojos.WeblogEntry;
+import org.apache.roller.weblogger.pojos.WeblogEntryTag;
+
+/**
+ * Measures search throughput and latency against a synthetic index, for
+ * comparing search.index.directory, search.index.nrtCache.* and
+ * search.index.queryThreads settings.
+ *
+ * Not a unit test, run it from the app directory with something like
+ *
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) \
+ *     -Dbench.queryThreads=4 \
+ *     org.apache.roller.weblogger.business.search.lucene.SearchBenchmark
+ * </pre>
+ *
+ * The index is built with the documents IndexOperation builds for real
+ * entries, and kept between runs. Queries are one or two words, half of
+ * them within a single weblog and half site wide, and go through
+ * SearchOperation like the searches of the search page. Settings, as
+ * system properties:
+ *
+ * <pre>
+ * bench.entries      entries in the index, 1000000
+ * bench.weblogs      weblogs they belong to, 1000
+ * bench.index        where the index is kept, a directory in java.io.tmpdir
+ * bench.directory    mmap, nio or auto, mmap
+ * bench.nrtCacheMB   NRTCachingDirectory size, 0 for none
+ * bench.queryThreads threads searching slices of one query, 0 for none
+ * bench.clients      threads issuing queries, 8
+ * bench.warmup       seconds before measuring, 10
+ * bench.seconds      seconds measured, 30
+ * </pre>
+ */
+public final class SearchBenchmark {
+
+    private static final int VOCABULARY = 20000;
+
+    private static final int TITLE_WORDS = 6;
+
+    private static final int CONTENT_WORDS = 80;
+
+    private final int entries = Integer.getInteger("bench.entries", 1000000);
+    private final int weblogs = Integer.getInteger("bench.weblogs", 1000);
+    private final Path indexPath = Path.of(System.getProperty("bench.index",
+            Path.of(System.getProperty("java.io.tmpdir"), "roller-search-bench-" + entries).toString()));
+    private final String directoryType = System.getProperty("bench.directory", "mmap");
+    private final int nrtCacheMB = Integer.getInteger("bench.nrtCacheMB", 0);
+    private final int queryThreads = Integer.getInteger("bench.queryThreads", 0);
+    private final int clients = Integer.getInteger("bench.clients", 8);
+    private final int warmupSeconds = Integer.getInteger("bench.warmup", 10);
+    private final int seconds = Integer.getInteger("bench.seconds", 30);
+
+    private final String[] words = new String[VOCABULARY];
+
+
+    private SearchBenchmark() {
+        // pronounceable and never stop words
+        String[] syllables = {"ka", "lo", "mi", "ne", "ru", "sa", "te", "vo", "zu", "qi"};
+        for (int i = 0; i < VOCABULARY; i++) {
+            StringBuilder word = new StringBuilder("x");
+            for (int n = i; n > 0 || word.length() == 1; n /= syllables.length) {
+                word.append(syllables[n % syllables.length]);
+            }
+            words[i] = word.toString();
+        }
+    }
+
+
+    public static void main(String[] args) throws Exception {
+        new SearchBenchmark().run();
+    }
+
+
+    private void run() throws Exception {
+
+        boolean exists;
+        try (Directory directory = LuceneIndexManager.openDirectory(indexPath, "auto", 0, 0)) {
+            exists = DirectoryReader.indexExists(directory);
+        }
+        if (!exists) {
+            build();
+        }
+
+        ExecutorService executor = queryThreads > 0
+                ? LuceneIndexManager.newQueryExecutor(queryThreads) : null;
+        try (Directory directory = LuceneIndexManager.openDirectory(indexPath,
+                directoryType, 5, nrtCacheMB)) {
+
+            // the searcher manager takes over the reader
+            DirectoryReader reader = DirectoryReader.open(directory);
+            System.out.println("entries=" + reader.numDocs() + " segments=" + reader.leaves().size()
+                    + " directory=" + directory + " queryThreads=" + queryThreads
+                    + " clients=" + clients);
+
+            try (SearcherManager searchers = new SearcherManager(reader,
+                    LuceneIndexManager.createSearcherFactory(executor))) {
+                Index index = new Index(searchers);
+
+                measure(index, warmupSeconds);
+                long[] latencies = measure(index, seconds);
+
+                Arrays.sort(latencies);
+                System.out.printf("queries=%d qps=%.1f p50=%.2fms p99=%.2fms max=%.2fms%n",
+                        latencies.length, latencies.length / (double) seconds,
+                        percentile(latencies, 0.50), percentile(latencies, 0.99),
+                        percentile(latencies, 1.0));
+            }
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+
+    /**
+     * Build the index, on as many threads as there are processors.
+     */
+    private void build() throws Exception {
+
+        System.out.println("Building index of " + entries + " entries in " + indexPath);
+        long start = System.nanoTime();
+
+        Files.createDirectories(indexPath);
+        IndexWriterConfig config = new IndexWriterConfig(new StandardAnalyzer());
+        config.setRAMBufferSizeMB(256);
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService builders = Executors.newFixedThreadPool(threads);
+        try (Directory directory = LuceneIndexManager.openDirectory(indexPath, "auto", 0, 0);
+             IndexWriter writer = new IndexWriter(directory, config)) {
+
+            IndexOperation documents = new IndexOperation(null) {
+                @Override
+                protected void doRun() {
+                }
+            };
+
+            List<Future<?>> building = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int first = t;
+                building.add(builders.submit(() -> {
+                    Random random = new Random(first);
+                    for (int i = first; i < entries; i += threads) {
+                        Document doc = documents.getDocument(entry(i, random), null);
+                        writer.addDocument(doc);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : building) {
+                future.get();
+            }
+            writer.forceMerge(10);
+        } finally {
+            builders.shutdownNow();
+        }
+
+        System.out.printf("Built in %.1fs%n", (System.nanoTime() - start) / 1e9);
+    }
+
+
+    private WeblogEntry entry(int i, Random random) throws WebloggerException {
+
+        Weblog weblog = new Weblog();
+        weblog.setHandle("weblog" + (i % weblogs));
+
+        User user = new User();
+        user.setUserName("user" + (i % weblogs));
+
+        WeblogCategory category = new WeblogCategory();
+        category.setName("category" + (i % 10));
+
+        WeblogEntryTag tag = new WeblogEntryTag();
+        tag.setName(word(random));
+
+        WeblogEntry entry = new WeblogEntry();
+        entry.setId("entry" + i);
+        entry.setWebsite(weblog);
+        entry.setCreator(user);
+        entry.setCategory(category);
+        entry.setTags(new HashSet<>(List.of(tag)));
+        entry.setLocale("en_US");
+        entry.setTitle(text(random, TITLE_WORDS));
+        entry.setText(text(random, CONTENT_WORDS));
+        // a few years of entries
+        Timestamp time = new Timestamp(1500000000000L + i * 100000L);
+        entry.setPubTime(time);
+        entry.setUpdateTime(time);
+        return entry;
+    }
+
+    private String text(Random random, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            text.append(word(random)).append(' ');
+        }
+        return text.toString();
+    }
+
+    /**
+     * A word, common words much more likely than rare ones as in real text.
+     */
+    private String word(Random random) {
+        double r = random.nextDouble();
+        return words[(int) (VOCABULARY * r * r * r)];
+    }
+
+
+    /**
+     * Run queries from all clients for the given time.
+     *
+     * @return the latency of each query, in nanoseconds.
+     */
+    private long[] measure(Index index, int duration) throws Exception {
+
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(duration);
+        ExecutorService clientThreads = Executors.newFixedThreadPool(clients);
+        try {
+            List<Future<long[]>> running = new ArrayList<>();
+            for (int c = 0; c < clients; c++) {
+                int seed = c;
+                running.add(clientThreads.submit(() -> query(index, new Random(seed), end)));
+            }
+
+            List<long[]> results = new ArrayList<>();
+            int count = 0;
+            for (Future<long[]> future : running) {
+                long[] latencies = future.get();
+                results.add(latencies);
+                count += latencies.length;
+            }
+
+            long[] all = new long[count];
+            int pos = 0;
+            for (long[] latencies : results) {
+                System.arraycopy(latencies, 0, all, pos, latencies.length);
+                pos += latencies.length;
+            }
+            return all;
+
+        } finally {
+            clientThreads.shutdownNow();
+        }
+    }
+
+    private long[] query(Index index, Random random, long end) {
+
+        long[] latencies = new long[1024];
+        int count = 0;
+        while (System.nanoTime() < end) {
+            SearchOperation search = new SearchOperation(index);
+            search.setTerm(random.nextBoolean() ? word(random) : word(random) + " " + word(random));
+            boolean siteWide = random.nextBoolean();
+            if (!siteWide) {
+                search.setWeblogHandle("weblog" + random.nextInt(weblogs));
+            }
+            search.setCountCategories(siteWide);
+            search.setLimit(10);
+
+            long start = System.nanoTime();
+            try {
+                search.run();
+            } finally {
+                search.release();
+            }
+
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = System.nanoTime() - start;
+        }
+        return Arrays.copyOf(latencies, count);
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int i = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, i)] / 1e6;
+    }
+
+
+    /**
+     * Just enough of an index for SearchOperation.
+     */
+    private static final class Index implements IndexOperationContext {
+
+        private final SearcherManager searchers;
+        private final Analyzer analyzer = new StandardAnalyzer();
+
+        Index(SearcherManager searchers) {
+            this.searchers = searchers;
+        }
+
+        @Override
+        public boolean holdsWeblog(String weblogHandle) {
+            return true;
+        }
+
+        @Override
+        public Analyzer getAnalyzer() {
+            return analyzer;
+        }
+
+        @Override
+        public IndexSearcher acquireSearcher() throws IOException {
+            return searchers.acquire();
+        }
+
+        @Override
+        public void releaseSearcher(IndexSearcher searcher) {
+            try {
+                searchers.release(searcher);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public Directory getIndexDirectory() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ReadWriteLock getReadWriteLock() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public IndexWriter getIndexWriter() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public IndexWriterConfig createIndexWriterConfig() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Directory createRebuildDirectory() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void deleteRebuildDirectory(Directory directory) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Collection<WriteToIndexOperation> beginRebuild() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void endRebuild(Collection<WriteToIndexOperation> operations) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void operationApplied(WriteToIndexOperation operation) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.business.search.lucene;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.ReferenceManager;
+import org.apache.lucene.search.TermQuery;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test searching several index shards at once.
+ */
+public class ShardedIndexSearcherTest {
+
+    @TempDir
+    Path indexDir;
+
+    private List<IndexShard> shards;
+    private ExecutorService executor;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        LuceneIndexManager manager = mock(LuceneIndexManager.class);
+        when(manager.createIndexWriterConfig()).thenAnswer(
+            invocation -> new IndexWriterConfig(new StandardAnalyzer()));
+        when(manager.openDirectory(any())).thenAnswer(
+            invocation -> LuceneIndexManager.openDirectory(invocation.getArgument(0), "mmap", 5, 60));
+
+        shards = List.of(
+            new IndexShard(manager, indexDir.resolve("shard-0")),
+            new IndexShard(manager, indexDir.resolve("shard-1")));
+        for (IndexShard shard : shards) {
+            shard.open(Map.of(), mock(ReferenceManager.RefreshListener.class), null);
+        }
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        for (IndexShard shard : shards) {
+            shard.close();
+        }
+    }
+
+    @Test
+    public void testSearchAllShards() throws Exception {
+        add(shards.get(0), "1", "enterprise");
+        add(shards.get(0), "2", "defiant");
+        add(shards.get(1), "3", "enterprise");
+
+        ShardedIndexSearcher searcher = ShardedIndexSearcher.acquire(shards, executor);
+        try {
+            // one slice per shard, searched in parallel
+            assertEquals(2, searcher.getSlices().length);
+            assertEquals(3, searcher.count(new MatchAllDocsQuery()));
+            assertEquals(2, searcher.count(new TermQuery(new Term("weblog", "enterprise"))));
+        } finally {
+            searcher.release();
+        }
+
+        // a change to any shard is a new version
+        long version = LuceneIndexManager.getVersion(searcher);
+        add(shards.get(1), "4", "defiant");
+        searcher = ShardedIndexSearcher.acquire(shards, executor);
+        try {
+            assertTrue(searcher.getVersion() > version);
+            assertEquals(4, searcher.count(new MatchAllDocsQuery()));
+        } finally {
+            searcher.release();
+        }
+    }
+
+    private static void add(IndexShard shard, String id, String weblog) throws Exception {
+        Document doc = new Document();
+        doc.add(new StringField("id", id, Field.Store.YES));
+        doc.add(new StringField("weblog", weblog, Field.Store.NO));
+        shard.getIndexWriter().addDocument(doc);
+        shard.maintain(Long.MAX_VALUE);
+    }
+
+}
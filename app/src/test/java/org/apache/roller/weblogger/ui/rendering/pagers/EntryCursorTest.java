@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.ui.rendering.pagers;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Base64;
+import org.apache.roller.weblogger.pojos.WeblogEntry;
+import org.apache.roller.weblogger.pojos.WeblogEntrySearchCriteria;
+import org.apache.roller.weblogger.pojos.WeblogEntrySearchCriteria.SortOrder;
+import org.apache.roller.weblogger.pojos.wrapper.WeblogEntryWrapper;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test EntryCursor.
+ */
+public class EntryCursorTest {
+
+    @Test
+    public void testAfter() {
+        WeblogEntryWrapper entry = entry("8a8a8a8a-0001", 1709251200123L);
+
+        String value = EntryCursor.after(entry);
+        assertTrue(value.matches("[A-Za-z0-9_-]+"), value);
+
+        EntryCursor cursor = EntryCursor.parse(value);
+        assertNotNull(cursor);
+        assertFalse(cursor.isBefore());
+
+        WeblogEntrySearchCriteria wesc = new WeblogEntrySearchCriteria();
+        cursor.apply(wesc);
+        assertEquals(1709251200123L, wesc.getAfterPubTime().getTime());
+        assertEquals("8a8a8a8a-0001", wesc.getAfterId());
+        assertEquals(SortOrder.DESCENDING, wesc.getSortOrder());
+    }
+
+
+    @Test
+    public void testBefore() {
+        EntryCursor cursor = EntryCursor.parse(EntryCursor.before(entry("8a8a8a8a-0002", 5L)));
+        assertNotNull(cursor);
+        assertTrue(cursor.isBefore());
+
+        WeblogEntrySearchCriteria wesc = new WeblogEntrySearchCriteria();
+        cursor.apply(wesc);
+        assertEquals(5L, wesc.getAfterPubTime().getTime());
+        assertEquals(SortOrder.ASCENDING, wesc.getSortOrder());
+    }
+
+
+    @Test
+    public void testInvalid() {
+        assertNull(EntryCursor.parse(null));
+        assertNull(EntryCursor.parse(""));
+        assertNull(EntryCursor.parse("not a cursor!"));
+        // valid base64, but no direction, time or id
+        assertNull(EntryCursor.parse("eHl6"));
+        assertNull(EntryCursor.parse("YS4"));
+        assertNull(EntryCursor.parse("YXp6ei4"));
+        assertNull(EntryCursor.parse("x".repeat(200)));
+    }
+
+
+    @Test
+    public void testCanonical() {
+        String value = EntryCursor.after(entry("8a8a8a8a-0003", 1700000000000L));
+        assertEquals(value, EntryCursor.canonical(value));
+
+        // the same cursor padded, or with its time written differently
+        String padded = Base64.getUrlEncoder().encodeToString(Base64.getUrlDecoder().decode(value));
+        assertNotEquals(value, padded);
+        assertEquals(value, EntryCursor.canonical(padded));
+        String time = Long.toString(1700000000000L, Character.MAX_RADIX);
+        assertEquals(value, EntryCursor.canonical(Base64.getUrlEncoder().encodeToString(
+                ("a0" + time + ".8a8a8a8a-0003").getBytes(StandardCharsets.UTF_8))));
+
+        assertNull(EntryCursor.canonical("not a cursor!"));
+        assertNull(EntryCursor.canonical(null));
+    }
+
+
+    private static WeblogEntryWrapper entry(String id, long pubTime) {
+        WeblogEntry entry = new WeblogEntry();
+        entry.setId(id);
+        entry.setPubTime(new Timestamp(pubTime));
+        return WeblogEntryWrapper.wrap(entry, null);
+    }
+
+}
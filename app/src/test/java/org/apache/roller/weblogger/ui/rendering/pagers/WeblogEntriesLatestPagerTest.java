@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.ui.rendering.pagers;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.roller.weblogger.TestUtils;
+import org.apache.roller.weblogger.business.WeblogEntryManager;
+import org.apache.roller.weblogger.business.WebloggerFactory;
+import org.apache.roller.weblogger.pojos.User;
+import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.pojos.WeblogEntry;
+import org.apache.roller.weblogger.pojos.wrapper.WeblogEntryWrapper;
+import org.eclipse.persistence.sessions.Session;
+import org.eclipse.persistence.sessions.SessionEvent;
+import org.eclipse.persistence.sessions.SessionEventAdapter;
+import org.eclipse.persistence.sessions.factories.SessionManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test WeblogEntriesLatestPager.
+ */
+public class WeblogEntriesLatestPagerTest {
+
+    public static Log log = LogFactory.getLog(WeblogEntriesLatestPagerTest.class);
+
+    private static final int ENTRIES = 10;
+
+    User testUser = null;
+    Weblog testWeblog = null;
+
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        TestUtils.setupWeblogger();
+
+        try {
+            testUser = TestUtils.setupUser("pagerTestUser");
+            testWeblog = TestUtils.setupWeblog("pagerTestWeblog", testUser);
+            TestUtils.endSession(true);
+
+            WeblogEntryManager mgr = WebloggerFactory.getWeblogger().getWeblogEntryManager();
+            long now = System.currentTimeMillis();
+            for (int i = 0; i < ENTRIES; i++) {
+                WeblogEntry entry = TestUtils.setupWeblogEntry("pagerEntry" + i, testWeblog, testUser);
+                entry.setPubTime(new Timestamp(now - (i + 1) * 60000L));
+                entry.addTag("one");
+                entry.addTag("two");
+                entry.putEntryAttribute("att", "value" + i);
+                mgr.saveWeblogEntry(entry);
+                TestUtils.endSession(true);
+                TestUtils.setupComment("comment", entry);
+                TestUtils.endSession(true);
+            }
+        } catch (Exception ex) {
+            log.error("ERROR in test setup", ex);
+            throw new Exception("Test setup failed", ex);
+        }
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        try {
+            TestUtils.teardownWeblog(testWeblog.getId());
+            TestUtils.teardownUser(testUser.getUserName());
+            TestUtils.endSession(true);
+        } catch (Exception ex) {
+            log.error("ERROR in test teardown", ex);
+            throw new Exception("Test teardown failed", ex);
+        }
+    }
+
+
+    /**
+     * Rendering a page of entries with their tags, attributes, creator and
+     * comment count takes the same few queries however many entries it has.
+     */
+    @Test
+    public void testQueriesPerPage() throws Exception {
+
+        clearCaches();
+        Weblog weblog = TestUtils.getManagedWebsite(testWeblog);
+
+        QueryCounter counter = new QueryCounter();
+        for (Session session : SessionManager.getManager().getSessions().values()) {
+            session.getEventManager().addListener(counter);
+        }
+        try {
+            WeblogEntriesLatestPager pager = new WeblogEntriesLatestPager(
+                    WebloggerFactory.getWeblogger().getUrlStrategy(),
+                    weblog, null, null, null, null, null, null, 0, null);
+
+            int rendered = 0;
+            for (List<WeblogEntryWrapper> day : pager.getEntries().values()) {
+                for (WeblogEntryWrapper entry : day) {
+                    assertNotNull(entry.getCategory().getName());
+                    assertEquals(testUser.getScreenName(), entry.getCreator().getScreenName());
+                    assertEquals(2, entry.getTags().size());
+                    assertTrue(entry.findEntryAttribute("att").startsWith("value"));
+                    assertEquals(1, entry.getCommentCount());
+                    rendered++;
+                }
+            }
+            assertEquals(ENTRIES, rendered);
+
+            // a runtime property, the entries, then tags, attributes,
+            // creators and comment counts rather than a few per entry
+            assertTrue(counter.count.get() <= 6, counter.count.get() + " queries");
+
+        } finally {
+            for (Session session : SessionManager.getManager().getSessions().values()) {
+                session.getEventManager().removeListener(counter);
+            }
+        }
+    }
+
+
+    // make sure nothing is found without going to the database
+    private static void clearCaches() throws Exception {
+        TestUtils.endSession(false);
+        for (Session session : SessionManager.getManager().getSessions().values()) {
+            session.getIdentityMapAccessor().initializeAllIdentityMaps();
+        }
+    }
+
+    private static class QueryCounter extends SessionEventAdapter {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public void preExecuteCall(SessionEvent event) {
+            count.incrementAndGet();
+        }
+    }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.ui.rendering.util;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.apache.roller.weblogger.util.cache.CachedContent;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test ContentEncodingUtil.
+ */
+public class ContentEncodingUtilTest {
+
+    @Test
+    public void testAcceptsGzip() {
+        assertTrue(ContentEncodingUtil.acceptsGzip(request("gzip")));
+        assertTrue(ContentEncodingUtil.acceptsGzip(request("gzip, deflate, br")));
+        assertTrue(ContentEncodingUtil.acceptsGzip(request("br;q=1.0, GZIP;q=0.5")));
+        assertTrue(ContentEncodingUtil.acceptsGzip(request("x-gzip")));
+        assertTrue(ContentEncodingUtil.acceptsGzip(request("*")));
+    }
+
+    @Test
+    public void testRejectsGzip() {
+        assertFalse(ContentEncodingUtil.acceptsGzip(request(null)));
+        assertFalse(ContentEncodingUtil.acceptsGzip(request("")));
+        assertFalse(ContentEncodingUtil.acceptsGzip(request("identity")));
+        assertFalse(ContentEncodingUtil.acceptsGzip(request("deflate, br")));
+        assertFalse(ContentEncodingUtil.acceptsGzip(request("gzip;q=0")));
+        assertFalse(ContentEncodingUtil.acceptsGzip(request("*, gzip;q=0.0")));
+        assertFalse(ContentEncodingUtil.acceptsGzip(request("*;q=0")));
+    }
+
+    @Test
+    public void testMatches() {
+        assertTrue(ContentEncodingUtil.matches("\"abc\"", "abc"));
+        assertTrue(ContentEncodingUtil.matches("\"abc-gzip\"", "abc"));
+        assertTrue(ContentEncodingUtil.matches("W/\"abc\"", "abc"));
+        assertTrue(ContentEncodingUtil.matches("\"xyz\", \"abc\"", "abc"));
+        assertTrue(ContentEncodingUtil.matches("*", "abc"));
+
+        assertFalse(ContentEncodingUtil.matches(null, "abc"));
+        assertFalse(ContentEncodingUtil.matches("abc", "abc"));
+        assertFalse(ContentEncodingUtil.matches("\"abcd\"", "abc"));
+        assertFalse(ContentEncodingUtil.matches("MOBILE", "abc"));
+    }
+
+    @Test
+    public void testRespondIfNoneMatch() throws Exception {
+        CachedContent content = new CachedContent(0, "text/html", false);
+        content.getCachedWriter().write("<p>Hello Roller</p>");
+        content.close();
+        String etag = "\"" + content.getContentHash() + "\"";
+
+        HttpServletRequest request = request(null);
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        assertFalse(ContentEncodingUtil.respondIfNoneMatch(request, response, content));
+        verify(response).setHeader("ETag", etag);
+        verify(response, never()).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+
+        when(request.getHeader("If-None-Match")).thenReturn(etag);
+        response = mock(HttpServletResponse.class);
+        assertTrue(ContentEncodingUtil.respondIfNoneMatch(request, response, content));
+        verify(response).setHeader("ETag", etag);
+        verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    }
+
+    private static HttpServletRequest request(String acceptEncoding) {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getHeader("Accept-Encoding")).thenReturn(acceptEncoding);
+        return request;
+    }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.ui.rendering.util.cache;
+
+import java.sql.Timestamp;
+import java.util.Map;
+import org.apache.roller.weblogger.business.plugins.entry.WeblogEntryPlugin;
+import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.pojos.WeblogEntry;
+import org.apache.roller.weblogger.pojos.WeblogEntryPresenter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test RenderedEntryCache.
+ */
+public class RenderedEntryCacheTest {
+
+    private WeblogEntryPlugin plugin;
+    private WeblogEntry entry;
+
+    @BeforeEach
+    public void setUp() {
+        RenderedEntryCache.getInstance().clear();
+
+        plugin = mock(WeblogEntryPlugin.class);
+        when(plugin.render(any(WeblogEntry.class), anyString()))
+                .thenAnswer(inv -> "<b>" + inv.getArgument(1) + "</b>");
+
+        Weblog weblog = mock(Weblog.class);
+        when(weblog.getInitializedPlugins()).thenReturn(Map.of("bold", plugin));
+
+        entry = new WeblogEntry();
+        entry.setId("renderedEntryTest");
+        entry.setWebsite(weblog);
+        entry.setPlugins("bold");
+        entry.setText("text");
+        entry.setSummary("summary");
+        entry.setUpdateTime(new Timestamp(1000L));
+    }
+
+    @Test
+    public void testRenderedOnce() {
+        assertEquals("<b>text</b>", new WeblogEntryPresenter(entry).getTransformedText());
+        assertEquals("<b>text</b>", new WeblogEntryPresenter(entry).getTransformedText());
+        assertEquals("<b>summary</b>", new WeblogEntryPresenter(entry).getTransformedSummary());
+        assertEquals("<b>summary</b>", new WeblogEntryPresenter(entry).getTransformedSummary());
+        verify(plugin, times(2)).render(any(WeblogEntry.class), anyString());
+    }
+
+    @Test
+    public void testRenderedAgainWhenChanged() {
+        WeblogEntryPresenter presenter = new WeblogEntryPresenter(entry);
+        presenter.getTransformedText();
+
+        // saved
+        entry.setUpdateTime(new Timestamp(2000L));
+        presenter.getTransformedText();
+
+        // previewed without saving
+        entry.setText("changed");
+        RenderedEntryCache.beginPreview();
+        try {
+            assertEquals("<b>changed</b>", presenter.getTransformedText());
+        } finally {
+            RenderedEntryCache.endPreview();
+        }
+
+        // plugins turned off
+        entry.setPlugins(null);
+        assertEquals("changed", presenter.getTransformedText());
+
+        verify(plugin, times(3)).render(any(WeblogEntry.class), anyString());
+    }
+
+    @Test
+    public void testSameHashCodePreviewedAgain() {
+        // "Aa" and "BB" have the same length and hash code
+        entry.setText("Aa");
+        assertEquals("<b>Aa</b>", new WeblogEntryPresenter(entry).getTransformedText());
+        entry.setText("BB");
+        RenderedEntryCache.beginPreview();
+        try {
+            assertEquals("<b>BB</b>", new WeblogEntryPresenter(entry).getTransformedText());
+        } finally {
+            RenderedEntryCache.endPreview();
+        }
+    }
+
+    @Test
+    public void testPreviewNotKept() {
+        RenderedEntryCache.beginPreview();
+        try {
+            new WeblogEntryPresenter(entry).getTransformedText();
+            new WeblogEntryPresenter(entry).getTransformedText();
+        } finally {
+            RenderedEntryCache.endPreview();
+        }
+        verify(plugin, times(2)).render(any(WeblogEntry.class), anyString());
+
+        new WeblogEntryPresenter(entry).getTransformedText();
+        new WeblogEntryPresenter(entry).getTransformedText();
+        verify(plugin, times(3)).render(any(WeblogEntry.class), anyString());
+    }
+
+    @Test
+    public void testInvalidate() {
+        WeblogEntryPresenter presenter = new WeblogEntryPresenter(entry);
+        presenter.getTransformedText();
+        RenderedEntryCache.getInstance().invalidate(entry);
+        presenter.getTransformedText();
+        verify(plugin, times(2)).render(any(WeblogEntry.class), anyString());
+    }
+
+}
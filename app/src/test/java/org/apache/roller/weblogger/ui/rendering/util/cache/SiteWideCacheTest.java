@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.ui.rendering.util.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import org.apache.roller.weblogger.ui.rendering.util.WeblogPageRequest;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+/**
+ * Test SiteWideCache keys.
+ */
+public class SiteWideCacheTest {
+
+    @Test
+    public void testCursorInPageKey() {
+        SiteWideCache cache = SiteWideCache.getInstance();
+
+        // later pages reached through different cursors differ
+        String first = cache.generateKey(pageRequest(1, cursor("ama4.entry1")));
+        String second = cache.generateKey(pageRequest(1, cursor("ama3.entry2")));
+        assertNotEquals(first, second);
+        assertEquals(first, cache.generateKey(pageRequest(1, cursor("ama4.entry1"))));
+
+        // the same cursor written another way is the same page
+        assertEquals(first, cache.generateKey(pageRequest(1,
+                Base64.getUrlEncoder().encodeToString("ama4.entry1".getBytes(StandardCharsets.UTF_8)))));
+
+        // a cursor which doesn't parse is ignored, as the pager ignores it
+        assertEquals(cache.generateKey(pageRequest(1, null)), cache.generateKey(pageRequest(1, "x")));
+
+        // the first page has no cursor
+        assertEquals(cache.generateKey(pageRequest(0, null)), cache.generateKey(pageRequest(0, cursor("ama4.entry1"))));
+    }
+
+    private static String cursor(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static WeblogPageRequest pageRequest(int pageNum, String cursor) {
+        WeblogPageRequest pageRequest = new WeblogPageRequest();
+        pageRequest.setWeblogHandle("frontpage");
+        pageRequest.setPageNum(pageNum);
+        pageRequest.setCursor(cursor);
+        return pageRequest;
+    }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util.cache;
+
+import java.sql.Timestamp;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Set;
+import java.util.TimeZone;
+import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.pojos.WeblogCategory;
+import org.apache.roller.weblogger.pojos.WeblogEntry;
+import org.apache.roller.weblogger.pojos.WeblogEntryComment;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test CacheDependencies.
+ */
+public class CacheDependenciesTest {
+
+    @Test
+    public void testRecording() {
+        Weblog weblog = weblog("blog");
+
+        // nothing is recorded outside of begin() and end()
+        CacheDependencies.recordWeblog(weblog);
+        assertTrue(CacheDependencies.end().isEmpty());
+
+        CacheDependencies.begin();
+        CacheDependencies.recordWeblog(weblog);
+        CacheDependencies.recordEntries(weblog, "Java", List.of("ignored"), null);
+        CacheDependencies.recordEntries(weblog, null, List.of("Roller"), null);
+        CacheDependencies.recordEntries(weblog, null, null, "20260115");
+        CacheDependencies.recordEntries(null, "Java", null, null);
+        CacheDependencies.recordComments(weblog);
+        CacheDependencies.recordWeblogs();
+
+        assertEquals(Set.of("weblog:blog", "list:blog/cat:Java", "list:blog/tag:roller",
+                "list:blog/month:202601", "list:*", "comments:blog", CacheDependencies.WEBLOGS),
+                CacheDependencies.end());
+    }
+
+    @Test
+    public void testEntryMatchesListings() throws Exception {
+        Weblog weblog = weblog("blog");
+        WeblogEntry entry = entry(weblog, "Java");
+        entry.addTag("Roller");
+
+        Set<String> changed = CacheDependencies.dependenciesOf(entry);
+
+        CacheDependencies.begin();
+        CacheDependencies.recordEntries(weblog, "Java", null, null);
+        CacheDependencies.recordEntries(weblog, null, List.of("roller"), null);
+        CacheDependencies.recordEntries(weblog, null, null, "202601");
+        CacheDependencies.recordEntries(weblog, null, null, null);
+        CacheDependencies.recordEntries(null, null, null, null);
+        for (String dependency : CacheDependencies.end()) {
+            assertTrue(changed.contains(dependency), dependency);
+        }
+
+        CacheDependencies.begin();
+        CacheDependencies.recordEntries(weblog, "Other", null, null);
+        CacheDependencies.recordEntries(weblog, null, null, "202602");
+        CacheDependencies.recordEntries(weblog("other"), null, null, null);
+        for (String dependency : CacheDependencies.end()) {
+            assertFalse(changed.contains(dependency), dependency);
+        }
+    }
+
+    @Test
+    public void testMovedEntryMatchesOldListings() throws Exception {
+        Weblog weblog = weblog("blog");
+        WeblogEntry entry = entry(weblog, "Java");
+
+        // moved to another category and month
+        WeblogCategory other = new WeblogCategory();
+        other.setName("Other");
+        entry.setCategory(other);
+        Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        cal.set(2026, Calendar.MARCH, 1, 12, 0, 0);
+        entry.setPubTime(new Timestamp(cal.getTimeInMillis()));
+
+        Set<String> changed = CacheDependencies.dependenciesOf(entry);
+        assertTrue(changed.containsAll(Set.of("list:blog/cat:Java", "list:blog/cat:Other",
+                "list:blog/month:202601", "list:blog/month:202603")), changed.toString());
+        assertFalse(changed.contains("list:blog/month:202602"));
+    }
+
+    @Test
+    public void testComment() {
+        Weblog weblog = weblog("blog");
+        WeblogEntryComment comment = new WeblogEntryComment();
+        comment.setWeblogEntry(entry(weblog, "Java"));
+
+        assertEquals(Set.of("comments:*", "comments:blog", "entry:e1"),
+                CacheDependencies.dependenciesOf(comment));
+    }
+
+    private static Weblog weblog(String handle) {
+        Weblog weblog = new Weblog();
+        weblog.setHandle(handle);
+        weblog.setTimeZone("UTC");
+        return weblog;
+    }
+
+    private static WeblogEntry entry(Weblog weblog, String catName) {
+        WeblogCategory category = new WeblogCategory();
+        category.setName(catName);
+
+        Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        cal.set(2026, Calendar.JANUARY, 15, 12, 0, 0);
+
+        WeblogEntry entry = new WeblogEntry();
+        entry.setId("e1");
+        entry.setWebsite(weblog);
+        entry.setCategory(category);
+        entry.setPubTime(new Timestamp(cal.getTimeInMillis()));
+        return entry;
+    }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test CachedContent.
+ */
+public class CachedContentTest {
+
+    private static final String PAGE = "<html><body>" + "<p>Hello Roller</p>".repeat(500) + "</body></html>";
+
+    @Test
+    public void testCompressedOnClose() throws Exception {
+        CachedContent content = render(PAGE, true);
+
+        assertTrue(content.isCompressed());
+        assertEquals(PAGE.length(), content.getContentLength());
+        assertTrue(content.getStoredLength() < content.getContentLength());
+
+        // plain clients get the original content back
+        assertEquals(PAGE, content.getContentAsString());
+        ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        content.writeTo(plain);
+        assertEquals(PAGE, plain.toString("UTF-8"));
+
+        // gzip clients get the stored bytes as-is
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+        content.writeCompressedTo(gzipped);
+        assertEquals(content.getStoredLength(), gzipped.size());
+        assertEquals(PAGE, gunzip(gzipped.toByteArray()));
+    }
+
+    @Test
+    public void testSmallContentNotCompressed() throws Exception {
+        CachedContent content = render("<p>tiny</p>", true);
+
+        assertFalse(content.isCompressed());
+        assertEquals(content.getContentLength(), content.getStoredLength());
+        assertThrows(IllegalStateException.class,
+                () -> content.writeCompressedTo(new ByteArrayOutputStream()));
+    }
+
+    @Test
+    public void testUncompressed() throws Exception {
+        CachedContent content = render(PAGE, false);
+
+        assertFalse(content.isCompressed());
+        assertEquals(PAGE.length(), content.getStoredLength());
+        assertEquals(PAGE, content.getContentAsString());
+    }
+
+    @Test
+    public void testCompressedOffHeap() throws Exception {
+        CachedContent content = render(PAGE, true);
+        CachedContent moved = content.moveOffHeap(new OffHeapStore(OffHeapStore.SLAB_SIZE));
+
+        assertTrue(moved.isOffHeap());
+        assertTrue(moved.isCompressed());
+        assertEquals(content.getStoredLength(), moved.getStoredLength());
+        assertEquals(PAGE.length(), moved.getContentLength());
+
+        ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        moved.writeTo(plain);
+        assertEquals(PAGE, plain.toString("UTF-8"));
+    }
+
+    @Test
+    public void testContentHash() throws Exception {
+        String hash = render(PAGE, true).getContentHash();
+
+        // same content gives the same hash, whatever the storage
+        assertEquals(hash, render(PAGE, false).getContentHash());
+        assertEquals(hash, render(PAGE, true)
+                .moveOffHeap(new OffHeapStore(OffHeapStore.SLAB_SIZE)).getContentHash());
+
+        assertNotEquals(hash, render(PAGE + " ", true).getContentHash());
+
+        CachedContent open = new CachedContent(0, "text/html", false);
+        assertThrows(IllegalStateException.class, open::getContentHash);
+    }
+
+    private static CachedContent render(String text, boolean compress) throws Exception {
+        CachedContent content = new CachedContent(0, "text/html", compress);
+        content.getCachedWriter().write(text);
+        content.flush();
+        content.close();
+        return content;
+    }
+
+    private static String gunzip(byte[] bytes) throws Exception {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            return new String(in.readAllBytes(), "UTF-8");
+        }
+    }
+
+}
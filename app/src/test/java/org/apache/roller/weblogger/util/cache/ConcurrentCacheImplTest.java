@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test ConcurrentCacheImpl.
+ */
+public class ConcurrentCacheImplTest {
+
+    @Test
+    public void testPutGetRemove() {
+        ConcurrentCacheImpl cache = new ConcurrentCacheImpl("test", 10, 60);
+
+        cache.put("key1", "string1");
+        cache.put("key2", "string2");
+        assertEquals("string1", cache.get("key1"));
+        assertEquals("string2", cache.get("key2"));
+        assertNull(cache.get("key3"));
+
+        cache.remove("key1");
+        assertNull(cache.get("key1"));
+        assertEquals(1, cache.size());
+
+        cache.clear();
+        assertNull(cache.get("key2"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testLRU() {
+        ConcurrentCacheImpl cache = new ConcurrentCacheImpl("test", 3, 60);
+
+        cache.put("key1", "string1");
+        cache.put("key2", "string2");
+        cache.put("key3", "string3");
+
+        // accessing key1 and key2 will make key3 LRU
+        assertNotNull(cache.get("key1"));
+        assertNotNull(cache.get("key2"));
+
+        // adding a forth key will push out the LRU entry
+        cache.put("key4", "string4");
+        assertEquals(3, cache.size());
+        assertNull(cache.get("key3"));
+        assertNotNull(cache.get("key1"));
+        assertNotNull(cache.get("key2"));
+        assertNotNull(cache.get("key4"));
+    }
+
+    @Test
+    public void testPerEntryTimeout() throws Exception {
+        // no default timeout
+        ConcurrentCacheImpl cache = new ConcurrentCacheImpl("test", 10, 0);
+
+        cache.put("forever", "string1");
+        cache.put("shortLived", "string2", 1);
+        assertNotNull(cache.get("shortLived"));
+
+        Thread.sleep(1100);
+
+        assertNull(cache.get("shortLived"));
+        assertNotNull(cache.get("forever"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testStats() {
+        ConcurrentCacheImpl cache = new ConcurrentCacheImpl("test", 2, 60);
+
+        cache.put("key1", "string1");
+        cache.get("key1");
+        cache.get("key2");
+        cache.put("key2", "string2");
+        cache.put("key3", "string3");
+
+        Map<String, Object> stats = cache.getStats();
+        assertEquals(1L, stats.get("hits"));
+        assertEquals(1L, stats.get("misses"));
+        assertEquals(3L, stats.get("puts"));
+        assertEquals(1L, stats.get("evictions"));
+        assertEquals(2, stats.get("size"));
+        assertEquals(50.0, (Double) stats.get("efficiency"), 0.001);
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        final ConcurrentCacheImpl cache = new ConcurrentCacheImpl("test", 50, 60);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            final int offset = t;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 5000; i++) {
+                    String key = "key" + ((i + offset) % 100);
+                    if (cache.get(key) == null) {
+                        cache.put(key, key);
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue(cache.size() <= 50);
+        Map<String, Object> stats = cache.getStats();
+        assertEquals(8L * 5000, (Long) stats.get("hits") + (Long) stats.get("misses"));
+    }
+
+}
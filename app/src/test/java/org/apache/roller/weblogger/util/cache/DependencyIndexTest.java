@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util.cache;
+
+import java.util.Date;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test DependencyIndex.
+ */
+public class DependencyIndexTest {
+
+    @Test
+    public void testInvalidate() {
+        DependencyIndex index = new DependencyIndex(10);
+        assertTrue(index.register("permalink", Set.of("weblog:blog", "entry:1")));
+        assertTrue(index.register("main", Set.of("weblog:blog", "list:blog", "entry:1", "entry:2")));
+        assertTrue(index.register("tag", Set.of("weblog:blog", "list:blog/tag:java")));
+
+        assertEquals(Set.of("permalink", "main"), index.invalidate(Set.of("entry:1", "list:*")));
+        assertFalse(index.isTracked("permalink"));
+        assertFalse(index.isTracked("main"));
+        assertTrue(index.isTracked("tag"));
+
+        // nothing left which depends on entry 2
+        assertTrue(index.invalidate(Set.of("entry:2")).isEmpty());
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void testRegisterReplaces() {
+        DependencyIndex index = new DependencyIndex(10);
+        index.register("main", Set.of("entry:1"));
+        index.register("main", Set.of("entry:2"));
+
+        assertTrue(index.invalidate(Set.of("entry:1")).isEmpty());
+        assertEquals(Set.of("main"), index.invalidate(Set.of("entry:2")));
+    }
+
+    @Test
+    public void testFull() {
+        DependencyIndex index = new DependencyIndex(2);
+        assertTrue(index.register("a", Set.of("entry:1")));
+        assertTrue(index.register("b", Set.of("entry:1")));
+        assertFalse(index.register("c", Set.of("entry:1")));
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void testIsCurrent() throws Exception {
+        DependencyIndex index = new DependencyIndex(10);
+
+        // first modification seen, content cached after it is current
+        index.markInvalidated("blog", new Date(1000), new Date(2000));
+        Thread.sleep(5);
+        long cached = System.currentTimeMillis();
+        index.register("main", Set.of("weblog:blog", "list:blog"));
+        assertFalse(index.isCurrent("main", "blog", 3000, cached));
+
+        // a modification which the content did not depend on
+        index.invalidate(Set.of("entry:1"));
+        index.markInvalidated("blog", new Date(2000), new Date(3000));
+        assertTrue(index.isCurrent("main", "blog", 3000, cached));
+        index.markInvalidated("blog", new Date(3000), new Date(4000));
+        assertTrue(index.isCurrent("main", "blog", 4000, cached));
+
+        // modified since without being accounted for
+        assertFalse(index.isCurrent("main", "blog", 5000, cached));
+        assertFalse(index.isCurrent("untracked", "blog", 4000, cached));
+    }
+
+    @Test
+    public void testUnseenModificationIsNotMasked() throws Exception {
+        DependencyIndex index = new DependencyIndex(10);
+        index.markInvalidated("blog", new Date(1000), new Date(2000));
+        Thread.sleep(5);
+        long cached = System.currentTimeMillis();
+        index.register("main", Set.of("weblog:blog", "list:blog"));
+
+        // another node modified the weblog at 3000 and this one saved
+        // something else afterwards
+        Thread.sleep(5);
+        index.markInvalidated("blog", new Date(3000), new Date(4000));
+        assertFalse(index.isCurrent("main", "blog", 4000, cached));
+
+        // content cached from then on is fine
+        Thread.sleep(5);
+        assertTrue(index.isCurrent("main", "blog", 4000, System.currentTimeMillis()));
+
+        // an event from another node with no modification time
+        index.markInvalidated("blog", null, null);
+        assertFalse(index.isCurrent("main", "blog", 4000, System.currentTimeMillis()));
+    }
+
+}
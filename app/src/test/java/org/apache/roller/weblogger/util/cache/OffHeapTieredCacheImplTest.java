@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test OffHeapTieredCacheImpl.
+ */
+public class OffHeapTieredCacheImplTest {
+
+    @Test
+    public void testDemotion() throws Exception {
+        OffHeapStore store = new OffHeapStore(OffHeapStore.SLAB_SIZE);
+        OffHeapTieredCacheImpl cache = new OffHeapTieredCacheImpl("test", 2, 60, 100000, store);
+
+        CachedContent first = content(40000, 'a');
+        cache.put("key1", new LazyExpiringCacheEntry(first));
+        cache.put("key2", new LazyExpiringCacheEntry(content(40000, 'b')));
+        cache.put("key3", new LazyExpiringCacheEntry(content(40000, 'c')));
+
+        // key1 no longer fits on the heap but is still served from off-heap
+        LazyExpiringCacheEntry entry = (LazyExpiringCacheEntry) cache.get("key1");
+        assertNotNull(entry);
+        CachedContent demoted = (CachedContent) entry.getValue(0);
+        assertTrue(demoted.isOffHeap());
+        assertEquals(40000, demoted.getContentLength());
+
+        assertTrue(demoted.retain());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        demoted.writeTo(out);
+        demoted.release();
+        assertArrayEquals(first.getContent(), out.toByteArray());
+
+        assertEquals(1L, cache.getStats().get("demotions"));
+        assertEquals(1L, cache.getStats().get("offHeapHits"));
+
+        // a fresh put replaces the off-heap copy and frees its storage
+        cache.put("key1", content(10, 'd'));
+        assertFalse(((CachedContent) cache.get("key1")).isOffHeap());
+        assertEquals(OffHeapStore.CHUNK_SIZE * 3L, store.getUsedBytes());
+        assertFalse(demoted.retain());
+    }
+
+    @Test
+    public void testStorageIsRecycled() throws Exception {
+        // room for exactly one slab worth of content
+        OffHeapStore store = new OffHeapStore(OffHeapStore.SLAB_SIZE);
+        OffHeapTieredCacheImpl cache = new OffHeapTieredCacheImpl("test", 1, 60, Long.MAX_VALUE, store);
+
+        int size = OffHeapStore.SLAB_SIZE / 2;
+        for (int i = 0; i < 10; i++) {
+            cache.put("key" + i, content(size, 'x'));
+        }
+
+        assertEquals(OffHeapStore.SLAB_SIZE, store.getReservedBytes());
+        assertNotNull(cache.get("key9"));
+        assertNotNull(cache.get("key8"));
+        assertNotNull(cache.get("key7"));
+        assertNull(cache.get("key6"));
+
+        cache.clear();
+        assertEquals(0, store.getUsedBytes());
+    }
+
+    @Test
+    public void testRetainedContentSurvivesEviction() throws Exception {
+        OffHeapStore store = new OffHeapStore(OffHeapStore.SLAB_SIZE);
+        OffHeapTieredCacheImpl cache = new OffHeapTieredCacheImpl("test", 1, 60, Long.MAX_VALUE, store);
+
+        cache.put("key1", content(1000, 'a'));
+        cache.put("key2", content(1000, 'b'));
+
+        CachedContent reading = (CachedContent) cache.get("key1");
+        assertTrue(reading.retain());
+
+        // dropping the entry must not recycle storage still being read
+        cache.remove("key1");
+        assertEquals(OffHeapStore.CHUNK_SIZE, store.getUsedBytes());
+        cache.put("key3", content(1000, 'c'));
+        cache.put("key4", content(1000, 'd'));
+
+        byte[] expected = new byte[1000];
+        Arrays.fill(expected, (byte) 'a');
+        assertArrayEquals(expected, reading.getContent());
+        reading.release();
+    }
+
+    @Test
+    public void testDemotedAgainReleasesStorage() throws Exception {
+        OffHeapStore store = new OffHeapStore(OffHeapStore.SLAB_SIZE);
+        OffHeapTieredCacheImpl cache = new OffHeapTieredCacheImpl("test", 1, 60, Long.MAX_VALUE, store);
+
+        cache.put("key1", content(1000, 'a'));
+        cache.put("key2", content(1000, 'b'));
+        CachedContent demoted = (CachedContent) cache.get("key1");
+        assertTrue(demoted.isOffHeap());
+
+        // a newer key1 evicted by another thread before the put which
+        // stored it got to drop the off-heap copy
+        cache.onRemoval("key1", content(1000, 'c'), System.currentTimeMillis() + 60000, true);
+        assertEquals(OffHeapStore.CHUNK_SIZE, store.getUsedBytes());
+        assertFalse(demoted.retain());
+    }
+
+    @Test
+    public void testNoStorageLeakedUnderEviction() throws Exception {
+        OffHeapStore store = new OffHeapStore(OffHeapStore.SLAB_SIZE);
+        OffHeapTieredCacheImpl cache = new OffHeapTieredCacheImpl("test", 2, 60, Long.MAX_VALUE, store);
+        CachedContent content = content(1000, 'a');
+
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 5000; i++) {
+                    cache.put("key" + (i % 8), new LazyExpiringCacheEntry(content));
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        cache.clear();
+        assertEquals(0, store.getUsedBytes());
+    }
+
+    @Test
+    public void testCloseReleasesStorage() throws Exception {
+        Path file = Files.createTempDirectory("offheap").resolve("test.offheap");
+        OffHeapStore store = new OffHeapStore(OffHeapStore.SLAB_SIZE, file);
+        OffHeapTieredCacheImpl cache = new OffHeapTieredCacheImpl("test", 1, 60, Long.MAX_VALUE, store);
+
+        cache.put("key1", content(1000, 'a'));
+        cache.put("key2", content(1000, 'b'));
+        assertEquals(OffHeapStore.SLAB_SIZE, store.getReservedBytes());
+
+        cache.close();
+        assertEquals(0, store.getReservedBytes());
+        assertEquals(0, store.getUsedBytes());
+        assertFalse(Files.exists(file));
+        assertNull(cache.get("key1"));
+
+        // nothing more goes off-heap once closed
+        cache.put("key3", content(1000, 'c'));
+        cache.put("key4", content(1000, 'd'));
+        assertNull(cache.get("key3"));
+        assertEquals(0, store.getReservedBytes());
+    }
+
+    private static CachedContent content(int length, char c) throws Exception {
+        CachedContent content = new CachedContent(length);
+        for (int i = 0; i < length; i++) {
+            content.getCachedWriter().write(c);
+        }
+        content.close();
+        return content;
+    }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.roller.weblogger.util.cache;
+
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test WeightedCacheImpl.
+ */
+public class WeightedCacheImplTest {
+
+    @Test
+    public void testBudgetChoosesWeightedCache() {
+        // whatever the default factory, a budget in bytes is honored
+        Cache cache = CacheManager.constructCache(null,
+                Map.of("id", "weightedTest", "size", "10", "timeout", "60", "maxBytes", "1000"));
+        assertTrue(cache instanceof WeightedCacheImpl);
+        assertEquals(1000, ((WeightedCacheImpl) cache).getMaxBytes());
+    }
+
+    @Test
+    public void testByteBudget() throws Exception {
+        WeightedCacheImpl cache = new WeightedCacheImpl("test", 100, 60, 1000);
+
+        cache.put("key1", new LazyExpiringCacheEntry(content(400)));
+        cache.put("key2", new LazyExpiringCacheEntry(content(400)));
+        assertEquals(800, cache.getBytes());
+
+        // key1 becomes most recently used, so key2 has to make room
+        assertNotNull(cache.get("key1"));
+        cache.put("key3", content(400));
+
+        assertNull(cache.get("key2"));
+        assertNotNull(cache.get("key1"));
+        assertNotNull(cache.get("key3"));
+        assertEquals(800, cache.getBytes());
+
+        Map<String, Object> stats = cache.getStats();
+        assertEquals(800L, stats.get("bytes"));
+        assertEquals(400L, stats.get("evictedBytes"));
+
+        // replacing an entry accounts for the difference only
+        cache.put("key3", content(100));
+        assertEquals(500, cache.getBytes());
+
+        cache.remove("key1");
+        assertEquals(100, cache.getBytes());
+
+        cache.clear();
+        assertEquals(0, cache.getBytes());
+    }
+
+    @Test
+    public void testOversizedEntry() throws Exception {
+        WeightedCacheImpl cache = new WeightedCacheImpl("test", 100, 60, 1000);
+
+        cache.put("key1", content(500));
+        cache.put("key1", content(2000));
+
+        // the new content is too big and the old content is stale
+        assertNull(cache.get("key1"));
+        assertEquals(0, cache.getBytes());
+        assertEquals(1L, cache.getStats().get("rejects"));
+    }
+
+    @Test
+    public void testEntryCountStillApplies() throws Exception {
+        WeightedCacheImpl cache = new WeightedCacheImpl("test", 2, 60, 1000);
+
+        cache.put("key1", "string1");
+        cache.put("key2", "string2");
+        cache.put("key3", content(10));
+
+        assertEquals(2, cache.size());
+        assertEquals(10, cache.getBytes());
+    }
+
+    private static CachedContent content(int length) throws Exception {
+        CachedContent content = new CachedContent(length);
+        for (int i = 0; i < length; i++) {
+            content.getCachedWriter().write('x');
+        }
+        content.close();
+        return content;
+    }
+
+}
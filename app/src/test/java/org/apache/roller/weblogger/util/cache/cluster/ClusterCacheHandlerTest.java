@@ -0,0 +1,266 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.weblogger.util.cache.cluster;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import org.apache.roller.weblogger.pojos.User;
+import org.apache.roller.weblogger.pojos.Weblog;
+import org.apache.roller.weblogger.pojos.WeblogCategory;
+import org.apache.roller.weblogger.pojos.WeblogEntry;
+import org.apache.roller.weblogger.pojos.WeblogEntryComment;
+import org.apache.roller.weblogger.pojos.WeblogEntryTag;
+import org.apache.roller.weblogger.util.cache.CacheHandler;
+import org.apache.roller.weblogger.util.cache.CacheManager;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test ClusterCacheHandler, with nodes wired together in memory.
+ */
+public class ClusterCacheHandlerTest {
+
+    // invalidations which reached the local caches
+    private static final List<Object> invalidated = new ArrayList<>();
+
+    @BeforeAll
+    public static void registerListener() {
+        CacheManager.registerHandler(new CacheHandler() {
+            @Override
+            public void invalidate(WeblogEntry entry) {
+                invalidated.add(entry);
+            }
+
+            @Override
+            public void invalidate(WeblogEntryComment comment) {
+                invalidated.add(comment);
+            }
+
+            @Override
+            public void invalidate(User user) {
+                invalidated.add(user);
+            }
+        });
+    }
+
+    @BeforeEach
+    public void reset() {
+        invalidated.clear();
+    }
+
+    @Test
+    public void testBatchedAndDeduplicated() {
+        MemoryTransport transport = new MemoryTransport(4000);
+        ClusterCacheHandler handler = new ClusterCacheHandler(transport, 0, 100);
+
+        WeblogEntry entry = entry("e1", "blog");
+        for (int i = 0; i < 50; i++) {
+            WeblogEntryComment comment = new WeblogEntryComment();
+            comment.setId("c" + i);
+            comment.setWeblogEntry(entry);
+            handler.invalidate(comment);
+        }
+        handler.invalidate(entry);
+        handler.invalidate(entry);
+
+        handler.flush();
+        assertEquals(1, transport.sent.size());
+        String[] lines = transport.sent.get(0).split("\n");
+        assertEquals(3, lines.length);
+        assertTrue(lines[0].startsWith(ClusterCacheHandler.HEADER + " "));
+
+        // nothing new, nothing sent
+        handler.flush();
+        assertEquals(1, transport.sent.size());
+    }
+
+    @Test
+    public void testReceive() {
+        MemoryTransport transport = new MemoryTransport(4000);
+        ClusterCacheHandler sender = new ClusterCacheHandler(transport, 0, 100);
+        ClusterCacheHandler receiver = new ClusterCacheHandler(new MemoryTransport(4000), 0, 100);
+
+        WeblogEntry entry = entry("e1", "blog");
+        WeblogEntryTag tag = new WeblogEntryTag();
+        tag.setName("java");
+        entry.getTags().add(tag);
+        User user = new User();
+        user.setUserName("dave");
+
+        sender.invalidate(entry);
+        sender.invalidate(user);
+        sender.flush();
+
+        // a node ignores its own messages
+        sender.receive(transport.sent.get(0));
+        assertTrue(invalidated.isEmpty());
+
+        receiver.receive(transport.sent.get(0));
+        assertEquals(2, invalidated.size());
+
+        WeblogEntry received = (WeblogEntry) invalidated.get(0);
+        assertEquals("e1", received.getId());
+        assertEquals("blog", received.getWebsite().getHandle());
+        assertEquals("Java & Stuff", received.getCategory().getName());
+        assertEquals("java", received.getTags().iterator().next().getName());
+        assertEquals(entry.getPubTime(), received.getPubTime());
+
+        assertEquals("dave", ((User) invalidated.get(1)).getUserName());
+    }
+
+    @Test
+    public void testNotEchoed() {
+        MemoryTransport transport = new MemoryTransport(4000);
+        ClusterCacheHandler handler = new ClusterCacheHandler(transport, 0, 100);
+        CacheManager.registerHandler(handler);
+
+        MemoryTransport otherTransport = new MemoryTransport(4000);
+        ClusterCacheHandler other = new ClusterCacheHandler(otherTransport, 0, 100);
+        other.invalidate(entry("e1", "blog"));
+        other.flush();
+
+        // applying events from other nodes doesn't queue them up again
+        handler.receive(otherTransport.sent.get(0));
+        handler.flush();
+        assertTrue(transport.sent.isEmpty());
+    }
+
+    @Test
+    public void testSigned() {
+        MemoryTransport transport = new MemoryTransport(4000);
+        ClusterCacheHandler sender = new ClusterCacheHandler(transport, 0, 100, "secret");
+        ClusterCacheHandler receiver = new ClusterCacheHandler(new MemoryTransport(4000), 0, 100, "secret");
+        ClusterCacheHandler stranger = new ClusterCacheHandler(new MemoryTransport(4000), 0, 100, "guess");
+
+        sender.invalidate(entry("e1", "blog"));
+        sender.flush();
+        String message = transport.sent.get(0);
+
+        // unsigned, tampered with or signed with another secret are all ignored
+        receiver.receive(message.substring(0, message.lastIndexOf('\n')));
+        receiver.receive(message.replace("e1", "e2"));
+        stranger.receive(message);
+        assertTrue(invalidated.isEmpty());
+
+        receiver.receive(message);
+        assertEquals(1, invalidated.size());
+        assertEquals("e1", ((WeblogEntry) invalidated.get(0)).getId());
+    }
+
+    @Test
+    public void testSignedFitsMaxSize() {
+        MemoryTransport transport = new MemoryTransport(200);
+        ClusterCacheHandler handler = new ClusterCacheHandler(transport, 0, 20, "secret");
+
+        for (int i = 0; i < 10; i++) {
+            handler.invalidate(entry("e" + i, "blog"));
+        }
+        handler.flush();
+        for (String message : transport.sent) {
+            assertTrue(message.length() <= 200);
+        }
+    }
+
+    @Test
+    public void testSplitAndOverflow() {
+        MemoryTransport transport = new MemoryTransport(200);
+        ClusterCacheHandler handler = new ClusterCacheHandler(transport, 0, 20);
+
+        for (int i = 0; i < 10; i++) {
+            handler.invalidate(entry("e" + i, "blog"));
+        }
+        handler.flush();
+        assertTrue(transport.sent.size() > 1);
+        for (String message : transport.sent) {
+            assertTrue(message.length() <= 200);
+        }
+
+        transport.sent.clear();
+        for (int i = 0; i < 30; i++) {
+            handler.invalidate(entry("e" + i, "blog"));
+        }
+        handler.flush();
+        assertEquals(1, transport.sent.size());
+        assertTrue(transport.sent.get(0).endsWith("\nCLEAR"));
+    }
+
+    @Test
+    public void testOversizedEventClears() {
+        MemoryTransport transport = new MemoryTransport(200);
+        ClusterCacheHandler handler = new ClusterCacheHandler(transport, 0, 20);
+
+        handler.invalidate(entry("e1", "blog"));
+        handler.invalidate(entry("e2", "x".repeat(300)));
+        handler.flush();
+        assertEquals(1, transport.sent.size());
+        assertTrue(transport.sent.get(0).length() <= 200);
+        assertTrue(transport.sent.get(0).endsWith("\nCLEAR"));
+    }
+
+    private static WeblogEntry entry(String id, String handle) {
+        Weblog weblog = new Weblog();
+        weblog.setHandle(handle);
+        weblog.setTimeZone("UTC");
+
+        WeblogCategory category = new WeblogCategory();
+        category.setName("Java & Stuff");
+
+        WeblogEntry entry = new WeblogEntry();
+        entry.setId(id);
+        entry.setWebsite(weblog);
+        entry.setCategory(category);
+        entry.setPubTime(new Timestamp(1760000000000L));
+        return entry;
+    }
+
+    private static class MemoryTransport implements ClusterTransport {
+
+        private final int maxSize;
+        private final List<String> sent = new ArrayList<>();
+
+        MemoryTransport(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        public void start(Consumer<String> receiver) {
+        }
+
+        @Override
+        public void send(String message) {
+            sent.add(message);
+        }
+
+        @Override
+        public int getMaxMessageSize() {
+            return maxSize;
+        }
+
+        @Override
+        public void stop() {
+        }
+    }
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+
+package org.apache.roller.weblogger.util.cache.cluster;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test TcpTransport between two nodes on this host.
+ */
+public class TcpTransportTest {
+
+    @Test
+    public void testMessagesDelivered() throws Exception {
+        int port = freePort();
+        TcpTransport receiver = new TcpTransport(port, null, "localhost:" + port);
+        TcpTransport sender = new TcpTransport(port, null, "localhost:" + port);
+        BlockingQueue<String> received = new LinkedBlockingQueue<>();
+        receiver.start(received::add);
+        try {
+            sender.send("ENTRY e1 blog");
+            assertEquals("ENTRY e1 blog", received.poll(5, TimeUnit.SECONDS));
+        } finally {
+            sender.stop();
+            receiver.stop();
+        }
+    }
+
+    @Test
+    public void testUnknownHostRefused() throws Exception {
+        int port = freePort();
+        // only accepts connections from a host which isn't this one
+        TcpTransport receiver = new TcpTransport(port, null, "192.0.2.1:" + port);
+        TcpTransport sender = new TcpTransport(port, null, "localhost:" + port);
+        BlockingQueue<String> received = new LinkedBlockingQueue<>();
+        receiver.start(received::add);
+        try {
+            sender.send("CLEAR");
+            assertNull(received.poll(500, TimeUnit.MILLISECONDS));
+        } finally {
+            sender.stop();
+            receiver.stop();
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+}